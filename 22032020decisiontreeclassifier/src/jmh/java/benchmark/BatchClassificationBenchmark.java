@@ -0,0 +1,74 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import processing.Classifier;
+import processing.ColumnarDataset;
+import processing.Patient;
+import processing.Schema;
+import tree.BaseNode;
+import tree.CompiledTree;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of scoring a whole block of rows through CompiledTree's batch methods against the per-record path they
+ * replace: one BaseNode.classify per Patient, compared with the Patient's class name, as classifyTestSet used to.
+ * The block is built once, as a scoring caller holding columnar data would; building it is not measured.
+ * Larger training sets give larger trees, with trainingRows 1000 and 10000 giving trees of roughly 400 and 4000 nodes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BatchClassificationBenchmark {
+
+    @Param({"100000"})
+    public int rows;
+
+    @Param({"0.5"})
+    public double liveFraction;
+
+    @Param({"16", "256"})
+    public int attributes;
+
+    @Param({"1000", "10000"})
+    public int trainingRows;
+
+    private BaseNode tree;
+    private CompiledTree compiled;
+    private Patient[] testData;
+    private ColumnarDataset block;
+
+    @Setup
+    public void setup() throws Throwable {
+        Schema schema = SyntheticData.schema(attributes);
+        ArrayList<Patient> training = SyntheticData.generate(schema, trainingRows, liveFraction, SyntheticData.SEED);
+        ArrayList<Patient> test = SyntheticData.generate(schema, rows, liveFraction, SyntheticData.SEED + 1);
+        tree = new Classifier(training, test, Classifier.TrainingEngine.BITSET).getTree();
+        compiled = CompiledTree.compile(tree, schema);
+        testData = test.toArray(new Patient[0]);
+        block = new ColumnarDataset(schema, test);
+    }
+
+    @Benchmark
+    public int countCorrectPerRecord() {
+        int correct = 0;
+        for (Patient p : testData) {
+            if (p.getClassName().equals(tree.classify(p))) correct++;
+        }
+        return correct;
+    }
+
+    @Benchmark
+    public int countCorrectBatch() {
+        return compiled.countCorrect(block);
+    }
+
+    @Benchmark
+    public byte[] classifyBatch() {
+        return compiled.classify(block);
+    }
+}
@@ -0,0 +1,34 @@
+package benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The Main class to run the benchmarks with the GC profiler, so allocation rates are reported with the throughput
+ * and average times. Any JMH command line options are passed through, e.g. "-p rows=10000" to run one size or
+ * "TrainingBenchmark" to run one benchmark class; with none, every benchmark is run.
+ * <p>
+ * The jmh source set of the Gradle build compiles these sources, and its jmh task runs this class, passing the options
+ * given with --args, e.g. gradle jmh --args="-p rows=10000 TrainingBenchmark".
+ * <p>
+ * Each benchmark forks with a bounded heap and, by default, only the sizes that fit it. Larger sizes are opt-in: give
+ * them with -p and a heap to match with -jvmArgs, which replaces the fork's own, e.g.
+ * gradle jmh --args="-p rows=1000000,10000000 -p attributes=1024 -jvmArgs -Xmx8g TrainingBenchmark".
+ */
+public class BenchmarkRunner {
+
+    /**
+     * The main method.
+     *
+     * @param args JMH command line options.
+     * @throws Exception if the options are invalid or the benchmarks fail to run.
+     */
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,74 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import processing.Classifier;
+import processing.Patient;
+import processing.Schema;
+import tree.BaseNode;
+import tree.CachedClassifier;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of classifying single records through BaseNode.classify and whole test sets through
+ * Classifier.countCorrectClassifications, the printing-free part of classifyTestSet. Single records are also classified
+ * through a CachedClassifier where the attributes fit a bitmask, and through the tree itself where they do not.
+ * The tree is trained on a separate synthetic data set of trainingRows rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ClassificationBenchmark {
+
+    @Param({"100", "10000", "1000000", "10000000"})
+    public int rows;
+
+    @Param({"0.5", "0.9"})
+    public double liveFraction;
+
+    @Param({"16", "256", "1024"})
+    public int attributes;
+
+    @Param({"10000"})
+    public int trainingRows;
+
+    private Classifier classifier;
+    private BaseNode tree;
+    private BaseNode cached;
+    private Patient[] testData;
+    private int next;
+
+    @Setup
+    public void setup() throws Throwable {
+        Schema schema = SyntheticData.schema(attributes);
+        ArrayList<Patient> training = SyntheticData.generate(schema, trainingRows, liveFraction, SyntheticData.SEED);
+        ArrayList<Patient> test = SyntheticData.generate(schema, rows, liveFraction, SyntheticData.SEED + 1);
+        classifier = new Classifier(training, test, Classifier.TrainingEngine.BITSET);
+        tree = classifier.getTree();
+        cached = schema.fitsBitmask() ? CachedClassifier.of(tree, schema) : tree;
+        testData = test.toArray(new Patient[0]);
+    }
+
+    @Benchmark
+    public String classifySingle() {
+        Patient p = testData[next];
+        next = next + 1 == testData.length ? 0 : next + 1;
+        return tree.classify(p);
+    }
+
+    @Benchmark
+    public String classifyCached() {
+        Patient p = testData[next];
+        next = next + 1 == testData.length ? 0 : next + 1;
+        return cached.classify(p);
+    }
+
+    @Benchmark
+    public int classifyTestSet() {
+        return classifier.countCorrectClassifications();
+    }
+}
@@ -0,0 +1,66 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import processing.Classifier;
+import processing.ColumnarDataset;
+import processing.DataCache;
+import processing.Patient;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of parsing a data file through Classifier.getData, and of reading it back from its binary cache: as
+ * Patient instances, or as columns mapped in place.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoadingBenchmark {
+
+    @Param({"100", "10000", "1000000", "10000000"})
+    public int rows;
+
+    @Param({"0.5", "0.9"})
+    public double liveFraction;
+
+    @Param({"16", "256", "1024"})
+    public int attributes;
+
+    private Path file;
+
+    @Setup
+    public void setup() throws Throwable {
+        file = SyntheticData.writeFile(SyntheticData.generate(SyntheticData.schema(attributes), rows, liveFraction,
+                SyntheticData.SEED));
+        // Write the cache once, so the cached benchmarks only read it
+        DataCache.loadColumns(file.toString(), null);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(DataCache.getCachePath(file.toString()));
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public ArrayList<Patient> getData() throws Throwable {
+        return Classifier.getData(file.toString());
+    }
+
+    @Benchmark
+    public ArrayList<Patient> getDataCached() throws Throwable {
+        return Classifier.getData(file.toString(), null, null, true);
+    }
+
+    @Benchmark
+    public ColumnarDataset loadColumns() throws Throwable {
+        return DataCache.loadColumns(file.toString(), null);
+    }
+}
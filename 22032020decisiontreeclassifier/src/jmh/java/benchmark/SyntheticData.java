@@ -0,0 +1,95 @@
+package benchmark;
+
+import processing.InvalidDataException;
+import processing.Patient;
+import processing.Schema;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * A class to generate synthetic Patient data sets for the benchmarks.
+ * Data sets of 16 attributes use the hepatitis schema; wider ones name their attributes A0, A1 and so on.
+ * Each attribute is true with probability 0.5. A row is labelled "live" with probability liveFraction, and the labels
+ * of rows with both of the first two attributes true are flipped with probability 0.3, so trees have something to find.
+ */
+final class SyntheticData {
+
+    /** The seed used for every data set, so runs are comparable */
+    static final long SEED = 22032020L;
+
+    private SyntheticData() {
+    }
+
+    /**
+     * Method to create the schema of a data set with the given number of attributes.
+     *
+     * @param attributes The number of attributes.
+     * @return the schema.
+     * @throws InvalidDataException if the schema cannot be created.
+     */
+    static Schema schema(int attributes) throws InvalidDataException {
+        if (attributes == Schema.HEPATITIS.getAttributeCount()) return Schema.HEPATITIS;
+        List<String> names = new ArrayList<>();
+        for (int a = 0; a < attributes; a++) names.add("A" + a);
+        Schema schema = new Schema(names);
+        // Add the classes in the same order as the hepatitis schema, so the class values match
+        schema.getClassValue(Patient.LIVE_CLASS_KEY);
+        schema.getClassValue(Patient.DIE_CLASS_KEY);
+        return schema;
+    }
+
+    /**
+     * Method to generate a data set.
+     *
+     * @param schema The schema of the data set, from the schema method.
+     * @param rows The number of rows.
+     * @param liveFraction The probability of a row being labelled "live" before flipping.
+     * @param seed The random seed.
+     * @return the data set.
+     */
+    static ArrayList<Patient> generate(Schema schema, int rows, double liveFraction, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int attributes = schema.getAttributeCount();
+        int words = (attributes + 63) >>> 6;
+        ArrayList<Patient> data = new ArrayList<>(rows);
+        for (int r = 0; r < rows; r++) {
+            long[] bits = new long[words];
+            for (int w = 0; w < words; w++) bits[w] = random.nextLong();
+            if ((attributes & 63) != 0) bits[words - 1] &= (1L << attributes) - 1;
+            boolean live = random.nextDouble() < liveFraction;
+            if ((bits[0] & 3) == 3 && random.nextDouble() < 0.3) live = !live;
+            data.add(new Patient(schema, bits, live ? Patient.LIVE_CLASS : Patient.DIE_CLASS));
+        }
+        return data;
+    }
+
+    /**
+     * Method to write a data set to a temporary file in the format read by Classifier.getData.
+     *
+     * @param data The data set.
+     * @return the path of the file.
+     * @throws IOException if the file cannot be written.
+     */
+    static Path writeFile(List<Patient> data) throws IOException {
+        Path file = Files.createTempFile("synthetic", ".txt");
+        List<String> attributeNames = data.isEmpty() ? Patient.getAttributeNames()
+                : data.get(0).getSchema().getAttributeNames();
+        try (BufferedWriter writer = Files.newBufferedWriter(file, Charset.defaultCharset())) {
+            writer.write("Class " + String.join(" ", attributeNames));
+            writer.newLine();
+            for (Patient p : data) {
+                writer.write(p.getClassName());
+                for (int a = 0; a < attributeNames.size(); a++) writer.write(p.getAttribute(a) ? " true" : " false");
+                writer.newLine();
+            }
+        }
+        return file;
+    }
+}
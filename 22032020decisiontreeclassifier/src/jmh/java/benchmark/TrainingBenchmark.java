@@ -0,0 +1,47 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import processing.Classifier;
+import processing.Patient;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of building a tree with each Classifier.TrainingEngine.
+ * By default only sizes that fit the fork's 1 GB heap are run; larger ones are given with -p and a larger heap with
+ * -jvmArgs, e.g. "-p rows=1000000,10000000 -p attributes=1024 -jvmArgs -Xmx8g", as 10000000 rows of 1024 attributes
+ * take about 1.7 GB as Patient instances before any tree is built.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g"})
+public class TrainingBenchmark {
+
+    @Param({"100", "10000"})
+    public int rows;
+
+    @Param({"0.5", "0.9"})
+    public double liveFraction;
+
+    @Param({"16", "256"})
+    public int attributes;
+
+    @Param({"HASH_SET", "BITSET", "PARALLEL_BITSET"})
+    public Classifier.TrainingEngine engine;
+
+    private ArrayList<Patient> trainingData;
+
+    @Setup
+    public void setup() throws Throwable {
+        trainingData = SyntheticData.generate(SyntheticData.schema(attributes), rows, liveFraction, SyntheticData.SEED);
+    }
+
+    @Benchmark
+    public Classifier buildTree() throws Throwable {
+        return new Classifier(trainingData, new ArrayList<>(), engine);
+    }
+}
@@ -1,23 +1,108 @@
+import ensemble.GradientBoostedTrees;
+import ensemble.GradientBoostingTrainer;
+import evaluation.CrossValidator;
+import evaluation.PermutationImportance;
+import evaluation.TreeParameters;
+import evaluation.ValidationResult;
 import processing.Classifier;
+import processing.ColumnFile;
+import processing.ColumnarDataset;
 import processing.InvalidDataException;
+import processing.OutOfCoreTreeBuilder;
+import processing.Patient;
+import processing.Schema;
+import processing.SplitCriterion;
+import tree.BaseNode;
+import tree.CompiledTree;
+import tree.Pruner;
+import tree.TreeExporter;
+import tree.TreeStatistics;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * The Main class to run Classifier.
  */
 public class Main {
 
+    /** The option to cross-validate a grid of tree parameters on a single data file instead */
+    private static final String CROSS_VALIDATE = "--cross-validate";
+    /** The number of folds cross-validated when none is given */
+    private static final int DEFAULT_FOLDS = 10;
+    /** The seed for assigning rows to folds */
+    private static final long FOLD_SEED = 42;
+    /** The option to compare the tree before and after cost-complexity pruning instead */
+    private static final String PRUNE = "--prune";
+    /** The cost of each leaf when pruning, as a proportion of the training rows, when none is given */
+    private static final double DEFAULT_ALPHA = 0.01;
+    /** The option to train from column files on disk, for data larger than the heap, instead */
+    private static final String OUT_OF_CORE = "--out-of-core";
+    /** The option to train a gradient-boosted ensemble instead */
+    private static final String BOOST = "--boost";
+    /** The option to read both sets through the binary caches kept next to them instead */
+    private static final String CACHED = "--cached";
+    /** The option to report the importance of each attribute instead */
+    private static final String IMPORTANCE = "--importance";
+    /** The number of times each attribute is shuffled for its permutation importance when none is given */
+    private static final int DEFAULT_REPEATS = 10;
+    /** The seed for shuffling attributes */
+    private static final long SHUFFLE_SEED = 42;
+    /** The option to write the tree trained on the training set in a format instead */
+    private static final String EXPORT = "--export";
+
     /**
      * The main method.
      *
      * @param args Expecting two file paths: the first being a file path to a training
-     *             set; the second being a file path to a test set.
+     *             set; the second being a file path to a test set. Alternatively, --cross-validate
+     *             followed by the file path to a data set and, optionally, the number of folds; or
+     *             --prune followed by the two file paths and, optionally, the cost of each leaf; or
+     *             --out-of-core followed by the two file paths; or --boost followed by the two file paths
+     *             and, optionally, the number of rounds; or --cached followed by the two file paths; or
+     *             --importance followed by the two file paths and, optionally, the number of shuffles; or
+     *             --export followed by the file path to a training set and the format: text, json or dot.
      * @throws IOException when an incorrect file path has been supplied.
      * @throws InvalidDataException when the supplied files are found but could not be parsed.
      */
     public static void main(String[] args) throws IOException, InvalidDataException {
 
+        if (args.length > 0 && CROSS_VALIDATE.equals(args[0])) {
+            Main.crossValidate(args);
+            return;
+        }
+        if (args.length > 0 && PRUNE.equals(args[0])) {
+            Main.prune(args);
+            return;
+        }
+        if (args.length > 0 && OUT_OF_CORE.equals(args[0])) {
+            Main.trainOutOfCore(args);
+            return;
+        }
+        if (args.length > 0 && BOOST.equals(args[0])) {
+            Main.boost(args);
+            return;
+        }
+        if (args.length > 0 && CACHED.equals(args[0])) {
+            Main.classifyCached(args);
+            return;
+        }
+        if (args.length > 0 && IMPORTANCE.equals(args[0])) {
+            Main.reportImportance(args);
+            return;
+        }
+        if (args.length > 0 && EXPORT.equals(args[0])) {
+            Main.export(args);
+            return;
+        }
+
         // Read the supplied file paths: if we don't have two, then throw an Exception
         if(args.length != 2 || args[0] == null || args[1] == null) {
             Main.exit();
@@ -33,6 +118,7 @@ public class Main {
             Main.exit();
             throw e;
         }
+        c.getTree().report("");
 
         // Classify test set
         System.out.println();
@@ -40,6 +126,268 @@ public class Main {
         c.classifyTestSet();
     }
 
+    /**
+     * Method to cross-validate a grid of tree parameters on a data set, printing the results as a table.
+     *
+     * @param args The --cross-validate option, the file path to the data set and, optionally, the number of folds.
+     * @throws IOException when an incorrect file path has been supplied.
+     * @throws InvalidDataException when the supplied file is found but could not be parsed.
+     */
+    private static void crossValidate(String[] args) throws IOException, InvalidDataException {
+        if (args.length < 2 || args.length > 3) {
+            Main.exit();
+            return;
+        }
+        CrossValidator validator;
+        try {
+            int folds = args.length == 3 ? Integer.parseInt(args[2]) : DEFAULT_FOLDS;
+            validator = CrossValidator.load(args[1], folds, FOLD_SEED);
+        } catch(IOException | IllegalArgumentException | InvalidDataException e) {
+            Main.exit();
+            throw e;
+        }
+
+        List<TreeParameters> grid = TreeParameters.grid(new int[] { 0, 3, 5 }, new int[] { 0, 2, 5 },
+                SplitCriterion.Standard.values());
+        List<ValidationResult> results = validator.search(grid, ForkJoinPool.commonPool());
+        System.out.println();
+        System.out.format("Cross-validating %d parameter combinations over %d folds\n", grid.size(),
+                validator.getFoldCount());
+        System.out.print(ValidationResult.toTable(results));
+        System.out.println();
+        System.out.println("Best: " + ValidationResult.best(results));
+    }
+
+    /**
+     * Method to prune the tree trained on a training set by cost-complexity, printing the size, shape and test
+     * accuracy of the tree before and after.
+     *
+     * @param args The --prune option, the file paths to the training and test sets and, optionally, the cost of each
+     *             leaf as a proportion of the training rows.
+     * @throws IOException when an incorrect file path has been supplied.
+     * @throws InvalidDataException when the supplied files are found but could not be parsed.
+     */
+    private static void prune(String[] args) throws IOException, InvalidDataException {
+        if (args.length < 3 || args.length > 4) {
+            Main.exit();
+            return;
+        }
+        Schema schema;
+        ArrayList<Patient> training;
+        ArrayList<Patient> test;
+        double alpha;
+        try {
+            alpha = args.length == 4 ? Double.parseDouble(args[3]) : DEFAULT_ALPHA;
+            schema = Classifier.getSchema(args[1]);
+            training = Classifier.getData(args[1], schema);
+            test = Classifier.getData(args[2], schema);
+        } catch(IOException | NumberFormatException | InvalidDataException e) {
+            Main.exit();
+            throw e;
+        }
+
+        Classifier c = new Classifier(schema, training, test, Classifier.TrainingEngine.BITSET);
+        // The tree is trained on every instance, duplicates counted by their weight, so it is pruned by them all too
+        ColumnarDataset trainingColumns = new ColumnarDataset(schema, training);
+        ColumnarDataset testColumns = new ColumnarDataset(schema, test);
+        BaseNode pruned = Pruner.costComplexity(c.getTree(), trainingColumns, trainingColumns.allRows(), alpha);
+
+        System.out.println();
+        Main.reportTree("Before pruning", c.getTree(), testColumns);
+        Main.reportTree("After pruning with alpha " + alpha, pruned, testColumns);
+    }
+
+    /**
+     * Method to train a tree from the training set without holding it in the heap: both sets are written to column
+     * files in a temporary directory, which are deleted afterwards, and the tree is built a level at a time.
+     *
+     * @param args The --out-of-core option and the file paths to the training and test sets.
+     * @throws IOException when an incorrect file path has been supplied.
+     * @throws InvalidDataException when the supplied files are found but could not be parsed.
+     */
+    private static void trainOutOfCore(String[] args) throws IOException, InvalidDataException {
+        if (args.length != 3) {
+            Main.exit();
+            return;
+        }
+        Path dir = Files.createTempDirectory("columns");
+        Path trainingPath = dir.resolve("training.col");
+        Path testPath = dir.resolve("test.col");
+        try (ColumnFile training = ColumnFile.write(args[1], trainingPath);
+             ColumnFile test = ColumnFile.write(args[2], testPath, training.getSchema())) {
+            long start = System.nanoTime();
+            BaseNode tree = new OutOfCoreTreeBuilder(training).build();
+            System.out.println();
+            System.out.format("Trained on %d rows in %.1f ms\n", training.size(), (System.nanoTime() - start) / 1e6);
+            TreeStatistics.of(tree).report("Out-of-core tree");
+            int correct = test.countCorrect(CompiledTree.compile(tree, training.getSchema()));
+            System.out.format("Finished with accuracy %.2f\n", correct * 100 / (float) test.size());
+        } catch(IOException | InvalidDataException e) {
+            Main.exit();
+            throw e;
+        } finally {
+            Files.deleteIfExists(trainingPath);
+            Files.deleteIfExists(testPath);
+            Files.delete(dir);
+        }
+    }
+
+    /**
+     * Method to train a gradient-boosted ensemble on the training set, printing its size and test accuracy.
+     *
+     * @param args The --boost option, the file paths to the training and test sets and, optionally, the number of
+     *             rounds.
+     * @throws IOException when an incorrect file path has been supplied.
+     * @throws InvalidDataException when the supplied files are found but could not be parsed.
+     */
+    private static void boost(String[] args) throws IOException, InvalidDataException {
+        if (args.length < 3 || args.length > 4) {
+            Main.exit();
+            return;
+        }
+        ColumnarDataset training;
+        ColumnarDataset test;
+        GradientBoostingTrainer trainer;
+        try {
+            Schema schema = Classifier.getSchema(args[1]);
+            training = ColumnarDataset.deduplicate(schema, Classifier.getData(args[1], schema));
+            test = new ColumnarDataset(schema, Classifier.getData(args[2], schema));
+            trainer = new GradientBoostingTrainer(training);
+            if (args.length == 4) trainer.setRounds(Integer.parseInt(args[3]));
+        } catch(IOException | NumberFormatException | InvalidDataException e) {
+            Main.exit();
+            throw e;
+        }
+
+        trainer.setParallel(ForkJoinPool.commonPool());
+        long start = System.nanoTime();
+        GradientBoostedTrees model = trainer.train();
+        System.out.println();
+        System.out.format("Trained %d trees of %d leaves in %.1f ms\n", model.getTreeCount(), model.getLeafCount(),
+                (System.nanoTime() - start) / 1e6);
+        System.out.format("Test log-loss %.4f\n", model.logLoss(test));
+        System.out.format("Finished with accuracy %.2f\n", model.countCorrect(test) * 100 / (float) test.size());
+    }
+
+    /**
+     * Method to train a tree and classify the test set as the default run does, over columns mapped from the binary
+     * caches kept next to both sets, which are written on the first run and again whenever a set changes.
+     *
+     * @param args The --cached option and the file paths to the training and test sets.
+     * @throws IOException when an incorrect file path has been supplied.
+     * @throws InvalidDataException when the supplied files are found but could not be parsed.
+     */
+    private static void classifyCached(String[] args) throws IOException, InvalidDataException {
+        if (args.length != 3) {
+            Main.exit();
+            return;
+        }
+        ColumnarDataset training;
+        ColumnarDataset test;
+        try {
+            Schema schema = Classifier.getSchema(args[1]);
+            long start = System.nanoTime();
+            // Both sets are trained on and classified over the mapped caches, without a Patient per row
+            training = Classifier.getColumns(args[1], schema, null, true);
+            test = Classifier.getColumns(args[2], schema, null, true);
+            System.out.format("Read %d rows in %.1f ms\n", training.size() + test.size(),
+                    (System.nanoTime() - start) / 1e6);
+        } catch(IOException | InvalidDataException e) {
+            Main.exit();
+            throw e;
+        }
+
+        Classifier c = new Classifier(training, test, Classifier.TrainingEngine.BITSET, TreeParameters.DEFAULT, null);
+        c.getTree().report("");
+        System.out.println();
+        System.out.println("Classifying test data");
+        c.classifyTestSet();
+    }
+
+    /**
+     * Method to print the importance of each attribute to the tree trained on the training set: by the decrease in
+     * impurity of its splits during training, and by the test accuracy lost when its values are shuffled.
+     *
+     * @param args The --importance option, the file paths to the training and test sets and, optionally, the number of
+     *             times each attribute is shuffled.
+     * @throws IOException when an incorrect file path has been supplied.
+     * @throws InvalidDataException when the supplied files are found but could not be parsed.
+     */
+    private static void reportImportance(String[] args) throws IOException, InvalidDataException {
+        if (args.length < 3 || args.length > 4) {
+            Main.exit();
+            return;
+        }
+        Schema schema;
+        ArrayList<Patient> training;
+        ArrayList<Patient> test;
+        int repeats;
+        try {
+            repeats = args.length == 4 ? Integer.parseInt(args[3]) : DEFAULT_REPEATS;
+            schema = Classifier.getSchema(args[1]);
+            training = Classifier.getData(args[1], schema);
+            test = Classifier.getData(args[2], schema);
+        } catch(IOException | NumberFormatException | InvalidDataException e) {
+            Main.exit();
+            throw e;
+        }
+
+        Classifier c = new Classifier(schema, training, test, Classifier.TrainingEngine.BITSET);
+        CompiledTree tree = CompiledTree.compile(c.getTree(), schema);
+        PermutationImportance permutation = PermutationImportance.measure(tree::countCorrect,
+                new ColumnarDataset(schema, test), repeats, SHUFFLE_SEED, ForkJoinPool.commonPool());
+        System.out.println();
+        System.out.println("Importance by decrease in impurity during training");
+        System.out.print(c.getSplitStatistics().toTable());
+        System.out.println();
+        System.out.format("Importance by test accuracy lost over %d shuffles, from %.2f%%\n", repeats,
+                permutation.getBaseline() * 100);
+        System.out.print(permutation.toTable());
+    }
+
+    /**
+     * Method to write the tree trained on a training set to standard output in a format.
+     *
+     * @param args The --export option, the file path to the training set and the format: text, json or dot.
+     * @throws IOException when an incorrect file path has been supplied.
+     * @throws InvalidDataException when the supplied file is found but could not be parsed.
+     */
+    private static void export(String[] args) throws IOException, InvalidDataException {
+        if (args.length != 3) {
+            Main.exit();
+            return;
+        }
+        Schema schema;
+        ArrayList<Patient> training;
+        TreeExporter.Format format;
+        try {
+            format = TreeExporter.Format.valueOf(args[2].toUpperCase());
+            schema = Classifier.getSchema(args[1]);
+            training = Classifier.getData(args[1], schema);
+        } catch(IOException | IllegalArgumentException | InvalidDataException e) {
+            Main.exit();
+            throw e;
+        }
+
+        Classifier c = new Classifier(schema, training, new ArrayList<>(), Classifier.TrainingEngine.BITSET);
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+        c.exportTree(format, out);
+        out.flush();
+    }
+
+    /**
+     * Method to print the statistics and test accuracy of a tree.
+     *
+     * @param label The label to print them under.
+     * @param tree The tree.
+     * @param test The test set.
+     */
+    private static void reportTree(String label, BaseNode tree, ColumnarDataset test) {
+        TreeStatistics.of(tree, test).report(label);
+        int correct = CompiledTree.compile(tree, test.getSchema()).countCorrect(test);
+        System.out.format("Finished with accuracy %.2f\n", correct * 100 / (float) test.size());
+    }
+
     /**
      * Method to inform the user the Main program is stopping.
      */
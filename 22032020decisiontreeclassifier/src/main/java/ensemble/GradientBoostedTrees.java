@@ -0,0 +1,324 @@
+package ensemble;
+
+import processing.ColumnarDataset;
+import processing.Patient;
+import processing.Schema;
+import tree.BaseNode;
+import tree.Node;
+import tree.TreeExporter;
+import tree.ValueLeafNode;
+
+import java.util.Arrays;
+
+/**
+ * A class to represent a gradient-boosted ensemble of regression trees over boolean attributes, as trained by
+ * GradientBoostingTrainer. Each class has a score, its log-odds or log-probability under log-loss: the score starts at
+ * the class's base score and each tree adds the value of the leaf a row reaches to the score of the class it is for.
+ * With two classes there is a single score, of the second class against the first, and one tree per round; with more,
+ * one score and one tree per round for each class, turned into probabilities by a softmax.
+ * All trees are compiled into one set of flat arrays, as CompiledTree does for a single tree, so scoring a row is a
+ * loop over the trees' roots with no recursion or calls through BaseNode.
+ */
+public class GradientBoostedTrees implements BaseNode {
+
+    /** The schema of the data the ensemble classifies */
+    private final Schema schema;
+    /** The trees, in the order they were trained */
+    private final BaseNode[] trees;
+    /** The score each class starts from */
+    private final float[] baseScores;
+    /** The root of each tree; a negative value when the tree is a single leaf */
+    private final int[] roots;
+    /** The attribute index tested at each internal node of all trees */
+    private final int[] attributes;
+    /** The branch taken at each internal node when its attribute is true */
+    private final int[] trueBranches;
+    /** The branch taken at each internal node when its attribute is false */
+    private final int[] falseBranches;
+    /** The value of each leaf of all trees */
+    private final float[] leafValues;
+    /** Whether every attribute fits in an attributes bitmask */
+    private final boolean narrow;
+
+    /**
+     * Constructor for a GradientBoostedTrees, compiling its trees.
+     *
+     * @param schema The schema of the data the ensemble classifies, of boolean attributes only.
+     * @param baseScores The score each class starts from: one score for two classes, otherwise one per class.
+     * @param trees The trees, of Node and ValueLeafNode instances; tree t adds to the score t modulo the number of
+     *              scores.
+     */
+    public GradientBoostedTrees(Schema schema, float[] baseScores, BaseNode[] trees) {
+        this.schema = schema;
+        this.baseScores = baseScores.clone();
+        this.trees = trees.clone();
+        this.narrow = schema.fitsBitmask();
+        Builder builder = new Builder();
+        roots = new int[trees.length];
+        for (int t = 0; t < trees.length; t++) roots[t] = builder.add(trees[t]);
+        attributes = Arrays.copyOf(builder.attributes, builder.nodeCount);
+        trueBranches = Arrays.copyOf(builder.trueBranches, builder.nodeCount);
+        falseBranches = Arrays.copyOf(builder.falseBranches, builder.nodeCount);
+        leafValues = Arrays.copyOf(builder.leafValues, builder.leafCount);
+    }
+
+    /**
+     * Method to score the attributes of a row, adding the leaf values of every tree to the base scores.
+     *
+     * @param attributeBits The bitmask of the row's attribute values, as Patient.getAttributeBits returns it.
+     * @param scores The array to write the score of each class into, of getScoreCount length.
+     */
+    public void score(long attributeBits, double[] scores) {
+        for (int k = 0; k < scores.length; k++) scores[k] = baseScores[k];
+        for (int t = 0; t < roots.length; t++) {
+            int n = roots[t];
+            while (n >= 0) n = (attributeBits & (1L << attributes[n])) != 0 ? trueBranches[n] : falseBranches[n];
+            scores[t % scores.length] += leafValues[~n];
+        }
+    }
+
+    /**
+     * Method to score a Patient, adding the leaf values of every tree to the base scores.
+     *
+     * @param p The Patient, of the schema of this ensemble.
+     * @param scores The array to write the score of each class into, of getScoreCount length.
+     */
+    public void score(Patient p, double[] scores) {
+        if (narrow) {
+            score(p.getAttributeBits(), scores);
+            return;
+        }
+        for (int k = 0; k < scores.length; k++) scores[k] = baseScores[k];
+        for (int t = 0; t < roots.length; t++) {
+            int n = roots[t];
+            while (n >= 0) n = p.getAttribute(attributes[n]) ? trueBranches[n] : falseBranches[n];
+            scores[t % scores.length] += leafValues[~n];
+        }
+    }
+
+    /**
+     * Method to score a row of a block of data, adding the leaf values of every tree to the base scores.
+     *
+     * @param block The block of data, of the schema of this ensemble.
+     * @param row The row.
+     * @param scores The array to write the score of each class into, of getScoreCount length.
+     */
+    public void score(ColumnarDataset block, int row, double[] scores) {
+        if (narrow) {
+            score(block.getRowBits(row), scores);
+            return;
+        }
+        for (int k = 0; k < scores.length; k++) scores[k] = baseScores[k];
+        for (int t = 0; t < roots.length; t++) {
+            int n = roots[t];
+            while (n >= 0) n = block.getAttribute(row, attributes[n]) ? trueBranches[n] : falseBranches[n];
+            scores[t % scores.length] += leafValues[~n];
+        }
+    }
+
+    /**
+     * Method to turn scores into the probability of each class: the logistic function of a single score, otherwise
+     * the softmax of the scores.
+     *
+     * @param scores The scores, which are left unchanged.
+     * @param classCount The number of classes.
+     * @return the probability of each class value.
+     */
+    static double[] toProbabilities(double[] scores, int classCount) {
+        double[] probabilities = new double[classCount];
+        if (scores.length == 1) {
+            double p = 1 / (1 + Math.exp(-scores[0]));
+            probabilities[classCount - 1] += p;
+            probabilities[0] += 1 - p;
+            return probabilities;
+        }
+        double max = Double.NEGATIVE_INFINITY;
+        for (double score : scores) max = Math.max(max, score);
+        double total = 0;
+        for (int c = 0; c < classCount; c++) {
+            probabilities[c] = Math.exp(scores[c] - max);
+            total += probabilities[c];
+        }
+        for (int c = 0; c < classCount; c++) probabilities[c] /= total;
+        return probabilities;
+    }
+
+    /**
+     * Method to return the class value of the highest scores, favouring the earliest class value on a tie.
+     *
+     * @param scores The scores.
+     * @param classCount The number of classes.
+     * @return the class value.
+     */
+    static byte toClassValue(double[] scores, int classCount) {
+        if (scores.length == 1) return (byte) (scores[0] > 0 ? classCount - 1 : 0);
+        byte best = 0;
+        for (byte c = 1; c < scores.length; c++) {
+            if (scores[c] > scores[best]) best = c;
+        }
+        return best;
+    }
+
+    /**
+     * Method to return the probability of each class for a Patient.
+     *
+     * @param p The Patient, of the schema of this ensemble.
+     * @return the probability of each class value.
+     */
+    public double[] getProbabilities(Patient p) {
+        double[] scores = new double[baseScores.length];
+        score(p, scores);
+        return toProbabilities(scores, schema.getClassCount());
+    }
+
+    @Override
+    public String classify(Patient p) {
+        double[] scores = new double[baseScores.length];
+        score(p, scores);
+        return schema.getClassName(toClassValue(scores, schema.getClassCount()));
+    }
+
+    /**
+     * Method to classify every row of a block of data.
+     *
+     * @param block The rows to classify.
+     * @return the class value determined for each row, in row order.
+     */
+    public byte[] classify(ColumnarDataset block) {
+        byte[] classValues = new byte[block.size()];
+        double[] scores = new double[baseScores.length];
+        for (int row = 0; row < classValues.length; row++) {
+            score(block, row, scores);
+            classValues[row] = toClassValue(scores, schema.getClassCount());
+        }
+        return classValues;
+    }
+
+    /**
+     * Method to count the rows of a block of data classified as the class they are.
+     *
+     * @param block The rows to classify.
+     * @return the number of correct classifications.
+     */
+    public int countCorrect(ColumnarDataset block) {
+        byte[] classValues = classify(block);
+        int correct = 0;
+        for (int row = 0; row < classValues.length; row++) {
+            if (classValues[row] == block.getClassValue(row)) correct++;
+        }
+        return correct;
+    }
+
+    /**
+     * Method to measure the mean log-loss of the ensemble's probabilities over a block of data, weighting each row by
+     * its weight in the block.
+     *
+     * @param block The rows to measure.
+     * @return the mean negative log of the probability given to the class of each row.
+     */
+    public double logLoss(ColumnarDataset block) {
+        double[] scores = new double[baseScores.length];
+        double loss = 0;
+        for (int row = 0; row < block.size(); row++) {
+            score(block, row, scores);
+            double p = toProbabilities(scores, schema.getClassCount())[block.getClassValue(row)];
+            loss -= block.getWeight(row) * Math.log(Math.max(p, GradientBoostingTrainer.MIN_PROBABILITY));
+        }
+        return block.size() == 0 ? 0 : loss / block.getTotalWeight();
+    }
+
+    @Override
+    public void report(String indent) {
+        StringBuilder out = new StringBuilder();
+        for (int k = 0; k < baseScores.length; k++) {
+            String className = schema.getClassName((byte) (baseScores.length == 1 ? schema.getClassCount() - 1 : k));
+            out.append(String.format("%sBase score of class %s = %.4f\n", indent, className, baseScores[k]));
+        }
+        String treeIndent = indent.replace("|", "_ ") + "|_ _ _ ";
+        for (int t = 0; t < trees.length; t++) {
+            out.append(indent).append("Tree ").append(t + 1).append(":\n");
+            TreeExporter.appendText(trees[t], treeIndent, out);
+        }
+        System.out.print(out);
+    }
+
+    /** Getter for the schema of the data the ensemble classifies */
+    public Schema getSchema() {
+        return schema;
+    }
+
+    /** Getter for the number of trees */
+    public int getTreeCount() {
+        return trees.length;
+    }
+
+    /** Getter for a tree */
+    public BaseNode getTree(int t) {
+        return trees[t];
+    }
+
+    /** Getter for the score a class starts from, before any trees */
+    public float getBaseScore(int k) {
+        return baseScores[k];
+    }
+
+    /** Getter for the number of scores, one for two classes and otherwise one per class */
+    public int getScoreCount() {
+        return baseScores.length;
+    }
+
+    /** Getter for the number of internal nodes of all trees */
+    public int getNodeCount() {
+        return attributes.length;
+    }
+
+    /** Getter for the number of leaves of all trees */
+    public int getLeafCount() {
+        return leafValues.length;
+    }
+
+    /**
+     * Inner-class to flatten trees of Node and ValueLeafNode instances into growing arrays.
+     */
+    private static class Builder {
+
+        private int[] attributes = new int[16];
+        private int[] trueBranches = new int[16];
+        private int[] falseBranches = new int[16];
+        private float[] leafValues = new float[16];
+        private int nodeCount;
+        private int leafCount;
+
+        /**
+         * Method to add a node and its branches to the arrays.
+         *
+         * @param node The node to add.
+         * @return the index of an internal node, or the complement of the index of a leaf.
+         */
+        private int add(BaseNode node) {
+            if (node instanceof ValueLeafNode) {
+                if (leafCount == leafValues.length) leafValues = Arrays.copyOf(leafValues, leafCount * 2);
+                leafValues[leafCount] = ((ValueLeafNode) node).getValue();
+                return ~leafCount++;
+            }
+            if (!(node instanceof Node) || !Double.isNaN(((Node) node).getThreshold())
+                    || ((Node) node).getCategories() != null) {
+                throw new IllegalArgumentException("Not a regression tree of boolean attributes: " + node);
+            }
+            Node internal = (Node) node;
+            if (nodeCount == attributes.length) {
+                attributes = Arrays.copyOf(attributes, nodeCount * 2);
+                trueBranches = Arrays.copyOf(trueBranches, nodeCount * 2);
+                falseBranches = Arrays.copyOf(falseBranches, nodeCount * 2);
+            }
+            int n = nodeCount++;
+            attributes[n] = internal.getAttributeIndex();
+            // Add the branches before storing them, as adding may replace the arrays
+            int trueBranch = add(internal.getLeft());
+            int falseBranch = add(internal.getRight());
+            trueBranches[n] = trueBranch;
+            falseBranches[n] = falseBranch;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,460 @@
+package ensemble;
+
+import processing.BitsetTreeBuilder;
+import processing.ColumnarDataset;
+import processing.InvalidDataException;
+import processing.Schema;
+import tree.BaseNode;
+import tree.Node;
+import tree.ValueLeafNode;
+
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A class to train a GradientBoostedTrees ensemble under log-loss. Each round fits a shallow regression tree to the
+ * gradients of the loss for each score, as in second-order gradient boosting: a leaf's value is the learning rate times
+ * -G / (H + lambda), for G and H the sums of the gradients and hessians of its rows, and a split is chosen to maximise
+ * G_true^2 / (H_true + lambda) + G_false^2 / (H_false + lambda) - G^2 / (H + lambda).
+ * Splits are found from a histogram of each boolean attribute, its gradient and hessian sums where it is true, summed
+ * over the set bits of the node's bitset AND the attribute's column; the false side is the node's sums less these.
+ * The attributes' sums of large nodes are computed concurrently in a pool. Row weights of the data, such as those of a
+ * deduplicated data set, multiply each row's gradient and hessian.
+ * Given a held-out validation set, training stops once its log-loss has not improved for a number of rounds, and the
+ * ensemble keeps the rounds up to the best.
+ */
+public class GradientBoostingTrainer {
+
+    /** The number of rounds trained when none is given */
+    public static final int DEFAULT_ROUNDS = 100;
+    /** The depth of each tree when none is given */
+    public static final int DEFAULT_MAX_DEPTH = 3;
+    /** The learning rate when none is given */
+    public static final float DEFAULT_LEARNING_RATE = 0.1f;
+    /** The L2 regularization of leaf values when none is given */
+    public static final float DEFAULT_L2_REGULARIZATION = 1;
+    /** The smallest probability a log-loss is taken of, so a confident mistake has a finite loss */
+    static final double MIN_PROBABILITY = 1e-15;
+    /** The smallest hessian of a row, so a row the ensemble is certain of still weighs on its leaf */
+    private static final double MIN_HESSIAN = 1e-16;
+
+    /** The data to train on, of boolean attributes only */
+    private ColumnarDataset data;
+    /** The number of rounds to train, each of one tree per score */
+    private int rounds = DEFAULT_ROUNDS;
+    /** The largest depth of a split */
+    private int maxDepth = DEFAULT_MAX_DEPTH;
+    /** The proportion of each tree's leaf values added to the scores */
+    private float learningRate = DEFAULT_LEARNING_RATE;
+    /** The L2 regularization of leaf values, lambda */
+    private float l2Regularization = DEFAULT_L2_REGULARIZATION;
+    /** The smallest weighted number of rows either side of a split */
+    private int minLeafSize = 1;
+    /** The held-out data to stop training early on, or null to train every round */
+    private ColumnarDataset validation;
+    /** The number of rounds without improvement on the validation data before training stops */
+    private int patience;
+    /** The pool to sum the attributes' gradients of large nodes in, or null to sum them on the calling thread */
+    private ForkJoinPool pool;
+    /** The smallest node, in rows, whose attributes' gradients are summed concurrently */
+    private int parallelThreshold = BitsetTreeBuilder.DEFAULT_PARALLEL_THRESHOLD;
+    /** The validation log-loss after each round of the last training */
+    private double[] validationLosses = new double[0];
+
+    /**
+     * Constructor for a GradientBoostingTrainer.
+     *
+     * @param data The data to train on, of boolean attributes only.
+     */
+    public GradientBoostingTrainer(ColumnarDataset data) {
+        this.data = data;
+    }
+
+    /**
+     * Setter for the number of rounds to train, each of one tree per score.
+     *
+     * @param rounds The number of rounds.
+     */
+    public void setRounds(int rounds) {
+        this.rounds = rounds;
+    }
+
+    /**
+     * Setter for the largest depth of a split in each tree.
+     *
+     * @param maxDepth The depth, of at least 1.
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Setter for the proportion of each tree's leaf values added to the scores.
+     *
+     * @param learningRate The learning rate.
+     */
+    public void setLearningRate(float learningRate) {
+        this.learningRate = learningRate;
+    }
+
+    /**
+     * Setter for the L2 regularization of leaf values, which shrinks the values of leaves with few rows.
+     *
+     * @param l2Regularization The regularization, lambda.
+     */
+    public void setL2Regularization(float l2Regularization) {
+        this.l2Regularization = l2Regularization;
+    }
+
+    /**
+     * Setter for the smallest weighted number of rows either side of a split.
+     *
+     * @param minLeafSize The number of rows, of at least 1.
+     */
+    public void setMinLeafSize(int minLeafSize) {
+        this.minLeafSize = Math.max(1, minLeafSize);
+    }
+
+    /**
+     * Setter to stop training early once the log-loss of held-out data has not improved for a number of rounds.
+     *
+     * @param validation The held-out data, of the schema of the training data.
+     * @param patience The number of rounds without improvement before training stops.
+     */
+    public void setEarlyStopping(ColumnarDataset validation, int patience) {
+        this.validation = validation;
+        this.patience = patience;
+    }
+
+    /**
+     * Setter to sum the attributes' gradients of large nodes concurrently in a pool.
+     *
+     * @param pool The pool to sum them in.
+     */
+    public void setParallel(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Setter for the smallest node, in rows, whose attributes' gradients are summed concurrently.
+     *
+     * @param parallelThreshold The number of rows.
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /** Getter for the validation log-loss after each round of the last training, empty without early stopping */
+    public double[] getValidationLosses() {
+        return validationLosses.clone();
+    }
+
+    /**
+     * Method to train the ensemble.
+     *
+     * @return the trained ensemble.
+     * @throws InvalidDataException if the data has an attribute that is not boolean, no rows, or fewer than 2 classes.
+     */
+    public GradientBoostedTrees train() throws InvalidDataException {
+        Schema schema = data.getSchema();
+        for (int a = 0; a < schema.getAttributeCount(); a++) {
+            if (schema.getAttributeType(a) != Schema.AttributeType.BOOLEAN) {
+                throw new InvalidDataException("Gradient boosting splits boolean attributes only: "
+                        + schema.getAttributeName(a));
+            }
+        }
+        if (data.size() == 0) throw new InvalidDataException("Gradient boosting needs at least one row to train on");
+        int classCount = schema.getClassCount();
+        if (classCount < 2) {
+            throw new InvalidDataException("Gradient boosting needs at least 2 classes: " + classCount);
+        }
+        float[] baseScores = baseScores(classCount);
+        Round round = new Round(data, baseScores);
+        Round validationRound = validation == null ? null : new Round(validation, baseScores);
+
+        List<BaseNode> trees = new ArrayList<>();
+        List<Double> losses = new ArrayList<>();
+        int bestRounds = 0;
+        double bestLoss = Double.POSITIVE_INFINITY;
+        long[] allRows = data.allRows();
+        for (int r = 0; r < rounds; r++) {
+            round.computeGradients();
+            for (int k = 0; k < baseScores.length; k++) {
+                String className = schema.getClassName((byte) (baseScores.length == 1 ? classCount - 1 : k));
+                BaseNode tree = buildTree(round, k, className, allRows, new boolean[schema.getAttributeCount()], 0);
+                trees.add(tree);
+                if (validationRound != null) validationRound.add(tree, k);
+            }
+            if (validationRound == null) continue;
+
+            // Keep the rounds up to the lowest validation loss, and stop once it is too many rounds behind
+            double loss = validationRound.logLoss();
+            losses.add(loss);
+            if (loss < bestLoss) {
+                bestLoss = loss;
+                bestRounds = r + 1;
+            }
+            else if (r + 1 - bestRounds >= patience) break;
+        }
+        validationLosses = losses.stream().mapToDouble(Double::doubleValue).toArray();
+        if (validationRound != null) trees = trees.subList(0, bestRounds * baseScores.length);
+        return new GradientBoostedTrees(schema, baseScores, trees.toArray(new BaseNode[0]));
+    }
+
+    /**
+     * Method to work out the score of each class before any trees, from the weighted class counts of the data: the
+     * log-odds of the second class for two classes, otherwise the log-probability of each class.
+     *
+     * @param classCount The number of classes.
+     * @return the base scores.
+     */
+    private float[] baseScores(int classCount) {
+        double[] counts = new double[classCount];
+        for (int row = 0; row < data.size(); row++) counts[data.getClassValue(row)] += data.getWeight(row);
+        double total = Math.max(1, data.getTotalWeight());
+        if (classCount <= 2) {
+            double p = Math.min(1 - MIN_PROBABILITY, Math.max(MIN_PROBABILITY, counts[classCount - 1] / total));
+            return new float[] { (float) Math.log(p / (1 - p)) };
+        }
+        float[] scores = new float[classCount];
+        for (int c = 0; c < classCount; c++) {
+            scores[c] = (float) Math.log(Math.max(MIN_PROBABILITY, counts[c] / total));
+        }
+        return scores;
+    }
+
+    /**
+     * Method to build a regression tree of the gradients of one score for the rows set in a bitset, adding the value
+     * of each leaf to the score of its rows.
+     *
+     * @param round The scores and gradients of the training rows.
+     * @param k The index of the score the tree is for.
+     * @param className The name of the class the score is for.
+     * @param nodeMask The bitset of rows in this node.
+     * @param usedAttributes Flags for the attributes already used above this node; this is never modified.
+     * @param depth The number of splits above this node.
+     * @return the tree.
+     * @throws InvalidDataException if a leaf value is not a number.
+     */
+    private BaseNode buildTree(Round round, int k, String className, long[] nodeMask, boolean[] usedAttributes,
+                               int depth) throws InvalidDataException {
+        double[] gradients = round.gradients[k];
+        double[] hessians = round.hessians[k];
+        double gradientSum = 0;
+        double hessianSum = 0;
+        int count = 0;
+        for (int i = 0; i < nodeMask.length; i++) {
+            for (long bits = nodeMask[i]; bits != 0; bits &= bits - 1) {
+                int row = (i << 6) | Long.numberOfTrailingZeros(bits);
+                gradientSum += gradients[row];
+                hessianSum += hessians[row];
+                count += data.getWeight(row);
+            }
+        }
+
+        int bestAttribute = -1;
+        if (depth < maxDepth && count >= 2 * minLeafSize) {
+            int attributeCount = usedAttributes.length;
+            double[] trueGradients = new double[attributeCount];
+            double[] trueHessians = new double[attributeCount];
+            int[] trueCounts = new int[attributeCount];
+            if (pool != null && count >= parallelThreshold) {
+                ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[attributeCount];
+                for (int a = 0; a < attributeCount; a++) {
+                    final int attribute = a;
+                    tasks[a] = new RecursiveAction() {
+                        @Override
+                        protected void compute() {
+                            if (!usedAttributes[attribute]) {
+                                sumAttribute(nodeMask, attribute, gradients, hessians, trueGradients, trueHessians,
+                                        trueCounts);
+                            }
+                        }
+                    };
+                }
+                pool.invoke(new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        ForkJoinTask.invokeAll(tasks);
+                    }
+                });
+            }
+            else {
+                for (int a = 0; a < attributeCount; a++) {
+                    if (!usedAttributes[a]) {
+                        sumAttribute(nodeMask, a, gradients, hessians, trueGradients, trueHessians, trueCounts);
+                    }
+                }
+            }
+
+            // Pick the first attribute with the highest gain, in attribute order, whichever way they were summed
+            double nodeScore = gradientSum * gradientSum / (hessianSum + l2Regularization);
+            double bestGain = 0;
+            for (int a = 0; a < attributeCount; a++) {
+                if (usedAttributes[a] || trueCounts[a] < minLeafSize || count - trueCounts[a] < minLeafSize) continue;
+                double falseGradient = gradientSum - trueGradients[a];
+                double falseHessian = hessianSum - trueHessians[a];
+                double gain = trueGradients[a] * trueGradients[a] / (trueHessians[a] + l2Regularization)
+                        + falseGradient * falseGradient / (falseHessian + l2Regularization) - nodeScore;
+                if (gain > bestGain) {
+                    bestGain = gain;
+                    bestAttribute = a;
+                }
+            }
+        }
+
+        if (bestAttribute < 0) {
+            float value = (float) (-learningRate * gradientSum / (hessianSum + l2Regularization));
+            round.add(nodeMask, k, value);
+            return new ValueLeafNode(className, value);
+        }
+
+        LongBuffer column = data.getAttributeColumn(bestAttribute);
+        long[] trueMask = new long[nodeMask.length];
+        long[] falseMask = new long[nodeMask.length];
+        for (int i = 0; i < nodeMask.length; i++) {
+            trueMask[i] = nodeMask[i] & column.get(i);
+            falseMask[i] = nodeMask[i] & ~column.get(i);
+        }
+        boolean[] remaining = usedAttributes.clone();
+        remaining[bestAttribute] = true;
+        BaseNode left = buildTree(round, k, className, trueMask, remaining, depth + 1);
+        BaseNode right = buildTree(round, k, className, falseMask, remaining, depth + 1);
+        Schema schema = data.getSchema();
+        return new Node(schema, schema.getAttributeName(bestAttribute), left, right);
+    }
+
+    /**
+     * Method to sum the gradients, hessians and weights of the rows of a node where an attribute is true.
+     *
+     * @param nodeMask The bitset of rows in the node.
+     * @param attribute The attribute.
+     * @param gradients The gradient of each row.
+     * @param hessians The hessian of each row.
+     * @param trueGradients The array to write the attribute's gradient sum into.
+     * @param trueHessians The array to write the attribute's hessian sum into.
+     * @param trueCounts The array to write the attribute's weighted row count into.
+     */
+    private void sumAttribute(long[] nodeMask, int attribute, double[] gradients, double[] hessians,
+                              double[] trueGradients, double[] trueHessians, int[] trueCounts) {
+        LongBuffer column = data.getAttributeColumn(attribute);
+        double gradientSum = 0;
+        double hessianSum = 0;
+        int count = 0;
+        for (int i = 0; i < nodeMask.length; i++) {
+            for (long bits = nodeMask[i] & column.get(i); bits != 0; bits &= bits - 1) {
+                int row = (i << 6) | Long.numberOfTrailingZeros(bits);
+                gradientSum += gradients[row];
+                hessianSum += hessians[row];
+                count += data.getWeight(row);
+            }
+        }
+        trueGradients[attribute] = gradientSum;
+        trueHessians[attribute] = hessianSum;
+        trueCounts[attribute] = count;
+    }
+
+    /**
+     * Inner-class for the scores of the rows of a data set as trees are added, with their gradients for the next tree.
+     */
+    private static class Round {
+
+        /** The rows */
+        private ColumnarDataset rows;
+        /** The score of each row, per score */
+        private double[][] scores;
+        /** The weighted gradient of the loss of each row, per score */
+        private double[][] gradients;
+        /** The weighted hessian of the loss of each row, per score */
+        private double[][] hessians;
+
+        /**
+         * Constructor for a Round, starting every row at the base scores.
+         *
+         * @param rows The rows.
+         * @param baseScores The score each class starts from.
+         */
+        Round(ColumnarDataset rows, float[] baseScores) {
+            this.rows = rows;
+            scores = new double[baseScores.length][rows.size()];
+            for (int k = 0; k < baseScores.length; k++) Arrays.fill(scores[k], baseScores[k]);
+            gradients = new double[baseScores.length][rows.size()];
+            hessians = new double[baseScores.length][rows.size()];
+        }
+
+        /**
+         * Method to compute the gradients and hessians of the log-loss at the current scores, for all scores at once.
+         */
+        void computeGradients() {
+            int classCount = rows.getClassCount();
+            double[] rowScores = new double[scores.length];
+            for (int row = 0; row < rows.size(); row++) {
+                for (int k = 0; k < scores.length; k++) rowScores[k] = scores[k][row];
+                double[] probabilities = GradientBoostedTrees.toProbabilities(rowScores, classCount);
+                int weight = rows.getWeight(row);
+                byte classValue = rows.getClassValue(row);
+                for (int k = 0; k < scores.length; k++) {
+                    // A single score is of the last class against the first
+                    int c = scores.length == 1 ? classCount - 1 : k;
+                    double p = probabilities[c];
+                    gradients[k][row] = weight * (p - (classValue == c ? 1 : 0));
+                    hessians[k][row] = weight * Math.max(p * (1 - p), MIN_HESSIAN);
+                }
+            }
+        }
+
+        /**
+         * Method to add a leaf value to the score of the rows set in a bitset.
+         *
+         * @param rowMask The bitset of rows.
+         * @param k The index of the score.
+         * @param value The leaf value.
+         */
+        void add(long[] rowMask, int k, float value) {
+            for (int i = 0; i < rowMask.length; i++) {
+                for (long bits = rowMask[i]; bits != 0; bits &= bits - 1) {
+                    scores[k][(i << 6) | Long.numberOfTrailingZeros(bits)] += value;
+                }
+            }
+        }
+
+        /**
+         * Method to add the leaf value each row reaches in a tree to its score.
+         *
+         * @param tree The tree, of Node and ValueLeafNode instances.
+         * @param k The index of the score the tree is for.
+         */
+        void add(BaseNode tree, int k) {
+            for (int row = 0; row < rows.size(); row++) {
+                BaseNode node = tree;
+                while (node instanceof Node) {
+                    Node internal = (Node) node;
+                    node = internal.test(rows, row) ? internal.getLeft() : internal.getRight();
+                }
+                scores[k][row] += ((ValueLeafNode) node).getValue();
+            }
+        }
+
+        /**
+         * Method to measure the mean log-loss of the current scores, weighting each row by its weight.
+         *
+         * @return the mean negative log of the probability given to the class of each row.
+         */
+        double logLoss() {
+            int classCount = rows.getClassCount();
+            double[] rowScores = new double[scores.length];
+            double loss = 0;
+            for (int row = 0; row < rows.size(); row++) {
+                for (int k = 0; k < scores.length; k++) rowScores[k] = scores[k][row];
+                double p = GradientBoostedTrees.toProbabilities(rowScores, classCount)[rows.getClassValue(row)];
+                loss -= rows.getWeight(row) * Math.log(Math.max(p, MIN_PROBABILITY));
+            }
+            return rows.size() == 0 ? 0 : loss / rows.getTotalWeight();
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package ensemble;
+
+import processing.BitsetTreeBuilder;
+import processing.ColumnarDataset;
+import processing.InvalidDataException;
+import processing.Patient;
+import processing.Schema;
+import processing.UncheckedInvalidDataException;
+import tree.BaseNode;
+import tree.CompiledTree;
+import tree.ModelWriter;
+import tree.TreeExporter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A class to represent a random forest: an ensemble of trees, each trained on a bootstrap sample of the training data
+ * with a random subset of the attributes considered at each split, which classifies by majority vote.
+ * Bootstrap samples are weights over the shared training columns rather than copies of rows, and only the compiled
+ * trees are kept once training is done.
+ */
+public class RandomForest implements BaseNode {
+
+    /** The trees of the forest */
+    private CompiledTree[] trees;
+    /** The schema of the data the forest classifies */
+    private Schema schema;
+
+    /**
+     * Constructor for a RandomForest.
+     *
+     * @param trees The trees of the forest, all of the same schema.
+     */
+    public RandomForest(CompiledTree[] trees) {
+        this.trees = trees;
+        this.schema = trees.length == 0 ? Schema.HEPATITIS : trees[0].getSchema();
+    }
+
+    /**
+     * Method to train a random forest, training the trees concurrently in a pool.
+     *
+     * @param data The training data.
+     * @param treeCount The number of trees.
+     * @param attributesPerSplit The number of attributes randomly chosen as candidates at each split.
+     * @param seed The seed for the bootstrap samples and candidate attributes; the same seed trains the same forest.
+     * @param pool The pool to train the trees in.
+     * @return the trained forest.
+     * @throws InvalidDataException if invalid data is passed to a LeafNode constructor.
+     */
+    public static RandomForest train(ColumnarDataset data, int treeCount, int attributesPerSplit, long seed,
+                                     ForkJoinPool pool) throws InvalidDataException {
+        // Leaves with no instances use the most probable class across the data set
+        ColumnarDataset.MostFrequentClass mostFrequent = data.mostFrequentClass(data.allRows());
+        String defaultClass = mostFrequent.getClassName();
+        float defaultProbability = mostFrequent.getProbability();
+
+        SplittableRandom random = new SplittableRandom(seed);
+        List<TreeTask> tasks = new ArrayList<>();
+        for (int t = 0; t < treeCount; t++) {
+            tasks.add(new TreeTask(data, random.nextLong(), attributesPerSplit, defaultClass, defaultProbability));
+        }
+        CompiledTree[] trees = new CompiledTree[treeCount];
+        try {
+            pool.invoke(new RecursiveTask<Void>() {
+                @Override
+                protected Void compute() {
+                    ForkJoinTask.invokeAll(tasks);
+                    return null;
+                }
+            });
+            for (int t = 0; t < treeCount; t++) trees[t] = tasks.get(t).join();
+        } catch (UncheckedInvalidDataException e) {
+            throw e.getCause();
+        }
+        return new RandomForest(trees);
+    }
+
+    /**
+     * Method to return the usual number of candidate attributes per split for classification: the square root of
+     * the number of attributes.
+     *
+     * @param attributes The number of attributes.
+     * @return the number of candidate attributes per split.
+     */
+    public static int defaultAttributesPerSplit(int attributes) {
+        return Math.max(1, (int) Math.round(Math.sqrt(attributes)));
+    }
+
+    /**
+     * Method to return the class value with the most votes, favouring the earliest class value on a tie.
+     *
+     * @param votes The votes for each class value.
+     * @return the class value.
+     */
+    private static byte vote(int[] votes) {
+        byte best = 0;
+        for (byte c = 1; c < votes.length; c++) {
+            if (votes[c] > votes[best]) best = c;
+        }
+        return best;
+    }
+
+    @Override
+    public String classify(Patient p) {
+        int[] votes = new int[schema.getClassCount()];
+        for (CompiledTree tree : trees) {
+            byte classValue = tree.getLeafClassValue(tree.findLeaf(p));
+            if (classValue >= 0) votes[classValue]++;
+        }
+        return schema.getClassName(vote(votes));
+    }
+
+    /**
+     * Method to classify every row of a block of data, running all trees over each row in turn.
+     *
+     * @param block The rows to classify.
+     * @return the class value determined for each row, in row order.
+     */
+    public byte[] classify(ColumnarDataset block) {
+        byte[] classValues = new byte[block.size()];
+        int[] votes = new int[schema.getClassCount()];
+        // Rows of up to 64 boolean attributes are packed into a bitmask once for all the trees
+        boolean narrow = schema.fitsBitmask();
+        for (int row = 0; row < classValues.length; row++) {
+            Arrays.fill(votes, 0);
+            long attributeBits = narrow ? block.getRowBits(row) : 0;
+            for (CompiledTree tree : trees) {
+                int leaf = narrow ? tree.findLeaf(attributeBits) : tree.findLeaf(block, row);
+                byte classValue = tree.getLeafClassValue(leaf);
+                if (classValue >= 0) votes[classValue]++;
+            }
+            classValues[row] = vote(votes);
+        }
+        return classValues;
+    }
+
+    @Override
+    public void report(String indent) {
+        StringBuilder out = new StringBuilder();
+        String treeIndent = indent.replace("|", "_ ") + "|_ _ _ ";
+        for (int t = 0; t < trees.length; t++) {
+            out.append(indent).append("Tree ").append(t + 1).append(":\n");
+            TreeExporter.appendText(trees[t], treeIndent, out);
+        }
+        System.out.print(out);
+    }
+
+    /**
+     * Method to save this forest as a model file, which MappedModel can classify from directly.
+     *
+     * @param file The path of the file to write.
+     * @throws IOException if the file cannot be written.
+     */
+    public void save(Path file) throws IOException {
+        ModelWriter.writeForest(file, trees);
+    }
+
+    /** Getter for the number of trees */
+    public int getTreeCount() {
+        return trees.length;
+    }
+
+    /**
+     * Inner-class for the task of training one tree of the forest.
+     */
+    private static class TreeTask extends RecursiveTask<CompiledTree> {
+
+        private static final long serialVersionUID = 1L;
+
+        /** The training data */
+        private ColumnarDataset data;
+        /** The seed for the tree's bootstrap sample and candidate attributes */
+        private long seed;
+        /** The number of attributes randomly chosen as candidates at each split */
+        private int attributesPerSplit;
+        /** The class name to use for leaf nodes with no instances */
+        private String defaultClass;
+        /** The probability to use for leaf nodes with no instances */
+        private float defaultProbability;
+
+        /**
+         * Constructor for a TreeTask.
+         *
+         * @param data The training data.
+         * @param seed The seed for the tree's bootstrap sample and candidate attributes.
+         * @param attributesPerSplit The number of attributes randomly chosen as candidates at each split.
+         * @param defaultClass The class name to use for leaf nodes with no instances.
+         * @param defaultProbability The probability to use for leaf nodes with no instances.
+         */
+        TreeTask(ColumnarDataset data, long seed, int attributesPerSplit, String defaultClass,
+                 float defaultProbability) {
+            this.data = data;
+            this.seed = seed;
+            this.attributesPerSplit = attributesPerSplit;
+            this.defaultClass = defaultClass;
+            this.defaultProbability = defaultProbability;
+        }
+
+        @Override
+        protected CompiledTree compute() {
+            SplittableRandom random = new SplittableRandom(seed);
+            BitsetTreeBuilder builder = new BitsetTreeBuilder(data, defaultClass, defaultProbability);
+            builder.setRowWeights(bootstrapWeights(random));
+            builder.setAttributeSampling(attributesPerSplit, random.nextLong());
+            try {
+                return CompiledTree.compile(builder.build(), data.getSchema());
+            } catch (InvalidDataException e) {
+                throw new UncheckedInvalidDataException(e);
+            }
+        }
+
+        /**
+         * Method to draw a bootstrap sample of the rows, as the bit-planes of how many times each row was drawn.
+         *
+         * @param random The source of the sample.
+         * @return the bit-planes of the row weights.
+         */
+        private long[][] bootstrapWeights(SplittableRandom random) {
+            int size = data.size();
+            // An empty data set has no rows to draw, so there are no weights and no planes
+            if (size == 0) return new long[0][0];
+            byte[] draws = new byte[size];
+            int maxDraws = 0;
+            for (int i = 0; i < size; i++) {
+                int row = random.nextInt(size);
+                if (draws[row] < Byte.MAX_VALUE) draws[row]++;
+                maxDraws = Math.max(maxDraws, draws[row]);
+            }
+            long[][] planes = new long[32 - Integer.numberOfLeadingZeros(maxDraws)][ColumnarDataset.wordCount(size)];
+            for (int row = 0; row < size; row++) {
+                for (int k = 0; k < planes.length; k++) {
+                    if ((draws[row] & (1 << k)) != 0) planes[k][row >>> 6] |= 1L << row;
+                }
+            }
+            return planes;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package evaluation;
+
+import processing.BitsetTreeBuilder;
+import processing.Classifier;
+import processing.ColumnarDataset;
+import processing.InvalidDataException;
+import processing.Schema;
+import processing.UncheckedInvalidDataException;
+import tree.CompiledTree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A class to run k-fold cross-validation, and searches over combinations of tree parameters, on a data set held once
+ * in columnar form.
+ * The folds are stratified: the rows of each class are shuffled and dealt across the folds in turn, so each fold has
+ * about the same proportion of each class and the fold sizes differ by at most one row. A fold is a bitset over the
+ * shared rows, so no rows are copied: each fold's tree is built over the training rows as a bitset and evaluated over
+ * the test rows the same way. Every fold of every combination is trained concurrently as a task in a pool.
+ */
+public class CrossValidator {
+
+    /** The data to validate on */
+    private ColumnarDataset data;
+    /** The bitset of the test rows of each fold */
+    private long[][] testFolds;
+
+    /**
+     * Constructor for a CrossValidator.
+     *
+     * @param data The data to validate on.
+     * @param foldCount The number of folds, at least 2.
+     * @param seed The seed for assigning rows to folds; the same seed gives the same folds.
+     */
+    public CrossValidator(ColumnarDataset data, int foldCount, long seed) {
+        if (foldCount < 2) throw new IllegalArgumentException("At least 2 folds are needed: " + foldCount);
+        this.data = data;
+        this.testFolds = new long[foldCount][data.allRows().length];
+
+        SplittableRandom random = new SplittableRandom(seed);
+        ByteBuffer classValues = data.getClassValues();
+        // The next fold to deal to carries over from class to class, so the folds stay level in size
+        int fold = 0;
+        for (int c = 0; c < data.getClassCount(); c++) {
+            List<Integer> rows = new ArrayList<>();
+            for (int row = 0; row < data.size(); row++) {
+                if (classValues.get(row) == c) rows.add(row);
+            }
+            Collections.shuffle(rows, new Random(random.nextLong()));
+            for (int row : rows) {
+                testFolds[fold][row >>> 6] |= 1L << row;
+                fold = (fold + 1) % foldCount;
+            }
+        }
+    }
+
+    /**
+     * Method to load a data file once into columnar form for cross-validation.
+     *
+     * @param fileUrl The path of the data file, with headings.
+     * @param foldCount The number of folds, at least 2.
+     * @param seed The seed for assigning rows to folds.
+     * @return the cross-validator.
+     * @throws IOException if the file cannot be read.
+     * @throws InvalidDataException if the file cannot be parsed.
+     */
+    public static CrossValidator load(String fileUrl, int foldCount, long seed)
+            throws IOException, InvalidDataException {
+        Schema schema = Classifier.getSchema(fileUrl);
+        return new CrossValidator(new ColumnarDataset(schema, Classifier.getData(fileUrl, schema)), foldCount, seed);
+    }
+
+    /**
+     * Method to cross-validate one combination of tree parameters.
+     *
+     * @param parameters The parameters to build the trees with.
+     * @param pool The pool to train the folds in.
+     * @return the result.
+     * @throws InvalidDataException if invalid data is passed to a LeafNode constructor.
+     */
+    public ValidationResult validate(TreeParameters parameters, ForkJoinPool pool) throws InvalidDataException {
+        return search(Collections.singletonList(parameters), pool).get(0);
+    }
+
+    /**
+     * Method to cross-validate every combination of tree parameters, training all of their folds concurrently.
+     *
+     * @param grid The combinations of parameters, such as from TreeParameters.grid.
+     * @param pool The pool to train the folds in.
+     * @return the result of each combination, in the order of the grid.
+     * @throws InvalidDataException if invalid data is passed to a LeafNode constructor.
+     */
+    public List<ValidationResult> search(List<TreeParameters> grid, ForkJoinPool pool) throws InvalidDataException {
+        List<FoldTask> tasks = new ArrayList<>();
+        for (TreeParameters parameters : grid) {
+            for (int f = 0; f < testFolds.length; f++) tasks.add(new FoldTask(parameters, f));
+        }
+        try {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    ForkJoinTask.invokeAll(tasks);
+                }
+            });
+        } catch (UncheckedInvalidDataException e) {
+            throw e.getCause();
+        }
+
+        List<ValidationResult> results = new ArrayList<>();
+        int foldCount = testFolds.length;
+        for (int g = 0; g < grid.size(); g++) {
+            double[] accuracies = new double[foldCount];
+            long[] trainingNanos = new long[foldCount];
+            int[] nodeCounts = new int[foldCount];
+            int[] leafCounts = new int[foldCount];
+            for (int f = 0; f < foldCount; f++) {
+                FoldTask task = tasks.get(g * foldCount + f);
+                accuracies[f] = task.accuracy;
+                trainingNanos[f] = task.trainingNanos;
+                nodeCounts[f] = task.tree.getNodeCount();
+                leafCounts[f] = task.tree.getLeafCount();
+            }
+            results.add(new ValidationResult(grid.get(g), accuracies, trainingNanos, nodeCounts, leafCounts));
+        }
+        return results;
+    }
+
+    /** Getter for the number of folds */
+    public int getFoldCount() {
+        return testFolds.length;
+    }
+
+    /**
+     * Getter for the bitset of the test rows of a fold.
+     *
+     * @param fold The fold.
+     * @return a copy of the bitset.
+     */
+    public long[] getTestRows(int fold) {
+        return testFolds[fold].clone();
+    }
+
+    /**
+     * Getter for the bitset of the training rows of a fold: every row not in its test rows.
+     *
+     * @param fold The fold.
+     * @return the bitset.
+     */
+    public long[] getTrainingRows(int fold) {
+        long[] rows = data.allRows();
+        for (int i = 0; i < rows.length; i++) rows[i] &= ~testFolds[fold][i];
+        return rows;
+    }
+
+    /**
+     * Inner-class for the task of training and evaluating one fold with one combination of parameters.
+     */
+    private class FoldTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        /** The parameters to build the tree with */
+        private TreeParameters parameters;
+        /** The fold */
+        private int fold;
+        /** The tree built, once the task is done */
+        private CompiledTree tree;
+        /** The proportion of the fold's test rows classified correctly, once the task is done */
+        private double accuracy;
+        /** The time taken to build the tree, in nanoseconds, once the task is done */
+        private long trainingNanos;
+
+        /**
+         * Constructor for a FoldTask.
+         *
+         * @param parameters The parameters to build the tree with.
+         * @param fold The fold.
+         */
+        FoldTask(TreeParameters parameters, int fold) {
+            this.parameters = parameters;
+            this.fold = fold;
+        }
+
+        @Override
+        protected void compute() {
+            long[] trainingRows = getTrainingRows(fold);
+            // Leaves with no instances use the most probable class of the training rows
+            ColumnarDataset.MostFrequentClass mostFrequent = data.mostFrequentClass(trainingRows);
+
+            long start = System.nanoTime();
+            BitsetTreeBuilder builder = new BitsetTreeBuilder(data, mostFrequent.getClassName(),
+                    mostFrequent.getProbability());
+            builder.setRows(trainingRows);
+            parameters.applyTo(builder);
+            try {
+                tree = CompiledTree.compile(builder.build(), data.getSchema());
+            } catch (InvalidDataException e) {
+                throw new UncheckedInvalidDataException(e);
+            }
+            trainingNanos = System.nanoTime() - start;
+
+            long[] testRows = testFolds[fold];
+            int testCount = ColumnarDataset.popcount(testRows, testRows);
+            accuracy = testCount == 0 ? 0 : tree.countCorrect(data, testRows) / (double) testCount;
+        }
+    }
+}
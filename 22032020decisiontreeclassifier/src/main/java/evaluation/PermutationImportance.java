@@ -0,0 +1,201 @@
+package evaluation;
+
+import processing.ColumnarDataset;
+import processing.Schema;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.ToIntFunction;
+
+/**
+ * A class to measure how much a model relies on each attribute by the accuracy it loses over a test set when the
+ * attribute's values are shuffled between rows, which breaks the attribute's link to the class but keeps its
+ * distribution. Unlike SplitStatistics, this measures the model on rows it was not trained on.
+ * Each attribute is shuffled a number of times with its own random source, split from the seed before any shuffle
+ * runs, and every shuffle of every attribute is classified concurrently as a task in a pool, so the results are the
+ * same however many threads run them.
+ */
+public final class PermutationImportance {
+
+    /** The schema of the test set */
+    private final Schema schema;
+    /** The proportion of the test rows classified correctly before any shuffle */
+    private final double baseline;
+    /** The proportion of the test rows classified correctly after each shuffle of each attribute */
+    private final double[][] accuracies;
+
+    /**
+     * Constructor for a PermutationImportance.
+     *
+     * @param schema The schema of the test set.
+     * @param baseline The proportion of the test rows classified correctly before any shuffle.
+     * @param accuracies The proportion classified correctly after each shuffle of each attribute.
+     */
+    private PermutationImportance(Schema schema, double baseline, double[][] accuracies) {
+        this.schema = schema;
+        this.baseline = baseline;
+        this.accuracies = accuracies;
+    }
+
+    /**
+     * Method to measure the permutation importance of every attribute.
+     *
+     * @param countCorrect The model, as the number of rows of a data set it classifies correctly, e.g.
+     *                     CompiledTree::countCorrect; it is called from several threads at once.
+     * @param test The test set.
+     * @param repeats The number of times each attribute is shuffled, at least 1.
+     * @param seed The seed for the shuffles; the same seed gives the same shuffles.
+     * @param pool The pool to classify the shuffled test sets in.
+     * @return the importances.
+     */
+    public static PermutationImportance measure(ToIntFunction<ColumnarDataset> countCorrect, ColumnarDataset test,
+                                                int repeats, long seed, ForkJoinPool pool) {
+        if (repeats < 1) throw new IllegalArgumentException("At least 1 repeat is needed: " + repeats);
+        int attributeCount = test.getSchema().getAttributeCount();
+        double[][] accuracies = new double[attributeCount][repeats];
+        List<ShuffleTask> tasks = new ArrayList<>();
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int a = 0; a < attributeCount; a++) {
+            for (int r = 0; r < repeats; r++) {
+                tasks.add(new ShuffleTask(countCorrect, test, a, r, random.split(), accuracies));
+            }
+        }
+        double baseline = accuracy(countCorrect.applyAsInt(test), test);
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                ForkJoinTask.invokeAll(tasks);
+            }
+        });
+        return new PermutationImportance(test.getSchema(), baseline, accuracies);
+    }
+
+    /**
+     * Method to return the proportion of a data set's rows classified correctly.
+     *
+     * @param correct The number of rows classified correctly.
+     * @param block The data set.
+     * @return the proportion, or 0 for an empty data set.
+     */
+    private static double accuracy(int correct, ColumnarDataset block) {
+        return block.size() == 0 ? 0 : correct / (double) block.size();
+    }
+
+    /**
+     * Method to format the importances as a text table, one row per attribute, the most important first.
+     *
+     * @return the table.
+     */
+    public String toTable() {
+        List<Integer> attributes = new ArrayList<>();
+        for (int a = 0; a < accuracies.length; a++) attributes.add(a);
+        attributes.sort(Comparator.comparingDouble((Integer a) -> -getImportance(a)));
+        StringBuilder table = new StringBuilder(String.format("%-16s %10s %9s%n", "Attribute", "Importance",
+                "Std dev"));
+        for (int a : attributes) {
+            table.append(String.format("%-16s %9.2f%% %8.2f%%%n", schema.getAttributeName(a), getImportance(a) * 100,
+                    getImportanceStdDev(a) * 100));
+        }
+        return table.toString();
+    }
+
+    /** Getter for the schema of the test set */
+    public Schema getSchema() {
+        return schema;
+    }
+
+    /** Getter for the proportion of the test rows classified correctly before any shuffle */
+    public double getBaseline() {
+        return baseline;
+    }
+
+    /** Getter for the number of times each attribute was shuffled */
+    public int getRepeats() {
+        return accuracies.length == 0 ? 0 : accuracies[0].length;
+    }
+
+    /** Getter for the proportion of the test rows classified correctly after a shuffle of an attribute */
+    public double getAccuracy(int attribute, int repeat) {
+        return accuracies[attribute][repeat];
+    }
+
+    /**
+     * Getter for the importance of an attribute: the mean accuracy lost over its shuffles, which is about 0 for an
+     * attribute the model does not use and may be below 0 by chance
+     */
+    public double getImportance(int attribute) {
+        double sum = 0;
+        for (double accuracy : accuracies[attribute]) sum += baseline - accuracy;
+        return sum / accuracies[attribute].length;
+    }
+
+    /** Getter for the sample standard deviation of the accuracy lost over the shuffles of an attribute */
+    public double getImportanceStdDev(int attribute) {
+        double[] shuffled = accuracies[attribute];
+        if (shuffled.length < 2) return 0;
+        double mean = baseline - getImportance(attribute);
+        double squares = 0;
+        for (double accuracy : shuffled) squares += (accuracy - mean) * (accuracy - mean);
+        return Math.sqrt(squares / (shuffled.length - 1));
+    }
+
+    /**
+     * Inner-class for the task of shuffling one attribute once and classifying the shuffled test set.
+     */
+    private static class ShuffleTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        /** The model, as the number of rows of a data set it classifies correctly */
+        private ToIntFunction<ColumnarDataset> countCorrect;
+        /** The test set */
+        private ColumnarDataset test;
+        /** The index of the attribute to shuffle */
+        private int attribute;
+        /** The index of the shuffle */
+        private int repeat;
+        /** The source of the shuffle */
+        private SplittableRandom random;
+        /** The accuracy after each shuffle of each attribute, to write the accuracy of this shuffle into */
+        private double[][] accuracies;
+
+        /**
+         * Constructor for a ShuffleTask.
+         *
+         * @param countCorrect The model, as the number of rows of a data set it classifies correctly.
+         * @param test The test set.
+         * @param attribute The index of the attribute to shuffle.
+         * @param repeat The index of the shuffle.
+         * @param random The source of the shuffle.
+         * @param accuracies The accuracies to write the accuracy of this shuffle into.
+         */
+        ShuffleTask(ToIntFunction<ColumnarDataset> countCorrect, ColumnarDataset test, int attribute, int repeat,
+                    SplittableRandom random, double[][] accuracies) {
+            this.countCorrect = countCorrect;
+            this.test = test;
+            this.attribute = attribute;
+            this.repeat = repeat;
+            this.random = random;
+            this.accuracies = accuracies;
+        }
+
+        @Override
+        protected void compute() {
+            // A Fisher-Yates shuffle of the rows the attribute's values are taken from
+            int[] order = new int[test.size()];
+            for (int row = 0; row < order.length; row++) order[row] = row;
+            for (int row = order.length - 1; row > 0; row--) {
+                int other = random.nextInt(row + 1);
+                int swap = order[row];
+                order[row] = order[other];
+                order[other] = swap;
+            }
+            accuracies[attribute][repeat] = accuracy(countCorrect.applyAsInt(test.permute(attribute, order)), test);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package evaluation;
+
+import processing.BitsetTreeBuilder;
+import processing.SplitCriterion;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A class to represent one combination of the hyperparameters a tree is built with.
+ * Instances are immutable, so the same parameters can be shared by every fold trained with them.
+ */
+public final class TreeParameters {
+
+    /** The parameters trees are built with by default: no limits, split by Gini impurity */
+    public static final TreeParameters DEFAULT = new TreeParameters(0, 0, SplitCriterion.Standard.GINI);
+
+    /** The largest depth of a split, or 0 for no limit */
+    private final int maxDepth;
+    /** The smallest number of rows either side of a split, or 0 for no limit */
+    private final int minLeafSize;
+    /** The criterion splits are chosen by */
+    private final SplitCriterion criterion;
+    /** The smallest number of rows in a node that is split, or 0 for no limit */
+    private final int minSamplesSplit;
+    /** The smallest decrease in score a split must make, or 0 for no limit */
+    private final float minImpurityDecrease;
+
+    /**
+     * Constructor for TreeParameters.
+     *
+     * @param maxDepth The largest depth of a split, or 0 for no limit.
+     * @param minLeafSize The smallest number of rows either side of a split, or 0 for no limit.
+     * @param criterion The criterion splits are chosen by.
+     */
+    public TreeParameters(int maxDepth, int minLeafSize, SplitCriterion criterion) {
+        this(maxDepth, minLeafSize, criterion, 0, 0);
+    }
+
+    /**
+     * Constructor for TreeParameters with every pre-pruning limit.
+     *
+     * @param maxDepth The largest depth of a split, or 0 for no limit.
+     * @param minLeafSize The smallest number of rows either side of a split, or 0 for no limit.
+     * @param criterion The criterion splits are chosen by.
+     * @param minSamplesSplit The smallest number of rows in a node that is split, or 0 for no limit.
+     * @param minImpurityDecrease The smallest decrease in score a split must make, or 0 for no limit.
+     */
+    public TreeParameters(int maxDepth, int minLeafSize, SplitCriterion criterion, int minSamplesSplit,
+                          float minImpurityDecrease) {
+        if (maxDepth < 0 || minLeafSize < 0 || minSamplesSplit < 0 || !(minImpurityDecrease >= 0)) {
+            throw new IllegalArgumentException("Limits cannot be negative: " + maxDepth + ", " + minLeafSize + ", "
+                    + minSamplesSplit + ", " + minImpurityDecrease);
+        }
+        this.maxDepth = maxDepth;
+        this.minLeafSize = minLeafSize;
+        this.criterion = criterion;
+        this.minSamplesSplit = minSamplesSplit;
+        this.minImpurityDecrease = minImpurityDecrease;
+    }
+
+    /**
+     * Method to create every combination of the given values, varying the criterion fastest.
+     *
+     * @param maxDepths The largest depths to try.
+     * @param minLeafSizes The smallest leaf sizes to try.
+     * @param criteria The criteria to try.
+     * @return the combinations.
+     */
+    public static List<TreeParameters> grid(int[] maxDepths, int[] minLeafSizes, SplitCriterion... criteria) {
+        List<TreeParameters> grid = new ArrayList<>();
+        for (int maxDepth : maxDepths) {
+            for (int minLeafSize : minLeafSizes) {
+                for (SplitCriterion criterion : criteria) grid.add(new TreeParameters(maxDepth, minLeafSize, criterion));
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Method to set these parameters on a builder.
+     *
+     * @param builder The builder.
+     */
+    public void applyTo(BitsetTreeBuilder builder) {
+        builder.setMaxDepth(maxDepth);
+        builder.setMinLeafSize(minLeafSize);
+        builder.setCriterion(criterion);
+        builder.setMinSamplesSplit(minSamplesSplit);
+        builder.setMinImpurityDecrease(minImpurityDecrease);
+    }
+
+    /** Getter for the largest depth of a split */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /** Getter for the smallest number of rows either side of a split */
+    public int getMinLeafSize() {
+        return minLeafSize;
+    }
+
+    /** Getter for the criterion */
+    public SplitCriterion getCriterion() {
+        return criterion;
+    }
+
+    /** Getter for the smallest number of rows in a node that is split */
+    public int getMinSamplesSplit() {
+        return minSamplesSplit;
+    }
+
+    /** Getter for the smallest decrease in score a split must make */
+    public float getMinImpurityDecrease() {
+        return minImpurityDecrease;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TreeParameters that = (TreeParameters) o;
+        return maxDepth == that.maxDepth && minLeafSize == that.minLeafSize && criterion.equals(that.criterion)
+                && minSamplesSplit == that.minSamplesSplit
+                && Float.compare(minImpurityDecrease, that.minImpurityDecrease) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(maxDepth, minLeafSize, criterion, minSamplesSplit, minImpurityDecrease);
+    }
+
+    @Override
+    public String toString() {
+        String parameters = String.format("maxDepth=%s minLeafSize=%s criterion=%s",
+                maxDepth == 0 ? "none" : maxDepth, minLeafSize == 0 ? "none" : minLeafSize, criterion);
+        if (minSamplesSplit > 0) parameters += " minSamplesSplit=" + minSamplesSplit;
+        if (minImpurityDecrease > 0) parameters += " minImpurityDecrease=" + minImpurityDecrease;
+        return parameters;
+    }
+}
@@ -0,0 +1,140 @@
+package evaluation;
+
+import java.util.List;
+
+/**
+ * A class to represent the result of cross-validating one combination of tree parameters: the accuracy, training time
+ * and size of the tree of each fold, with their means.
+ */
+public class ValidationResult {
+
+    /** The parameters the trees were built with */
+    private final TreeParameters parameters;
+    /** The proportion of each fold's test rows classified correctly */
+    private final double[] accuracies;
+    /** The time taken to build each fold's tree, in nanoseconds */
+    private final long[] trainingNanos;
+    /** The number of split nodes of each fold's tree */
+    private final int[] nodeCounts;
+    /** The number of leaves of each fold's tree */
+    private final int[] leafCounts;
+
+    /**
+     * Constructor for a ValidationResult.
+     *
+     * @param parameters The parameters the trees were built with.
+     * @param accuracies The proportion of each fold's test rows classified correctly.
+     * @param trainingNanos The time taken to build each fold's tree, in nanoseconds.
+     * @param nodeCounts The number of split nodes of each fold's tree.
+     * @param leafCounts The number of leaves of each fold's tree.
+     */
+    ValidationResult(TreeParameters parameters, double[] accuracies, long[] trainingNanos, int[] nodeCounts,
+                     int[] leafCounts) {
+        this.parameters = parameters;
+        this.accuracies = accuracies;
+        this.trainingNanos = trainingNanos;
+        this.nodeCounts = nodeCounts;
+        this.leafCounts = leafCounts;
+    }
+
+    /**
+     * Method to return the result with the highest mean accuracy, favouring the earliest on a tie.
+     *
+     * @param results The results to choose from.
+     * @return the best result, or null if there are none.
+     */
+    public static ValidationResult best(List<ValidationResult> results) {
+        ValidationResult best = null;
+        for (ValidationResult result : results) {
+            if (best == null || result.getMeanAccuracy() > best.getMeanAccuracy()) best = result;
+        }
+        return best;
+    }
+
+    /**
+     * Method to format results as a text table, one row per result.
+     *
+     * @param results The results.
+     * @return the table.
+     */
+    public static String toTable(List<ValidationResult> results) {
+        StringBuilder table = new StringBuilder(String.format("%-8s %-12s %-10s %9s %9s %11s %9s %9s%n", "Depth",
+                "Min leaf", "Criterion", "Accuracy", "Std dev", "Train (ms)", "Nodes", "Leaves"));
+        for (ValidationResult result : results) {
+            TreeParameters p = result.parameters;
+            table.append(String.format("%-8s %-12s %-10s %8.2f%% %8.2f%% %11.3f %9.1f %9.1f%n",
+                    p.getMaxDepth() == 0 ? "-" : p.getMaxDepth(), p.getMinLeafSize() == 0 ? "-" : p.getMinLeafSize(),
+                    p.getCriterion(), result.getMeanAccuracy() * 100, result.getAccuracyStdDev() * 100,
+                    result.getMeanTrainingMillis(), result.getMeanNodeCount(), result.getMeanLeafCount()));
+        }
+        return table.toString();
+    }
+
+    /** Getter for the parameters the trees were built with */
+    public TreeParameters getParameters() {
+        return parameters;
+    }
+
+    /** Getter for the number of folds */
+    public int getFoldCount() {
+        return accuracies.length;
+    }
+
+    /** Getter for the proportion of a fold's test rows classified correctly */
+    public double getAccuracy(int fold) {
+        return accuracies[fold];
+    }
+
+    /** Getter for the mean accuracy over the folds */
+    public double getMeanAccuracy() {
+        double sum = 0;
+        for (double accuracy : accuracies) sum += accuracy;
+        return accuracies.length == 0 ? 0 : sum / accuracies.length;
+    }
+
+    /**
+     * Getter for the sample standard deviation of the accuracy over the folds, which is 0 for fewer than two folds.
+     */
+    public double getAccuracyStdDev() {
+        if (accuracies.length < 2) return 0;
+        double mean = getMeanAccuracy();
+        double squares = 0;
+        for (double accuracy : accuracies) squares += (accuracy - mean) * (accuracy - mean);
+        return Math.sqrt(squares / (accuracies.length - 1));
+    }
+
+    /** Getter for the mean time taken to build a fold's tree, in milliseconds */
+    public double getMeanTrainingMillis() {
+        long sum = 0;
+        for (long nanos : trainingNanos) sum += nanos;
+        return trainingNanos.length == 0 ? 0 : sum / 1e6 / trainingNanos.length;
+    }
+
+    /** Getter for the mean number of split nodes of a fold's tree */
+    public double getMeanNodeCount() {
+        return mean(nodeCounts);
+    }
+
+    /** Getter for the mean number of leaves of a fold's tree */
+    public double getMeanLeafCount() {
+        return mean(leafCounts);
+    }
+
+    /**
+     * Method to return the mean of a set of counts.
+     *
+     * @param counts The counts.
+     * @return the mean, or 0 if there are none.
+     */
+    private static double mean(int[] counts) {
+        long sum = 0;
+        for (int count : counts) sum += count;
+        return counts.length == 0 ? 0 : sum / (double) counts.length;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: accuracy %.2f%% (std dev %.2f%%)", parameters, getMeanAccuracy() * 100,
+                getAccuracyStdDev() * 100);
+    }
+}
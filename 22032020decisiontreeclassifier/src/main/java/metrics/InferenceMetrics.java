@@ -0,0 +1,154 @@
+package metrics;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A class to collect metrics of classifying with a tree: the latency of classifying single records and blocks, the
+ * number of records classified, and how many reached each leaf.
+ * The counters are LongAdders, so a tree shared by many scoring threads can record without serializing them.
+ */
+public class InferenceMetrics implements InferenceMetricsMXBean {
+
+    /** The latency of classifying single records, in nanoseconds */
+    private final LatencyHistogram latency = new LatencyHistogram();
+    /** The latency of classifying blocks, in nanoseconds */
+    private final LatencyHistogram batchLatency = new LatencyHistogram();
+    /** The number of records classified, singly or in blocks */
+    private final LongAdder classifications = new LongAdder();
+    /** The number of records that reached each leaf */
+    private final LongAdder[] leafHits;
+    /** The time the metrics were created, in nanoseconds */
+    private final long started = System.nanoTime();
+
+    /**
+     * Constructor for InferenceMetrics.
+     *
+     * @param leafCount The number of leaves of the tree.
+     */
+    public InferenceMetrics(int leafCount) {
+        leafHits = new LongAdder[leafCount];
+        for (int leaf = 0; leaf < leafCount; leaf++) leafHits[leaf] = new LongAdder();
+    }
+
+    /**
+     * Method to record the classification of a single record.
+     *
+     * @param leaf The index of the leaf it reached.
+     * @param nanos The time taken, in nanoseconds.
+     */
+    public void recordClassification(int leaf, long nanos) {
+        latency.record(nanos);
+        classifications.increment();
+        leafHits[leaf].increment();
+    }
+
+    /**
+     * Method to record the classification of a block; the leaves its rows reached are recorded by recordLeafHits.
+     *
+     * @param rows The number of rows in the block.
+     * @param nanos The time taken, in nanoseconds.
+     */
+    public void recordBatch(int rows, long nanos) {
+        batchLatency.record(nanos);
+        classifications.add(rows);
+    }
+
+    /**
+     * Method to record rows of a block reaching a leaf.
+     *
+     * @param leaf The index of the leaf.
+     * @param rows The number of rows.
+     */
+    public void recordLeafHits(int leaf, int rows) {
+        leafHits[leaf].add(rows);
+    }
+
+    /**
+     * Method to register these metrics with the platform MBean server.
+     *
+     * @param name The name to register them under.
+     * @return the name of the registered MBean.
+     * @throws JMException if the metrics cannot be registered, such as when the name is taken.
+     */
+    public ObjectName register(String name) throws JMException {
+        return Jmx.register(this, "InferenceMetrics", name);
+    }
+
+    /** Getter for the latency of classifying single records, in nanoseconds */
+    public LatencyHistogram getLatencyHistogram() {
+        return latency;
+    }
+
+    /** Getter for the latency of classifying blocks, in nanoseconds */
+    public LatencyHistogram getBatchLatencyHistogram() {
+        return batchLatency;
+    }
+
+    /** Getter for the number of records that reached a leaf */
+    public long getLeafHits(int leaf) {
+        return leafHits[leaf].sum();
+    }
+
+    @Override
+    public long getClassifications() {
+        return classifications.sum();
+    }
+
+    @Override
+    public long getBatches() {
+        return batchLatency.getCount();
+    }
+
+    @Override
+    public double getClassificationsPerSecond() {
+        long nanos = System.nanoTime() - started;
+        return nanos <= 0 ? 0 : classifications.sum() * 1e9 / nanos;
+    }
+
+    @Override
+    public double getLatencyP50Micros() {
+        return latency.getValueAtPercentile(50) / 1e3;
+    }
+
+    @Override
+    public double getLatencyP99Micros() {
+        return latency.getValueAtPercentile(99) / 1e3;
+    }
+
+    @Override
+    public double getLatencyP999Micros() {
+        return latency.getValueAtPercentile(99.9) / 1e3;
+    }
+
+    @Override
+    public double getBatchLatencyP99Micros() {
+        return batchLatency.getValueAtPercentile(99) / 1e3;
+    }
+
+    @Override
+    public long[] getLeafHits() {
+        long[] hits = new long[leafHits.length];
+        for (int leaf = 0; leaf < hits.length; leaf++) hits[leaf] = leafHits[leaf].sum();
+        return hits;
+    }
+
+    @Override
+    public String toText() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("Classifications: %d (%.0f per second), in %d blocks%n", getClassifications(),
+                getClassificationsPerSecond(), getBatches()));
+        text.append(String.format("Latency: %s%n", latency.toText()));
+        text.append(String.format("Block latency: %s%n", batchLatency.toText()));
+        text.append("Leaf hits:");
+        long[] hits = getLeafHits();
+        for (int leaf = 0; leaf < hits.length; leaf++) text.append(' ').append(leaf).append('=').append(hits[leaf]);
+        return text.append(String.format("%n")).toString();
+    }
+
+    @Override
+    public String toString() {
+        return toText();
+    }
+}
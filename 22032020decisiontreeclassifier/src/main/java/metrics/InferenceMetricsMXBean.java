@@ -0,0 +1,38 @@
+package metrics;
+
+/**
+ * An interface for the attributes of InferenceMetrics exported over JMX.
+ */
+public interface InferenceMetricsMXBean {
+
+    /** Getter for the number of records classified, singly or in blocks */
+    long getClassifications();
+
+    /** Getter for the number of blocks classified */
+    long getBatches();
+
+    /** Getter for the records classified per second since the metrics were created */
+    double getClassificationsPerSecond();
+
+    /** Getter for the median latency of classifying a single record, in microseconds */
+    double getLatencyP50Micros();
+
+    /** Getter for the 99th percentile latency of classifying a single record, in microseconds */
+    double getLatencyP99Micros();
+
+    /** Getter for the 99.9th percentile latency of classifying a single record, in microseconds */
+    double getLatencyP999Micros();
+
+    /** Getter for the 99th percentile latency of classifying a block, in microseconds */
+    double getBatchLatencyP99Micros();
+
+    /** Getter for the number of records that reached each leaf */
+    long[] getLeafHits();
+
+    /**
+     * Method to describe every metric as text.
+     *
+     * @return the snapshot.
+     */
+    String toText();
+}
@@ -0,0 +1,35 @@
+package metrics;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * A class to register metrics with the platform MBean server, under a common domain.
+ */
+final class Jmx {
+
+    /** The domain metrics are registered under */
+    static final String DOMAIN = "decisiontree";
+
+    /**
+     * Constructor for Jmx, which is never used.
+     */
+    private Jmx() {
+    }
+
+    /**
+     * Method to register an MXBean with the platform MBean server.
+     *
+     * @param mxBean The MXBean.
+     * @param type The type of the metrics.
+     * @param name The name to register them under.
+     * @return the name of the registered MBean.
+     * @throws JMException if the MXBean cannot be registered, such as when the name is taken.
+     */
+    static ObjectName register(Object mxBean, String type, String name) throws JMException {
+        ObjectName objectName = new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(mxBean, objectName);
+        return objectName;
+    }
+}
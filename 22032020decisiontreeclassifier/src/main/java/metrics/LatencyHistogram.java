@@ -0,0 +1,136 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A class to count recorded values, such as latencies in nanoseconds, in log-linear buckets, in the style of
+ * HdrHistogram: each power of two is split into SUB_BUCKETS buckets of equal width, so any percentile is reported to
+ * within 1 / SUB_BUCKETS of its value, over the whole range of a long, in a fixed number of buckets.
+ * Every bucket is a LongAdder, so threads recording at once update their own cells rather than contending on a single
+ * counter; reading the histogram sums the cells and may miss values recorded while it is read.
+ */
+public final class LatencyHistogram {
+
+    /** The number of bits of a value below its highest bit that choose its bucket */
+    private static final int SUB_BUCKET_BITS = 4;
+    /** The number of buckets each power of two is split into */
+    public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * The number of buckets: values below 2 * SUB_BUCKETS have a bucket each, then each higher power of two up to that
+     * of Long.MAX_VALUE has SUB_BUCKETS
+     */
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    /** The count of values in each bucket */
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+    /** The count of all values */
+    private final LongAdder count = new LongAdder();
+    /** The sum of all values */
+    private final LongAdder sum = new LongAdder();
+    /** The largest value */
+    private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+    /**
+     * Constructor for an empty LatencyHistogram.
+     */
+    public LatencyHistogram() {
+        for (int b = 0; b < BUCKETS; b++) counts[b] = new LongAdder();
+    }
+
+    /**
+     * Method to record a value; negative values are recorded as 0.
+     *
+     * @param value The value.
+     */
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts[bucket(value)].increment();
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Method to return the bucket of a value.
+     *
+     * @param value The value, at least 0.
+     * @return the bucket.
+     */
+    static int bucket(long value) {
+        if (value < 2 * SUB_BUCKETS) return (int) value;
+        int highestBit = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int shift = highestBit - SUB_BUCKET_BITS;
+        // The top SUB_BUCKET_BITS + 1 bits of the value, from SUB_BUCKETS to 2 * SUB_BUCKETS - 1, are the sub-bucket
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    /**
+     * Method to return the largest value of a bucket.
+     *
+     * @param bucket The bucket.
+     * @return the largest value counted in the bucket.
+     */
+    static long highestValue(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long subBucket = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * Method to return the value at a percentile: the value no more than percentile percent of the values are above,
+     * to within the width of its bucket, and never above the largest value.
+     *
+     * @param percentile The percentile, from 0 to 100.
+     * @return the value, or 0 if nothing has been recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            snapshot[b] = counts[b].sum();
+            total += snapshot[b];
+        }
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += snapshot[b];
+            if (seen >= rank) return Math.min(highestValue(b), getMax());
+        }
+        return getMax();
+    }
+
+    /** Getter for the number of values recorded */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /** Getter for the mean of the values recorded, or 0 if there are none */
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : sum.sum() / (double) n;
+    }
+
+    /** Getter for the largest value recorded */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Method to describe the distribution of the values, taken to be nanoseconds, in microseconds.
+     *
+     * @return the count, mean, percentiles and largest value.
+     */
+    public String toText() {
+        return String.format("count=%d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus",
+                getCount(), getMean() / 1e3, getValueAtPercentile(50) / 1e3, getValueAtPercentile(90) / 1e3,
+                getValueAtPercentile(99) / 1e3, getValueAtPercentile(99.9) / 1e3, getMax() / 1e3);
+    }
+
+    @Override
+    public String toString() {
+        return toText();
+    }
+}
@@ -0,0 +1,145 @@
+package metrics;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A class to collect metrics of training: how fast records are parsed, and how building trees splits its time between
+ * evaluating the splits of each node and partitioning its rows between the branches.
+ * The counters are LongAdders, so trees built concurrently record without serializing on shared counters.
+ */
+public class TrainingMetrics implements TrainingMetricsMXBean {
+
+    /** The number of records parsed */
+    private final LongAdder recordsParsed = new LongAdder();
+    /** The time spent parsing, in nanoseconds */
+    private final LongAdder parseNanos = new LongAdder();
+    /** The time spent evaluating the splits of each node, in nanoseconds */
+    private final LatencyHistogram splitEvaluation = new LatencyHistogram();
+    /** The total time spent evaluating splits, in nanoseconds */
+    private final LongAdder splitEvaluationNanos = new LongAdder();
+    /** The total time spent partitioning nodes, in nanoseconds */
+    private final LongAdder partitionNanos = new LongAdder();
+    /** The number of trees built */
+    private final LongAdder treesBuilt = new LongAdder();
+    /** The total time spent building trees, in nanoseconds */
+    private final LongAdder trainingNanos = new LongAdder();
+
+    /**
+     * Method to record records parsed.
+     *
+     * @param records The number of records.
+     * @param nanos The time taken to parse them, in nanoseconds.
+     */
+    public void recordParse(long records, long nanos) {
+        recordsParsed.add(records);
+        parseNanos.add(nanos);
+    }
+
+    /**
+     * Method to record the evaluation of the splits of a node.
+     *
+     * @param nanos The time taken, in nanoseconds.
+     */
+    public void recordSplitEvaluation(long nanos) {
+        splitEvaluation.record(nanos);
+        splitEvaluationNanos.add(nanos);
+    }
+
+    /**
+     * Method to record the partitioning of a node's rows between its branches.
+     *
+     * @param nanos The time taken, in nanoseconds.
+     */
+    public void recordPartition(long nanos) {
+        partitionNanos.add(nanos);
+    }
+
+    /**
+     * Method to record a tree built.
+     *
+     * @param nanos The time taken, in nanoseconds.
+     */
+    public void recordTree(long nanos) {
+        treesBuilt.increment();
+        trainingNanos.add(nanos);
+    }
+
+    /**
+     * Method to register these metrics with the platform MBean server.
+     *
+     * @param name The name to register them under.
+     * @return the name of the registered MBean.
+     * @throws JMException if the metrics cannot be registered, such as when the name is taken.
+     */
+    public ObjectName register(String name) throws JMException {
+        return Jmx.register(this, "TrainingMetrics", name);
+    }
+
+    /** Getter for the time spent evaluating the splits of each node, in nanoseconds */
+    public LatencyHistogram getSplitEvaluationHistogram() {
+        return splitEvaluation;
+    }
+
+    @Override
+    public long getRecordsParsed() {
+        return recordsParsed.sum();
+    }
+
+    @Override
+    public double getRecordsParsedPerSecond() {
+        long nanos = parseNanos.sum();
+        return nanos == 0 ? 0 : recordsParsed.sum() * 1e9 / nanos;
+    }
+
+    @Override
+    public long getNodesEvaluated() {
+        return splitEvaluation.getCount();
+    }
+
+    @Override
+    public double getSplitEvaluationMillis() {
+        return splitEvaluationNanos.sum() / 1e6;
+    }
+
+    @Override
+    public double getSplitEvaluationP50Micros() {
+        return splitEvaluation.getValueAtPercentile(50) / 1e3;
+    }
+
+    @Override
+    public double getSplitEvaluationP99Micros() {
+        return splitEvaluation.getValueAtPercentile(99) / 1e3;
+    }
+
+    @Override
+    public double getPartitionMillis() {
+        return partitionNanos.sum() / 1e6;
+    }
+
+    @Override
+    public long getTreesBuilt() {
+        return treesBuilt.sum();
+    }
+
+    @Override
+    public double getTrainingMillis() {
+        return trainingNanos.sum() / 1e6;
+    }
+
+    @Override
+    public String toText() {
+        return String.format("Records parsed: %d (%.0f per second)%n", getRecordsParsed(), getRecordsParsedPerSecond())
+                + String.format("Trees built: %d in %.3f ms%n", getTreesBuilt(), getTrainingMillis())
+                + String.format("Split evaluation: %.3f ms over %d nodes%n", getSplitEvaluationMillis(),
+                getNodesEvaluated())
+                + String.format("Split evaluation per node: %s%n", splitEvaluation.toText())
+                + String.format("Partitioning: %.3f ms%n", getPartitionMillis());
+    }
+
+    @Override
+    public String toString() {
+        return toText();
+    }
+}
@@ -0,0 +1,41 @@
+package metrics;
+
+/**
+ * An interface for the attributes of TrainingMetrics exported over JMX.
+ */
+public interface TrainingMetricsMXBean {
+
+    /** Getter for the number of records parsed */
+    long getRecordsParsed();
+
+    /** Getter for the records parsed per second of parsing */
+    double getRecordsParsedPerSecond();
+
+    /** Getter for the number of nodes whose splits were evaluated */
+    long getNodesEvaluated();
+
+    /** Getter for the total time spent evaluating splits, in milliseconds */
+    double getSplitEvaluationMillis();
+
+    /** Getter for the median time spent evaluating the splits of a node, in microseconds */
+    double getSplitEvaluationP50Micros();
+
+    /** Getter for the 99th percentile time spent evaluating the splits of a node, in microseconds */
+    double getSplitEvaluationP99Micros();
+
+    /** Getter for the total time spent partitioning nodes, in milliseconds */
+    double getPartitionMillis();
+
+    /** Getter for the number of trees built */
+    long getTreesBuilt();
+
+    /** Getter for the total time spent building trees, in milliseconds */
+    double getTrainingMillis();
+
+    /**
+     * Method to describe every metric as text.
+     *
+     * @return the snapshot.
+     */
+    String toText();
+}
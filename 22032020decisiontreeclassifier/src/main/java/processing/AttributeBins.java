@@ -0,0 +1,125 @@
+package processing;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+/**
+ * A class to quantize the values of a numeric or categorical attribute into at most MAX_BINS bins, so the best split
+ * of a node can be found from a histogram of its rows over the bins, at a cost of O(bins), rather than by sorting the
+ * node's values.
+ * A numeric attribute with at most MAX_BINS distinct values has a bin for each value; otherwise each bin holds about
+ * the same number of values, with the edges between bins falling between distinct values. Bin b holds the values above
+ * the upper bound of bin b - 1 up to and including its own upper bound, and values above the last upper bound fall in
+ * the last bin. A categorical attribute has a bin for each category.
+ */
+public final class AttributeBins {
+
+    /** The largest number of bins, so a bin fits in an unsigned byte */
+    public static final int MAX_BINS = 256;
+
+    /** The upper bound of each bin of a numeric attribute, in ascending order, or null for a categorical attribute */
+    private final double[] upperBounds;
+    /** The number of bins */
+    private final int binCount;
+
+    /**
+     * Constructor for AttributeBins.
+     *
+     * @param upperBounds The upper bound of each bin of a numeric attribute, or null for a categorical attribute.
+     * @param binCount The number of bins.
+     */
+    private AttributeBins(double[] upperBounds, int binCount) {
+        this.upperBounds = upperBounds;
+        this.binCount = binCount;
+    }
+
+    /**
+     * Method to create the bins of an attribute from the values it takes in a data set. The bins depend only on the
+     * values, not their order, so the same instances give the same bins however they are held.
+     *
+     * @param schema The schema of the data.
+     * @param attribute The index of a numeric or categorical attribute.
+     * @param values The value of the attribute for each instance; for a categorical attribute, its category.
+     * @param count The number of values.
+     * @return the bins.
+     */
+    public static AttributeBins of(Schema schema, int attribute, double[] values, int count) {
+        return of(schema, attribute, DoubleBuffer.wrap(values), count);
+    }
+
+    /**
+     * Method to create the bins of an attribute from the values it takes in a data set, held in a buffer such as a
+     * column of a mapped file.
+     *
+     * @param schema The schema of the data.
+     * @param attribute The index of a numeric or categorical attribute.
+     * @param values The value of the attribute for each instance; for a categorical attribute, its category.
+     * @param count The number of values.
+     * @return the bins.
+     */
+    public static AttributeBins of(Schema schema, int attribute, DoubleBuffer values, int count) {
+        if (schema.getAttributeType(attribute) == Schema.AttributeType.CATEGORICAL) {
+            return ofCategories(schema, attribute);
+        }
+        if (count == 0) return new AttributeBins(new double[] { 0 }, 1);
+
+        double[] sorted = new double[count];
+        values.get(0, sorted);
+        Arrays.sort(sorted);
+        double[] distinct = new double[count];
+        int distinctCount = 0;
+        for (double value : sorted) {
+            if (distinctCount == 0 || value != distinct[distinctCount - 1]) distinct[distinctCount++] = value;
+        }
+        if (distinctCount <= MAX_BINS) return new AttributeBins(Arrays.copyOf(distinct, distinctCount), distinctCount);
+
+        // Too many distinct values: end each bin at the value closest to the next quantile
+        double[] bounds = new double[MAX_BINS];
+        int binCount = 0;
+        for (int b = 1; b <= MAX_BINS; b++) {
+            double bound = sorted[(int) ((long) b * count / MAX_BINS) - 1];
+            if (binCount == 0 || bound > bounds[binCount - 1]) bounds[binCount++] = bound;
+        }
+        return new AttributeBins(Arrays.copyOf(bounds, binCount), binCount);
+    }
+
+    /**
+     * Method to create the bins of a categorical attribute, one for each of its categories.
+     *
+     * @param schema The schema of the data.
+     * @param attribute The index of a categorical attribute.
+     * @return the bins.
+     */
+    public static AttributeBins ofCategories(Schema schema, int attribute) {
+        return new AttributeBins(null, Math.max(1, schema.getCategoryNames(attribute).size()));
+    }
+
+    /**
+     * Method to return the bin of a value.
+     *
+     * @param value The value of a numeric attribute, or the category of a categorical attribute.
+     * @return the bin.
+     */
+    public int getBin(double value) {
+        if (upperBounds == null) return Math.min((int) value, binCount - 1);
+        int bin = Arrays.binarySearch(upperBounds, value);
+        // A value between two bounds falls in the bin of the higher bound
+        if (bin < 0) bin = -bin - 1;
+        return Math.min(bin, binCount - 1);
+    }
+
+    /** Getter for the number of bins */
+    public int getBinCount() {
+        return binCount;
+    }
+
+    /** Getter for whether the bins are of a numeric attribute */
+    public boolean isNumeric() {
+        return upperBounds != null;
+    }
+
+    /** Getter for the upper bound of a bin of a numeric attribute */
+    public double getUpperBound(int bin) {
+        return upperBounds[bin];
+    }
+}
@@ -0,0 +1,596 @@
+package processing;
+
+import metrics.TrainingMetrics;
+import tree.BaseNode;
+import tree.LeafNode;
+import tree.Node;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A class to build a decision tree from a ColumnarDataset.
+ * The instances at each node are held as a bitset over the rows, so the counts needed for the impurity of a split
+ * come from population counts of the node, attribute and class bitsets rather than from per-node collections.
+ * The builder can optionally run in a ForkJoinPool, where the subtrees and attribute scores of nodes with at least
+ * parallelThreshold rows are computed concurrently; the tree built is the same either way.
+ * Any number of classes is supported. Splits are chosen by a SplitCriterion over the class counts either side, Gini
+ * impurity by default.
+ * Rows can be given whole-number weights, such as bootstrap sample counts, held as bit-planes: the weighted count of a
+ * bitset is then the sum over planes k of popcount(bitset AND plane k) shifted left by k. A deduplicated data set
+ * brings its own weights, so each distinct row counts as many times as it occurred.
+ * Numeric and categorical attributes are scored from a histogram of the node's rows over the attribute's bins, built in
+ * one pass over the rows, and split as HistogramSplit finds. Unlike a boolean attribute, they can be split on again
+ * further down the tree.
+ * The tree can be built over a subset of the rows, such as the training folds of a cross-validation, and pre-pruned:
+ * limited in depth, in the smallest number of rows a node needs to be split and either side of a split, and in the
+ * smallest improvement a split must make to the criterion's score of its node.
+ */
+public class BitsetTreeBuilder {
+
+    /** The default smallest node, in rows, whose work is split into concurrent tasks */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 4096;
+
+    /** The data to build the tree from */
+    private ColumnarDataset data;
+    /** The class name of the leaf returned for an empty set of instances */
+    private String defaultClass;
+    /** The probability of the leaf returned for an empty set of instances */
+    private float defaultProbability;
+    /** The pool to build the tree in, or null to build it on the calling thread */
+    private ForkJoinPool pool;
+    /** The smallest node, in rows, whose work is split into concurrent tasks */
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+    /** The bit-planes of the row weights, the data's own by default, or null for every row to have a weight of 1 */
+    private long[][] weightPlanes;
+    /** The number of attributes randomly chosen as candidates at each split, or 0 to consider them all */
+    private int attributesPerSplit;
+    /** The seed for choosing candidate attributes */
+    private long seed;
+    /** The criterion splits are chosen by */
+    private SplitCriterion criterion = SplitCriterion.Standard.GINI;
+    /** The bitset of the rows to build the tree over, or null for all rows */
+    private long[] rows;
+    /** The largest depth of a split, or 0 for no limit */
+    private int maxDepth;
+    /** The smallest weighted number of rows either side of a split, or 0 for no limit */
+    private int minLeafSize;
+    /** The smallest weighted number of rows in a node that is split, or 0 for no limit */
+    private int minSamplesSplit;
+    /** The smallest decrease from a node's score to the score of its split, or 0 for no limit */
+    private float minImpurityDecrease;
+    /** The metrics to record the time spent on each node in, or null to record none */
+    private TrainingMetrics metrics;
+    /** The statistics to record each split in, or null to record none */
+    private SplitStatistics statistics;
+    /** A count of no rows of each class, the empty side a node is scored with on its own; it is never written */
+    private int[] noCounts;
+
+    /**
+     * Constructor for a BitsetTreeBuilder.
+     *
+     * @param data The data to build the tree from.
+     * @param defaultClass The class name to use for leaf nodes with no instances.
+     * @param defaultProbability The probability to use for leaf nodes with no instances.
+     */
+    public BitsetTreeBuilder(ColumnarDataset data, String defaultClass, float defaultProbability) {
+        this.data = data;
+        this.defaultClass = defaultClass;
+        this.defaultProbability = defaultProbability;
+        weightPlanes = data.getWeightPlanes();
+        noCounts = new int[data.getClassCount()];
+    }
+
+    /**
+     * Setter to build the tree concurrently in a pool.
+     *
+     * @param pool The pool to build the tree in.
+     */
+    public void setParallel(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Setter for the smallest node, in rows, whose work is split into concurrent tasks.
+     *
+     * @param parallelThreshold The number of rows.
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Setter for the row weights, as bit-planes: bit i of plane k is bit k of the weight of row i. These replace any
+     * weights of the data. Rows with a weight of 0 are left out of the tree.
+     *
+     * @param weightPlanes The bit-planes of the row weights.
+     */
+    public void setRowWeights(long[][] weightPlanes) {
+        this.weightPlanes = weightPlanes;
+    }
+
+    /**
+     * Setter to choose a random subset of the unused attributes as the candidates for each split.
+     *
+     * @param attributesPerSplit The number of candidate attributes at each split.
+     * @param seed The seed for choosing candidates; the same seed builds the same tree, in a pool or not.
+     */
+    public void setAttributeSampling(int attributesPerSplit, long seed) {
+        this.attributesPerSplit = attributesPerSplit;
+        this.seed = seed;
+    }
+
+    /**
+     * Setter for the criterion splits are chosen by.
+     *
+     * @param criterion The criterion.
+     */
+    public void setCriterion(SplitCriterion criterion) {
+        this.criterion = criterion;
+    }
+
+    /**
+     * Setter to build the tree over a subset of the rows, without copying the data.
+     *
+     * @param rows The bitset of the rows to build the tree over.
+     */
+    public void setRows(long[] rows) {
+        this.rows = rows;
+    }
+
+    /**
+     * Setter for the largest depth of the tree; nodes at this depth become leaves with their most frequent class.
+     *
+     * @param maxDepth The largest number of splits from the root to a leaf, or 0 for no limit.
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Setter for the smallest number of rows either side of a split; splits leaving fewer on a side are not chosen.
+     *
+     * @param minLeafSize The smallest weighted number of rows, or 0 for no limit.
+     */
+    public void setMinLeafSize(int minLeafSize) {
+        this.minLeafSize = minLeafSize;
+    }
+
+    /**
+     * Setter for the smallest number of rows a node needs to be split; smaller nodes become leaves.
+     *
+     * @param minSamplesSplit The smallest weighted number of rows, or 0 for no limit.
+     */
+    public void setMinSamplesSplit(int minSamplesSplit) {
+        this.minSamplesSplit = minSamplesSplit;
+    }
+
+    /**
+     * Setter for the smallest improvement a split must make: the score of a node as a single side, less the score of
+     * its best split. Nodes whose best split improves on them by less become leaves.
+     *
+     * @param minImpurityDecrease The smallest decrease in score, or 0 for no limit.
+     */
+    public void setMinImpurityDecrease(float minImpurityDecrease) {
+        this.minImpurityDecrease = minImpurityDecrease;
+    }
+
+    /**
+     * Setter for the metrics to record the tree built, and the time spent evaluating and partitioning each node, in.
+     *
+     * @param metrics The metrics, or null to record none.
+     */
+    public void setMetrics(TrainingMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Setter for the statistics to record each split made in, from the class counts already taken to choose it.
+     *
+     * @param statistics The statistics, of the schema of the data, or null to record none.
+     */
+    public void setSplitStatistics(SplitStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    /**
+     * Method to build the decision tree over the rows of the data, or the subset of them set by setRows.
+     *
+     * @return a BaseNode instance which is the decision tree.
+     * @throws InvalidDataException if invalid data is passed to a LeafNode constructor.
+     */
+    public BaseNode build() throws InvalidDataException {
+        boolean[] usedAttributes = new boolean[data.getAttributeNames().size()];
+        long[] rows = this.rows == null ? data.allRows() : this.rows.clone();
+        if (weightPlanes != null) {
+            // Only rows with a weight are in the tree
+            long[] weighted = new long[rows.length];
+            for (long[] plane : weightPlanes) {
+                for (int i = 0; i < rows.length; i++) weighted[i] |= plane[i];
+            }
+            for (int i = 0; i < rows.length; i++) rows[i] &= weighted[i];
+        }
+        SplittableRandom random = attributesPerSplit > 0 ? new SplittableRandom(seed) : null;
+        long start = System.nanoTime();
+        BaseNode tree;
+        if (pool == null) {
+            tree = buildTree(rows, usedAttributes, random, 0);
+        }
+        else {
+            try {
+                tree = pool.invoke(new SubtreeTask(rows, usedAttributes, random, 0));
+            } catch (UncheckedInvalidDataException e) {
+                throw e.getCause();
+            }
+        }
+        if (metrics != null) metrics.recordTree(System.nanoTime() - start);
+        return tree;
+    }
+
+    /**
+     * Method to build a decision tree for the rows set in a bitset.
+     * This follows the same steps as Classifier.buildTree so that both build the same tree.
+     *
+     * @param nodeMask The bitset of rows in this node.
+     * @param usedAttributes Flags for the attributes already used above this node; this is never modified.
+     * @param random The source of candidate attributes for this subtree, or null to consider them all.
+     * @param depth The number of splits above this node.
+     * @return a BaseNode instance which is the decision tree.
+     * @throws InvalidDataException if invalid data is passed to a LeafNode constructor.
+     */
+    private BaseNode buildTree(long[] nodeMask, boolean[] usedAttributes, SplittableRandom random, int depth)
+            throws InvalidDataException {
+        int total = count(nodeMask);
+        if (depth == 0 && statistics != null) statistics.recordTree(total);
+        if (total == 0) return new LeafNode(defaultClass, defaultProbability);
+
+        int[] classCounts = countClasses(nodeMask, total);
+        // The most frequent class, favouring the earliest class value on a tie
+        int mostFrequent = 0;
+        for (int c = 1; c < classCounts.length; c++) {
+            if (classCounts[c] > classCounts[mostFrequent]) mostFrequent = c;
+        }
+        String mostFrequentClass = data.getSchema().getClassName((byte) mostFrequent);
+        if (classCounts[mostFrequent] == total) return new LeafNode(mostFrequentClass, 1);
+        // Too deep, or too small for both sides of a split to hold enough rows: return a most probable leaf
+        if ((maxDepth > 0 && depth >= maxDepth) || total < 2 * minLeafSize || total < minSamplesSplit) {
+            return new LeafNode(mostFrequentClass, classCounts[mostFrequent] / (float) total);
+        }
+
+        long start = metrics == null ? 0 : System.nanoTime();
+        boolean[] candidates = getCandidates(usedAttributes, random);
+        boolean parallel = isParallel(total);
+        float[] impurities = new float[candidates.length];
+        HistogramSplit[] splits = new HistogramSplit[candidates.length];
+        if (parallel) {
+            ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[candidates.length];
+            for (int a = 0; a < candidates.length; a++) {
+                final int attribute = a;
+                tasks[a] = new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        if (candidates[attribute]) {
+                            score(nodeMask, attribute, classCounts, impurities, splits, new int[classCounts.length],
+                                    new int[classCounts.length]);
+                        }
+                    }
+                };
+            }
+            ForkJoinTask.invokeAll(tasks);
+        }
+        else {
+            // The attributes are scored one after another, so they can share the arrays of counts either side
+            int[] trueCounts = new int[classCounts.length];
+            int[] falseCounts = new int[classCounts.length];
+            for (int a = 0; a < candidates.length; a++) {
+                if (candidates[a]) score(nodeMask, a, classCounts, impurities, splits, trueCounts, falseCounts);
+            }
+        }
+
+        // Pick the first attribute with the lowest score, in attribute order, whichever way they were scored
+        float bestWeightedImpurity = Float.POSITIVE_INFINITY;
+        int bestAttribute = -1;
+        for (int a = 0; a < candidates.length; a++) {
+            if (candidates[a] && impurities[a] < bestWeightedImpurity) {
+                bestWeightedImpurity = impurities[a];
+                bestAttribute = a;
+            }
+        }
+
+        // A split that improves too little on the node, scored as a single side, is not made
+        if (bestAttribute >= 0 && (minImpurityDecrease > 0 || statistics != null)) {
+            float nodeScore = criterion.score(classCounts, noCounts);
+            if (nodeScore - bestWeightedImpurity < minImpurityDecrease) bestAttribute = -1;
+            else if (statistics != null) statistics.recordSplit(bestAttribute, total, nodeScore, bestWeightedImpurity);
+        }
+
+        if (metrics != null) {
+            long evaluated = System.nanoTime();
+            metrics.recordSplitEvaluation(evaluated - start);
+            start = evaluated;
+        }
+
+        // No attributes left: return a leaf with the most probable class
+        if (bestAttribute < 0) return new LeafNode(mostFrequentClass, classCounts[mostFrequent] / (float) total);
+
+        HistogramSplit split = splits[bestAttribute];
+        boolean[] childUsedAttributes = usedAttributes;
+        long[] trueMask = new long[nodeMask.length];
+        long[] falseMask = new long[nodeMask.length];
+        if (split == null) {
+            childUsedAttributes = usedAttributes.clone();
+            childUsedAttributes[bestAttribute] = true;
+            LongBuffer column = data.getAttributeColumn(bestAttribute);
+            for (int i = 0; i < nodeMask.length; i++) {
+                trueMask[i] = nodeMask[i] & column.get(i);
+                falseMask[i] = nodeMask[i] & ~column.get(i);
+            }
+        }
+        else {
+            ByteBuffer binColumn = data.getBinColumn(bestAttribute);
+            for (int i = 0; i < nodeMask.length; i++) {
+                for (long word = nodeMask[i]; word != 0; word &= word - 1) {
+                    int row = (i << 6) + Long.numberOfTrailingZeros(word);
+                    if (split.isTrue(binColumn.get(row) & 0xff)) trueMask[i] |= word & -word;
+                }
+                falseMask[i] = nodeMask[i] & ~trueMask[i];
+            }
+        }
+        if (metrics != null) metrics.recordPartition(System.nanoTime() - start);
+
+        // The left subtree draws from a split of the random source, so it is the same whichever thread builds it
+        SplittableRandom leftRandom = random == null ? null : random.split();
+        BaseNode left;
+        BaseNode right;
+        if (parallel) {
+            SubtreeTask leftTask = new SubtreeTask(trueMask, childUsedAttributes, leftRandom, depth + 1);
+            leftTask.fork();
+            right = buildTree(falseMask, childUsedAttributes, random, depth + 1);
+            left = leftTask.join();
+        }
+        else {
+            left = buildTree(trueMask, childUsedAttributes, leftRandom, depth + 1);
+            right = buildTree(falseMask, childUsedAttributes, random, depth + 1);
+        }
+        if (split != null) {
+            return split.toNode(data.getSchema(), bestAttribute, data.getAttributeBins(bestAttribute), left, right);
+        }
+        return new Node(data.getSchema(), data.getSchema().getAttributeName(bestAttribute), left, right);
+    }
+
+    /**
+     * Method to choose the candidate attributes for a split.
+     *
+     * @param usedAttributes Flags for the attributes already used above the node.
+     * @param random The source of candidate attributes, or null to consider all unused attributes.
+     * @return flags for the candidate attributes.
+     */
+    private boolean[] getCandidates(boolean[] usedAttributes, SplittableRandom random) {
+        boolean[] candidates = new boolean[usedAttributes.length];
+        int[] unused = new int[usedAttributes.length];
+        int unusedCount = 0;
+        for (int a = 0; a < usedAttributes.length; a++) {
+            if (!usedAttributes[a]) unused[unusedCount++] = a;
+        }
+        int candidateCount = random == null ? unusedCount : Math.min(attributesPerSplit, unusedCount);
+        // Partial Fisher-Yates shuffle: the first candidateCount entries become a random subset
+        for (int i = 0; i < candidateCount; i++) {
+            if (random != null) {
+                int j = i + random.nextInt(unusedCount - i);
+                int swap = unused[i];
+                unused[i] = unused[j];
+                unused[j] = swap;
+            }
+            candidates[unused[i]] = true;
+        }
+        return candidates;
+    }
+
+    /**
+     * Method to check whether the work for a node should be split into concurrent tasks.
+     *
+     * @param rows The number of rows in the node.
+     * @return true if the builder is in a pool and the node is large enough.
+     */
+    private boolean isParallel(int rows) {
+        return pool != null && rows >= parallelThreshold && ForkJoinTask.inForkJoinPool();
+    }
+
+    /**
+     * Method to count the weighted rows in a bitset of rows.
+     *
+     * @param a The bitset of rows.
+     * @return the total weight of the rows in a.
+     */
+    private int count(long[] a) {
+        if (weightPlanes == null) return ColumnarDataset.popcount(a, a);
+        int count = 0;
+        for (int k = 0; k < weightPlanes.length; k++) count += ColumnarDataset.popcount(a, weightPlanes[k]) << k;
+        return count;
+    }
+
+    /**
+     * Method to count the weighted rows common to a bitset of rows and a column.
+     *
+     * @param a The bitset of rows.
+     * @param b The column.
+     * @return the total weight of the rows in a AND b.
+     */
+    private int count(long[] a, LongBuffer b) {
+        if (weightPlanes == null) return ColumnarDataset.popcount(a, b);
+        int count = 0;
+        for (int k = 0; k < weightPlanes.length; k++) count += ColumnarDataset.popcount(a, b, weightPlanes[k]) << k;
+        return count;
+    }
+
+    /**
+     * Method to count the weighted rows common to a bitset of rows and two columns.
+     *
+     * @param a The bitset of rows.
+     * @param b The first column.
+     * @param c The second column.
+     * @return the total weight of the rows in a AND b AND c.
+     */
+    private int count(long[] a, LongBuffer b, LongBuffer c) {
+        if (weightPlanes == null) return ColumnarDataset.popcount(a, b, c);
+        int count = 0;
+        for (int k = 0; k < weightPlanes.length; k++) count += ColumnarDataset.popcount(a, b, c, weightPlanes[k]) << k;
+        return count;
+    }
+
+    /**
+     * Method to count the weighted rows of each class in a node.
+     * The last class is counted as what is left of the total, so two classes cost a single count as before.
+     *
+     * @param nodeMask The bitset of rows in the node.
+     * @param total The weighted number of rows in the node.
+     * @return the weighted count of each class value.
+     */
+    private int[] countClasses(long[] nodeMask, int total) {
+        int[] classCounts = new int[data.getClassCount()];
+        int rest = total;
+        for (int c = 0; c < classCounts.length - 1; c++) {
+            classCounts[c] = count(nodeMask, data.getClassColumn(c));
+            rest -= classCounts[c];
+        }
+        classCounts[classCounts.length - 1] = rest;
+        return classCounts;
+    }
+
+    /**
+     * Method to score splitting a node on a candidate attribute.
+     *
+     * @param nodeMask The bitset of rows in the node.
+     * @param attribute The index of the attribute.
+     * @param classCounts The weighted count of each class in the node.
+     * @param impurities The array to write the weighted impurity of the split to; attributes that cannot split the
+     *                   node are given an impurity of infinity.
+     * @param splits The array to write the split of a numeric or categorical attribute to.
+     * @param trueCounts An array to count each class on the true side of a split in.
+     * @param falseCounts An array to count each class on the false side of a split in.
+     */
+    private void score(long[] nodeMask, int attribute, int[] classCounts, float[] impurities,
+                       HistogramSplit[] splits, int[] trueCounts, int[] falseCounts) {
+        if (data.getSchema().getAttributeType(attribute) == Schema.AttributeType.BOOLEAN) {
+            impurities[attribute] = scoreAttribute(nodeMask, attribute, classCounts, trueCounts, falseCounts);
+            if (minLeafSize > 0 && (sum(trueCounts) < minLeafSize || sum(falseCounts) < minLeafSize)) {
+                impurities[attribute] = Float.POSITIVE_INFINITY;
+            }
+            return;
+        }
+        HistogramSplit split = HistogramSplit.find(data.getAttributeBins(attribute),
+                histogram(nodeMask, attribute, classCounts.length), classCounts, criterion, minLeafSize);
+        impurities[attribute] = split == null ? Float.POSITIVE_INFINITY : split.getScore();
+        splits[attribute] = split;
+    }
+
+    /**
+     * Method to sum a set of class counts.
+     *
+     * @param counts The count of each class.
+     * @return the sum.
+     */
+    private static int sum(int[] counts) {
+        int sum = 0;
+        for (int count : counts) sum += count;
+        return sum;
+    }
+
+    /**
+     * Method to count the weighted rows of each class in each bin of a numeric or categorical attribute.
+     *
+     * @param nodeMask The bitset of rows in the node.
+     * @param attribute The index of the attribute.
+     * @param classCount The number of class values.
+     * @return the weighted count of rows of class value c in bin b at index b * classCount + c.
+     */
+    private int[] histogram(long[] nodeMask, int attribute, int classCount) {
+        ByteBuffer binColumn = data.getBinColumn(attribute);
+        ByteBuffer classValues = data.getClassValues();
+        int[] histogram = new int[data.getAttributeBins(attribute).getBinCount() * classCount];
+        for (int i = 0; i < nodeMask.length; i++) {
+            for (long word = nodeMask[i]; word != 0; word &= word - 1) {
+                int row = (i << 6) + Long.numberOfTrailingZeros(word);
+                int weight = 1;
+                if (weightPlanes != null) {
+                    weight = 0;
+                    for (int k = 0; k < weightPlanes.length; k++) {
+                        weight |= (int) ((weightPlanes[k][i] >>> row) & 1L) << k;
+                    }
+                }
+                histogram[(binColumn.get(row) & 0xff) * classCount + classValues.get(row)] += weight;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Method to score splitting a node on a boolean attribute by the criterion.
+     *
+     * @param nodeMask The bitset of rows in the node.
+     * @param attribute The index of the attribute.
+     * @param classCounts The weighted count of each class in the node.
+     * @param trueCounts An array to count each class where the attribute is true in.
+     * @param falseCounts An array to count each class where the attribute is false in.
+     * @return the score.
+     */
+    private float scoreAttribute(long[] nodeMask, int attribute, int[] classCounts, int[] trueCounts,
+                                 int[] falseCounts) {
+        LongBuffer column = data.getAttributeColumn(attribute);
+        int last = classCounts.length - 1;
+        // The last class is what is left of the true rows, so two classes cost two counts
+        int trueRest = count(nodeMask, column);
+        for (int c = 0; c <= last; c++) {
+            trueCounts[c] = c < last ? count(nodeMask, column, data.getClassColumn(c)) : trueRest;
+            falseCounts[c] = classCounts[c] - trueCounts[c];
+            trueRest -= trueCounts[c];
+        }
+        return criterion.score(trueCounts, falseCounts);
+    }
+
+    /**
+     * Inner-class for the task of building a subtree in the pool.
+     */
+    private class SubtreeTask extends RecursiveTask<BaseNode> {
+
+        private static final long serialVersionUID = 1L;
+
+        /** The bitset of rows in the subtree's root */
+        private long[] nodeMask;
+        /** Flags for the attributes already used above the subtree */
+        private boolean[] usedAttributes;
+        /** The source of candidate attributes for the subtree, or null to consider them all */
+        private SplittableRandom random;
+        /** The number of splits above the subtree */
+        private int depth;
+
+        /**
+         * Constructor for a SubtreeTask.
+         *
+         * @param nodeMask The bitset of rows in the subtree's root.
+         * @param usedAttributes Flags for the attributes already used above the subtree.
+         * @param random The source of candidate attributes for the subtree, or null to consider them all.
+         * @param depth The number of splits above the subtree.
+         */
+        SubtreeTask(long[] nodeMask, boolean[] usedAttributes, SplittableRandom random, int depth) {
+            this.nodeMask = nodeMask;
+            this.usedAttributes = usedAttributes;
+            this.random = random;
+            this.depth = depth;
+        }
+
+        @Override
+        protected BaseNode compute() {
+            try {
+                return buildTree(nodeMask, usedAttributes, random, depth);
+            } catch (InvalidDataException e) {
+                throw new UncheckedInvalidDataException(e);
+            }
+        }
+    }
+}
@@ -1,15 +1,20 @@
 package processing;
 
-import org.apache.commons.io.FileUtils;
+import evaluation.TreeParameters;
+import metrics.InferenceMetrics;
+import metrics.TrainingMetrics;
 import tree.BaseNode;
+import tree.CompiledTree;
+import tree.ModelWriter;
 import tree.Node;
 import tree.LeafNode;
+import tree.TreeExporter;
 
 import java.io.IOException;
-import java.nio.charset.Charset;
+import java.nio.file.Paths;
 
-import java.io.File;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 
 /**
@@ -17,28 +22,40 @@ import java.util.stream.Collectors;
  */
 public class Classifier {
 
-    /** The training set of data */
-    private ArrayList<Patient> trainingData;
+    /** The schema of the training and test data */
+    private Schema schema;
+    /** The training set of data, with the number of rows each row stands for */
+    private ColumnarDataset trainingData;
     /** The test set of data */
-    private ArrayList<Patient> testData;
+    private ColumnarDataset testData;
     /** The number of correct classifications */
     private int correctClassifications;
     /** The decision tree classifier */
     private BaseNode treeClassifier;
-    /** Key for flagging instances where for an attribute, the attribute is true */
-    private static final String ATTR_TRUE_KEY = "Attribute is True";
-    /** Key for flagging instances where for an attribute, the attribute is true and the patient is flagged to live */
-    private static final String ATTR_TRUE_LIVE_KEY = "True Instance; Class \"" + Patient.LIVE_CLASS_KEY + "\"";
-    /** Key for flagging instances where for an attribute, the attribute is true and the patient is flagged to die */
-    private static final String ATTR_TRUE_DIE_KEY = "True Instance; Class \"" + Patient.DIE_CLASS_KEY + "\"";
-    /** Key for flagging instances where for an attribute, the attribute is false */
-    private static final String ATTR_FALSE_KEY = "Attribute is False";
-    /** Key for flagging instances where for an attribute, the attribute is false and the patient is flagged to live */
-    private static final String ATTR_FALSE_LIVE_KEY = "False Instance; Class \"" + Patient.LIVE_CLASS_KEY + "\"";
-    /** Key for flagging instances where for an attribute, the attribute is false and the patient is flagged to die */
-    private static final String ATTR_FALSE_DIE_KEY = "False Instance; Class \"" + Patient.DIE_CLASS_KEY + "\"";
+    /** The decision tree classifier compiled for classifying blocks of data */
+    private CompiledTree compiledClassifier;
     /** Most probable class information for training data set */
-    private MostProbableClass probableAcrossDataSet;
+    private ColumnarDataset.MostFrequentClass probableAcrossDataSet;
+    /** The bins of each numeric or categorical attribute over the training data, null for a boolean attribute */
+    private AttributeBins[] attributeBins;
+    /** The criterion splits are chosen by and the limits on the tree, which both engines apply */
+    private TreeParameters parameters;
+    /** The metrics to record training in, or null to record none */
+    private TrainingMetrics trainingMetrics;
+    /** The statistics of the splits made on each attribute while building the tree */
+    private SplitStatistics splitStatistics;
+
+    /**
+     * The engines available to build the decision tree.
+     */
+    public enum TrainingEngine {
+        /** Partition the instances, with the number of times each occurs, into a new HashMap at every node */
+        HASH_SET,
+        /** Hold the instances as bitset columns and count splits from their intersections */
+        BITSET,
+        /** As BITSET, building subtrees and scoring attributes of large nodes concurrently in a ForkJoinPool */
+        PARALLEL_BITSET
+    }
 
     /**
      * Constructor for a Classifier.
@@ -49,39 +66,340 @@ public class Classifier {
      * @throws InvalidDataException if any part of the data cannot be used to create a Patient instance.
      */
     public Classifier(String trainingDataUrl, String testDataUrl) throws IOException, InvalidDataException {
-        trainingData = getData(trainingDataUrl);
-        testData = getData(testDataUrl);
-        probableAcrossDataSet = getMostProbableClass(trainingData, trainingData.size());
-        treeClassifier = buildTree(new HashSet<>(trainingData), Patient.getAttributeNames());
-        treeClassifier.report("");
+        this(trainingDataUrl, testDataUrl, TrainingEngine.HASH_SET);
     }
 
     /**
-     * Classify the test set tied to this instance.
+     * Constructor for a Classifier which builds its tree with the given engine.
+     *
+     * @param trainingDataUrl The file path for the training data.
+     * @param testDataUrl The file path for the test data.
+     * @param engine The engine to build the decision tree with.
+     * @throws IOException if any file path is incorrect.
+     * @throws InvalidDataException if any part of the data cannot be used to create a Patient instance.
      */
-    public void classifyTestSet() {
+    public Classifier(String trainingDataUrl, String testDataUrl, TrainingEngine engine)
+            throws IOException, InvalidDataException {
+        this(getSchema(trainingDataUrl), trainingDataUrl, testDataUrl, engine);
+    }
 
-        correctClassifications = 0;
-        int testDataSize = testData.size();
+    /**
+     * Constructor for a Classifier which may read both data files through the binary caches kept next to them, training
+     * and classifying over their columns without a Patient per row; see DataCache.
+     *
+     * @param trainingDataUrl The file path for the training data.
+     * @param testDataUrl The file path for the test data.
+     * @param engine The engine to build the decision tree with.
+     * @param cached Whether to read each file from its cache when the cache is up to date, and otherwise write it.
+     * @throws IOException if any file path is incorrect.
+     * @throws InvalidDataException if any part of the data cannot be used to create a Patient instance.
+     */
+    public Classifier(String trainingDataUrl, String testDataUrl, TrainingEngine engine, boolean cached)
+            throws IOException, InvalidDataException {
+        this(getSchema(trainingDataUrl), trainingDataUrl, testDataUrl, engine, cached);
+    }
+
+    /**
+     * Constructor for a Classifier which reads both data files as columns with the schema of the training data.
+     *
+     * @param schema The schema of the training data.
+     * @param trainingDataUrl The file path for the training data.
+     * @param testDataUrl The file path for the test data.
+     * @param engine The engine to build the decision tree with.
+     * @param cached Whether to read each file from its cache when the cache is up to date, and otherwise write it.
+     * @throws IOException if any file path is incorrect.
+     * @throws InvalidDataException if any part of the data cannot be used to create a Patient instance.
+     */
+    private Classifier(Schema schema, String trainingDataUrl, String testDataUrl, TrainingEngine engine,
+                       boolean cached) throws IOException, InvalidDataException {
+        this(getColumns(trainingDataUrl, schema, null, cached), getColumns(testDataUrl, schema, null, cached), engine,
+                TreeParameters.DEFAULT, null);
+    }
+
+    /**
+     * Constructor for a Classifier which reads both data files concurrently with the schema of the training data.
+     *
+     * @param schema The schema of the training data.
+     * @param trainingDataUrl The file path for the training data.
+     * @param testDataUrl The file path for the test data.
+     * @param engine The engine to build the decision tree with.
+     * @throws IOException if any file path is incorrect.
+     * @throws InvalidDataException if any part of the data cannot be used to create a Patient instance.
+     */
+    private Classifier(Schema schema, String trainingDataUrl, String testDataUrl, TrainingEngine engine)
+            throws IOException, InvalidDataException {
+        this(schema, new ParallelPatientReader(ForkJoinPool.commonPool()).read(schema, trainingDataUrl, testDataUrl),
+                engine);
+    }
+
+    /**
+     * Constructor for a Classifier over the training and test data read together.
+     *
+     * @param schema The schema of the training and test data.
+     * @param data The training data followed by the test data.
+     * @param engine The engine to build the decision tree with.
+     * @throws InvalidDataException if invalid data is passed to a LeafNode constructor.
+     */
+    private Classifier(Schema schema, List<ArrayList<Patient>> data, TrainingEngine engine)
+            throws InvalidDataException {
+        this(schema, data.get(0), data.get(1), engine);
+    }
+
+    /**
+     * Constructor for a Classifier over data already read, of the schema of its first training row.
+     *
+     * @param trainingData The training data.
+     * @param testData The test data.
+     * @param engine The engine to build the decision tree with.
+     * @throws InvalidDataException if invalid data is passed to a LeafNode constructor.
+     */
+    public Classifier(ArrayList<Patient> trainingData, ArrayList<Patient> testData, TrainingEngine engine)
+            throws InvalidDataException {
+        this(trainingData.isEmpty() ? Schema.HEPATITIS : trainingData.get(0).getSchema(), trainingData, testData,
+                engine);
+    }
+
+    /**
+     * Constructor for a Classifier over data already read.
+     *
+     * @param schema The schema of the training and test data.
+     * @param trainingData The training data.
+     * @param testData The test data.
+     * @param engine The engine to build the decision tree with.
+     * @throws InvalidDataException if invalid data is passed to a LeafNode constructor.
+     */
+    public Classifier(Schema schema, ArrayList<Patient> trainingData, ArrayList<Patient> testData,
+                      TrainingEngine engine) throws InvalidDataException {
+        this(schema, trainingData, testData, engine, SplitCriterion.Standard.GINI);
+    }
+
+    /**
+     * Constructor for a Classifier over data already read which chooses splits by the given criterion.
+     *
+     * @param schema The schema of the training and test data.
+     * @param trainingData The training data.
+     * @param testData The test data.
+     * @param engine The engine to build the decision tree with.
+     * @param criterion The criterion to choose splits by.
+     * @throws InvalidDataException if invalid data is passed to a LeafNode constructor.
+     */
+    public Classifier(Schema schema, ArrayList<Patient> trainingData, ArrayList<Patient> testData,
+                      TrainingEngine engine, SplitCriterion criterion) throws InvalidDataException {
+        this(schema, trainingData, testData, engine, criterion, null);
+    }
 
-        // For each entry in the test data...
-        for (int x = 0; x < testDataSize; x++) {
+    /**
+     * Constructor for a Classifier over data already read which records its training in metrics.
+     *
+     * @param schema The schema of the training and test data.
+     * @param trainingData The training data.
+     * @param testData The test data.
+     * @param engine The engine to build the decision tree with.
+     * @param criterion The criterion to choose splits by.
+     * @param trainingMetrics The metrics to record the time spent on each node in, or null to record none.
+     * @throws InvalidDataException if invalid data is passed to a LeafNode constructor.
+     */
+    public Classifier(Schema schema, ArrayList<Patient> trainingData, ArrayList<Patient> testData,
+                      TrainingEngine engine, SplitCriterion criterion, TrainingMetrics trainingMetrics)
+            throws InvalidDataException {
+        this(schema, trainingData, testData, engine, new TreeParameters(0, 0, criterion), trainingMetrics);
+    }
 
-            Patient current = testData.get(x);
-            String expectedClass = current.getClassName();
+    /**
+     * Constructor for a Classifier over data already read which builds its tree with the given parameters.
+     *
+     * @param schema The schema of the training and test data.
+     * @param trainingData The training data.
+     * @param testData The test data.
+     * @param engine The engine to build the decision tree with.
+     * @param parameters The criterion to choose splits by and the limits to prune the tree by.
+     * @throws InvalidDataException if invalid data is passed to a LeafNode constructor.
+     */
+    public Classifier(Schema schema, ArrayList<Patient> trainingData, ArrayList<Patient> testData,
+                      TrainingEngine engine, TreeParameters parameters) throws InvalidDataException {
+        this(schema, trainingData, testData, engine, parameters, null);
+    }
 
-            // classify it...
-            String determinedClass = treeClassifier.classify(current);
-            if (expectedClass.equals(determinedClass)) correctClassifications++;
+    /**
+     * Constructor for a Classifier over data already read which builds its tree with the given parameters and
+     * records its training in metrics.
+     *
+     * @param schema The schema of the training and test data.
+     * @param trainingData The training data.
+     * @param testData The test data.
+     * @param engine The engine to build the decision tree with.
+     * @param parameters The criterion to choose splits by and the limits to prune the tree by.
+     * @param trainingMetrics The metrics to record the time spent on each node in, or null to record none.
+     * @throws InvalidDataException if invalid data is passed to a LeafNode constructor.
+     */
+    public Classifier(Schema schema, ArrayList<Patient> trainingData, ArrayList<Patient> testData,
+                      TrainingEngine engine, TreeParameters parameters, TrainingMetrics trainingMetrics)
+            throws InvalidDataException {
+        this(schema, trainingData, testData, engine, parameters, trainingMetrics, false);
+    }
+
+    /**
+     * Constructor for a Classifier over data already read which may train on each distinct row once, weighted by the
+     * number of times it occurs, e.g. for data with many duplicate rows; see ColumnarDataset.deduplicate.
+     *
+     * @param schema The schema of the training and test data.
+     * @param trainingData The training data.
+     * @param testData The test data.
+     * @param engine The engine to build the decision tree with.
+     * @param parameters The criterion to choose splits by and the limits to prune the tree by.
+     * @param trainingMetrics The metrics to record the time spent on each node in, or null to record none.
+     * @param deduplicate Whether to train on the distinct rows of the training data rather than every row.
+     * @throws InvalidDataException if invalid data is passed to a LeafNode constructor.
+     */
+    public Classifier(Schema schema, ArrayList<Patient> trainingData, ArrayList<Patient> testData,
+                      TrainingEngine engine, TreeParameters parameters, TrainingMetrics trainingMetrics,
+                      boolean deduplicate) throws InvalidDataException {
+        this(deduplicate ? ColumnarDataset.deduplicate(schema, trainingData)
+                        : new ColumnarDataset(schema, trainingData),
+                new ColumnarDataset(schema, testData), engine, parameters, trainingMetrics);
+    }
 
-            //System.out.println("Entry " + (x + 1) + "; Class: " + determinedClass);
-            // whilst comparing what the class should have been
-            //System.out.println("EXPECTED Class: " + expectedClass);
+    /**
+     * Constructor for a Classifier over data already held in columns, training on each row weighted by the number of
+     * rows it stands for; see ColumnarDataset.getWeight.
+     *
+     * @param trainingData The training data, of the schema of the test data.
+     * @param testData The test data.
+     * @param engine The engine to build the decision tree with.
+     * @param parameters The criterion to choose splits by and the limits to prune the tree by.
+     * @param trainingMetrics The metrics to record the time spent on each node in, or null to record none.
+     * @throws InvalidDataException if invalid data is passed to a LeafNode constructor.
+     */
+    public Classifier(ColumnarDataset trainingData, ColumnarDataset testData, TrainingEngine engine,
+                      TreeParameters parameters, TrainingMetrics trainingMetrics) throws InvalidDataException {
+        this.schema = trainingData.getSchema();
+        this.trainingData = trainingData;
+        this.testData = testData;
+        this.parameters = parameters;
+        this.trainingMetrics = trainingMetrics;
+        splitStatistics = new SplitStatistics(schema);
+        probableAcrossDataSet = trainingData.mostFrequentClass(trainingData.allRows());
+        if (engine == TrainingEngine.BITSET || engine == TrainingEngine.PARALLEL_BITSET) {
+            BitsetTreeBuilder builder = new BitsetTreeBuilder(trainingData, probableAcrossDataSet.getClassName(),
+                    probableAcrossDataSet.getProbability());
+            parameters.applyTo(builder);
+            builder.setMetrics(trainingMetrics);
+            builder.setSplitStatistics(splitStatistics);
+            if (engine == TrainingEngine.PARALLEL_BITSET) builder.setParallel(ForkJoinPool.commonPool());
+            treeClassifier = builder.build();
+        }
+        else {
+            // Each distinct row is an instance, counted by the rows it stands for
+            Map<Patient, Integer> instances = new HashMap<>();
+            for (int row = 0; row < trainingData.size(); row++) {
+                instances.merge(trainingData.getPatient(row), trainingData.getWeight(row), Integer::sum);
+            }
+            List<Integer> attributes = new ArrayList<>();
+            attributeBins = new AttributeBins[schema.getAttributeCount()];
+            for (int a = 0; a < schema.getAttributeCount(); a++) {
+                attributes.add(a);
+                // The bins come from the training rows, as those of the BITSET engine do
+                if (schema.getAttributeType(a) != Schema.AttributeType.BOOLEAN) {
+                    attributeBins[a] = trainingData.getAttributeBins(a);
+                }
+            }
+            long start = System.nanoTime();
+            splitStatistics.recordTree(trainingData.getTotalWeight());
+            treeClassifier = buildTree(instances, attributes, 0);
+            if (trainingMetrics != null) trainingMetrics.recordTree(System.nanoTime() - start);
         }
+        compiledClassifier = CompiledTree.compile(treeClassifier, schema);
+    }
+
+    /**
+     * Classify the test set tied to this instance.
+     */
+    public void classifyTestSet() {
+
+        int testDataSize = testData.size();
+        countCorrectClassifications();
         System.out.println("Correct Classifications " + correctClassifications);
         System.out.println("Finished with accuracy " + getAccuracy(testDataSize));
     }
 
+    /**
+     * Method to classify the test set tied to this instance without printing the results.
+     *
+     * @return the number of correct classifications.
+     */
+    public int countCorrectClassifications() {
+        // Classify the test data as one block, counting where the classes match what they should have been
+        correctClassifications = compiledClassifier.countCorrect(testData);
+        return correctClassifications;
+    }
+
+    /**
+     * Method to record the latency of classifying with this instance, the records classified and the leaves they
+     * reach, from now on.
+     *
+     * @return the metrics they are recorded in.
+     */
+    public InferenceMetrics enableInferenceMetrics() {
+        if (compiledClassifier.getMetrics() == null) compiledClassifier = compiledClassifier.instrument();
+        return compiledClassifier.getMetrics();
+    }
+
+    /** Getter for the metrics classifications are recorded in, null unless enabled */
+    public InferenceMetrics getInferenceMetrics() {
+        return compiledClassifier.getMetrics();
+    }
+
+    /** Getter for the metrics training was recorded in, null if none were given */
+    public TrainingMetrics getTrainingMetrics() {
+        return trainingMetrics;
+    }
+
+    /** Getter for the statistics of the splits made on each attribute while building the tree */
+    public SplitStatistics getSplitStatistics() {
+        return splitStatistics;
+    }
+
+    /**
+     * Method to write the decision tree, e.g. to a file or a response, rather than printing it as report does.
+     *
+     * @param format The format to write it in.
+     * @param out Where to write it.
+     * @throws IOException if the tree cannot be written.
+     */
+    public void exportTree(TreeExporter.Format format, Appendable out) throws IOException {
+        TreeExporter.write(treeClassifier, format, out);
+    }
+
+    /** Getter for the decision tree */
+    public BaseNode getTree() {
+        return treeClassifier;
+    }
+
+    /** Getter for the schema of the data */
+    public Schema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Method to save the decision tree as a model file, which MappedModel can classify from without retraining.
+     *
+     * @param fileUrl The file path to write the model to.
+     * @throws IOException if the file cannot be written.
+     */
+    public void saveModel(String fileUrl) throws IOException {
+        ModelWriter.writeTree(Paths.get(fileUrl), compiledClassifier);
+    }
+
+    /**
+     * Method to classify a block of data in one pass down the tree.
+     *
+     * @param block The rows to classify.
+     * @return the class value determined for each row, in row order; see Schema.getClassNames.
+     */
+    public byte[] classify(ColumnarDataset block) {
+        return compiledClassifier.classify(block);
+    }
+
     /**
      * Method to calculate accuracy of classifications.
      *
@@ -93,7 +411,7 @@ public class Classifier {
     }
 
     /**
-     * Method to convert data files into a list of Patient instances.
+     * Method to convert data files into a list of Patient instances, of the schema given by the file's headings.
      *
      * @param fileUrl The file path to the data.
      * @return a list of the data as Patient instances.
@@ -101,31 +419,111 @@ public class Classifier {
      * @throws InvalidDataException if any part of the data cannot be used to create a Patient instance.
      */
     public static ArrayList<Patient> getData(String fileUrl) throws IOException, InvalidDataException {
+        return getData(fileUrl, null);
+    }
+
+    /**
+     * Method to convert data files into a list of Patient instances of a known schema.
+     *
+     * @param fileUrl The file path to the data.
+     * @param schema The schema of the data, or null to read it from the file's headings.
+     * @return a list of the data as Patient instances.
+     * @throws IOException if the file path is incorrect.
+     * @throws InvalidDataException if any part of the data cannot be used to create a Patient instance.
+     */
+    public static ArrayList<Patient> getData(String fileUrl, Schema schema) throws IOException, InvalidDataException {
+        return getData(fileUrl, schema, null);
+    }
 
-        ArrayList<Patient> data = new ArrayList<>();
-        File file = new File(fileUrl);
+    /**
+     * Method to convert data files into a list of Patient instances of a known schema, recording the records parsed
+     * and the time taken in metrics.
+     *
+     * @param fileUrl The file path to the data.
+     * @param schema The schema of the data, or null to read it from the file's headings.
+     * @param metrics The metrics to record parsing in, or null to record none.
+     * @return a list of the data as Patient instances.
+     * @throws IOException if the file path is incorrect.
+     * @throws InvalidDataException if any part of the data cannot be used to create a Patient instance.
+     */
+    public static ArrayList<Patient> getData(String fileUrl, Schema schema, TrainingMetrics metrics)
+            throws IOException, InvalidDataException {
+        return getData(fileUrl, schema, metrics, false);
+    }
 
-        List<String> readData = FileUtils.readLines(file, Charset.defaultCharset());
-        // Remove headings in line 1
-        readData.remove(0);
+    /**
+     * Method to convert data files into a list of Patient instances of a known schema, recording the records parsed
+     * and the time taken in metrics, optionally through a binary cache kept next to the file; see DataCache.
+     *
+     * @param fileUrl The file path to the data.
+     * @param schema The schema of the data, or null to read it from the file's headings.
+     * @param metrics The metrics to record parsing in, or null to record none.
+     * @param cached Whether to read the data from its cache when the cache is up to date, and otherwise write it.
+     * @return a list of the data as Patient instances.
+     * @throws IOException if the file path is incorrect.
+     * @throws InvalidDataException if any part of the data cannot be used to create a Patient instance.
+     */
+    public static ArrayList<Patient> getData(String fileUrl, Schema schema, TrainingMetrics metrics, boolean cached)
+            throws IOException, InvalidDataException {
 
-        // For each line, create and add to the list a new Patient Instance
-        for(String datum : readData) {
-            data.add(new Patient(datum));
-        }
+        long start = System.nanoTime();
+
+        // The schema comes from the headings in line 1; the lines after are parsed in chunks across the common pool
+        ArrayList<Patient> data = cached ? DataCache.load(fileUrl, schema)
+                : new ParallelPatientReader(ForkJoinPool.commonPool()).read(schema, fileUrl).get(0);
+        if (metrics != null) metrics.recordParse(data.size(), System.nanoTime() - start);
 
         return data;
     }
 
+    /**
+     * Method to read a data file as columns of a known schema, recording the records parsed and the time taken in
+     * metrics, optionally mapped from a binary cache kept next to the file without a Patient per row; see DataCache.
+     *
+     * @param fileUrl The file path to the data.
+     * @param schema The schema of the data, or null to read it from the file's headings.
+     * @param metrics The metrics to record parsing in, or null to record none.
+     * @param cached Whether to read the data from its cache when the cache is up to date, and otherwise write it.
+     * @return the data as columns.
+     * @throws IOException if the file path is incorrect.
+     * @throws InvalidDataException if any part of the data cannot be used to create a Patient instance.
+     */
+    public static ColumnarDataset getColumns(String fileUrl, Schema schema, TrainingMetrics metrics, boolean cached)
+            throws IOException, InvalidDataException {
+        if (schema == null) schema = getSchema(fileUrl);
+        long start = System.nanoTime();
+        ColumnarDataset data = cached ? DataCache.loadColumns(fileUrl, schema)
+                : new ColumnarDataset(schema, new ParallelPatientReader(ForkJoinPool.commonPool()).read(schema, fileUrl)
+                        .get(0));
+        if (metrics != null) metrics.recordParse(data.size(), System.nanoTime() - start);
+        return data;
+    }
+
+    /**
+     * Method to read the schema of a data file from its headings.
+     *
+     * @param fileUrl The file path to the data.
+     * @return the schema.
+     * @throws IOException if the file path is incorrect.
+     * @throws InvalidDataException if the headings do not give a schema.
+     */
+    public static Schema getSchema(String fileUrl) throws IOException, InvalidDataException {
+        try (PatientReader reader = new PatientReader(fileUrl)) {
+            return reader.getSchema();
+        }
+    }
+
     /**
      * Method to build a decision tree based on a set of instances and a list of attributes.
      *
-     * @param instances The instances to use to build the tree.
-     * @param attributes The attributes to include in the tree.
+     * @param instances The distinct instances to use to build the tree, each with the number of times it occurs.
+     * @param attributes The indices of the attributes to include in the tree.
+     * @param depth The number of splits above this node.
      * @return a BaseNode instance which is the decision tree.
      * @throws InvalidDataException if invalid data is passed to a LeafNode constructor.
      */
-    private BaseNode buildTree(Set<Patient> instances, List<String> attributes) throws InvalidDataException {
+    private BaseNode buildTree(Map<Patient, Integer> instances, List<Integer> attributes, int depth)
+            throws InvalidDataException {
         // Following the algorithm...
         // If the set of instances is empty...
         if (instances.size() == 0) {
@@ -134,266 +532,158 @@ public class Classifier {
         }
 
         // If the instances are pure, return a leaf node with this class and a probability of 1
-        String pureClass = checkPurity(instances);
-        if (pureClass != null) return new LeafNode(pureClass, 1);
+        int classCount = schema.getClassCount();
+        int[] classCounts = new int[classCount];
+        int total = 0;
+        for (Map.Entry<Patient, Integer> entry : instances.entrySet()) {
+            classCounts[entry.getKey().getClassValue()] += entry.getValue();
+            total += entry.getValue();
+        }
+        for (int c = 0; c < classCount; c++) {
+            if (classCounts[c] == total) return new LeafNode(schema.getClassName((byte) c), 1);
+        }
+
+        // If the node is too deep, or too small for both sides of a split to hold enough instances...
+        int minLeafSize = parameters.getMinLeafSize();
+        if ((parameters.getMaxDepth() > 0 && depth >= parameters.getMaxDepth()) || total < 2 * minLeafSize
+                || total < parameters.getMinSamplesSplit()) {
+            return mostProbableLeaf(classCounts, total);
+        }
 
         // If the attributes list is empty...
         if (attributes.size() == 0) {
             // Return a leaf node with most probable class of the instances in this node
             // This code does not cater for randomness if there is a tie between class counts
-            MostProbableClass mostProbable = getMostProbableClass(instances, instances.size());
-            return new LeafNode(mostProbable.getClassName(), mostProbable.getProbability());
+            return mostProbableLeaf(classCounts, total);
         }
         else // find the best attribute
         {
-            // Max weighted impurity would be a decimal, less than 0.25
-            float bestWeightedImpurity = 1;
-            // The three variables we need to determine
-            String bestAttribute = "";
-            Set<Patient> bestInstsTrue = new HashSet<>();
-            Set<Patient> bestInstsFalse = new HashSet<>();
-
-            // Loop through the attributes
-            for (String attr : attributes) {
-                // For this attribute, have the 'true' and 'false' instances ready
-                ImpurityCheck impurities = prepareImpurityCheck(instances, attr);
-                // and calculate the weighted impurity
-                float weightedImpurity = impurities.getWeightedImpurity();
-
-                // If this is the most pure attribute we have seen so far, set the three variables for this attribute
-                if (weightedImpurity < bestWeightedImpurity) {
+            long start = trainingMetrics == null ? 0 : System.nanoTime();
+            // In one pass over the instances, count the instances of each class in each bin of every attribute
+            // A boolean attribute has two bins: bin 0 where it is true and bin 1 where it is false
+            int[] attributeIndices = attributes.stream().mapToInt(Integer::intValue).toArray();
+            int[][] counts = new int[attributeIndices.length][];
+            for (int i = 0; i < attributeIndices.length; i++) {
+                AttributeBins bins = attributeBins[attributeIndices[i]];
+                counts[i] = new int[(bins == null ? 2 : bins.getBinCount()) * classCount];
+            }
+            for (Map.Entry<Patient, Integer> entry : instances.entrySet()) {
+                Patient p = entry.getKey();
+                int c = p.getClassValue();
+                for (int i = 0; i < attributeIndices.length; i++) {
+                    int a = attributeIndices[i];
+                    AttributeBins bins = attributeBins[a];
+                    int bin = bins == null ? (p.getAttribute(a) ? 0 : 1) : bins.getBin(p.getValues()[a]);
+                    counts[i][bin * classCount + c] += entry.getValue();
+                }
+            }
+
+            // The two variables we need to determine
+            float bestScore = Float.POSITIVE_INFINITY;
+            int bestAttribute = -1;
+            // and the split of the best attribute if it is numeric or categorical
+            HistogramSplit bestSplit = null;
+
+            // Loop through the attributes, scoring each from its counts
+            SplitCriterion criterion = parameters.getCriterion();
+            int[] trueCounts = new int[classCount];
+            int[] falseCounts = new int[classCount];
+            for (int i = 0; i < attributeIndices.length; i++) {
+                int attr = attributeIndices[i];
+                if (attributeBins[attr] != null) {
+                    HistogramSplit split = HistogramSplit.find(attributeBins[attr], counts[i], classCounts, criterion,
+                            minLeafSize);
+                    if (split != null && split.getScore() < bestScore) {
+                        bestScore = split.getScore();
+                        bestAttribute = attr;
+                        bestSplit = split;
+                    }
+                    continue;
+                }
+                System.arraycopy(counts[i], 0, trueCounts, 0, classCount);
+                System.arraycopy(counts[i], classCount, falseCounts, 0, classCount);
+                // A side with too few instances cannot be a leaf, so the attribute cannot split the node
+                if (minLeafSize > 0 && (sum(trueCounts) < minLeafSize || sum(falseCounts) < minLeafSize)) continue;
+                float score = criterion.score(trueCounts, falseCounts);
+
+                // If this is the best attribute we have seen so far, set the variables for this attribute
+                if (score < bestScore) {
+                    bestScore = score;
                     bestAttribute = attr;
-                    bestInstsTrue = impurities.getTrueInstances();
-                    bestInstsFalse = impurities.getFalseInstances();
+                    bestSplit = null;
                 }
             }
 
-            // Calculate the left and right branches for the tree and return the tree
-            attributes.remove(bestAttribute);
-            BaseNode left = buildTree(bestInstsTrue, attributes);
-            BaseNode right = buildTree(bestInstsFalse, attributes);
-            return new Node(bestAttribute, left, right);
-        }
-    }
+            if (trainingMetrics != null) {
+                long evaluated = System.nanoTime();
+                trainingMetrics.recordSplitEvaluation(evaluated - start);
+                start = evaluated;
+            }
 
-    /**
-     * Method to go through a data set for a given attribute and have the necessary numbers and lists ready to calculate
-     * the impurity.
-     *
-     * @param data The data set to go through.
-     * @param attribute The attribute we are going through the data set with.
-     * @return An ImpurityCheck object with the true/false lists ready.
-     */
-    private ImpurityCheck prepareImpurityCheck(Set<Patient> data, String attribute) {
-
-        // Lists to hold the instances where for attribute, they are true and false
-        Set<Patient> trueInstances = new HashSet<>();
-        Set<Patient> falseInstances = new HashSet<>();
-        // The singular map to hold both the true and false instances (albeit separated)
-        Map<String, Set<Patient>> splits = new HashMap<>();
-        // A map to keep count of different permutations of the instance's attribute value and overall class
-        Map<String, Integer> counts = new HashMap<>();
-        // The counts to keep track of
-        // Attribute is true, class is 'live'
-        int trueInstsClassLiveCount = 0;
-        // Attribute is true, class is 'die'
-        int trueInstsClassDieCount = 0;
-        // Attribute is false, class is 'live'
-        int falseInstsClassLiveCount = 0;
-        // Attribute is false, class is 'die'
-        int falseInstsClassDieCount = 0;
-        // For each instance in the data...
-        for (Patient p : data) {
-            // determine the attribute value
-            boolean value = p.getAttribute(attribute);
-            // and get the class value
-            String className = p.getClassName();
-            boolean isLive = Patient.LIVE_CLASS_KEY.equals(className);
-            // Increment the appropriate count and add to appropriate list
-            if (value) {
-                trueInstances.add(p);
-                if (isLive) trueInstsClassLiveCount++;
-                else trueInstsClassDieCount++;
+            // If no attribute can split the instances, return a leaf node with their most probable class
+            if (bestAttribute < 0) {
+                return mostProbableLeaf(classCounts, total);
             }
-            else {
-                falseInstances.add(p);
-                if (isLive) falseInstsClassLiveCount++;
-                else falseInstsClassDieCount++;
+            // The node is scored as one side beside an empty one: the false counts are no longer needed, so are emptied
+            // A split that improves too little on the node is not made
+            Arrays.fill(falseCounts, 0);
+            float nodeScore = criterion.score(classCounts, falseCounts);
+            if (nodeScore - bestScore < parameters.getMinImpurityDecrease()) {
+                return mostProbableLeaf(classCounts, total);
             }
-        }
-
-        // Update maps as declared initially
-        splits.put(ATTR_TRUE_KEY, trueInstances);
-        splits.put(ATTR_FALSE_KEY, falseInstances);
-        counts.put(ATTR_TRUE_LIVE_KEY, trueInstsClassLiveCount);
-        counts.put(ATTR_TRUE_DIE_KEY, trueInstsClassDieCount);
-        counts.put(ATTR_FALSE_LIVE_KEY, falseInstsClassLiveCount);
-        counts.put(ATTR_FALSE_DIE_KEY, falseInstsClassDieCount);
-        // return ImpurityCheck variable
-        return new ImpurityCheck(splits, counts);
-    }
-
-    /**
-     * Method to check the purity of a data set.
-     *
-     * @param data The data set to check.
-     * @return the name of the class if data set is pure; else returns null.
-     */
-    private String checkPurity(Set<Patient> data) {
-
-        if (data.size() == 0) return null;
-        // Get first class value in the data set
-        String currentClass = data.iterator().next().getClassName();
-        String nextClass;
-
-        // Keep looping through the data set
-        for (Patient datum : data) {
-            nextClass = datum.getClassName();
-            // Until a different class has been retrieved: set is impure so return null
-            if (!currentClass.equals(nextClass)) return null;
-            currentClass = nextClass;
-        }
-
-        return currentClass;
-    }
-
-    /**
-     * Given a data set, returns the most probable class.
-     *
-     * @param data The data to iterate through.
-     * @param dataSize The size of the iterable data set.
-     * @return an instance of MostProbableClass containing the class name and probability of most probable class.
-     */
-    private MostProbableClass getMostProbableClass(Iterable<Patient> data, int dataSize) {
-
-        if (dataSize == 0) return new MostProbableClass("", 0);
-
-        List<String> classes = Patient.getClassValues();
-        // Variables to keep track of highest class count
-        String mostFrequentClass = "";
-        int highestCount = 0;
-        // For all the classes possible...
-        for (String cl : classes) {
-            int count = 0;
-            // and for each instance in the data
-            for (Patient datum : data) {
-                // Count how many instances are of that class
-                boolean match = datum != null && datum.getClassName().equals(cl);
-                if (match) count++;
+            splitStatistics.recordSplit(bestAttribute, total, nodeScore, bestScore);
+
+            // Only the best attribute's instances are split into sets, keeping their counts
+            Map<Patient, Integer> bestInstsTrue = new HashMap<>();
+            Map<Patient, Integer> bestInstsFalse = new HashMap<>();
+            for (Map.Entry<Patient, Integer> entry : instances.entrySet()) {
+                Patient p = entry.getKey();
+                boolean value = bestSplit == null ? p.getAttribute(bestAttribute)
+                        : bestSplit.isTrue(attributeBins[bestAttribute].getBin(p.getValues()[bestAttribute]));
+                if (value) bestInstsTrue.put(p, entry.getValue());
+                else bestInstsFalse.put(p, entry.getValue());
             }
-            // If this is our highest count so far, update the appropriate variables
-            if (count > highestCount) {
-                highestCount = count;
-                mostFrequentClass = cl;
+            if (trainingMetrics != null) trainingMetrics.recordPartition(System.nanoTime() - start);
+
+            // Calculate the left and right branches for the tree and return the tree
+            // Each branch gets its own copy of the remaining attributes, so one branch cannot remove them for the other
+            // Numeric and categorical attributes remain, as they can be split again on other values
+            List<Integer> remaining = new ArrayList<>(attributes);
+            if (bestSplit == null) remaining.remove(Integer.valueOf(bestAttribute));
+            BaseNode left = buildTree(bestInstsTrue, remaining, depth + 1);
+            BaseNode right = buildTree(bestInstsFalse, remaining, depth + 1);
+            if (bestSplit != null) {
+                return bestSplit.toNode(schema, bestAttribute, attributeBins[bestAttribute], left, right);
             }
+            return new Node(schema, schema.getAttributeName(bestAttribute), left, right);
         }
-        return new MostProbableClass(mostFrequentClass, highestCount / (float) dataSize);
     }
 
     /**
-     * Inner-class to store the most probable class information.
+     * Method to create a leaf of the most frequent class of a node's instances, favouring the earliest class on a tie.
+     *
+     * @param classCounts The number of instances of each class.
+     * @param total The number of instances.
+     * @return the leaf.
+     * @throws InvalidDataException if invalid data is passed to a LeafNode constructor.
      */
-    private class MostProbableClass {
-
-        /** The name of the most probable class */
-        private String className;
-        /** The probability of this class */
-        private float probability;
-
-        /**
-         * Constructor with both variables.
-         *
-         * @param cl The class name to store.
-         * @param prob The probability to store.
-         */
-        public MostProbableClass(String cl, float prob) {
-            className = cl;
-            probability = prob;
-        }
-
-        /** Getter for className */
-        public String getClassName() {
-            return className;
-        }
-
-        /** Getter for probability */
-        public float getProbability() {
-            return probability;
+    private LeafNode mostProbableLeaf(int[] classCounts, int total) throws InvalidDataException {
+        int mostFrequent = 0;
+        for (int c = 1; c < classCounts.length; c++) {
+            if (classCounts[c] > classCounts[mostFrequent]) mostFrequent = c;
         }
+        return new LeafNode(schema.getClassName((byte) mostFrequent), classCounts[mostFrequent] / (float) total);
     }
 
     /**
-     * Inner-class to store the information needed when calculating impurity in data.
+     * Method to sum a set of class counts.
+     *
+     * @param counts The count of each class.
+     * @return the sum.
      */
-    private class ImpurityCheck {
-
-        /** Map to keep track of instances where an attribute is true and false, separately */
-        private Map<String, Integer> counts;
-        /** Map to keep track of various counts/list sizes */
-        private Map<String, Float> impurities;
-        /** Map to keep track of different impurity values */
-        private Map<String, Set<Patient>> splitSet;
-
-        /**
-         * Constructor for an ImpurityCheck instance.
-         *
-         * @param splits The map of the true-instances and false-instances
-         * @param counts The map of the different counts/list sizes
-         */
-        public ImpurityCheck(Map<String, Set<Patient>> splits, Map<String, Integer> counts) {
-            splitSet = splits;
-            this.counts = counts;
-            setImpurities();
-        }
-
-        /** Getter for true-instances set */
-        public Set<Patient> getTrueInstances() {
-            return splitSet.get(ATTR_TRUE_KEY);
-        }
-
-        /** Getter for false-instances set */
-        public Set<Patient> getFalseInstances() {
-            return splitSet.get(ATTR_FALSE_KEY);
-        }
-
-        /** Setter for impurities values */
-        private void setImpurities() {
-            impurities = new HashMap<>();
-            impurities.put(ATTR_TRUE_KEY,
-                calculateImpurity(counts.get(ATTR_TRUE_LIVE_KEY), counts.get(ATTR_TRUE_DIE_KEY)));
-            impurities.put(ATTR_FALSE_KEY,
-                calculateImpurity(counts.get(ATTR_FALSE_LIVE_KEY), counts.get(ATTR_FALSE_DIE_KEY)));
-        }
-
-        /**
-         * Given two classes A and B, this method returns the impurity.
-         *
-         * @param classACount Count for class A instances.
-         * @param classBCount Count for class B instances.
-         * @return the calculated impurity.
-         */
-        private float calculateImpurity(int classACount, int classBCount) {
-            if (classACount + classBCount == 0) return 0;
-            return (classACount * classBCount) / (float) Math.pow(classACount + classBCount, 2);
-        }
-
-        /**
-         * Given the data in this instance, this method returns the weighted impurity.
-         *
-         * @return the calculated weighted impurity for what is set on this instance.
-         */
-        public float getWeightedImpurity() {
-
-            int trueTotal = splitSet.get(ATTR_TRUE_KEY).size();
-            int falseTotal = splitSet.get(ATTR_FALSE_KEY).size();
-            int total = trueTotal + falseTotal;
-
-            if (total == 0) return 0;
-            // Determine probabilities for use in final equation
-            float trueProb = trueTotal / (float) total;
-            float falseProb = falseTotal / (float) total;
-
-            return ( trueProb * impurities.get(ATTR_TRUE_KEY) ) + ( falseProb * impurities.get(ATTR_FALSE_KEY) );
-        }
+    private static int sum(int[] counts) {
+        int sum = 0;
+        for (int count : counts) sum += count;
+        return sum;
     }
-}
\ No newline at end of file
+}
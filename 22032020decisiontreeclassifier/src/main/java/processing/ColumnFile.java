@@ -0,0 +1,394 @@
+package processing;
+
+import tree.CompiledTree;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A class to hold a data set of boolean attributes on disk, column by column, for training on more data than fits in
+ * the heap. The file is read through memory-mapped windows, so only the pages being scanned need to be resident.
+ * Rows are stored in blocks of BLOCK_ROWS rows, each holding a bitset per attribute, as ColumnarDataset does, then the
+ * class value of each row; every block has the same size, the last padded with zero rows. A scan over the file reads
+ * every column of a block before moving to the next, so a scan is one sequential pass however many columns it uses.
+ * All values are big-endian. The file is laid out as:
+ * <pre>
+ * int     magic "DTCF"
+ * int     row count
+ * int     attribute count
+ * long    file offset of the schema
+ * the header is padded to HEADER_BYTES
+ * each block:
+ *   attribute count x (BLOCK_ROWS / 64 longs): the bitset of each attribute over the rows of the block
+ *   BLOCK_ROWS bytes: the class value of each row
+ * int     attribute count, then each attribute heading as modified UTF-8 (DataOutput.writeUTF)
+ * int     class count, then each class name as modified UTF-8, in class value order
+ * </pre>
+ * The schema comes last as the class names are only known once every row has been read.
+ */
+public final class ColumnFile implements Closeable {
+
+    /** The number of rows in each block */
+    public static final int BLOCK_ROWS = 1 << 16;
+    /** The number of 64-bit words of each attribute in a block */
+    static final int BLOCK_WORDS = BLOCK_ROWS >>> 6;
+    /** The magic number at the start of a column file */
+    static final int MAGIC = 0x44544346;
+    /** The size of the header, so blocks start on a page boundary */
+    static final int HEADER_BYTES = 4096;
+    /** The largest region of the file mapped at once */
+    private static final long MAP_WINDOW = 1L << 30;
+
+    /** The path of the file */
+    private final Path path;
+    /** The channel of the file */
+    private final FileChannel channel;
+    /** The schema of the data */
+    private final Schema schema;
+    /** The number of rows */
+    private final int size;
+    /** The size of each block in bytes */
+    private final long blockBytes;
+
+    /**
+     * Constructor for a ColumnFile.
+     *
+     * @param path The path of the file.
+     * @param channel The channel of the file, open for reading.
+     * @param schema The schema of the data.
+     * @param size The number of rows.
+     */
+    private ColumnFile(Path path, FileChannel channel, Schema schema, int size) {
+        this.path = path;
+        this.channel = channel;
+        this.schema = schema;
+        this.size = size;
+        blockBytes = blockBytes(schema.getAttributeCount());
+    }
+
+    /**
+     * Method to return the size of a block.
+     *
+     * @param attributeCount The number of attributes.
+     * @return the size of each block in bytes.
+     */
+    private static long blockBytes(int attributeCount) {
+        return (long) attributeCount * BLOCK_WORDS * Long.BYTES + BLOCK_ROWS;
+    }
+
+    /**
+     * Method to write a data file as a column file of the schema given by its line of headings, one line at a time.
+     *
+     * @param dataUrl The file path to the data.
+     * @param path The path of the column file to write.
+     * @return the column file, open for reading.
+     * @throws IOException if either file cannot be read or written.
+     * @throws InvalidDataException if the data is not valid, or not all boolean.
+     */
+    public static ColumnFile write(String dataUrl, Path path) throws IOException, InvalidDataException {
+        return write(dataUrl, path, null);
+    }
+
+    /**
+     * Method to write a data file as a column file, one line at a time, so the data never needs to fit in the heap.
+     *
+     * @param dataUrl The file path to the data.
+     * @param path The path of the column file to write.
+     * @param schema The schema of the data, e.g. the schema of the training data for test data, or null to read it
+     *               from the line of headings.
+     * @return the column file, open for reading.
+     * @throws IOException if either file cannot be read or written.
+     * @throws InvalidDataException if the data is not valid, or not all boolean.
+     */
+    public static ColumnFile write(String dataUrl, Path path, Schema schema) throws IOException, InvalidDataException {
+        try (PatientReader reader = new PatientReader(dataUrl, schema);
+             FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            schema = reader.getSchema();
+            if (!schema.isAllBoolean()) {
+                throw new InvalidDataException("Column files hold boolean attributes only: "
+                        + schema.getAttributeHeadings());
+            }
+            int attributeCount = schema.getAttributeCount();
+            ByteBuffer block = ByteBuffer.allocate((int) blockBytes(attributeCount));
+            long[] columns = new long[attributeCount * BLOCK_WORDS];
+            byte[] classValues = new byte[BLOCK_ROWS];
+            long position = HEADER_BYTES;
+            long rows = 0;
+            int row = 0;
+            while (reader.next()) {
+                // Each set bit of the row's attributes goes to the bitset of its attribute
+                long[] words = reader.getAttributeWords();
+                long bit = 1L << row;
+                int word = row >>> 6;
+                for (int w = 0; w < words.length; w++) {
+                    for (long bits = words[w]; bits != 0; bits &= bits - 1) {
+                        int a = (w << 6) + Long.numberOfTrailingZeros(bits);
+                        columns[a * BLOCK_WORDS + word] |= bit;
+                    }
+                }
+                classValues[row] = reader.getClassValue();
+                rows++;
+                if (++row == BLOCK_ROWS) {
+                    position = writeBlock(out, position, block, columns, classValues);
+                    row = 0;
+                }
+            }
+            if (row > 0) position = writeBlock(out, position, block, columns, classValues);
+            if (rows > Integer.MAX_VALUE) throw new InvalidDataException("Too many rows for a column file: " + rows);
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream footer = new DataOutputStream(bytes);
+            List<String> headings = schema.getAttributeHeadings();
+            footer.writeInt(headings.size());
+            for (String heading : headings) footer.writeUTF(heading);
+            List<String> classNames = schema.getClassNames();
+            footer.writeInt(classNames.size());
+            for (String className : classNames) footer.writeUTF(className);
+            writeFully(out, ByteBuffer.wrap(bytes.toByteArray()), position);
+
+            ByteBuffer header = ByteBuffer.allocate(20);
+            header.putInt(MAGIC).putInt((int) rows).putInt(attributeCount).putLong(position).flip();
+            writeFully(out, header, 0);
+        }
+        return open(path);
+    }
+
+    /**
+     * Method to write a block of rows and clear its arrays for the next.
+     *
+     * @param out The channel of the file.
+     * @param position The file position to write the block at.
+     * @param block A buffer of the size of a block.
+     * @param columns The bitset of each attribute over the block's rows, attribute by attribute.
+     * @param classValues The class value of each row.
+     * @return the file position after the block.
+     * @throws IOException if the file cannot be written.
+     */
+    private static long writeBlock(FileChannel out, long position, ByteBuffer block, long[] columns,
+                                   byte[] classValues) throws IOException {
+        block.clear();
+        block.asLongBuffer().put(columns);
+        block.position(columns.length * Long.BYTES);
+        block.put(classValues);
+        block.flip();
+        int written = block.remaining();
+        writeFully(out, block, position);
+        Arrays.fill(columns, 0);
+        Arrays.fill(classValues, (byte) 0);
+        return position + written;
+    }
+
+    /**
+     * Method to write the whole of a buffer at a file position.
+     *
+     * @param out The channel of the file.
+     * @param buffer The buffer.
+     * @param position The file position.
+     * @throws IOException if the file cannot be written.
+     */
+    private static void writeFully(FileChannel out, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) position += out.write(buffer, position);
+    }
+
+    /**
+     * Method to open a column file.
+     *
+     * @param path The path of the file.
+     * @return the column file.
+     * @throws IOException if the file cannot be read.
+     * @throws InvalidDataException if the file is not a column file.
+     */
+    public static ColumnFile open(Path path) throws IOException, InvalidDataException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            if (channel.size() < HEADER_BYTES) throw new InvalidDataException("Not a column file");
+            ByteBuffer header = readFully(channel, 0, 20);
+            if (header.getInt() != MAGIC) throw new InvalidDataException("Not a column file");
+            int rows = header.getInt();
+            int attributeCount = header.getInt();
+            long schemaOffset = header.getLong();
+            ByteBuffer footer = readFully(channel, schemaOffset, (int) (channel.size() - schemaOffset));
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(footer.array()));
+            List<String> headings = new ArrayList<>();
+            for (int a = in.readInt(); a > 0; a--) headings.add(in.readUTF());
+            if (headings.size() != attributeCount) throw new InvalidDataException("Corrupt column file schema");
+            Schema schema = Schema.fromAttributeHeadings(headings);
+            for (int c = in.readInt(); c > 0; c--) schema.getClassValue(in.readUTF());
+            return new ColumnFile(path, channel, schema, rows);
+        } catch (IOException | InvalidDataException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Method to read part of a file into a new buffer.
+     *
+     * @param channel The channel of the file.
+     * @param position The file position to read from.
+     * @param length The number of bytes to read.
+     * @return the buffer, ready to get from.
+     * @throws IOException if the file ends first.
+     */
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) throw new EOFException("Column file truncated");
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * An interface for a pass over the blocks of a column file.
+     */
+    public interface BlockVisitor {
+
+        /**
+         * Method to visit a block; the block is only valid until this returns.
+         *
+         * @param block The block.
+         * @throws InvalidDataException if the visitor cannot use the data.
+         */
+        void visit(Block block) throws InvalidDataException;
+    }
+
+    /**
+     * Method to scan every block in row order, mapping the file a window of blocks at a time.
+     *
+     * @param visitor The visitor to pass each block to.
+     * @throws IOException if the file cannot be mapped.
+     * @throws InvalidDataException if the visitor cannot use the data.
+     */
+    public void scan(BlockVisitor visitor) throws IOException, InvalidDataException {
+        int blocks = getBlockCount();
+        int blocksPerWindow = (int) Math.max(1, Math.min(MAP_WINDOW / blockBytes, Integer.MAX_VALUE));
+        Block block = new Block();
+        for (int first = 0; first < blocks; first += blocksPerWindow) {
+            int count = Math.min(blocksPerWindow, blocks - first);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY,
+                    HEADER_BYTES + first * blockBytes, count * blockBytes);
+            block.window = window;
+            for (int b = 0; b < count; b++) {
+                block.offset = (int) (b * blockBytes);
+                block.firstRow = (first + b) * BLOCK_ROWS;
+                block.rows = Math.min(BLOCK_ROWS, size - block.firstRow);
+                visitor.visit(block);
+            }
+        }
+    }
+
+    /**
+     * Method to count the rows a tree classifies correctly, a block at a time.
+     *
+     * @param tree The tree, of the schema of this file.
+     * @return the number of rows whose class the tree determines correctly.
+     * @throws IOException if the file cannot be mapped.
+     */
+    public int countCorrect(CompiledTree tree) throws IOException {
+        int[] correct = new int[1];
+        try {
+            scan(block -> correct[0] += tree.countCorrect(block.toDataset()));
+        } catch (InvalidDataException e) {
+            // Counting never rejects the data
+            throw new IllegalStateException(e);
+        }
+        return correct[0];
+    }
+
+    /** Getter for the path of the file */
+    public Path getPath() {
+        return path;
+    }
+
+    /** Getter for the schema of the data */
+    public Schema getSchema() {
+        return schema;
+    }
+
+    /** Getter for the number of rows */
+    public int size() {
+        return size;
+    }
+
+    /** Getter for the number of blocks */
+    public int getBlockCount() {
+        return (size + BLOCK_ROWS - 1) / BLOCK_ROWS;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Inner-class for a view of a block of a mapped window, moved along the window as the file is scanned.
+     */
+    public final class Block {
+
+        /** The mapped window the block is in */
+        private ByteBuffer window;
+        /** The offset of the block in the window */
+        private int offset;
+        /** The index of the first row of the block in the file */
+        private int firstRow;
+        /** The number of rows of the block */
+        private int rows;
+
+        /** Getter for the index of the first row of the block in the file */
+        public int getFirstRow() {
+            return firstRow;
+        }
+
+        /** Getter for the number of rows of the block */
+        public int getRows() {
+            return rows;
+        }
+
+        /** Getter for the number of 64-bit words holding the rows of each attribute */
+        public int getWordCount() {
+            return ColumnarDataset.wordCount(rows);
+        }
+
+        /**
+         * Getter for a word of the bitset of an attribute: bit i of word w is set when row w * 64 + i of the block
+         * has the attribute set to true
+         */
+        public long getAttributeWord(int attribute, int word) {
+            return window.getLong(offset + (attribute * BLOCK_WORDS + word) * Long.BYTES);
+        }
+
+        /** Getter for the class value of a row of the block */
+        public byte getClassValue(int row) {
+            return window.get(offset + schema.getAttributeCount() * BLOCK_WORDS * Long.BYTES + row);
+        }
+
+        /**
+         * Method to copy the block into the heap as a ColumnarDataset, e.g. to classify it with CompiledTree.
+         *
+         * @return the rows of the block.
+         */
+        public ColumnarDataset toDataset() {
+            long[][] columns = new long[schema.getAttributeCount()][getWordCount()];
+            for (int a = 0; a < columns.length; a++) {
+                for (int w = 0; w < columns[a].length; w++) columns[a][w] = getAttributeWord(a, w);
+            }
+            byte[] classValues = new byte[rows];
+            for (int row = 0; row < rows; row++) classValues[row] = getClassValue(row);
+            return new ColumnarDataset(schema, columns, classValues);
+        }
+    }
+}
@@ -0,0 +1,658 @@
+package processing;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.util.*;
+
+/**
+ * A class to store a data set column by column, with each attribute packed into a bitset.
+ * Bit i of a column is set when row i of the data set has that attribute set to true. The class labels are held the
+ * same way, as one bitset per class value.
+ * Numeric and categorical attributes are held as a column of values instead. For training, they are also quantized
+ * into AttributeBins, with a column of the bin of each row, the first time the bins are asked for.
+ * A data set made by deduplicate holds each distinct row once with a weight, the number of rows it stands for, so
+ * trees trained on it see the same class counts as over every row at a fraction of the work.
+ * The columns are held as buffers, over arrays for a data set built from Patient instances, or over the slices of a
+ * mapped file for one read from a DataCache, so training and classifying read the mapping in place. The buffers are
+ * only ever read at absolute indices, so any number of threads can read them at once.
+ */
+public class ColumnarDataset {
+
+    /** The number of rows in this data set */
+    private int size;
+    /** The schema of the data */
+    private Schema schema;
+    /** One bitset per boolean attribute, null for any other attribute */
+    private LongBuffer[] attributeColumns;
+    /** One bitset per class value; a bit is set when the row is of that class */
+    private LongBuffer[] classColumns;
+    /** The class value of each row */
+    private ByteBuffer classValues;
+    /** One column of values per numeric attribute, null for any other attribute */
+    private DoubleBuffer[] valueColumns;
+    /** One column of the category of each row, as unsigned bytes, per categorical attribute, null for any other */
+    private ByteBuffer[] categoryColumns;
+    /** The bins of each numeric or categorical attribute, or null until they are first asked for */
+    private volatile AttributeBins[] attributeBins;
+    /**
+     * One column of the bin of each row per numeric or categorical attribute, as unsigned bytes; a categorical
+     * attribute has a bin for each category, so its bin column is its category column
+     */
+    private ByteBuffer[] binColumns;
+    /** The number of rows each row stands for, or null when every row stands for one */
+    private int[] weights;
+
+    /**
+     * Constructor for a ColumnarDataset of the schema of its first row, or of the hepatitis schema when empty; the
+     * rows are stored in the iteration order of data.
+     *
+     * @param data The Patient instances to store.
+     */
+    public ColumnarDataset(Collection<Patient> data) {
+        this(data.isEmpty() ? Schema.HEPATITIS : data.iterator().next().getSchema(), data);
+    }
+
+    /**
+     * Constructor for a ColumnarDataset; the rows are stored in the iteration order of data.
+     *
+     * @param schema The schema of the data.
+     * @param data The Patient instances to store, all of the given schema.
+     */
+    public ColumnarDataset(Schema schema, Collection<Patient> data) {
+        this.schema = schema;
+        size = data.size();
+        int words = wordCount(size);
+        int attributeCount = schema.getAttributeCount();
+        long[][] attributeWords = new long[attributeCount][];
+        double[][] values = new double[attributeCount][];
+        byte[][] categories = new byte[attributeCount][];
+        for (int a = 0; a < attributeCount; a++) {
+            switch (schema.getAttributeType(a)) {
+                case NUMERIC:
+                    values[a] = new double[size];
+                    break;
+                case CATEGORICAL:
+                    categories[a] = new byte[size];
+                    break;
+                default:
+                    attributeWords[a] = new long[words];
+            }
+        }
+        long[][] classWords = new long[schema.getClassCount()][words];
+        byte[] classes = new byte[size];
+
+        int row = 0;
+        for (Patient p : data) {
+            long bit = 1L << row;
+            int word = row >>> 6;
+            for (int a = 0; a < attributeCount; a++) {
+                if (values[a] != null) values[a][row] = p.getValues()[a];
+                else if (categories[a] != null) categories[a][row] = (byte) p.getCategory(a);
+                else if (p.getAttribute(a)) attributeWords[a][word] |= bit;
+            }
+            classWords[p.getClassValue()][word] |= bit;
+            classes[row] = p.getClassValue();
+            row++;
+        }
+
+        attributeColumns = new LongBuffer[attributeCount];
+        valueColumns = new DoubleBuffer[attributeCount];
+        categoryColumns = new ByteBuffer[attributeCount];
+        for (int a = 0; a < attributeCount; a++) {
+            if (attributeWords[a] != null) attributeColumns[a] = LongBuffer.wrap(attributeWords[a]);
+            if (values[a] != null) valueColumns[a] = DoubleBuffer.wrap(values[a]);
+            if (categories[a] != null) categoryColumns[a] = ByteBuffer.wrap(categories[a]);
+        }
+        classColumns = wrap(classWords);
+        classValues = ByteBuffer.wrap(classes);
+    }
+
+    /**
+     * Constructor for a ColumnarDataset whose rows each stand for a given number of rows, e.g. to train on rows
+     * sampled at different rates; the rows are stored in the iteration order of data.
+     *
+     * @param schema The schema of the data.
+     * @param data The Patient instances to store, all of the given schema.
+     * @param weights The number of rows each instance stands for, in the iteration order of data.
+     * @throws IllegalArgumentException if there is not one weight for each instance, or a weight is less than 1.
+     */
+    public ColumnarDataset(Schema schema, Collection<Patient> data, int[] weights) {
+        this(schema, data);
+        if (weights.length != size) {
+            throw new IllegalArgumentException("Expected " + size + " weights, not " + weights.length);
+        }
+        for (int weight : weights) {
+            if (weight < 1) throw new IllegalArgumentException("Weights must be at least 1: " + weight);
+        }
+        this.weights = weights.clone();
+    }
+
+    /**
+     * Constructor for a ColumnarDataset of boolean attributes over columns already packed into bitsets.
+     *
+     * @param schema The schema of the data, every attribute boolean.
+     * @param attributeColumns The bitset of each attribute, which this data set takes ownership of.
+     * @param classValues The class value of each row, which this data set takes ownership of.
+     */
+    ColumnarDataset(Schema schema, long[][] attributeColumns, byte[] classValues) {
+        this.schema = schema;
+        this.attributeColumns = wrap(attributeColumns);
+        this.classValues = ByteBuffer.wrap(classValues);
+        size = classValues.length;
+        long[][] classWords = new long[schema.getClassCount()][wordCount(size)];
+        for (int row = 0; row < size; row++) classWords[classValues[row]][row >>> 6] |= 1L << row;
+        classColumns = wrap(classWords);
+        valueColumns = new DoubleBuffer[attributeColumns.length];
+        categoryColumns = new ByteBuffer[attributeColumns.length];
+    }
+
+    /**
+     * Constructor for a ColumnarDataset over columns already held in buffers, such as the slices of a mapped file,
+     * which are read in place.
+     *
+     * @param schema The schema of the data.
+     * @param size The number of rows.
+     * @param attributeColumns The bitset of each boolean attribute, null for any other attribute.
+     * @param valueColumns The values of each numeric attribute, null for any other attribute.
+     * @param categoryColumns The category of each row, as unsigned bytes, of each categorical attribute, null for any
+     *                        other attribute.
+     * @param classColumns The bitset of each class value.
+     * @param classValues The class value of each row.
+     */
+    ColumnarDataset(Schema schema, int size, LongBuffer[] attributeColumns, DoubleBuffer[] valueColumns,
+                    ByteBuffer[] categoryColumns, LongBuffer[] classColumns, ByteBuffer classValues) {
+        this.schema = schema;
+        this.size = size;
+        this.attributeColumns = attributeColumns;
+        this.valueColumns = valueColumns;
+        this.categoryColumns = categoryColumns;
+        this.classColumns = classColumns;
+        this.classValues = classValues;
+    }
+
+    /**
+     * Method to hold bitsets as buffers over them.
+     *
+     * @param bitsets The bitsets, any of which may be null.
+     * @return a buffer over each bitset, null for a null bitset.
+     */
+    private static LongBuffer[] wrap(long[][] bitsets) {
+        LongBuffer[] buffers = new LongBuffer[bitsets.length];
+        for (int i = 0; i < bitsets.length; i++) {
+            if (bitsets[i] != null) buffers[i] = LongBuffer.wrap(bitsets[i]);
+        }
+        return buffers;
+    }
+
+    /**
+     * Method to store a data set with each distinct row once, weighted by the number of times it occurs, e.g. to train
+     * on data with many duplicate rows. Rows are distinct when their attributes and class differ, as Patient.equals
+     * has it; rows of a schema that fits a bitmask are compared by their bitmask and class value without hashing
+     * Patient instances.
+     *
+     * @param schema The schema of the data.
+     * @param data The Patient instances to store, all of the given schema.
+     * @return the data set of distinct rows, in the order each first occurs; unweighted if no row occurs twice.
+     */
+    public static ColumnarDataset deduplicate(Schema schema, Collection<Patient> data) {
+        List<Patient> distinct = new ArrayList<>();
+        int[] counts = new int[16];
+        if (schema.fitsBitmask()) {
+            // Open addressing over the bitmask and class value of each distinct row, kept at most half full
+            int capacity = Integer.highestOneBit(Math.max(16, data.size() * 2 - 1)) << 1;
+            int[] slots = new int[capacity];
+            Arrays.fill(slots, -1);
+            long[] keys = new long[capacity];
+            byte[] keyClasses = new byte[capacity];
+            for (Patient p : data) {
+                long bits = p.getAttributeBits();
+                byte classValue = p.getClassValue();
+                int slot = (int) (((bits ^ classValue * 0xC2B2AE3D27D4EB4FL) * 0x9E3779B97F4A7C15L) >>> 32)
+                        & (capacity - 1);
+                while (slots[slot] >= 0 && (keys[slot] != bits || keyClasses[slot] != classValue)) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                if (slots[slot] < 0) {
+                    slots[slot] = distinct.size();
+                    keys[slot] = bits;
+                    keyClasses[slot] = classValue;
+                    distinct.add(p);
+                    if (distinct.size() > counts.length) counts = Arrays.copyOf(counts, counts.length * 2);
+                }
+                counts[slots[slot]]++;
+            }
+        }
+        else {
+            Map<Patient, Integer> indices = new HashMap<>();
+            for (Patient p : data) {
+                Integer index = indices.putIfAbsent(p, distinct.size());
+                if (index == null) {
+                    index = distinct.size();
+                    distinct.add(p);
+                    if (distinct.size() > counts.length) counts = Arrays.copyOf(counts, counts.length * 2);
+                }
+                counts[index]++;
+            }
+        }
+        ColumnarDataset dataset = new ColumnarDataset(schema, distinct);
+        if (distinct.size() < data.size()) dataset.weights = Arrays.copyOf(counts, distinct.size());
+        return dataset;
+    }
+
+    /**
+     * Method to return weights as bit-planes, as BitsetTreeBuilder counts them: bit i of plane k is bit k of the
+     * weight of row i.
+     *
+     * @param weights The weight of each row, none negative.
+     * @return the bit-planes, as many as the bits of the largest weight.
+     */
+    public static long[][] weightPlanes(int[] weights) {
+        int maxWeight = 0;
+        for (int weight : weights) maxWeight = Math.max(maxWeight, weight);
+        long[][] planes = new long[32 - Integer.numberOfLeadingZeros(maxWeight)][wordCount(weights.length)];
+        for (int row = 0; row < weights.length; row++) {
+            for (int k = 0; k < planes.length; k++) {
+                if ((weights[row] & (1 << k)) != 0) planes[k][row >>> 6] |= 1L << row;
+            }
+        }
+        return planes;
+    }
+
+    /**
+     * Method to quantize the numeric and categorical attributes into bins, once.
+     *
+     * @return the bins of each attribute, null for a boolean attribute.
+     */
+    private AttributeBins[] bin() {
+        AttributeBins[] bins = attributeBins;
+        if (bins != null) return bins;
+        synchronized (this) {
+            if (attributeBins != null) return attributeBins;
+            bins = new AttributeBins[valueColumns.length];
+            binColumns = new ByteBuffer[valueColumns.length];
+            for (int a = 0; a < bins.length; a++) {
+                if (categoryColumns[a] != null) {
+                    bins[a] = AttributeBins.ofCategories(schema, a);
+                    binColumns[a] = categoryColumns[a];
+                }
+                if (valueColumns[a] == null) continue;
+                bins[a] = AttributeBins.of(schema, a, valueColumns[a], size);
+                byte[] column = new byte[size];
+                for (int row = 0; row < size; row++) column[row] = (byte) bins[a].getBin(valueColumns[a].get(row));
+                binColumns[a] = ByteBuffer.wrap(column);
+            }
+            attributeBins = bins;
+            return bins;
+        }
+    }
+
+    /**
+     * Method to return the number of 64-bit words needed to hold a bitset of the given size.
+     *
+     * @param bits The number of bits to hold.
+     * @return the number of words needed.
+     */
+    public static int wordCount(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    /**
+     * Method to count the set bits common to two bitsets.
+     *
+     * @param a The first bitset.
+     * @param b The second bitset.
+     * @return the population count of a AND b.
+     */
+    public static int popcount(long[] a, long[] b) {
+        int count = 0;
+        for (int i = 0; i < a.length; i++) count += Long.bitCount(a[i] & b[i]);
+        return count;
+    }
+
+    /**
+     * Method to count the set bits common to a bitset of rows and a column.
+     *
+     * @param a The bitset of rows.
+     * @param b The column.
+     * @return the population count of a AND b.
+     */
+    public static int popcount(long[] a, LongBuffer b) {
+        int count = 0;
+        for (int i = 0; i < a.length; i++) count += Long.bitCount(a[i] & b.get(i));
+        return count;
+    }
+
+    /**
+     * Method to count the set bits common to a bitset of rows, a column and a bit-plane of weights.
+     *
+     * @param a The bitset of rows.
+     * @param b The column.
+     * @param c The bit-plane.
+     * @return the population count of a AND b AND c.
+     */
+    public static int popcount(long[] a, LongBuffer b, long[] c) {
+        int count = 0;
+        for (int i = 0; i < a.length; i++) count += Long.bitCount(a[i] & b.get(i) & c[i]);
+        return count;
+    }
+
+    /**
+     * Method to count the set bits common to a bitset of rows and two columns.
+     *
+     * @param a The bitset of rows.
+     * @param b The first column.
+     * @param c The second column.
+     * @return the population count of a AND b AND c.
+     */
+    public static int popcount(long[] a, LongBuffer b, LongBuffer c) {
+        int count = 0;
+        for (int i = 0; i < a.length; i++) count += Long.bitCount(a[i] & b.get(i) & c.get(i));
+        return count;
+    }
+
+    /**
+     * Method to count the set bits common to a bitset of rows, two columns and a bit-plane of weights.
+     *
+     * @param a The bitset of rows.
+     * @param b The first column.
+     * @param c The second column.
+     * @param d The bit-plane.
+     * @return the population count of a AND b AND c AND d.
+     */
+    public static int popcount(long[] a, LongBuffer b, LongBuffer c, long[] d) {
+        int count = 0;
+        for (int i = 0; i < a.length; i++) count += Long.bitCount(a[i] & b.get(i) & c.get(i) & d[i]);
+        return count;
+    }
+
+    /**
+     * Method to return the first 64 attributes of a row packed into a bitmask, as Patient.getAttributeBits does.
+     *
+     * @param row The row.
+     * @return the attributes bitmask.
+     */
+    public long getRowBits(int row) {
+        int word = row >>> 6;
+        long bits = 0;
+        for (int a = 0; a < Math.min(attributeColumns.length, 64); a++) {
+            if (attributeColumns[a] != null) bits |= ((attributeColumns[a].get(word) >>> row) & 1L) << a;
+        }
+        return bits;
+    }
+
+    /**
+     * Method to return a single attribute of a row.
+     *
+     * @param row The row.
+     * @param attribute The index of the attribute.
+     * @return the attribute value.
+     */
+    public boolean getAttribute(int row, int attribute) {
+        LongBuffer column = attributeColumns[attribute];
+        return column != null && (column.get(row >>> 6) & (1L << row)) != 0;
+    }
+
+    /**
+     * Method to return the class value of a row.
+     *
+     * @param row The row.
+     * @return the class value.
+     */
+    public byte getClassValue(int row) {
+        return classValues.get(row);
+    }
+
+    /**
+     * Method to return the value of a numeric attribute of a row, or the category of a categorical attribute.
+     *
+     * @param row The row.
+     * @param attribute The index of the attribute.
+     * @return the value or category.
+     */
+    public double getValue(int row, int attribute) {
+        DoubleBuffer values = valueColumns[attribute];
+        return values != null ? values.get(row) : categoryColumns[attribute].get(row) & 0xFF;
+    }
+
+    /**
+     * Method to create a Patient instance of a row, e.g. for a caller that needs the rows as a list.
+     *
+     * @param row The row.
+     * @return the Patient.
+     */
+    public Patient getPatient(int row) {
+        long[] attributes = new long[wordCount(attributeColumns.length)];
+        double[] values = schema.isAllBoolean() ? null : new double[attributeColumns.length];
+        for (int a = 0; a < attributeColumns.length; a++) {
+            if (attributeColumns[a] == null) values[a] = getValue(row, a);
+            else if (getAttribute(row, a)) attributes[a >>> 6] |= 1L << a;
+        }
+        return new Patient(schema, attributes, values, getClassValue(row));
+    }
+
+    /**
+     * Method to create a Patient instance of every row, filling the rows 64 at a time so each block's words of the
+     * boolean columns are read once.
+     *
+     * @return a list of the rows as Patient instances, in row order.
+     */
+    public ArrayList<Patient> toPatients() {
+        int attributeCount = attributeColumns.length;
+        int words = wordCount(attributeCount);
+        long[][] attributes = new long[Long.SIZE][];
+        double[][] values = new double[Long.SIZE][];
+        ArrayList<Patient> data = new ArrayList<>(size);
+        for (int first = 0, w = 0; first < size; first += Long.SIZE, w++) {
+            int count = Math.min(Long.SIZE, size - first);
+            for (int r = 0; r < count; r++) {
+                attributes[r] = new long[words];
+                if (!schema.isAllBoolean()) values[r] = new double[attributeCount];
+            }
+            for (int a = 0; a < attributeCount; a++) {
+                if (attributeColumns[a] == null) {
+                    for (int r = 0; r < count; r++) values[r][a] = getValue(first + r, a);
+                    continue;
+                }
+                // Only the set bits of the column's word for the block are visited
+                for (long bits = attributeColumns[a].get(w); bits != 0; bits &= bits - 1) {
+                    attributes[Long.numberOfTrailingZeros(bits)][a >>> 6] |= 1L << a;
+                }
+            }
+            for (int r = 0; r < count; r++) {
+                data.add(new Patient(schema, attributes[r], values[r], getClassValue(first + r)));
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Method to return a copy of this data set with the values of one attribute moved between rows, e.g. to measure
+     * how much a model relies on the attribute. The other columns are shared with this data set, not copied.
+     *
+     * @param attribute The index of the attribute.
+     * @param order The row each row takes the attribute's value from, a permutation of the rows.
+     * @return the permuted data set.
+     */
+    public ColumnarDataset permute(int attribute, int[] order) {
+        ColumnarDataset permuted = new ColumnarDataset(schema, size, attributeColumns.clone(), valueColumns.clone(),
+                categoryColumns.clone(), classColumns, classValues);
+        permuted.weights = weights;
+        if (valueColumns[attribute] != null) {
+            double[] values = new double[size];
+            for (int row = 0; row < size; row++) values[row] = valueColumns[attribute].get(order[row]);
+            permuted.valueColumns[attribute] = DoubleBuffer.wrap(values);
+        }
+        else if (categoryColumns[attribute] != null) {
+            byte[] categories = new byte[size];
+            for (int row = 0; row < size; row++) categories[row] = categoryColumns[attribute].get(order[row]);
+            permuted.categoryColumns[attribute] = ByteBuffer.wrap(categories);
+        }
+        else {
+            long[] column = new long[wordCount(size)];
+            for (int row = 0; row < size; row++) {
+                if (getAttribute(order[row], attribute)) column[row >>> 6] |= 1L << row;
+            }
+            permuted.attributeColumns[attribute] = LongBuffer.wrap(column);
+        }
+        return permuted;
+    }
+
+    /**
+     * Method to return a bitset with a bit set for every row in this data set.
+     *
+     * @return the bitset of all rows.
+     */
+    public long[] allRows() {
+        long[] mask = new long[wordCount(size)];
+        Arrays.fill(mask, -1L);
+        if ((size & 63) != 0) mask[mask.length - 1] = (1L << size) - 1;
+        return mask;
+    }
+
+    /**
+     * Method to find the most frequent class of a set of rows, favouring the earliest class value on a tie, as the
+     * leaf of a node with no rows takes it. Weighted rows count as many times as their weight.
+     *
+     * @param rows The bitset of the rows.
+     * @return the class and its share of the rows.
+     */
+    public MostFrequentClass mostFrequentClass(long[] rows) {
+        long[][] planes = getWeightPlanes();
+        int[] classCounts = new int[getClassCount()];
+        for (int c = 0; c < classCounts.length; c++) {
+            if (planes == null) {
+                classCounts[c] = popcount(rows, classColumns[c]);
+                continue;
+            }
+            for (int k = 0; k < planes.length; k++) classCounts[c] += popcount(rows, classColumns[c], planes[k]) << k;
+        }
+        return mostFrequentClass(schema, classCounts);
+    }
+
+    /**
+     * Method to find the most frequent class from the count of each class, favouring the earliest class value on a tie.
+     *
+     * @param schema The schema of the classes.
+     * @param classCounts The count of each class value.
+     * @return the class and its share of the counts; no class and a share of 0 when every count is 0.
+     */
+    public static MostFrequentClass mostFrequentClass(Schema schema, int[] classCounts) {
+        int mostFrequent = -1;
+        int highestCount = 0;
+        int total = 0;
+        for (int c = 0; c < classCounts.length; c++) {
+            total += classCounts[c];
+            if (classCounts[c] > highestCount) {
+                highestCount = classCounts[c];
+                mostFrequent = c;
+            }
+        }
+        if (mostFrequent < 0) return new MostFrequentClass("", 0);
+        return new MostFrequentClass(schema.getClassName((byte) mostFrequent), highestCount / (float) total);
+    }
+
+    /** Getter for size */
+    public int size() {
+        return size;
+    }
+
+    /** Getter for the number of rows each row stands for, or null when every row stands for one */
+    public int[] getWeights() {
+        return weights;
+    }
+
+    /** Getter for the number of rows a row stands for */
+    public int getWeight(int row) {
+        return weights == null ? 1 : weights[row];
+    }
+
+    /** Getter for the number of rows the data set stands for: its size when unweighted, otherwise its total weight */
+    public int getTotalWeight() {
+        if (weights == null) return size;
+        int total = 0;
+        for (int weight : weights) total += weight;
+        return total;
+    }
+
+    /** Getter for the weights as bit-planes, as weightPlanes returns them, or null when every row stands for one */
+    public long[][] getWeightPlanes() {
+        return weights == null ? null : weightPlanes(weights);
+    }
+
+    /** Getter for the schema */
+    public Schema getSchema() {
+        return schema;
+    }
+
+    /** Getter for the attribute names */
+    public List<String> getAttributeNames() {
+        return schema.getAttributeNames();
+    }
+
+    /** Getter for the number of class values with a class column */
+    public int getClassCount() {
+        return classColumns.length;
+    }
+
+    /** Getter for the bitset of a boolean attribute, to be read at absolute indices */
+    public LongBuffer getAttributeColumn(int attribute) {
+        return attributeColumns[attribute];
+    }
+
+    /** Getter for the class value of each row, to be read at absolute indices */
+    public ByteBuffer getClassValues() {
+        return classValues;
+    }
+
+    /** Getter for the bins of a numeric or categorical attribute */
+    public AttributeBins getAttributeBins(int attribute) {
+        return bin()[attribute];
+    }
+
+    /**
+     * Getter for the column of the bin of each row of a numeric or categorical attribute, as unsigned bytes, to be
+     * read at absolute indices
+     */
+    public ByteBuffer getBinColumn(int attribute) {
+        bin();
+        return binColumns[attribute];
+    }
+
+    /** Getter for the class label column of a class value, to be read at absolute indices */
+    public LongBuffer getClassColumn(int classValue) {
+        return classColumns[classValue];
+    }
+
+    /**
+     * Inner-class for the most frequent class of a set of rows and its share of them.
+     */
+    public static final class MostFrequentClass {
+
+        /** The name of the class, empty when there are no rows */
+        private final String className;
+        /** The share of the rows of the class */
+        private final float probability;
+
+        /**
+         * Constructor for a MostFrequentClass.
+         *
+         * @param className The name of the class.
+         * @param probability The share of the rows of the class.
+         */
+        MostFrequentClass(String className, float probability) {
+            this.className = className;
+            this.probability = probability;
+        }
+
+        /** Getter for className */
+        public String getClassName() {
+            return className;
+        }
+
+        /** Getter for probability */
+        public float getProbability() {
+            return probability;
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package processing;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32C;
+
+/**
+ * A class to keep a binary copy of a data file next to it, column by column, so later runs map the copy instead of
+ * parsing the text again. The copy is only used while the data file has the size and modification time it had when
+ * the copy was written, and its checksum matches; otherwise the data file is parsed and the copy written again.
+ * Only the class names and categories that occur in the data file are stored, in the order the schema that parsed it
+ * numbers them, with each row holding its index into those, so a schema taken from the cached headings numbers them as
+ * the copy does.
+ * The copy is read as a ColumnarDataset over slices of the mapping, so loading it costs the checksum rather than a pass
+ * building rows, and processes reading the same copy share its pages. Only a column of classes or categories the schema
+ * numbers differently from the file is copied into the heap, renumbered; Patient instances are only created for callers
+ * that need the rows as a list.
+ * All values are big-endian. The file is laid out as:
+ * <pre>
+ * int     magic "DTDC"
+ * int     version
+ * long    size of the data file
+ * long    modification time of the data file, in milliseconds
+ * int     row count
+ * int     attribute count
+ * int     size of the schema section
+ * int     unused, so the schema starts 8-byte aligned
+ * schema: each attribute heading as modified UTF-8 (DataOutput.writeUTF); for each categorical attribute, int
+ *         category count then each category name; int class count then each class name
+ * the schema is padded to 8 bytes
+ * each attribute, in index order:
+ *   boolean:     the bitset of the attribute over all rows, as ColumnarDataset holds it
+ *   numeric:     row count doubles
+ *   categorical: row count bytes, each an index into the attribute's category names, padded to 8 bytes
+ * row count bytes: the index of each row's class into the class names, padded to 8 bytes
+ * each class, in the order of the class names: the bitset of the rows of the class, as ColumnarDataset holds it
+ * long    CRC32C checksum of every byte before it
+ * </pre>
+ */
+public final class DataCache {
+
+    /** The suffix added to the path of a data file for the path of its cache */
+    public static final String SUFFIX = ".dtc";
+    /** The magic number at the start of a cache file */
+    static final int MAGIC = 0x44544443;
+    /** The version of the layout, changed whenever the layout is */
+    static final int VERSION = 2;
+    /** The size of the header */
+    private static final int HEADER_BYTES = 40;
+    /** The logger a cache that cannot be written is reported to */
+    private static final System.Logger LOGGER = System.getLogger(DataCache.class.getName());
+
+    private DataCache() {
+    }
+
+    /**
+     * Method to return the path of the cache of a data file.
+     *
+     * @param dataUrl The file path to the data.
+     * @return the path of its cache.
+     */
+    public static Path getCachePath(String dataUrl) {
+        return Path.of(dataUrl + SUFFIX);
+    }
+
+    /**
+     * Method to read a data file as Patient instances from its cache, parsing the file and writing the cache first
+     * when there is no cache that is up to date.
+     *
+     * @param dataUrl The file path to the data.
+     * @param schema The schema of the data, or null to take it from the file's headings.
+     * @return a list of the data as Patient instances.
+     * @throws IOException if the data file cannot be read.
+     * @throws InvalidDataException if any part of the data cannot be used to create a Patient instance.
+     */
+    public static ArrayList<Patient> load(String dataUrl, Schema schema) throws IOException, InvalidDataException {
+        ColumnarDataset cached = read(dataUrl, schema);
+        if (cached != null) return cached.toPatients();
+        return parse(dataUrl, schema);
+    }
+
+    /**
+     * Method to read a data file as columns mapped from its cache, parsing the file and writing the cache first when
+     * there is no cache that is up to date.
+     *
+     * @param dataUrl The file path to the data.
+     * @param schema The schema of the data, or null to take it from the file's headings.
+     * @return the data, over the mapped cache unless the cache could not be written.
+     * @throws IOException if the data file cannot be read.
+     * @throws InvalidDataException if any part of the data cannot be used to create a Patient instance.
+     */
+    public static ColumnarDataset loadColumns(String dataUrl, Schema schema) throws IOException, InvalidDataException {
+        ColumnarDataset data = read(dataUrl, schema);
+        if (data != null) return data;
+        if (schema == null) schema = readSchema(dataUrl);
+        ArrayList<Patient> parsed = parse(dataUrl, schema);
+        // Map the cache just written, so the columns are shared with any other process reading it
+        data = read(dataUrl, schema);
+        return data != null ? data : new ColumnarDataset(schema, parsed);
+    }
+
+    /**
+     * Method to parse a data file and write its cache.
+     *
+     * @param dataUrl The file path to the data.
+     * @param schema The schema of the data, or null to take it from the file's headings.
+     * @return a list of the data as Patient instances.
+     * @throws IOException if the data file cannot be read.
+     * @throws InvalidDataException if any part of the data cannot be used to create a Patient instance.
+     */
+    private static ArrayList<Patient> parse(String dataUrl, Schema schema) throws IOException, InvalidDataException {
+        // Note the data file's size and time before parsing, so a change while it is parsed leaves the cache stale
+        Path source = Path.of(dataUrl);
+        long size = Files.size(source);
+        long modified = Files.getLastModifiedTime(source).toMillis();
+        if (schema == null) schema = readSchema(dataUrl);
+        ArrayList<Patient> data = new ParallelPatientReader(ForkJoinPool.commonPool()).read(schema, dataUrl).get(0);
+        try {
+            write(dataUrl, schema, data, size, modified);
+        } catch (IOException e) {
+            // The data has been read, so a cache that cannot be written, e.g. in a read-only directory or for more data
+            // than one mapping holds, is not needed; it is reported, as every run will parse the data file again
+            LOGGER.log(System.Logger.Level.WARNING, "Cache of " + dataUrl + " not written: " + e.getMessage());
+        }
+        return data;
+    }
+
+    /**
+     * Method to read the schema of a data file from its headings.
+     *
+     * @param dataUrl The file path to the data.
+     * @return the schema.
+     * @throws IOException if the data file cannot be read.
+     * @throws InvalidDataException if the headings do not give a schema.
+     */
+    private static Schema readSchema(String dataUrl) throws IOException, InvalidDataException {
+        try (PatientReader reader = new PatientReader(dataUrl)) {
+            return reader.getSchema();
+        }
+    }
+
+    /**
+     * Method to read a data file as columns mapped from its cache, if the cache is up to date.
+     *
+     * @param dataUrl The file path to the data.
+     * @param schema The schema of the data, or null to take it from the cached headings.
+     * @return the data over the mapped cache, or null if there is no cache that is up to date and matches the schema.
+     * @throws IOException if the data file cannot be read.
+     * @throws InvalidDataException if the cached class names or categories cannot be added to the schema.
+     */
+    public static ColumnarDataset read(String dataUrl, Schema schema) throws IOException, InvalidDataException {
+        Path source = Path.of(dataUrl);
+        Path path = getCachePath(dataUrl);
+        long size = Files.size(source);
+        long modified = Files.getLastModifiedTime(source).toMillis();
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES + Long.BYTES || channel.size() > Integer.MAX_VALUE) return null;
+            // The mapping stays valid once the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            return null;
+        }
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getLong(8) != size
+                || buffer.getLong(16) != modified) {
+            return null;
+        }
+        int checksumOffset = buffer.capacity() - Long.BYTES;
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.duplicate().limit(checksumOffset));
+        if (crc.getValue() != buffer.getLong(checksumOffset)) return null;
+        try {
+            return read(buffer, checksumOffset, schema);
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException e) {
+            // The checksum matches but the layout does not, so the cache was not written by this version
+            return null;
+        }
+    }
+
+    /**
+     * Method to create a ColumnarDataset over the columns of a mapped cache file whose checksum matches.
+     *
+     * @param buffer The cache file.
+     * @param checksumOffset The offset of the checksum, where the columns end.
+     * @param schema The schema of the data, or null to take it from the cached headings.
+     * @return the data, or null if the cached headings do not match the schema.
+     * @throws IOException if the schema section is truncated or the columns do not fill the file.
+     * @throws InvalidDataException if the cached class names or categories cannot be added to the schema.
+     */
+    private static ColumnarDataset read(ByteBuffer buffer, int checksumOffset, Schema schema)
+            throws IOException, InvalidDataException {
+        int rows = buffer.getInt(24);
+        int attributeCount = buffer.getInt(28);
+        byte[] schemaBytes = new byte[buffer.getInt(32)];
+        buffer.get(HEADER_BYTES, schemaBytes);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(schemaBytes));
+        List<String> headings = new ArrayList<>(attributeCount);
+        for (int a = 0; a < attributeCount; a++) headings.add(in.readUTF());
+        if (schema == null) schema = Schema.fromAttributeHeadings(headings);
+        // Headings that do not match are left for parsing the data file to report
+        else if (!schema.getAttributeHeadings().equals(headings)) return null;
+
+        // Map the cached indices onto the schema, adding names it does not hold in the cached order
+        int[][] categories = new int[attributeCount][];
+        for (int a = 0; a < attributeCount; a++) {
+            if (schema.getAttributeType(a) != Schema.AttributeType.CATEGORICAL) continue;
+            categories[a] = new int[in.readInt()];
+            for (int c = 0; c < categories[a].length; c++) categories[a][c] = schema.getCategory(a, in.readUTF());
+        }
+        int[] classValues = new int[in.readInt()];
+        for (int c = 0; c < classValues.length; c++) classValues[c] = schema.getClassValue(in.readUTF());
+
+        // Slice each column out of the mapping in turn
+        int bitsetBytes = ColumnarDataset.wordCount(rows) * Long.BYTES;
+        int position = align(HEADER_BYTES + schemaBytes.length);
+        LongBuffer[] attributeColumns = new LongBuffer[attributeCount];
+        DoubleBuffer[] valueColumns = new DoubleBuffer[attributeCount];
+        ByteBuffer[] categoryColumns = new ByteBuffer[attributeCount];
+        for (int a = 0; a < attributeCount; a++) {
+            switch (schema.getAttributeType(a)) {
+                case NUMERIC:
+                    valueColumns[a] = buffer.slice(position, rows * Double.BYTES).asDoubleBuffer();
+                    position += rows * Double.BYTES;
+                    break;
+                case CATEGORICAL:
+                    categoryColumns[a] = renumber(buffer.slice(position, rows), categories[a]);
+                    position += align(rows);
+                    break;
+                default:
+                    attributeColumns[a] = buffer.slice(position, bitsetBytes).asLongBuffer();
+                    position += bitsetBytes;
+            }
+        }
+        ByteBuffer classColumn = renumber(buffer.slice(position, rows), classValues);
+        position += align(rows);
+        LongBuffer[] classColumns = new LongBuffer[schema.getClassCount()];
+        for (int classValue : classValues) {
+            classColumns[classValue] = buffer.slice(position, bitsetBytes).asLongBuffer();
+            position += bitsetBytes;
+        }
+        if (position != checksumOffset) throw new IOException("Columns end at " + position + ", not " + checksumOffset);
+        // A class of the schema that no row of this file has
+        LongBuffer none = null;
+        for (int c = 0; c < classColumns.length; c++) {
+            if (classColumns[c] != null) continue;
+            if (none == null) none = LongBuffer.allocate(ColumnarDataset.wordCount(rows));
+            classColumns[c] = none;
+        }
+        return new ColumnarDataset(schema, rows, attributeColumns, valueColumns, categoryColumns, classColumns,
+                classColumn);
+    }
+
+    /**
+     * Method to number a column of cached indices as the schema numbers the names they index.
+     *
+     * @param column The column of indices, as unsigned bytes.
+     * @param numbers The schema's number for each cached index.
+     * @return the column itself if the schema numbers every name as the cache does, otherwise a renumbered copy.
+     */
+    private static ByteBuffer renumber(ByteBuffer column, int[] numbers) {
+        boolean same = true;
+        for (int i = 0; i < numbers.length; i++) same &= numbers[i] == i;
+        if (same) return column;
+        byte[] renumbered = new byte[column.capacity()];
+        for (int row = 0; row < renumbered.length; row++) renumbered[row] = (byte) numbers[column.get(row) & 0xFF];
+        return ByteBuffer.wrap(renumbered);
+    }
+
+    /**
+     * Method to write the cache of a data file, to a temporary file first so a cache is only ever seen complete.
+     *
+     * @param dataUrl The file path to the data.
+     * @param schema The schema of the data.
+     * @param data The data as Patient instances.
+     * @param size The size of the data file.
+     * @param modified The modification time of the data file, in milliseconds.
+     * @throws IOException if the cache cannot be written.
+     */
+    private static void write(String dataUrl, Schema schema, List<Patient> data, long size, long modified)
+            throws IOException {
+        int rows = data.size();
+        int attributeCount = schema.getAttributeCount();
+
+        // Number the class names and categories that occur in the data file, rather than every name of the schema,
+        // which may hold names from other files; they keep the schema's order, so reading the cache back with the same
+        // schema, or a schema taken from the cached headings, needs no renumbering
+        boolean[] classPresent = new boolean[schema.getClassCount()];
+        List<SortedSet<Integer>> presentCategories = new ArrayList<>();
+        for (int a = 0; a < attributeCount; a++) presentCategories.add(new TreeSet<>());
+        for (Patient p : data) {
+            classPresent[p.getClassValue()] = true;
+            for (int a = 0; a < attributeCount; a++) {
+                if (schema.getAttributeType(a) == Schema.AttributeType.CATEGORICAL) {
+                    presentCategories.get(a).add(p.getCategory(a));
+                }
+            }
+        }
+        List<Map<Integer, Integer>> localCategories = new ArrayList<>();
+        List<List<String>> localCategoryNames = new ArrayList<>();
+        for (int a = 0; a < attributeCount; a++) {
+            Map<Integer, Integer> local = new HashMap<>();
+            List<String> names = new ArrayList<>();
+            for (int category : presentCategories.get(a)) {
+                local.put(category, names.size());
+                names.add(schema.getCategoryNames(a).get(category));
+            }
+            localCategories.add(local);
+            localCategoryNames.add(names);
+        }
+        int[] localClasses = new int[schema.getClassCount()];
+        List<String> localClassNames = new ArrayList<>();
+        List<long[]> classBitsets = new ArrayList<>();
+        for (int c = 0; c < classPresent.length; c++) {
+            if (!classPresent[c]) continue;
+            localClasses[c] = localClassNames.size();
+            localClassNames.add(schema.getClassName((byte) c));
+            classBitsets.add(new long[ColumnarDataset.wordCount(rows)]);
+        }
+        byte[] classColumn = new byte[rows];
+        for (int row = 0; row < rows; row++) {
+            int classValue = localClasses[data.get(row).getClassValue()];
+            classColumn[row] = (byte) classValue;
+            classBitsets.get(classValue)[row >>> 6] |= 1L << row;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (String heading : schema.getAttributeHeadings()) out.writeUTF(heading);
+        for (int a = 0; a < attributeCount; a++) {
+            if (schema.getAttributeType(a) != Schema.AttributeType.CATEGORICAL) continue;
+            out.writeInt(localCategoryNames.get(a).size());
+            for (String categoryName : localCategoryNames.get(a)) out.writeUTF(categoryName);
+        }
+        out.writeInt(localClassNames.size());
+        for (String className : localClassNames) out.writeUTF(className);
+        byte[] schemaBytes = bytes.toByteArray();
+
+        long length = align(HEADER_BYTES + schemaBytes.length);
+        for (int a = 0; a < attributeCount; a++) {
+            Schema.AttributeType type = schema.getAttributeType(a);
+            length += type == Schema.AttributeType.NUMERIC ? (long) rows * Double.BYTES
+                    : type == Schema.AttributeType.CATEGORICAL ? align(rows)
+                    : (long) ColumnarDataset.wordCount(rows) * Long.BYTES;
+        }
+        length += align(rows) + (long) classBitsets.size() * ColumnarDataset.wordCount(rows) * Long.BYTES;
+        length += Long.BYTES;
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Too much data for a cache file: " + length + " bytes, over the " + Integer.MAX_VALUE
+                    + " bytes one mapping can hold");
+        }
+
+        Path path = getCachePath(dataUrl).toAbsolutePath();
+        Path temporary = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+                buffer.putInt(MAGIC).putInt(VERSION).putLong(size).putLong(modified).putInt(rows)
+                        .putInt(attributeCount).putInt(schemaBytes.length).putInt(0).put(schemaBytes);
+                buffer.position(align(buffer.position()));
+                for (int a = 0; a < attributeCount; a++) {
+                    switch (schema.getAttributeType(a)) {
+                        case NUMERIC:
+                            for (Patient p : data) buffer.putDouble(p.getValue(a));
+                            break;
+                        case CATEGORICAL:
+                            Map<Integer, Integer> local = localCategories.get(a);
+                            for (Patient p : data) buffer.put(local.get(p.getCategory(a)).byteValue());
+                            buffer.position(align(buffer.position()));
+                            break;
+                        default:
+                            long[] column = new long[ColumnarDataset.wordCount(rows)];
+                            for (int row = 0; row < rows; row++) {
+                                if (data.get(row).getAttribute(a)) column[row >>> 6] |= 1L << row;
+                            }
+                            for (long word : column) buffer.putLong(word);
+                    }
+                }
+                buffer.put(classColumn);
+                buffer.position(align(buffer.position()));
+                for (long[] bitset : classBitsets) {
+                    for (long word : bitset) buffer.putLong(word);
+                }
+                CRC32C crc = new CRC32C();
+                crc.update(buffer.duplicate().flip());
+                buffer.putLong(crc.getValue());
+                buffer.force();
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Method to round a file position up to a multiple of 8 bytes.
+     *
+     * @param position The file position.
+     * @return the position of the next 8-byte boundary at or after it.
+     */
+    private static int align(int position) {
+        return (position + 7) & ~7;
+    }
+}
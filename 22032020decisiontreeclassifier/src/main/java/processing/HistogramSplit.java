@@ -0,0 +1,177 @@
+package processing;
+
+import tree.BaseNode;
+import tree.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A class to find the best split of a numeric or categorical attribute from a histogram of a node's instances over the
+ * attribute's bins, so Classifier and BitsetTreeBuilder choose the same split from the same counts.
+ * A numeric attribute is split on a threshold, with the bins up to it on the true side, and each threshold between
+ * two bins is scored with one pass over the bins. A categorical attribute is split on a subset of its categories: the
+ * categories are ordered by the proportion of their instances of the node's most frequent class and each prefix of
+ * that order is scored, which for two classes is known to find the best of every subset.
+ */
+final class HistogramSplit {
+
+    /** The score of the split by the criterion it was found by */
+    private final float score;
+    /** Flags for the bins on the true side of the split */
+    private final boolean[] trueBins;
+
+    /**
+     * Constructor for a HistogramSplit.
+     *
+     * @param score The score of the split.
+     * @param trueBins Flags for the bins on the true side of the split.
+     */
+    private HistogramSplit(float score, boolean[] trueBins) {
+        this.score = score;
+        this.trueBins = trueBins;
+    }
+
+    /**
+     * Method to find the best split of an attribute from a histogram of a node's instances.
+     *
+     * @param bins The bins of the attribute.
+     * @param histogram The count of instances of class value c in bin b at index b * classCount + c.
+     * @param classCounts The count of each class in the node.
+     * @param criterion The criterion to score splits by.
+     * @return the split with the lowest score, or null if every instance is in a single bin.
+     */
+    static HistogramSplit find(AttributeBins bins, int[] histogram, int[] classCounts, SplitCriterion criterion) {
+        return find(bins, histogram, classCounts, criterion, 0);
+    }
+
+    /**
+     * Method to find the best split of an attribute from a histogram of a node's instances, leaving at least
+     * minLeafSize instances either side.
+     *
+     * @param bins The bins of the attribute.
+     * @param histogram The count of instances of class value c in bin b at index b * classCount + c.
+     * @param classCounts The count of each class in the node.
+     * @param criterion The criterion to score splits by.
+     * @param minLeafSize The smallest number of instances either side of the split, or 0 for no limit.
+     * @return the split with the lowest score, or null if no split leaves enough instances either side.
+     */
+    static HistogramSplit find(AttributeBins bins, int[] histogram, int[] classCounts, SplitCriterion criterion,
+                               int minLeafSize) {
+        int classCount = classCounts.length;
+        int binCount = bins.getBinCount();
+        int[] order = new int[binCount];
+        int used = 0;
+        for (int b = 0; b < binCount; b++) {
+            int binTotal = 0;
+            for (int c = 0; c < classCount; c++) binTotal += histogram[b * classCount + c];
+            // Empty bins cannot change a split, so only bins holding instances are ordered
+            if (binTotal > 0) order[used++] = b;
+        }
+        if (used < 2) return null;
+        if (!bins.isNumeric()) order = orderCategories(Arrays.copyOf(order, used), histogram, classCounts);
+
+        // Move the bins across to the true side one at a time, keeping the first split with the lowest score
+        int[] trueCounts = new int[classCount];
+        int[] falseCounts = classCounts.clone();
+        int total = 0;
+        for (int count : classCounts) total += count;
+        int trueTotal = 0;
+        float bestScore = Float.POSITIVE_INFINITY;
+        int bestPrefix = -1;
+        for (int i = 0; i < used - 1; i++) {
+            int b = order[i];
+            for (int c = 0; c < classCount; c++) {
+                trueCounts[c] += histogram[b * classCount + c];
+                falseCounts[c] -= histogram[b * classCount + c];
+                trueTotal += histogram[b * classCount + c];
+            }
+            if (trueTotal < minLeafSize || total - trueTotal < minLeafSize) continue;
+            float score = criterion.score(trueCounts, falseCounts);
+            if (score < bestScore) {
+                bestScore = score;
+                bestPrefix = i;
+            }
+        }
+        if (bestPrefix < 0) return null;
+
+        boolean[] trueBins = new boolean[binCount];
+        if (bins.isNumeric()) {
+            // Empty bins below the threshold are on the true side too, as a value in them would be
+            Arrays.fill(trueBins, 0, order[bestPrefix] + 1, true);
+        }
+        else {
+            for (int i = 0; i <= bestPrefix; i++) trueBins[order[i]] = true;
+        }
+        return new HistogramSplit(bestScore, trueBins);
+    }
+
+    /**
+     * Method to order the categories of a node by the proportion of their instances of the node's most frequent class,
+     * favouring the earliest category on a tie.
+     *
+     * @param categories The categories holding instances, in category order.
+     * @param histogram The count of instances of class value c in category b at index b * classCount + c.
+     * @param classCounts The count of each class in the node.
+     * @return the ordered categories.
+     */
+    private static int[] orderCategories(int[] categories, int[] histogram, int[] classCounts) {
+        int classCount = classCounts.length;
+        int mostFrequent = 0;
+        for (int c = 1; c < classCount; c++) {
+            if (classCounts[c] > classCounts[mostFrequent]) mostFrequent = c;
+        }
+        long[] totals = new long[histogram.length / classCount];
+        for (int b : categories) {
+            for (int c = 0; c < classCount; c++) totals[b] += histogram[b * classCount + c];
+        }
+        // Proportions are compared by cross-multiplying, so no rounding can reorder them
+        int target = mostFrequent;
+        return Arrays.stream(categories).boxed().sorted((x, y) -> Long.compare(
+                histogram[x * classCount + target] * totals[y], histogram[y * classCount + target] * totals[x]))
+                .mapToInt(Integer::intValue).toArray();
+    }
+
+    /** Getter for the score of the split */
+    float getScore() {
+        return score;
+    }
+
+    /**
+     * Method to check whether a bin is on the true side of the split.
+     *
+     * @param bin The bin.
+     * @return true if instances in the bin take the true branch.
+     */
+    boolean isTrue(int bin) {
+        return trueBins[bin];
+    }
+
+    /**
+     * Method to create the node of the split.
+     *
+     * @param schema The schema of the data.
+     * @param attribute The index of the attribute split on.
+     * @param bins The bins of the attribute.
+     * @param left The branch taken by instances on the true side.
+     * @param right The branch taken by instances on the false side.
+     * @return the node.
+     * @throws InvalidDataException if the attribute is not numeric or categorical.
+     */
+    BaseNode toNode(Schema schema, int attribute, AttributeBins bins, BaseNode left, BaseNode right)
+            throws InvalidDataException {
+        String name = schema.getAttributeName(attribute);
+        if (bins.isNumeric()) {
+            int last = 0;
+            while (last + 1 < trueBins.length && trueBins[last + 1]) last++;
+            return new Node(schema, name, bins.getUpperBound(last), left, right);
+        }
+        List<String> categoryNames = schema.getCategoryNames(attribute);
+        List<String> categories = new ArrayList<>();
+        for (int b = 0; b < trueBins.length; b++) {
+            if (trueBins[b]) categories.add(categoryNames.get(b));
+        }
+        return new Node(schema, name, categories, left, right);
+    }
+}
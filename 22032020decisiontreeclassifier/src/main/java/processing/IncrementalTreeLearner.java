@@ -0,0 +1,391 @@
+package processing;
+
+import tree.BaseNode;
+import tree.LeafNode;
+import tree.Node;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * A class to grow a decision tree one Patient at a time, in the manner of a Hoeffding tree.
+ * Each leaf keeps the class counts either side of every unused attribute, the same counts Classifier prepares for
+ * its impurity check. Every gracePeriod instances a leaf compares its two best splits; once the Hoeffding bound says
+ * the best split would still be best given unlimited instances, with confidence 1 - delta, or the two are too close
+ * to tell apart, the leaf is split on the best attribute. Records are then not kept, so an update costs one walk down
+ * the tree plus one count per attribute, however many records came before it.
+ * Only boolean attributes are split on; numeric and categorical attributes are ignored, as their bins are not known
+ * until the stream has been seen.
+ * This class is not thread-safe.
+ */
+public class IncrementalTreeLearner {
+
+    /** The default probability that a split is not the one the full stream would choose */
+    public static final double DEFAULT_DELTA = 1e-6;
+    /** The default difference in impurity below which two splits are treated as tied */
+    public static final double DEFAULT_TIE_THRESHOLD = 0.01;
+    /** The default number of instances a leaf sees between checks for a split */
+    public static final int DEFAULT_GRACE_PERIOD = 200;
+    /** The default greatest number of leaves */
+    public static final int DEFAULT_MAX_LEAVES = 4096;
+    /** The count at which a leaf halves its counts, so they keep their proportions without overflowing */
+    private static final int COUNT_LIMIT = 1 << 30;
+
+    /** The schema of the instances */
+    private Schema schema;
+    /** The probability that a split is not the one the full stream would choose */
+    private double delta;
+    /** The difference in impurity below which two splits are treated as tied */
+    private double tieThreshold;
+    /** The number of instances a leaf sees between checks for a split */
+    private int gracePeriod;
+    /** The greatest number of leaves; leaves stop splitting once it is reached */
+    private int maxLeaves = DEFAULT_MAX_LEAVES;
+    /** The number of attributes of each instance */
+    private int attributeCount;
+    /** The root of the tree being grown */
+    private GrowingNode root;
+    /** The number of leaves in the tree */
+    private int leafCount = 1;
+    /** The number of instances learnt from */
+    private long instanceCount;
+    /** A reusable bitset for learning from an attributes bitmask */
+    private long[] singleWord = new long[1];
+
+    /**
+     * Constructor for an IncrementalTreeLearner of the hepatitis schema with the default settings.
+     */
+    public IncrementalTreeLearner() {
+        this(Schema.HEPATITIS);
+    }
+
+    /**
+     * Constructor for an IncrementalTreeLearner with the default settings.
+     *
+     * @param schema The schema of the instances.
+     */
+    public IncrementalTreeLearner(Schema schema) {
+        this(schema, DEFAULT_DELTA, DEFAULT_TIE_THRESHOLD, DEFAULT_GRACE_PERIOD);
+    }
+
+    /**
+     * Constructor for an IncrementalTreeLearner of the hepatitis schema.
+     *
+     * @param delta The probability that a split is not the one the full stream would choose.
+     * @param tieThreshold The difference in impurity below which two splits are treated as tied.
+     * @param gracePeriod The number of instances a leaf sees between checks for a split.
+     */
+    public IncrementalTreeLearner(double delta, double tieThreshold, int gracePeriod) {
+        this(Schema.HEPATITIS, delta, tieThreshold, gracePeriod);
+    }
+
+    /**
+     * Constructor for an IncrementalTreeLearner.
+     *
+     * @param schema The schema of the instances.
+     * @param delta The probability that a split is not the one the full stream would choose.
+     * @param tieThreshold The difference in impurity below which two splits are treated as tied.
+     * @param gracePeriod The number of instances a leaf sees between checks for a split.
+     */
+    public IncrementalTreeLearner(Schema schema, double delta, double tieThreshold, int gracePeriod) {
+        this.schema = schema;
+        this.delta = delta;
+        this.tieThreshold = tieThreshold;
+        this.gracePeriod = gracePeriod;
+        this.attributeCount = schema.getAttributeCount();
+        // Attributes that are not boolean start out as used, so they are never split on
+        boolean[] usedAttributes = new boolean[attributeCount];
+        for (int a = 0; a < attributeCount; a++) {
+            usedAttributes[a] = schema.getAttributeType(a) != Schema.AttributeType.BOOLEAN;
+        }
+        this.root = new GrowingNode(usedAttributes, new int[Math.max(1, schema.getClassCount())]);
+    }
+
+    /**
+     * Setter for the greatest number of leaves, which bounds the memory of the tree.
+     *
+     * @param maxLeaves The number of leaves.
+     */
+    public void setMaxLeaves(int maxLeaves) {
+        this.maxLeaves = maxLeaves;
+    }
+
+    /**
+     * Method to learn from one instance.
+     *
+     * @param p The instance, of the schema of this learner.
+     */
+    public void update(Patient p) {
+        update(p.getAttributeWords(), p.getClassValue());
+    }
+
+    /**
+     * Method to learn from one instance of a schema of at most 64 attributes, given as its attributes bitmask and
+     * class value.
+     *
+     * @param attributeBits The attributes bitmask.
+     * @param classValue The class value.
+     */
+    public void update(long attributeBits, byte classValue) {
+        singleWord[0] = attributeBits;
+        update(singleWord, classValue);
+    }
+
+    /**
+     * Method to learn from one instance given as its attributes bitset and class value, e.g. from a PatientReader.
+     *
+     * @param attributeWords The attributes bitset; bit i of word i / 64 is set when the attribute at index i is true.
+     * @param classValue The class value.
+     */
+    public void update(long[] attributeWords, byte classValue) {
+        instanceCount++;
+        GrowingNode node = root;
+        while (node.attribute >= 0) {
+            int a = node.attribute;
+            node = (attributeWords[a >>> 6] & (1L << a)) != 0 ? node.trueChild : node.falseChild;
+        }
+        node.add(attributeWords, classValue);
+        if (node.sinceCheck >= gracePeriod) {
+            node.sinceCheck = 0;
+            if (leafCount < maxLeaves) trySplit(node);
+        }
+    }
+
+    /**
+     * Method to learn from every instance of an iterator.
+     *
+     * @param instances The instances.
+     */
+    public void update(Iterator<Patient> instances) {
+        while (instances.hasNext()) update(instances.next());
+    }
+
+    /**
+     * Method to learn from every instance of a stream, in encounter order.
+     *
+     * @param instances The instances.
+     */
+    public void update(Stream<Patient> instances) {
+        update(instances.iterator());
+    }
+
+    /**
+     * Method to learn from the remaining lines of a reader, without creating a Patient for each.
+     *
+     * @param reader The reader, of the schema of this learner.
+     * @throws IOException if the file cannot be read.
+     * @throws InvalidDataException if a line is not in the expected format.
+     */
+    public void update(PatientReader reader) throws IOException, InvalidDataException {
+        while (reader.next()) update(reader.getAttributeWords(), reader.getClassValue());
+    }
+
+    /**
+     * Method to split a leaf if its counts are enough to choose the split attribute.
+     *
+     * @param leaf The leaf.
+     */
+    private void trySplit(GrowingNode leaf) {
+        int k = leaf.classCount;
+        int[] c = leaf.counts;
+        // Every attribute's counts cover the same instances, so those of the first unused attribute give the class
+        // counts; the impurity is largest, at (1 - 1/k) / 2, when the classes seen are equally likely
+        int[] trueCounts = new int[k];
+        int[] falseCounts = new int[k];
+        int first = 0;
+        while (first < attributeCount && leaf.usedAttributes[first]) first++;
+        if (first == attributeCount) return;
+        int classesSeen = 0;
+        int seen = 0;
+        for (int cl = 0; cl < k; cl++) {
+            int count = c[2 * first * k + cl] + c[(2 * first + 1) * k + cl];
+            if (count > 0) classesSeen++;
+            seen += count;
+        }
+        if (classesSeen < 2) return;
+
+        // As in Classifier, the first attribute with the lowest impurity is the best
+        float best = Float.MAX_VALUE;
+        float secondBest = Float.MAX_VALUE;
+        int bestAttribute = -1;
+        for (int a = first; a < attributeCount; a++) {
+            if (leaf.usedAttributes[a]) continue;
+            System.arraycopy(c, 2 * a * k, trueCounts, 0, k);
+            System.arraycopy(c, (2 * a + 1) * k, falseCounts, 0, k);
+            float impurity = SplitCriterion.Standard.GINI.score(trueCounts, falseCounts);
+            if (impurity < best) {
+                secondBest = best;
+                best = impurity;
+                bestAttribute = a;
+            }
+            else if (impurity < secondBest) secondBest = impurity;
+        }
+        // A lone candidate is compared against not splitting at all
+        if (secondBest == Float.MAX_VALUE) {
+            for (int cl = 0; cl < k; cl++) {
+                trueCounts[cl] = c[2 * first * k + cl] + c[(2 * first + 1) * k + cl];
+                falseCounts[cl] = 0;
+            }
+            secondBest = SplitCriterion.Standard.GINI.score(trueCounts, falseCounts);
+        }
+
+        double range = (1 - 1.0 / classesSeen) / 2;
+        double epsilon = Math.sqrt(range * range * Math.log(1 / delta) / (2.0 * seen));
+        if (secondBest - best > epsilon || epsilon < tieThreshold) leaf.split(bestAttribute);
+    }
+
+    /**
+     * Method to take a snapshot of the tree grown so far; later updates do not change it.
+     *
+     * @return a BaseNode instance which is the decision tree.
+     * @throws InvalidDataException if invalid data is passed to a Node or LeafNode constructor.
+     */
+    public BaseNode getTree() throws InvalidDataException {
+        return getTree(root);
+    }
+
+    /**
+     * Method to take a snapshot of a subtree.
+     *
+     * @param node The root of the subtree.
+     * @return a BaseNode instance which is the decision tree.
+     * @throws InvalidDataException if invalid data is passed to a Node or LeafNode constructor.
+     */
+    private BaseNode getTree(GrowingNode node) throws InvalidDataException {
+        if (node.attribute >= 0) {
+            return new Node(schema, schema.getAttributeName(node.attribute), getTree(node.trueChild),
+                    getTree(node.falseChild));
+        }
+        // The most frequent class, favouring the earliest class value on a tie, as in BitsetTreeBuilder
+        long total = 0;
+        int mostFrequent = 0;
+        for (int cl = 0; cl < node.classCounts.length; cl++) {
+            total += node.classCounts[cl];
+            if (node.classCounts[cl] > node.classCounts[mostFrequent]) mostFrequent = cl;
+        }
+        if (total == 0) return new LeafNode("", 0);
+        return new LeafNode(schema.getClassName((byte) mostFrequent), node.classCounts[mostFrequent] / (float) total);
+    }
+
+    /** Getter for the schema of the instances */
+    public Schema getSchema() {
+        return schema;
+    }
+
+    /** Getter for the number of instances learnt from */
+    public long getInstanceCount() {
+        return instanceCount;
+    }
+
+    /** Getter for the number of leaves */
+    public int getLeafCount() {
+        return leafCount;
+    }
+
+    /**
+     * Inner-class for a node of the tree being grown.
+     * Once split, a node drops its counts and keeps only the attribute it splits on and its children.
+     */
+    private class GrowingNode {
+
+        /** The index of the attribute split on, or -1 for a leaf */
+        private int attribute = -1;
+        /** The child for instances where the attribute is true */
+        private GrowingNode trueChild;
+        /** The child for instances where the attribute is false */
+        private GrowingNode falseChild;
+        /** Flags for the attributes split on above this node */
+        private boolean[] usedAttributes;
+        /** The number of classes the counts have room for; more are made room for as they are seen */
+        private int classCount;
+        /** The count of each class value */
+        private int[] classCounts;
+        /**
+         * For each attribute a and class value c, the count of instances where the attribute is true at
+         * 2ak + c and where it is false at (2a + 1)k + c, for k classes
+         */
+        private int[] counts;
+        /** The number of instances since the last check for a split */
+        private int sinceCheck;
+
+        /**
+         * Constructor for a GrowingNode.
+         *
+         * @param usedAttributes Flags for the attributes split on above this node.
+         * @param classCounts The count of each class value the parent saw on this side of the split.
+         */
+        private GrowingNode(boolean[] usedAttributes, int[] classCounts) {
+            this.usedAttributes = usedAttributes;
+            this.classCounts = classCounts;
+            this.classCount = classCounts.length;
+            this.counts = new int[2 * attributeCount * classCount];
+        }
+
+        /**
+         * Method to count an instance at this leaf.
+         *
+         * @param attributeWords The attributes bitset of the instance.
+         * @param classValue The class value of the instance.
+         */
+        private void add(long[] attributeWords, byte classValue) {
+            if (classValue >= classCount) addClasses(classValue + 1);
+            int total = 0;
+            for (int count : classCounts) total += count;
+            if (total >= COUNT_LIMIT) halveCounts();
+            classCounts[classValue]++;
+            int k = classCount;
+            for (int a = 0; a < attributeCount; a++) {
+                boolean value = (attributeWords[a >>> 6] & (1L << a)) != 0;
+                counts[(value ? 2 * a : 2 * a + 1) * k + classValue]++;
+            }
+            sinceCheck++;
+        }
+
+        /**
+         * Method to make room in the counts for more classes.
+         *
+         * @param newClassCount The number of classes to make room for.
+         */
+        private void addClasses(int newClassCount) {
+            int[] newCounts = new int[2 * attributeCount * newClassCount];
+            for (int i = 0; i < 2 * attributeCount; i++) {
+                System.arraycopy(counts, i * classCount, newCounts, i * newClassCount, classCount);
+            }
+            int[] newClassCounts = new int[newClassCount];
+            System.arraycopy(classCounts, 0, newClassCounts, 0, classCount);
+            counts = newCounts;
+            classCounts = newClassCounts;
+            classCount = newClassCount;
+        }
+
+        /**
+         * Method to turn this leaf into a node splitting on an attribute.
+         * The children start with the class counts this leaf saw either side of the split, so they classify the same
+         * as this leaf until they see instances of their own.
+         *
+         * @param a The index of the attribute.
+         */
+        private void split(int a) {
+            boolean[] childUsed = usedAttributes.clone();
+            childUsed[a] = true;
+            int[] trueCounts = new int[classCount];
+            int[] falseCounts = new int[classCount];
+            System.arraycopy(counts, 2 * a * classCount, trueCounts, 0, classCount);
+            System.arraycopy(counts, (2 * a + 1) * classCount, falseCounts, 0, classCount);
+            trueChild = new GrowingNode(childUsed, trueCounts);
+            falseChild = new GrowingNode(childUsed, falseCounts);
+            attribute = a;
+            counts = null;
+            leafCount++;
+        }
+
+        /**
+         * Method to halve every count, keeping the proportions the split is chosen from.
+         */
+        private void halveCounts() {
+            for (int i = 0; i < classCounts.length; i++) classCounts[i] >>= 1;
+            for (int i = 0; i < counts.length; i++) counts[i] >>= 1;
+        }
+    }
+}
@@ -0,0 +1,405 @@
+package processing;
+
+import metrics.TrainingMetrics;
+import tree.BaseNode;
+import tree.LeafNode;
+import tree.Node;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A class to build a decision tree from a ColumnFile too large for the heap.
+ * The tree is built breadth-first, a level at a time, with one sequential scan of the file per level. The node each
+ * row is in is held in a column of node indices beside the data, itself a memory-mapped scratch file, so the only
+ * memory the build needs in the heap is the class counts of the nodes of one level: the count of each class in each
+ * node, and where each attribute is true. The scan for a level moves each row from its node in the level above to the
+ * branch its split sends it down, counting it there as it goes, then every node of the level is split or made a leaf
+ * from its counts alone.
+ * Nodes are split by the same rules as BitsetTreeBuilder, so the tree built is the tree BitsetTreeBuilder builds from
+ * the same rows held in a ColumnarDataset.
+ */
+public class OutOfCoreTreeBuilder {
+
+    /** The largest number of rows of the node column mapped at once */
+    private static final int NODE_WINDOW = 1 << 28;
+
+    /** The data to build the tree from */
+    private ColumnFile data;
+    /** The criterion splits are chosen by */
+    private SplitCriterion criterion = SplitCriterion.Standard.GINI;
+    /** The largest depth of a split, or 0 for no limit */
+    private int maxDepth;
+    /** The smallest number of rows either side of a split, or 0 for no limit */
+    private int minLeafSize;
+    /** The smallest number of rows in a node that is split, or 0 for no limit */
+    private int minSamplesSplit;
+    /** The smallest decrease from a node's score to the score of its split, or 0 for no limit */
+    private float minImpurityDecrease;
+    /** The metrics to record the tree built in, or null to record none */
+    private TrainingMetrics metrics;
+
+    /** The channel of the scratch file of the node of each row */
+    private FileChannel nodeChannel;
+    /** The mapped window of the node column */
+    private IntBuffer nodeWindow;
+    /** The index of the first row of the mapped window */
+    private int nodeWindowStart;
+
+    /**
+     * Constructor for an OutOfCoreTreeBuilder.
+     *
+     * @param data The data to build the tree from.
+     */
+    public OutOfCoreTreeBuilder(ColumnFile data) {
+        this.data = data;
+    }
+
+    /**
+     * Setter for the criterion splits are chosen by.
+     *
+     * @param criterion The criterion.
+     */
+    public void setCriterion(SplitCriterion criterion) {
+        this.criterion = criterion;
+    }
+
+    /**
+     * Setter for the largest depth of the tree; nodes at this depth become leaves with their most frequent class.
+     *
+     * @param maxDepth The largest number of splits from the root to a leaf, or 0 for no limit.
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Setter for the smallest number of rows either side of a split; splits leaving fewer on a side are not chosen.
+     *
+     * @param minLeafSize The smallest number of rows, or 0 for no limit.
+     */
+    public void setMinLeafSize(int minLeafSize) {
+        this.minLeafSize = minLeafSize;
+    }
+
+    /**
+     * Setter for the smallest number of rows a node needs to be split; smaller nodes become leaves.
+     *
+     * @param minSamplesSplit The smallest number of rows, or 0 for no limit.
+     */
+    public void setMinSamplesSplit(int minSamplesSplit) {
+        this.minSamplesSplit = minSamplesSplit;
+    }
+
+    /**
+     * Setter for the smallest improvement a split must make: the score of a node as a single side, less the score of
+     * its best split. Nodes whose best split improves on them by less become leaves.
+     *
+     * @param minImpurityDecrease The smallest decrease in score, or 0 for no limit.
+     */
+    public void setMinImpurityDecrease(float minImpurityDecrease) {
+        this.minImpurityDecrease = minImpurityDecrease;
+    }
+
+    /**
+     * Setter for the metrics to record the tree built, the scan of each level and the splits of each node in.
+     *
+     * @param metrics The metrics, or null to record none.
+     */
+    public void setMetrics(TrainingMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Method to build the decision tree over every row of the data. The scratch file of the node of each row is
+     * created beside the data and deleted when the build is done.
+     *
+     * @return a BaseNode instance which is the decision tree.
+     * @throws IOException if the data or scratch file cannot be mapped.
+     * @throws InvalidDataException if invalid data is passed to a LeafNode constructor.
+     */
+    public BaseNode build() throws IOException, InvalidDataException {
+        long start = System.nanoTime();
+        Path dir = data.getPath().toAbsolutePath().getParent();
+        Path scratch = Files.createTempFile(dir, "nodes", ".tmp");
+        try (FileChannel channel = FileChannel.open(scratch, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE)) {
+            nodeChannel = channel;
+            nodeWindow = null;
+            Pending root = new Pending(0, new boolean[data.getSchema().getAttributeCount()]);
+            List<Pending> level = new ArrayList<>();
+            level.add(root);
+            Pending[] above = null;
+            while (!level.isEmpty()) {
+                Pending[] nodes = level.toArray(new Pending[0]);
+                long scanned = System.nanoTime();
+                scan(above, nodes);
+                if (metrics != null) metrics.recordPartition(System.nanoTime() - scanned);
+                if (above == null) root.setDefault(data.getSchema());
+                level = new ArrayList<>();
+                for (Pending node : nodes) split(node, root, level);
+                above = nodes;
+            }
+            BaseNode tree = root.toTree(data.getSchema());
+            if (metrics != null) metrics.recordTree(System.nanoTime() - start);
+            return tree;
+        } finally {
+            nodeChannel = null;
+            nodeWindow = null;
+        }
+    }
+
+    /**
+     * Method to scan the data once for a level: each row is moved from its node in the level above to the branch
+     * its split sends it down, and counted in that node of this level.
+     *
+     * @param above The nodes of the level above, indexed by the node column, or null for the root's level.
+     * @param nodes The nodes of this level; their counts are filled in.
+     * @throws IOException if the data or node column cannot be mapped.
+     * @throws InvalidDataException never; scanning does not reject the data.
+     */
+    private void scan(Pending[] above, Pending[] nodes) throws IOException, InvalidDataException {
+        int attributeCount = data.getSchema().getAttributeCount();
+        int classCount = data.getSchema().getClassCount();
+        for (int n = 0; n < nodes.length; n++) {
+            nodes[n].index = n;
+            nodes[n].classCounts = new int[classCount];
+            nodes[n].trueCounts = new int[attributeCount * classCount];
+        }
+        int[] rowNodes = new int[Long.SIZE];
+        byte[] rowClasses = new byte[Long.SIZE];
+        try {
+            data.scan(block -> scanBlock(block, above, nodes, rowNodes, rowClasses));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Method to scan a block of the data for a level.
+     *
+     * @param block The block.
+     * @param above The nodes of the level above, indexed by the node column, or null for the root's level.
+     * @param nodes The nodes of this level, whose counts are added to.
+     * @param rowNodes An array for the node of each row of a word.
+     * @param rowClasses An array for the class value of each row of a word.
+     */
+    private void scanBlock(ColumnFile.Block block, Pending[] above, Pending[] nodes, int[] rowNodes,
+                           byte[] rowClasses) {
+        int attributeCount = data.getSchema().getAttributeCount();
+        int classCount = data.getSchema().getClassCount();
+        for (int w = 0; w < block.getWordCount(); w++) {
+            int firstRow = block.getFirstRow() + (w << 6);
+            int rows = Math.min(Long.SIZE, block.getFirstRow() + block.getRows() - firstRow);
+            mapNodes(firstRow, rows);
+            long active = 0;
+            for (int i = 0; i < rows; i++) {
+                int slot = firstRow + i - nodeWindowStart;
+                int n = 0;
+                if (above != null) {
+                    int parent = nodeWindow.get(slot);
+                    if (parent < 0) continue;
+                    Pending node = above[parent];
+                    if (node.attribute < 0) {
+                        // The row's node became a leaf, so it is in no node from now on
+                        nodeWindow.put(slot, -1);
+                        continue;
+                    }
+                    boolean isTrue = (block.getAttributeWord(node.attribute, w) & (1L << i)) != 0;
+                    n = (isTrue ? node.trueBranch : node.falseBranch).index;
+                }
+                nodeWindow.put(slot, n);
+                rowNodes[i] = n;
+                rowClasses[i] = block.getClassValue((w << 6) + i);
+                nodes[n].classCounts[rowClasses[i]]++;
+                active |= 1L << i;
+            }
+            // Count the rows where each attribute is true, visiting only their set bits
+            for (int a = 0; a < attributeCount; a++) {
+                for (long bits = block.getAttributeWord(a, w) & active; bits != 0; bits &= bits - 1) {
+                    int i = Long.numberOfTrailingZeros(bits);
+                    nodes[rowNodes[i]].trueCounts[a * classCount + rowClasses[i]]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Method to map the window of the node column holding a range of rows, if it is not already mapped.
+     *
+     * @param firstRow The first row of the range.
+     * @param rows The number of rows, at most 64.
+     */
+    private void mapNodes(int firstRow, int rows) {
+        if (nodeWindow != null && firstRow >= nodeWindowStart && firstRow + rows <= nodeWindowStart
+                + nodeWindow.capacity()) {
+            return;
+        }
+        // Windows start on a word of rows, so the rows of a word are never split between two windows
+        nodeWindowStart = firstRow;
+        int length = Math.min(NODE_WINDOW, data.size() - firstRow);
+        try {
+            nodeWindow = nodeChannel.map(FileChannel.MapMode.READ_WRITE, (long) firstRow * Integer.BYTES,
+                    (long) length * Integer.BYTES).asIntBuffer();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Method to split a node of a level by its counts, or make it a leaf.
+     * This follows the same steps as BitsetTreeBuilder.buildTree so that both build the same tree.
+     *
+     * @param node The node.
+     * @param root The root, which holds the leaf for an empty node.
+     * @param next The nodes of the next level, which the branches of a split are added to.
+     * @throws InvalidDataException if invalid data is passed to a LeafNode constructor.
+     */
+    private void split(Pending node, Pending root, List<Pending> next) throws InvalidDataException {
+        int[] classCounts = node.classCounts;
+        int total = sum(classCounts);
+        if (total == 0) {
+            node.leaf = new LeafNode(root.defaultClass, root.defaultProbability);
+            return;
+        }
+        int mostFrequent = 0;
+        for (int c = 1; c < classCounts.length; c++) {
+            if (classCounts[c] > classCounts[mostFrequent]) mostFrequent = c;
+        }
+        String mostFrequentClass = data.getSchema().getClassName((byte) mostFrequent);
+        if (classCounts[mostFrequent] == total) {
+            node.leaf = new LeafNode(mostFrequentClass, 1);
+            return;
+        }
+        float probability = classCounts[mostFrequent] / (float) total;
+        if ((maxDepth > 0 && node.depth >= maxDepth) || total < 2 * minLeafSize || total < minSamplesSplit) {
+            node.leaf = new LeafNode(mostFrequentClass, probability);
+            return;
+        }
+
+        long start = metrics == null ? 0 : System.nanoTime();
+        int classCount = classCounts.length;
+        int[] trueCounts = new int[classCount];
+        int[] falseCounts = new int[classCount];
+        float bestScore = Float.POSITIVE_INFINITY;
+        int bestAttribute = -1;
+        for (int a = 0; a < node.usedAttributes.length; a++) {
+            if (node.usedAttributes[a]) continue;
+            for (int c = 0; c < classCount; c++) {
+                trueCounts[c] = node.trueCounts[a * classCount + c];
+                falseCounts[c] = classCounts[c] - trueCounts[c];
+            }
+            float score = criterion.score(trueCounts, falseCounts);
+            if (minLeafSize > 0 && (sum(trueCounts) < minLeafSize || sum(falseCounts) < minLeafSize)) {
+                score = Float.POSITIVE_INFINITY;
+            }
+            if (score < bestScore) {
+                bestScore = score;
+                bestAttribute = a;
+            }
+        }
+        if (bestAttribute >= 0 && minImpurityDecrease > 0) {
+            float nodeScore = criterion.score(classCounts, new int[classCount]);
+            if (nodeScore - bestScore < minImpurityDecrease) bestAttribute = -1;
+        }
+        if (metrics != null) metrics.recordSplitEvaluation(System.nanoTime() - start);
+        // The counts are no longer needed, and a level may hold many nodes
+        node.trueCounts = null;
+
+        if (bestAttribute < 0) {
+            node.leaf = new LeafNode(mostFrequentClass, probability);
+            return;
+        }
+        boolean[] childUsedAttributes = node.usedAttributes.clone();
+        childUsedAttributes[bestAttribute] = true;
+        node.attribute = bestAttribute;
+        node.trueBranch = new Pending(node.depth + 1, childUsedAttributes);
+        node.falseBranch = new Pending(node.depth + 1, childUsedAttributes);
+        next.add(node.trueBranch);
+        next.add(node.falseBranch);
+    }
+
+    /**
+     * Method to sum a set of class counts.
+     *
+     * @param counts The count of each class.
+     * @return the sum.
+     */
+    private static int sum(int[] counts) {
+        int sum = 0;
+        for (int count : counts) sum += count;
+        return sum;
+    }
+
+    /**
+     * Inner-class for a node while the tree is built: its counts while its level is scanned, then its split or leaf.
+     */
+    private static class Pending {
+
+        /** The number of splits above this node */
+        private final int depth;
+        /** Flags for the attributes already used above this node */
+        private final boolean[] usedAttributes;
+        /** The index of this node in its level */
+        private int index;
+        /** The count of each class in this node */
+        private int[] classCounts;
+        /** The count of each class where each attribute is true, at index attribute * class count + class value */
+        private int[] trueCounts;
+        /** The attribute this node is split on, or -1 for a leaf */
+        private int attribute = -1;
+        /** The node of the rows where the attribute is true */
+        private Pending trueBranch;
+        /** The node of the rows where the attribute is false */
+        private Pending falseBranch;
+        /** The leaf this node became */
+        private LeafNode leaf;
+        /** The class name of the leaf of an empty node, set on the root */
+        private String defaultClass;
+        /** The probability of the leaf of an empty node, set on the root */
+        private float defaultProbability;
+
+        /**
+         * Constructor for a Pending node.
+         *
+         * @param depth The number of splits above this node.
+         * @param usedAttributes Flags for the attributes already used above this node.
+         */
+        Pending(int depth, boolean[] usedAttributes) {
+            this.depth = depth;
+            this.usedAttributes = usedAttributes;
+        }
+
+        /**
+         * Method to set the leaf of an empty node from the counts of the root, as Classifier does from the training
+         * data: the first class with the highest count and its share of the rows.
+         *
+         * @param schema The schema of the data.
+         */
+        void setDefault(Schema schema) {
+            ColumnarDataset.MostFrequentClass mostFrequent = ColumnarDataset.mostFrequentClass(schema, classCounts);
+            defaultClass = mostFrequent.getClassName();
+            defaultProbability = mostFrequent.getProbability();
+        }
+
+        /**
+         * Method to turn this node and those below it into a tree.
+         *
+         * @param schema The schema of the data.
+         * @return the tree.
+         * @throws InvalidDataException if an attribute name is not of the schema.
+         */
+        BaseNode toTree(Schema schema) throws InvalidDataException {
+            if (attribute < 0) return leaf;
+            return new Node(schema, schema.getAttributeName(attribute), trueBranch.toTree(schema),
+                    falseBranch.toTree(schema));
+        }
+    }
+}
@@ -0,0 +1,521 @@
+package processing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A class to read whole data files into Patient instances in parallel.
+ * Each file is split into chunks of bytes that start and end on line boundaries, and the chunks of every file are
+ * parsed as concurrent tasks in a pool into blocks of attribute words, values and class values. The blocks are then
+ * merged in file and line order, and their Patient instances created concurrently again.
+ * Parsing a chunk does not touch the schema: class names and categories get values local to the chunk, in the order
+ * they first occur, and merging adds them to the schema in file order. Class values and categories are therefore
+ * those PatientReader would give reading the files one after another, and so is the exception for invalid data: that
+ * of the first invalid line of the first file with one, with its line number in that file.
+ */
+public class ParallelPatientReader {
+
+    /** The smallest chunk, in bytes, a file is split into */
+    public static final int MIN_CHUNK_BYTES = 1 << 20;
+    /** The largest chunk, in bytes, a file is split into */
+    public static final int MAX_CHUNK_BYTES = 1 << 26;
+    /** The number of chunks aimed for per thread of the pool, so threads that finish early can take more */
+    private static final int CHUNKS_PER_THREAD = 4;
+    /** The number of bytes read at a time when looking for the end of a line */
+    private static final int SCAN_BYTES = 1 << 16;
+
+    /** The pool to parse the chunks in */
+    private ForkJoinPool pool;
+    /** The size of the chunks, in bytes, or 0 to size them by the file and the pool */
+    private int chunkBytes;
+
+    /**
+     * Constructor for a ParallelPatientReader.
+     *
+     * @param pool The pool to parse the chunks in.
+     */
+    public ParallelPatientReader(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Setter for the size of the chunks files are split into, e.g. to split small files into many chunks. A chunk is
+     * longer than this where a line runs past its end.
+     *
+     * @param chunkBytes The size of the chunks in bytes, or 0 to size them by the file and the pool.
+     */
+    public void setChunkBytes(int chunkBytes) {
+        this.chunkBytes = chunkBytes;
+    }
+
+    /**
+     * Method to read data files of one schema concurrently into lists of Patient instances.
+     *
+     * @param schema The schema of the data, or null for each file to have the schema of its own headings.
+     * @param fileUrls The file paths to the data.
+     * @return a list of Patient instances for each file, in the order of the file paths.
+     * @throws IOException if a file path is incorrect.
+     * @throws InvalidDataException if a file does not match the schema, or any part of its data cannot be used to
+     * create a Patient instance; the message includes the line number, as from PatientReader.
+     */
+    public List<ArrayList<Patient>> read(Schema schema, String... fileUrls) throws IOException, InvalidDataException {
+        List<FileParse> files = new ArrayList<>();
+        List<Chunk> chunks = new ArrayList<>();
+        try {
+            for (String fileUrl : fileUrls) {
+                FileParse file = new FileParse(fileUrl, schema);
+                files.add(file);
+                chunks.addAll(file.chunks);
+            }
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    ForkJoinTask.invokeAll(chunks);
+                }
+            });
+        } finally {
+            for (FileParse file : files) file.close();
+        }
+
+        // Merge in order, so the schema gains class names and categories as it would reading line by line
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        List<Patient[]> patientArrays = new ArrayList<>();
+        for (FileParse file : files) {
+            Patient[] patients = file.merge();
+            patientArrays.add(patients);
+            int offset = 0;
+            for (Chunk chunk : file.chunks) {
+                final int chunkOffset = offset;
+                tasks.add(new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        chunk.createPatients(patients, chunkOffset);
+                    }
+                });
+                offset += chunk.rows;
+            }
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                ForkJoinTask.invokeAll(tasks);
+            }
+        });
+        List<ArrayList<Patient>> data = new ArrayList<>();
+        for (Patient[] patients : patientArrays) data.add(new ArrayList<>(Arrays.asList(patients)));
+        return data;
+    }
+
+    /**
+     * Method to find the start of the first line that starts at or after a file position.
+     *
+     * @param channel The channel of the file.
+     * @param position The file position, after the start of the file.
+     * @param fileSize The size of the file.
+     * @return the file position after the first newline at or after position - 1, or the file size if there is none.
+     * @throws IOException if the file cannot be read.
+     */
+    private static long findLineStart(FileChannel channel, long position, long fileSize) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(SCAN_BYTES);
+        long scanned = position - 1;
+        while (scanned < fileSize) {
+            bytes.clear();
+            int read = channel.read(bytes, scanned);
+            if (read <= 0) break;
+            for (int i = 0; i < read; i++) {
+                if (bytes.get(i) == '\n') return scanned + i + 1;
+            }
+            scanned += read;
+        }
+        return fileSize;
+    }
+
+    /**
+     * Inner-class for a file being read: its schema, its chunks and, once they are parsed, how they merge.
+     */
+    private class FileParse {
+
+        /** The schema of the file */
+        private Schema schema;
+        /** The channel of the file, open until its chunks are parsed */
+        private FileChannel channel;
+        /** The chunks of the file, in file order */
+        private List<Chunk> chunks = new ArrayList<>();
+        /** The exception opening the file, thrown when the file is merged */
+        private IOException openError;
+        /** The exception for headings that do not give or match the schema, thrown when the file is merged */
+        private InvalidDataException headingsError;
+
+        /**
+         * Constructor for a FileParse, reading the headings and splitting the rest of the file into chunks.
+         *
+         * @param fileUrl The file path to the data.
+         * @param schema The schema of the data, or null to read it from the line of headings.
+         * @throws IOException if the file cannot be split into chunks.
+         */
+        FileParse(String fileUrl, Schema schema) throws IOException {
+            long dataStart;
+            try (PatientReader reader = new PatientReader(fileUrl, schema)) {
+                this.schema = reader.getSchema();
+                dataStart = reader.getFilePosition();
+            } catch (IOException e) {
+                // Kept until merging, so an error in an earlier file is thrown first
+                openError = e;
+                return;
+            } catch (InvalidDataException e) {
+                headingsError = e;
+                return;
+            }
+            channel = FileChannel.open(Paths.get(fileUrl), StandardOpenOption.READ);
+            try {
+                long fileSize = channel.size();
+                long size = chunkBytes;
+                if (size <= 0) {
+                    long target = (fileSize - dataStart) / ((long) pool.getParallelism() * CHUNKS_PER_THREAD);
+                    size = Math.max(MIN_CHUNK_BYTES, Math.min(MAX_CHUNK_BYTES, target));
+                }
+                long chunkStart = dataStart;
+                while (chunkStart < fileSize) {
+                    long chunkEnd = chunkStart + size >= fileSize ? fileSize
+                            : findLineStart(channel, chunkStart + size, fileSize);
+                    chunks.add(new Chunk(this, chunkStart, chunkEnd));
+                    chunkStart = chunkEnd;
+                }
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Method to merge the parsed chunks in order: the class names and categories of each are added to the schema,
+         * and the first error, if any, thrown with its line number in the file.
+         *
+         * @return an array to create the Patient instances of the file in, of its number of rows.
+         * @throws IOException if the file could not be read.
+         * @throws InvalidDataException if the file has invalid data.
+         */
+        Patient[] merge() throws IOException, InvalidDataException {
+            if (openError != null) throw openError;
+            if (headingsError != null) throw headingsError;
+            int rows = 0;
+            // The headings are line 1
+            int linesBefore = 1;
+            for (Chunk chunk : chunks) {
+                chunk.merge(linesBefore);
+                rows += chunk.rows;
+                linesBefore += chunk.lines;
+            }
+            return new Patient[rows];
+        }
+
+        /**
+         * Method to close the file's channel.
+         *
+         * @throws IOException if the channel cannot be closed.
+         */
+        void close() throws IOException {
+            if (channel != null) channel.close();
+        }
+    }
+
+    /**
+     * Inner-class for the task of parsing a chunk of a file, of whole lines, into a block of rows.
+     */
+    private static class Chunk extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        /** The file the chunk is of */
+        private FileParse file;
+        /** The file position of the start of the chunk */
+        private long start;
+        /** The file position after the end of the chunk */
+        private long end;
+        /** The schema of the file */
+        private Schema schema;
+        /** The number of attribute words of each row */
+        private int wordsPerRow;
+        /** The number of attributes, and of values of each row when not every attribute is boolean */
+        private int attributeCount;
+        /** The number of tokens expected on a line: the class value followed by the attributes */
+        private int tokensCount;
+
+        /** The mapped bytes of the chunk */
+        private MappedByteBuffer buffer;
+        /** The number of rows parsed */
+        private int rows;
+        /** The number of lines parsed, including an invalid line */
+        private int lines;
+        /** The attribute words of each row in turn */
+        private long[] words = new long[0];
+        /** The values of each row in turn, or null when every attribute is boolean */
+        private double[] values;
+        /** The class value local to the chunk of each row */
+        private short[] classValues = new short[0];
+        /** The bytes of each class name seen, by local class value */
+        private List<byte[]> classBytes = new ArrayList<>();
+        /** The local category of each category name seen, by categorical attribute */
+        private List<Map<String, Integer>> categories = new ArrayList<>();
+        /** The names of classes and categories in the order they were first seen, as the schema would see them */
+        private List<Name> names = new ArrayList<>();
+        /** The message of the first invalid line, without its line number, or null if every line is valid */
+        private String error;
+        /** The exception mapping the chunk, or null if it was mapped */
+        private IOException readError;
+        /** The schema class value of each local class value, once merged */
+        private byte[] classMap;
+        /** The schema category of each local category by attribute, once merged */
+        private int[][] categoryMap;
+
+        /**
+         * Constructor for a Chunk.
+         *
+         * @param file The file the chunk is of.
+         * @param start The file position of the start of the chunk, the start of a line.
+         * @param end The file position after the end of the chunk, after a newline or the end of the file.
+         */
+        Chunk(FileParse file, long start, long end) {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+            schema = file.schema;
+            attributeCount = schema.getAttributeCount();
+            wordsPerRow = ColumnarDataset.wordCount(attributeCount);
+            tokensCount = attributeCount + 1;
+            for (int a = 0; a < attributeCount; a++) categories.add(new HashMap<>());
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                if (end - start > Integer.MAX_VALUE) throw new IOException("Line too long to map near byte " + start);
+                buffer = file.channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            } catch (IOException e) {
+                readError = e;
+                return;
+            }
+            if (!schema.isAllBoolean()) values = new double[0];
+            int limit = buffer.limit();
+            // Size the block by the lines of the start of the chunk, so it rarely has to grow
+            int sampled = Math.min(limit, SCAN_BYTES);
+            int sampledLines = 1;
+            for (int i = 0; i < sampled; i++) {
+                if (buffer.get(i) == '\n') sampledLines++;
+            }
+            grow((int) Math.min(Integer.MAX_VALUE / Math.max(1, wordsPerRow + attributeCount),
+                    (long) limit * sampledLines / sampled * 9 / 8 + 16));
+            int position = 0;
+            while (position < limit) {
+                int lineEnd = position;
+                while (lineEnd < limit && buffer.get(lineEnd) != '\n') lineEnd++;
+                lines++;
+                int lineStart = position;
+                position = lineEnd + 1;
+                // Lines may end in "\r\n"
+                if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') lineEnd--;
+                if (!parseLine(lineStart, lineEnd)) break;
+            }
+            buffer = null;
+        }
+
+        /**
+         * Method to parse the tokens of a line into the next row, as PatientReader does.
+         *
+         * @param lineStart The position of the first byte of the line.
+         * @param lineEnd The position after the last byte of the line.
+         * @return true if the line is valid; false, with the error set, if not.
+         */
+        private boolean parseLine(int lineStart, int lineEnd) {
+            // Trailing separators are ignored, as String.split drops trailing empty tokens
+            int trimmedEnd = lineEnd;
+            while (trimmedEnd > lineStart && buffer.get(trimmedEnd - 1) == ' ') trimmedEnd--;
+            if (trimmedEnd == lineStart) return invalidLine(lineStart, lineEnd);
+
+            if (rows == classValues.length) grow(classValues.length * 2);
+            int wordOffset = rows * wordsPerRow;
+            int valueOffset = rows * attributeCount;
+            int token = 0;
+            int tokenStart = lineStart;
+            for (int i = lineStart; i <= trimmedEnd; i++) {
+                if (i < trimmedEnd && buffer.get(i) != ' ') continue;
+                if (token >= tokensCount) return invalidLine(lineStart, lineEnd);
+                if (token == 0) classValues[rows] = parseClass(tokenStart, i);
+                else if (values != null && schema.getAttributeType(token - 1) != Schema.AttributeType.BOOLEAN) {
+                    int attribute = token - 1;
+                    String value = PatientReader.decode(buffer, tokenStart, i);
+                    if (schema.getAttributeType(attribute) == Schema.AttributeType.NUMERIC) {
+                        try {
+                            values[valueOffset + attribute] = Patient.parseNumber(value);
+                        } catch (InvalidDataException e) {
+                            error = e.getMessage();
+                            return false;
+                        }
+                    }
+                    else values[valueOffset + attribute] = parseCategory(attribute, value);
+                }
+                else if (PatientReader.isTrue(buffer, tokenStart, i)) {
+                    words[wordOffset + ((token - 1) >>> 6)] |= 1L << (token - 1);
+                }
+                token++;
+                tokenStart = i + 1;
+            }
+            if (token != tokensCount) return invalidLine(lineStart, lineEnd);
+            rows++;
+            return true;
+        }
+
+        /**
+         * Method to grow the arrays of rows.
+         *
+         * @param capacity The number of rows to hold.
+         */
+        private void grow(int capacity) {
+            words = Arrays.copyOf(words, capacity * wordsPerRow);
+            if (values != null) values = Arrays.copyOf(values, capacity * attributeCount);
+            classValues = Arrays.copyOf(classValues, capacity);
+        }
+
+        /**
+         * Method to return the local class value of a class token, adding its class name if not seen before.
+         *
+         * @param tokenStart The position of the first byte of the token.
+         * @param tokenEnd The position after the last byte of the token.
+         * @return the local class value.
+         */
+        private short parseClass(int tokenStart, int tokenEnd) {
+            for (int c = 0; c < classBytes.size(); c++) {
+                if (PatientReader.matches(buffer, tokenStart, tokenEnd, classBytes.get(c))) return (short) c;
+            }
+            String className = PatientReader.decode(buffer, tokenStart, tokenEnd);
+            classBytes.add(className.getBytes(Charset.defaultCharset()));
+            names.add(new Name(lines, -1, className));
+            // Local class values only index the class names, so there may be more than the schema allows
+            return (short) (classBytes.size() - 1);
+        }
+
+        /**
+         * Method to return the local category of a categorical token, adding its category name if not seen before.
+         *
+         * @param attribute The index of the attribute.
+         * @param categoryName The category name.
+         * @return the local category.
+         */
+        private int parseCategory(int attribute, String categoryName) {
+            Map<String, Integer> attributeCategories = categories.get(attribute);
+            Integer category = attributeCategories.get(categoryName);
+            if (category != null) return category;
+            attributeCategories.put(categoryName, attributeCategories.size());
+            names.add(new Name(lines, attribute, categoryName));
+            return attributeCategories.size() - 1;
+        }
+
+        /**
+         * Method to set the error for a line not in the expected format.
+         *
+         * @param lineStart The position of the first byte of the line.
+         * @param lineEnd The position after the last byte of the line.
+         * @return false, as the line is invalid.
+         */
+        private boolean invalidLine(int lineStart, int lineEnd) {
+            error = "The line\n" + PatientReader.decode(buffer, lineStart, lineEnd) + "\nis not in the expected format";
+            return false;
+        }
+
+        /**
+         * Method to add the class names and categories of the chunk to the schema in the order they were seen, and
+         * throw the chunk's error.
+         *
+         * @param linesBefore The number of lines of the file before the chunk.
+         * @throws IOException if the chunk could not be read.
+         * @throws InvalidDataException if a class or category cannot be added to the schema, or a line is invalid.
+         */
+        void merge(int linesBefore) throws IOException, InvalidDataException {
+            if (readError != null) throw readError;
+            classMap = new byte[classBytes.size()];
+            categoryMap = new int[attributeCount][];
+            for (int a = 0; a < attributeCount; a++) categoryMap[a] = new int[categories.get(a).size()];
+            int classCount = 0;
+            int[] categoryCounts = new int[attributeCount];
+            for (Name name : names) {
+                try {
+                    if (name.attribute < 0) {
+                        classMap[classCount++] = schema.getClassValue(name.name);
+                    }
+                    else {
+                        categoryMap[name.attribute][categoryCounts[name.attribute]++] =
+                                schema.getCategory(name.attribute, name.name);
+                    }
+                } catch (InvalidDataException e) {
+                    throw new InvalidDataException("Line " + (linesBefore + name.line) + ": " + e.getMessage());
+                }
+            }
+            if (error != null) throw new InvalidDataException("Line " + (linesBefore + lines) + ": " + error);
+        }
+
+        /**
+         * Method to create the Patient instances of the chunk's rows, once merged.
+         *
+         * @param patients The array to put them in.
+         * @param offset The index in the array of the chunk's first row.
+         */
+        void createPatients(Patient[] patients, int offset) {
+            for (int row = 0; row < rows; row++) {
+                long[] rowWords = Arrays.copyOfRange(words, row * wordsPerRow, (row + 1) * wordsPerRow);
+                double[] rowValues = null;
+                if (values != null) {
+                    rowValues = Arrays.copyOfRange(values, row * attributeCount, (row + 1) * attributeCount);
+                    for (int a = 0; a < attributeCount; a++) {
+                        if (schema.getAttributeType(a) == Schema.AttributeType.CATEGORICAL) {
+                            rowValues[a] = categoryMap[a][(int) rowValues[a]];
+                        }
+                    }
+                }
+                patients[offset + row] = new Patient(schema, rowWords, rowValues, classMap[classValues[row]]);
+            }
+            // The block is no longer needed once its rows are Patient instances
+            words = null;
+            values = null;
+            classValues = null;
+        }
+    }
+
+    /**
+     * Inner-class for a class or category name first seen on a line of a chunk.
+     */
+    private static class Name {
+
+        /** The line of the chunk the name was first seen on, from 1 */
+        private int line;
+        /** The index of the categorical attribute of a category name, or -1 for a class name */
+        private int attribute;
+        /** The name */
+        private String name;
+
+        /**
+         * Constructor for a Name.
+         *
+         * @param line The line of the chunk the name was first seen on, from 1.
+         * @param attribute The index of the categorical attribute of a category name, or -1 for a class name.
+         * @param name The name.
+         */
+        Name(int line, int attribute, String name) {
+            this.line = line;
+            this.attribute = attribute;
+            this.name = name;
+        }
+    }
+}
@@ -7,12 +7,14 @@ import java.util.*;
  */
 public class Patient {
 
-    /** The list of attributes for this Patient instance */
-    private Map<String, Boolean> attributes;
-    /** The labelled class of this Patient */
-    private String className;
-    /** The number of attributes expected for a Patient */
-    private static final int ATTRIBUTES_COUNT = 16;
+    /** The schema of the data this Patient belongs to */
+    private Schema schema;
+    /** The attributes for this Patient instance; bit i of word i / 64 is set when the attribute at index i is true */
+    private long[] attributes;
+    /** The values of the numeric and categorical attributes by attribute index, or null when every one is boolean */
+    private double[] values;
+    /** The labelled class of this Patient, as an index into the class names of its schema */
+    private byte classValue;
     /** The keys for the different attributes expected for a Patient */
     public static final String LIVE_CLASS_KEY = "live";
     public static final String DIE_CLASS_KEY = "die";
@@ -32,60 +34,209 @@ public class Patient {
     public static final String BILIRUBIN_KEY = "BILIRUBIN";
     public static final String SGOT_KEY = "SGOT";
     public static final String HISTOLOGY_KEY = "HISTOLOGY";
+    /** The class value indices for the different classes expected for a Patient */
+    public static final byte LIVE_CLASS = 0;
+    public static final byte DIE_CLASS = 1;
 
     /**
-     * Constructor for a Patient instance.
+     * Constructor for a Patient instance of the hepatitis schema.
      *
      * @param data A space-separated String with the attributes and class value for this Patient.
      * @throws InvalidDataException if data is not in the expected format.
      */
     public Patient(String data) throws InvalidDataException {
+        this(Schema.HEPATITIS, data);
+    }
+
+    /**
+     * Constructor for a Patient instance.
+     *
+     * @param schema The schema of the data.
+     * @param data A space-separated String with the attributes and class value for this Patient.
+     * @throws InvalidDataException if data is not in the expected format.
+     */
+    public Patient(Schema schema, String data) throws InvalidDataException {
 
         // See how many attributes we have from the parameter data
         String[] allAttr = data.split(" ");
+        int attributesCount = schema.getAttributeCount();
         // If it does not total the number of expected attributes plus 1 (for the class number) then this is invalid
-        if(allAttr.length != ATTRIBUTES_COUNT + 1) {
+        if(allAttr.length != attributesCount + 1) {
             throw new InvalidDataException("The line\n" + data + "\nis not in the expected format");
         }
 
-        // Else for the attributes...
-        List<String> rawAttr = new ArrayList<>(Arrays.asList(allAttr));
-        attributes = new HashMap<String, Boolean>();
-        // Get the first element and set as the class number
-        className = rawAttr.remove(0);
-        List<String> attrNames = getAttributeNames();
+        // Else get the first element and set as the class value
+        this.schema = schema;
+        classValue = schema.getClassValue(allAttr[0]);
+
+        // and iterate through the rest, parse the boolean values and set them in the attributes bitset
+        attributes = new long[ColumnarDataset.wordCount(attributesCount)];
+        if (!schema.isAllBoolean()) values = new double[attributesCount];
+        for (int i = 0; i < attributesCount; i++) {
+            String value = allAttr[i + 1];
+            switch (schema.getAttributeType(i)) {
+                case NUMERIC:
+                    values[i] = parseNumber(value);
+                    break;
+                case CATEGORICAL:
+                    values[i] = schema.getCategory(i, value);
+                    break;
+                default:
+                    if (Boolean.parseBoolean(value)) attributes[i >>> 6] |= 1L << i;
+            }
+        }
+    }
 
-        // and iterate through the rest, parse the values as booleans and add them to the attributes map
-        for (int i = 0; i < attrNames.size(); i++) {
-            attributes.put(attrNames.get(i), Boolean.parseBoolean(rawAttr.get(i)));
+    /**
+     * Method to parse the value of a numeric attribute.
+     *
+     * @param value The value.
+     * @return the parsed value.
+     * @throws InvalidDataException if the value is not a number.
+     */
+    static double parseNumber(String value) throws InvalidDataException {
+        try {
+            double number = Double.parseDouble(value);
+            if (Double.isNaN(number)) throw new NumberFormatException();
+            // Adding 0 turns -0.0 into 0.0, so the two compare the same way in every split
+            return number + 0.0;
+        } catch (NumberFormatException e) {
+            throw new InvalidDataException("The value " + value + " is not a number");
         }
     }
 
-    /** Getter for the attributes map */
+    /**
+     * Constructor for a Patient instance of the hepatitis schema from already parsed values.
+     *
+     * @param attributes The attributes bitmask; bit i is set when the attribute at index i is true.
+     * @param classValue The index of the class value of this Patient.
+     */
+    public Patient(long attributes, byte classValue) {
+        this(Schema.HEPATITIS, new long[] { attributes }, classValue);
+    }
+
+    /**
+     * Constructor for a Patient instance from already parsed values.
+     *
+     * @param schema The schema of the data.
+     * @param attributes The attributes bitset, which this Patient takes ownership of; bit i of word i / 64 is set
+     *                   when the attribute at index i is true.
+     * @param classValue The index of the class value of this Patient.
+     */
+    public Patient(Schema schema, long[] attributes, byte classValue) {
+        this(schema, attributes, null, classValue);
+    }
+
+    /**
+     * Constructor for a Patient instance from already parsed values, including numeric and categorical attributes.
+     *
+     * @param schema The schema of the data.
+     * @param attributes The attributes bitset of the boolean attributes, which this Patient takes ownership of.
+     * @param values The values of the numeric attributes and the categories of the categorical attributes, by
+     *               attribute index, which this Patient takes ownership of; null when every attribute is boolean.
+     * @param classValue The index of the class value of this Patient.
+     */
+    public Patient(Schema schema, long[] attributes, double[] values, byte classValue) {
+        this.schema = schema;
+        this.attributes = attributes;
+        this.values = values;
+        this.classValue = classValue;
+    }
+
+    /** Getter for the schema */
+    public Schema getSchema() {
+        return schema;
+    }
+
+    /** Getter for the attributes map; this is a read-only view over the attributes bitset, of boolean values only */
     public Map<String, Boolean> getAttributes() {
-        return attributes;
+        return new AttributesView();
     }
 
     /** Getter for a single attribute */
     public boolean getAttribute(String attribute) {
-        return attributes.get(attribute);
+        return getAttribute(schema.getAttributeIndex(attribute));
+    }
+
+    /** Getter for a single boolean attribute by its index; numeric and categorical attributes are always false */
+    public boolean getAttribute(int attributeIndex) {
+        return (attributes[attributeIndex >>> 6] & (1L << attributeIndex)) != 0;
+    }
+
+    /** Getter for the value of a numeric attribute by its index */
+    public double getValue(int attributeIndex) {
+        return values[attributeIndex];
+    }
+
+    /** Getter for the category of a categorical attribute by its index; see Schema.getCategoryNames */
+    public int getCategory(int attributeIndex) {
+        return (int) values[attributeIndex];
     }
 
-    /** Static method to return the attribute names of a Patient instance */
+    /** Getter for the bitmask of the first 64 attributes, which is every attribute of the hepatitis schema */
+    public long getAttributeBits() {
+        return attributes.length == 0 ? 0 : attributes[0];
+    }
+
+    /** Getter for the attributes bitset, for readers in this package that must not modify it */
+    long[] getAttributeWords() {
+        return attributes;
+    }
+
+    /** Getter for the numeric and categorical values, for readers in this package that must not modify them */
+    double[] getValues() {
+        return values;
+    }
+
+    /**
+     * Static method to return the index of an attribute of the hepatitis schema.
+     *
+     * @param attribute The name of the attribute.
+     * @return the index of the attribute, or -1 if there is no such attribute.
+     */
+    public static int getAttributeIndex(String attribute) {
+        return Schema.HEPATITIS.getAttributeIndex(attribute);
+    }
+
+    /** Static method to return the attribute names of the hepatitis schema */
     public static List<String> getAttributeNames() {
-        return new ArrayList<>(Arrays.asList(AGE_KEY, IS_FEMALE_KEY, STEROID_KEY, ANTIVIRAL_KEY, FATIGUE_KEY,
-                MALAISE_KEY, ANOREXIA_KEY, BIG_LIVER_KEY, FIRM_LIVER_KEY, SPLEEN_PALPABLE_KEY, SPIDERS_KEY,
-                ASCITES_KEY, VARICES_KEY, BILIRUBIN_KEY, SGOT_KEY, HISTOLOGY_KEY));
+        return Schema.HEPATITIS.getAttributeNames();
     }
 
-    /** Static method to return the class types of a Patient instance */
+    /** Static method to return the class types of the hepatitis schema */
     public static List<String> getClassValues() {
-        return Arrays.asList(LIVE_CLASS_KEY, DIE_CLASS_KEY);
+        return Schema.HEPATITIS.getClassNames();
+    }
+
+    /**
+     * Static method to return the index of a class name of the hepatitis schema.
+     * Unrecognised class names are treated as "die", which is how any class other than "live" was treated before.
+     *
+     * @param className The class name.
+     * @return the class value index.
+     */
+    public static byte getClassValue(String className) {
+        return LIVE_CLASS_KEY.equals(className) ? LIVE_CLASS : DIE_CLASS;
+    }
+
+    /**
+     * Static method to return the class name of a class value index of the hepatitis schema.
+     *
+     * @param classValue The class value index.
+     * @return the class name.
+     */
+    public static String getClassName(byte classValue) {
+        return Schema.HEPATITIS.getClassName(classValue);
     }
 
     /** Getter for the className */
     public String getClassName() {
-        return className;
+        return schema.getClassName(classValue);
+    }
+
+    /** Getter for the class value index */
+    public byte getClassValue() {
+        return classValue;
     }
 
     @Override
@@ -93,12 +244,64 @@ public class Patient {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Patient patient = (Patient) o;
-        return Objects.equals(attributes, patient.attributes) &&
-                Objects.equals(className, patient.className);
+        return schema == patient.schema && classValue == patient.classValue
+                && Arrays.equals(attributes, patient.attributes) && Arrays.equals(values, patient.values);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(attributes, className);
+        int hash = 31 * Arrays.hashCode(attributes) + classValue;
+        return values == null ? hash : 31 * hash + Arrays.hashCode(values);
+    }
+
+    /**
+     * Inner-class to present the attributes bitset as a read-only map of attribute names to values.
+     */
+    private class AttributesView extends AbstractMap<String, Boolean> {
+
+        @Override
+        public Boolean get(Object key) {
+            int index = key instanceof String ? schema.getAttributeIndex((String) key) : -1;
+            return index < 0 ? null : getAttribute(index);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String && schema.getAttributeIndex((String) key) >= 0;
+        }
+
+        @Override
+        public int size() {
+            return schema.getAttributeCount();
+        }
+
+        @Override
+        public Set<Entry<String, Boolean>> entrySet() {
+            return new AbstractSet<Entry<String, Boolean>>() {
+                @Override
+                public Iterator<Entry<String, Boolean>> iterator() {
+                    return new Iterator<Entry<String, Boolean>>() {
+                        private int next = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < schema.getAttributeCount();
+                        }
+
+                        @Override
+                        public Entry<String, Boolean> next() {
+                            if (!hasNext()) throw new NoSuchElementException();
+                            int index = next++;
+                            return new SimpleImmutableEntry<>(schema.getAttributeName(index), getAttribute(index));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return schema.getAttributeCount();
+                }
+            };
+        }
     }
-}
+}
\ No newline at end of file
@@ -0,0 +1,388 @@
+package processing;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A class to read Patient records from a data file one line at a time.
+ * The file is memory-mapped and each line's tokens are scanned straight into the packed attribute bitset and class
+ * value, so reading boolean attributes creates no intermediate Strings; only the tokens of numeric and categorical
+ * attributes are decoded. The first line of the file holds the headings, which give the schema of the data.
+ */
+public class PatientReader implements Closeable {
+
+    /** The largest region of the file mapped at once */
+    private static final long MAP_WINDOW = 1L << 30;
+
+    /** The schema of the data */
+    private Schema schema;
+    /** The number of tokens expected on a line: the class value followed by the attributes */
+    private int tokensCount;
+    /** The bytes of each class name of the schema, indexed by class value */
+    private byte[][] classBytes = new byte[0][];
+
+    /** The channel of the file being read */
+    private FileChannel channel;
+    /** The size of the file in bytes */
+    private long fileSize;
+    /** The mapped region of the file */
+    private MappedByteBuffer buffer;
+    /** The file position of the start of the mapped region */
+    private long windowStart;
+    /** The position in the mapped region of the next line to read */
+    private int position;
+    /** The line number of the last line read, counting the headings as line 1 */
+    private int lineNumber;
+    /** The attributes bitset of the last line read */
+    private long[] attributeWords;
+    /** The numeric and categorical values of the last line read, or null when every attribute is boolean */
+    private double[] values;
+    /** The class value of the last line read */
+    private byte classValue;
+
+    /**
+     * Constructor for a PatientReader of the schema given by the line of headings.
+     *
+     * @param fileUrl The file path to the data.
+     * @throws IOException if the file path is incorrect.
+     * @throws InvalidDataException if the headings do not give a schema.
+     */
+    public PatientReader(String fileUrl) throws IOException, InvalidDataException {
+        this(fileUrl, null);
+    }
+
+    /**
+     * Constructor for a PatientReader of a known schema, e.g. to read test data with the schema of the training data.
+     *
+     * @param fileUrl The file path to the data.
+     * @param schema The schema of the data, or null to read it from the line of headings.
+     * @throws IOException if the file path is incorrect.
+     * @throws InvalidDataException if the headings do not match the schema.
+     */
+    public PatientReader(String fileUrl, Schema schema) throws IOException, InvalidDataException {
+        channel = FileChannel.open(Paths.get(fileUrl), StandardOpenOption.READ);
+        try {
+            fileSize = channel.size();
+            map(0);
+            int headingsEnd = findLineEnd();
+            if (headingsEnd < 0) throw new IOException("Line 1 is longer than " + MAP_WINDOW + " bytes");
+            lineNumber = 1;
+            position = headingsEnd + 1;
+            if (headingsEnd > 0 && buffer.get(headingsEnd - 1) == '\r') headingsEnd--;
+            String headings = decode(buffer, 0, headingsEnd);
+            if (schema == null) schema = Schema.fromHeadings(headings);
+            else schema.checkHeadings(headings);
+        } catch (IOException | InvalidDataException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        this.schema = schema;
+        tokensCount = schema.getAttributeCount() + 1;
+        attributeWords = new long[ColumnarDataset.wordCount(schema.getAttributeCount())];
+        if (!schema.isAllBoolean()) values = new double[schema.getAttributeCount()];
+    }
+
+    /**
+     * Method to read the next line into the attributes bitmask and class value of this reader.
+     *
+     * @return true if a line was read; false if the end of the file has been reached.
+     * @throws IOException if the file cannot be read.
+     * @throws InvalidDataException if the line is not in the expected format; the message includes its line number.
+     */
+    public boolean next() throws IOException, InvalidDataException {
+        if (windowStart + position >= fileSize) return false;
+        int end = findLineEnd();
+        if (end < 0) {
+            // The line runs past the mapped region so map again from the start of the line
+            map(windowStart + position);
+            end = findLineEnd();
+            if (end < 0) throw new IOException("Line " + (lineNumber + 1) + " is longer than " + MAP_WINDOW + " bytes");
+        }
+        lineNumber++;
+        int start = position;
+        position = end + 1;
+        // Lines may end in "\r\n"
+        if (end > start && buffer.get(end - 1) == '\r') end--;
+        parseLine(start, end);
+        return true;
+    }
+
+    /**
+     * Method to read the next line as a Patient instance.
+     *
+     * @return the Patient instance, or null if the end of the file has been reached.
+     * @throws IOException if the file cannot be read.
+     * @throws InvalidDataException if the line is not in the expected format; the message includes its line number.
+     */
+    public Patient read() throws IOException, InvalidDataException {
+        if (!next()) return null;
+        return new Patient(schema, attributeWords.clone(), values == null ? null : values.clone(), classValue);
+    }
+
+    /**
+     * Method to return the remaining lines as a Stream of Patient instances; closing the Stream closes this reader.
+     * Invalid data is rethrown as an UncheckedInvalidDataException and read errors as an UncheckedIOException.
+     *
+     * @return the Stream of Patient instances.
+     */
+    public Stream<Patient> stream() {
+        Iterator<Patient> iterator = new Iterator<Patient>() {
+            private Patient nextPatient;
+
+            @Override
+            public boolean hasNext() {
+                if (nextPatient == null) {
+                    try {
+                        nextPatient = read();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    } catch (InvalidDataException e) {
+                        throw new UncheckedInvalidDataException(e);
+                    }
+                }
+                return nextPatient != null;
+            }
+
+            @Override
+            public Patient next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                Patient current = nextPatient;
+                nextPatient = null;
+                return current;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(() -> {
+            try {
+                close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /** Getter for the schema of the data */
+    public Schema getSchema() {
+        return schema;
+    }
+
+    /** Getter for the bitmask of the first 64 attributes of the last line read */
+    public long getAttributeBits() {
+        return attributeWords.length == 0 ? 0 : attributeWords[0];
+    }
+
+    /** Getter for the attributes bitset of the last line read; the next line read overwrites it */
+    public long[] getAttributeWords() {
+        return attributeWords;
+    }
+
+    /**
+     * Getter for the numeric and categorical values of the last line read, by attribute index, or null when every
+     * attribute is boolean; the next line read overwrites them
+     */
+    public double[] getValues() {
+        return values;
+    }
+
+    /** Getter for the class value of the last line read */
+    public byte getClassValue() {
+        return classValue;
+    }
+
+    /** Getter for the file position of the next line to read */
+    long getFilePosition() {
+        return windowStart + position;
+    }
+
+    /** Getter for the line number of the last line read */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Method to map the region of the file starting at a file position.
+     *
+     * @param start The file position to map from.
+     * @throws IOException if the file cannot be mapped.
+     */
+    private void map(long start) throws IOException {
+        windowStart = start;
+        position = 0;
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(MAP_WINDOW, fileSize - start));
+    }
+
+    /**
+     * Method to find the end of the line starting at the current position.
+     *
+     * @return the position of the line's newline or, for the last line of the file, the end of the mapped region;
+     * -1 if the line runs past the mapped region.
+     */
+    private int findLineEnd() {
+        int limit = buffer.limit();
+        for (int i = position; i < limit; i++) {
+            if (buffer.get(i) == '\n') return i;
+        }
+        return windowStart + limit == fileSize ? limit : -1;
+    }
+
+    /**
+     * Method to parse the tokens of a line in the same way as splitting it on single spaces.
+     *
+     * @param start The position of the first byte of the line.
+     * @param end The position after the last byte of the line.
+     * @throws InvalidDataException if the line does not hold the expected number of tokens, or a numeric or
+     * categorical token cannot be parsed.
+     */
+    private void parseLine(int start, int end) throws InvalidDataException {
+        // Trailing separators are ignored, as String.split drops trailing empty tokens
+        int trimmedEnd = end;
+        while (trimmedEnd > start && buffer.get(trimmedEnd - 1) == ' ') trimmedEnd--;
+        if (trimmedEnd == start) throw invalidLine(start, end);
+
+        long[] words = attributeWords;
+        Arrays.fill(words, 0);
+        int token = 0;
+        int tokenStart = start;
+        for (int i = start; i <= trimmedEnd; i++) {
+            if (i < trimmedEnd && buffer.get(i) != ' ') continue;
+            if (token >= tokensCount) throw invalidLine(start, end);
+            if (token == 0) classValue = parseClass(tokenStart, i);
+            else if (values != null && schema.getAttributeType(token - 1) != Schema.AttributeType.BOOLEAN) {
+                values[token - 1] = parseValue(token - 1, tokenStart, i);
+            }
+            else if (isTrue(buffer, tokenStart, i)) words[(token - 1) >>> 6] |= 1L << (token - 1);
+            token++;
+            tokenStart = i + 1;
+        }
+        if (token != tokensCount) throw invalidLine(start, end);
+    }
+
+    /**
+     * Method to return the class value of a class token, matching its bytes against the known class names so that
+     * only a class name not seen before is decoded.
+     *
+     * @param start The position of the first byte of the token.
+     * @param end The position after the last byte of the token.
+     * @return the class value.
+     * @throws InvalidDataException if the class cannot be added to the schema; the message includes its line number.
+     */
+    private byte parseClass(int start, int end) throws InvalidDataException {
+        for (int c = 0; c < classBytes.length; c++) {
+            if (matches(buffer, start, end, classBytes[c])) return (byte) c;
+        }
+        byte value;
+        try {
+            value = schema.getClassValue(decode(buffer, start, end));
+        } catch (InvalidDataException e) {
+            throw new InvalidDataException("Line " + lineNumber + ": " + e.getMessage());
+        }
+        // The schema may have gained classes, from this reader or another of the same schema
+        List<String> classNames = schema.getClassNames();
+        if (classNames.size() != classBytes.length) {
+            classBytes = new byte[classNames.size()][];
+            for (int c = 0; c < classBytes.length; c++) {
+                classBytes[c] = classNames.get(c).getBytes(Charset.defaultCharset());
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Method to return the value of a numeric token, or the category of a categorical token.
+     *
+     * @param attribute The index of the attribute.
+     * @param start The position of the first byte of the token.
+     * @param end The position after the last byte of the token.
+     * @return the value or category.
+     * @throws InvalidDataException if the token cannot be parsed; the message includes its line number.
+     */
+    private double parseValue(int attribute, int start, int end) throws InvalidDataException {
+        try {
+            if (schema.getAttributeType(attribute) == Schema.AttributeType.NUMERIC) {
+                return Patient.parseNumber(decode(buffer, start, end));
+            }
+            return schema.getCategory(attribute, decode(buffer, start, end));
+        } catch (InvalidDataException e) {
+            throw new InvalidDataException("Line " + lineNumber + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Method to decode a region of a mapped file as a String.
+     *
+     * @param buffer The mapped region.
+     * @param start The position of the first byte.
+     * @param end The position after the last byte.
+     * @return the decoded String.
+     */
+    static String decode(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) bytes[i] = buffer.get(start + i);
+        return new String(bytes, Charset.defaultCharset());
+    }
+
+    /**
+     * Method to check whether a token matches a set of bytes exactly.
+     *
+     * @param buffer The mapped region holding the token.
+     * @param start The position of the first byte of the token.
+     * @param end The position after the last byte of the token.
+     * @param expected The bytes to match.
+     * @return true if the token matches.
+     */
+    static boolean matches(ByteBuffer buffer, int start, int end, byte[] expected) {
+        if (end - start != expected.length) return false;
+        for (int i = 0; i < expected.length; i++) {
+            if (buffer.get(start + i) != expected[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Method to check whether a token is "true", ignoring case, as Boolean.parseBoolean does.
+     *
+     * @param buffer The mapped region holding the token.
+     * @param start The position of the first byte of the token.
+     * @param end The position after the last byte of the token.
+     * @return true if the token is "true".
+     */
+    static boolean isTrue(ByteBuffer buffer, int start, int end) {
+        return end - start == 4
+                && (buffer.get(start) | 0x20) == 't'
+                && (buffer.get(start + 1) | 0x20) == 'r'
+                && (buffer.get(start + 2) | 0x20) == 'u'
+                && (buffer.get(start + 3) | 0x20) == 'e';
+    }
+
+    /**
+     * Method to create the exception for a line not in the expected format.
+     *
+     * @param start The position of the first byte of the line.
+     * @param end The position after the last byte of the line.
+     * @return the exception to throw.
+     */
+    private InvalidDataException invalidLine(int start, int end) {
+        return new InvalidDataException("Line " + lineNumber + ": The line\n" + decode(buffer, start, end)
+                + "\nis not in the expected format");
+    }
+}
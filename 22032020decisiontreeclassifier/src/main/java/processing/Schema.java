@@ -0,0 +1,359 @@
+package processing;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A class to describe the columns of a data set: the attribute names and types, interned once to dense indices, and
+ * the class names, interned to class values.
+ * A schema is usually read from the headings line of a data file, whose first heading names the class column and whose
+ * remaining headings name the attributes. Class names are then added as they are first seen, so any number of classes
+ * up to MAX_CLASSES is supported. The hepatitis schema instead has the fixed classes "live" and "die", and any other
+ * class name is treated as "die", which is how hepatitis files have always been read.
+ * An attribute heading may end in ":numeric" for an attribute of real values or ":categorical" for an attribute of
+ * named categories; any other attribute is boolean. The categories of each categorical attribute are added as they
+ * are first seen, in the same way as the class names.
+ */
+public final class Schema {
+
+    /** The largest number of classes, so a class value fits in a byte */
+    public static final int MAX_CLASSES = Byte.MAX_VALUE + 1;
+    /** The largest number of categories of a categorical attribute, so a category fits in an unsigned byte */
+    public static final int MAX_CATEGORIES = 256;
+    /** The suffix of the heading of a numeric attribute */
+    public static final String NUMERIC_SUFFIX = ":numeric";
+    /** The suffix of the heading of a categorical attribute */
+    public static final String CATEGORICAL_SUFFIX = ":categorical";
+    /** The schema of the hepatitis data, whose headings match the attribute keys of Patient */
+    public static final Schema HEPATITIS = new Schema(Arrays.asList(Patient.AGE_KEY, Patient.IS_FEMALE_KEY,
+            Patient.STEROID_KEY, Patient.ANTIVIRAL_KEY, Patient.FATIGUE_KEY, Patient.MALAISE_KEY, Patient.ANOREXIA_KEY,
+            Patient.BIG_LIVER_KEY, Patient.FIRM_LIVER_KEY, Patient.SPLEEN_PALPABLE_KEY, Patient.SPIDERS_KEY,
+            Patient.ASCITES_KEY, Patient.VARICES_KEY, Patient.BILIRUBIN_KEY, Patient.SGOT_KEY, Patient.HISTOLOGY_KEY),
+            null, Arrays.asList(Patient.LIVE_CLASS_KEY, Patient.DIE_CLASS_KEY), true);
+
+    /**
+     * The types of attribute.
+     */
+    public enum AttributeType {
+        /** An attribute that is true or false, split on its value */
+        BOOLEAN,
+        /** An attribute of real values, split on a threshold */
+        NUMERIC,
+        /** An attribute of named categories, split on a subset of its categories */
+        CATEGORICAL
+    }
+
+    /** The attribute names in index order */
+    private final List<String> attributeNames;
+    /** Map from an attribute name to its index */
+    private final Map<String, Integer> attributeIndices;
+    /** The type of each attribute */
+    private final AttributeType[] attributeTypes;
+    /** Whether every attribute is boolean */
+    private final boolean allBoolean;
+    /** The category names of each categorical attribute, in category order; replaced, never modified, when added */
+    private final AtomicReferenceArray<List<String>> categoryNames;
+    /** Map from a category name to its category, for each categorical attribute */
+    private final List<Map<String, Integer>> categories;
+    /** The class names in class value order; replaced, never modified, when a class is added */
+    private volatile List<String> classNames;
+    /** Map from a class name to its class value */
+    private final Map<String, Byte> classValues = new ConcurrentHashMap<>();
+    /** Whether the class names are fixed, with unknown names taking the last class */
+    private final boolean fixedClasses;
+
+    /**
+     * Constructor for a Schema of boolean attributes whose classes are added as they are first seen.
+     *
+     * @param attributeNames The attribute names in index order.
+     * @throws InvalidDataException if an attribute name is repeated.
+     */
+    public Schema(List<String> attributeNames) throws InvalidDataException {
+        this(attributeNames, null);
+    }
+
+    /**
+     * Constructor for a Schema whose classes are added as they are first seen.
+     *
+     * @param attributeNames The attribute names in index order.
+     * @param attributeTypes The type of each attribute, in index order.
+     * @throws InvalidDataException if an attribute name is repeated.
+     */
+    public Schema(List<String> attributeNames, List<AttributeType> attributeTypes) throws InvalidDataException {
+        this(attributeNames, attributeTypes, Collections.emptyList(), false);
+        if (attributeIndices.size() != attributeNames.size()) {
+            throw new InvalidDataException("The headings repeat an attribute name");
+        }
+    }
+
+    /**
+     * Constructor for a Schema.
+     *
+     * @param attributeNames The attribute names in index order.
+     * @param attributeTypes The type of each attribute, in index order, or null for every attribute to be boolean.
+     * @param classNames The class names known so far, in class value order.
+     * @param fixedClasses Whether the class names are fixed, with unknown names taking the last class.
+     */
+    private Schema(List<String> attributeNames, List<AttributeType> attributeTypes, List<String> classNames,
+                   boolean fixedClasses) {
+        this.attributeNames = Collections.unmodifiableList(new ArrayList<>(attributeNames));
+        this.attributeIndices = new HashMap<>();
+        for (int i = 0; i < attributeNames.size(); i++) attributeIndices.putIfAbsent(attributeNames.get(i), i);
+        this.attributeTypes = new AttributeType[attributeNames.size()];
+        Arrays.fill(this.attributeTypes, AttributeType.BOOLEAN);
+        if (attributeTypes != null) attributeTypes.toArray(this.attributeTypes);
+        this.allBoolean = Arrays.stream(this.attributeTypes).allMatch(type -> type == AttributeType.BOOLEAN);
+        this.categoryNames = new AtomicReferenceArray<>(attributeNames.size());
+        this.categories = new ArrayList<>(attributeNames.size());
+        for (int i = 0; i < attributeNames.size(); i++) {
+            boolean categorical = this.attributeTypes[i] == AttributeType.CATEGORICAL;
+            categoryNames.set(i, Collections.emptyList());
+            categories.add(categorical ? new ConcurrentHashMap<>() : Collections.emptyMap());
+        }
+        this.classNames = Collections.unmodifiableList(new ArrayList<>(classNames));
+        for (int c = 0; c < classNames.size(); c++) classValues.put(classNames.get(c), (byte) c);
+        this.fixedClasses = fixedClasses;
+    }
+
+    /**
+     * Method to read a schema from the headings line of a data file.
+     * Headings naming the hepatitis attributes give the hepatitis schema, so those files keep their class values.
+     *
+     * @param headings The headings line: the class heading followed by the attribute names, separated by spaces.
+     * @return the schema.
+     * @throws InvalidDataException if the headings name no attributes or repeat an attribute name.
+     */
+    public static Schema fromHeadings(String headings) throws InvalidDataException {
+        List<String> attributeHeadings = parseHeadings(headings);
+        if (attributeHeadings.isEmpty()) {
+            throw new InvalidDataException("The headings line\n" + headings + "\nnames no attributes");
+        }
+        return fromAttributeHeadings(attributeHeadings);
+    }
+
+    /**
+     * Method to create a schema from the headings of its attributes, each an attribute name with an optional type
+     * suffix. Headings naming the hepatitis attributes give the hepatitis schema.
+     *
+     * @param attributeHeadings The attribute headings in index order.
+     * @return the schema.
+     * @throws InvalidDataException if the headings repeat an attribute name.
+     */
+    public static Schema fromAttributeHeadings(List<String> attributeHeadings) throws InvalidDataException {
+        if (attributeHeadings.equals(HEPATITIS.attributeNames)) return HEPATITIS;
+        List<String> names = new ArrayList<>();
+        List<AttributeType> types = new ArrayList<>();
+        for (String heading : attributeHeadings) {
+            AttributeType type = heading.endsWith(NUMERIC_SUFFIX) ? AttributeType.NUMERIC
+                    : heading.endsWith(CATEGORICAL_SUFFIX) ? AttributeType.CATEGORICAL : AttributeType.BOOLEAN;
+            int suffixLength = type == AttributeType.NUMERIC ? NUMERIC_SUFFIX.length()
+                    : type == AttributeType.CATEGORICAL ? CATEGORICAL_SUFFIX.length() : 0;
+            names.add(heading.substring(0, heading.length() - suffixLength));
+            types.add(type);
+        }
+        return new Schema(names, types);
+    }
+
+    /**
+     * Method to check the headings line of a data file names the attributes of this schema, in the same order.
+     *
+     * @param headings The headings line.
+     * @throws InvalidDataException if the headings do not match.
+     */
+    public void checkHeadings(String headings) throws InvalidDataException {
+        if (!parseHeadings(headings).equals(getAttributeHeadings())) {
+            throw new InvalidDataException("The headings line\n" + headings + "\ndoes not match the attributes "
+                    + attributeNames);
+        }
+    }
+
+    /**
+     * Method to split a headings line into its attribute names, dropping the class heading.
+     *
+     * @param headings The headings line.
+     * @return the attribute names.
+     */
+    private static List<String> parseHeadings(String headings) {
+        String[] tokens = headings.trim().split(" ");
+        return Arrays.asList(tokens).subList(Math.min(1, tokens.length), tokens.length);
+    }
+
+    /** Getter for the attribute names, in index order */
+    public List<String> getAttributeNames() {
+        return attributeNames;
+    }
+
+    /**
+     * Method to return the heading of each attribute: its name, with a suffix for an attribute that is not boolean.
+     *
+     * @return the attribute headings in index order.
+     */
+    public List<String> getAttributeHeadings() {
+        List<String> headings = new ArrayList<>(attributeNames.size());
+        for (int a = 0; a < attributeNames.size(); a++) {
+            String suffix = attributeTypes[a] == AttributeType.NUMERIC ? NUMERIC_SUFFIX
+                    : attributeTypes[a] == AttributeType.CATEGORICAL ? CATEGORICAL_SUFFIX : "";
+            headings.add(attributeNames.get(a) + suffix);
+        }
+        return headings;
+    }
+
+    /** Getter for the number of attributes */
+    public int getAttributeCount() {
+        return attributeNames.size();
+    }
+
+    /** Getter for the name of an attribute */
+    public String getAttributeName(int attributeIndex) {
+        return attributeNames.get(attributeIndex);
+    }
+
+    /**
+     * Method to return the index of an attribute.
+     *
+     * @param attribute The name of the attribute.
+     * @return the index of the attribute, or -1 if there is no such attribute.
+     */
+    public int getAttributeIndex(String attribute) {
+        Integer index = attributeIndices.get(attribute);
+        return index == null ? -1 : index;
+    }
+
+    /** Getter for the type of an attribute */
+    public AttributeType getAttributeType(int attributeIndex) {
+        return attributeTypes[attributeIndex];
+    }
+
+    /** Getter for whether every attribute is boolean */
+    public boolean isAllBoolean() {
+        return allBoolean;
+    }
+
+    /**
+     * Method to check whether every attribute is boolean and fits in an attributes bitmask of a single long, so
+     * instances can be classified from their bitmask alone.
+     *
+     * @return true if there are at most 64 attributes, all boolean.
+     */
+    public boolean fitsBitmask() {
+        return allBoolean && attributeNames.size() <= 64;
+    }
+
+    /** Getter for the category names of a categorical attribute seen so far, in category order */
+    public List<String> getCategoryNames(int attributeIndex) {
+        return categoryNames.get(attributeIndex);
+    }
+
+    /**
+     * Method to return the category of a category name of a categorical attribute that is already known.
+     *
+     * @param attributeIndex The index of the categorical attribute.
+     * @param categoryName The category name.
+     * @return the category, or -1 if the category name is not known.
+     */
+    public int findCategory(int attributeIndex, String categoryName) {
+        Integer category = categories.get(attributeIndex).get(categoryName);
+        return category == null ? -1 : category;
+    }
+
+    /**
+     * Method to return the category of a category name of a categorical attribute, adding the category if this is the
+     * first time it is seen.
+     *
+     * @param attributeIndex The index of the categorical attribute.
+     * @param categoryName The category name.
+     * @return the category.
+     * @throws InvalidDataException if the attribute already has MAX_CATEGORIES categories.
+     */
+    public int getCategory(int attributeIndex, String categoryName) throws InvalidDataException {
+        Integer category = categories.get(attributeIndex).get(categoryName);
+        if (category != null) return category;
+        return addCategory(attributeIndex, categoryName);
+    }
+
+    /**
+     * Method to add a category name to a categorical attribute, unless another thread has added it first.
+     *
+     * @param attributeIndex The index of the categorical attribute.
+     * @param categoryName The category name.
+     * @return the category.
+     * @throws InvalidDataException if the attribute already has MAX_CATEGORIES categories.
+     */
+    private synchronized int addCategory(int attributeIndex, String categoryName) throws InvalidDataException {
+        Map<String, Integer> attributeCategories = categories.get(attributeIndex);
+        Integer category = attributeCategories.get(categoryName);
+        if (category != null) return category;
+        List<String> names = categoryNames.get(attributeIndex);
+        if (names.size() == MAX_CATEGORIES) {
+            throw new InvalidDataException("More than " + MAX_CATEGORIES + " categories of "
+                    + attributeNames.get(attributeIndex) + ": " + categoryName);
+        }
+        List<String> added = new ArrayList<>(names);
+        added.add(categoryName);
+        categoryNames.set(attributeIndex, Collections.unmodifiableList(added));
+        attributeCategories.put(categoryName, added.size() - 1);
+        return added.size() - 1;
+    }
+
+    /** Getter for the class names seen so far, in class value order */
+    public List<String> getClassNames() {
+        return classNames;
+    }
+
+    /** Getter for the number of classes seen so far */
+    public int getClassCount() {
+        return classNames.size();
+    }
+
+    /** Getter for the name of a class value */
+    public String getClassName(byte classValue) {
+        return classNames.get(classValue);
+    }
+
+    /**
+     * Method to return the class value of a class name that is already known.
+     *
+     * @param className The class name.
+     * @return the class value, or -1 if the class name is not known.
+     */
+    public byte findClassValue(String className) {
+        Byte classValue = classValues.get(className);
+        return classValue == null ? -1 : classValue;
+    }
+
+    /**
+     * Method to return the class value of a class name, adding the class if this is the first time it is seen.
+     *
+     * @param className The class name.
+     * @return the class value.
+     * @throws InvalidDataException if there are already MAX_CLASSES classes.
+     */
+    public byte getClassValue(String className) throws InvalidDataException {
+        Byte classValue = classValues.get(className);
+        if (classValue != null) return classValue;
+        if (fixedClasses) return (byte) (classNames.size() - 1);
+        return addClass(className);
+    }
+
+    /**
+     * Method to add a class name, unless another thread has added it first.
+     *
+     * @param className The class name.
+     * @return the class value.
+     * @throws InvalidDataException if there are already MAX_CLASSES classes.
+     */
+    private synchronized byte addClass(String className) throws InvalidDataException {
+        Byte classValue = classValues.get(className);
+        if (classValue != null) return classValue;
+        if (classNames.size() == MAX_CLASSES) {
+            throw new InvalidDataException("More than " + MAX_CLASSES + " classes: " + className);
+        }
+        List<String> added = new ArrayList<>(classNames);
+        added.add(className);
+        classNames = Collections.unmodifiableList(added);
+        byte value = (byte) (added.size() - 1);
+        classValues.put(className, value);
+        return value;
+    }
+}
@@ -0,0 +1,136 @@
+package processing;
+
+/**
+ * An interface for the criterion a tree builder chooses splits by.
+ * A criterion scores a split from the count of each class either side of it, held in primitive arrays, so scoring
+ * needs no boxing, hashing or allocation. A lower score is a better split; the builders choose the first attribute
+ * with the lowest score, in attribute order.
+ */
+public interface SplitCriterion {
+
+    /**
+     * Given the class counts either side of a split, this method returns its score.
+     *
+     * @param trueCounts Count of each class of instances on the true side.
+     * @param falseCounts Count of each class of instances on the false side.
+     * @return the score; lower is better.
+     */
+    float score(int[] trueCounts, int[] falseCounts);
+
+    /**
+     * The standard criteria.
+     */
+    enum Standard implements SplitCriterion {
+
+        /** The weighted Gini impurity of the two sides, the criterion trees have always been built by */
+        GINI {
+            @Override
+            public float score(int[] trueCounts, int[] falseCounts) {
+                int trueTotal = 0;
+                int falseTotal = 0;
+                long trueSquares = 0;
+                long falseSquares = 0;
+                for (int c = 0; c < trueCounts.length; c++) {
+                    trueTotal += trueCounts[c];
+                    falseTotal += falseCounts[c];
+                    trueSquares += (long) trueCounts[c] * trueCounts[c];
+                    falseSquares += (long) falseCounts[c] * falseCounts[c];
+                }
+                int total = trueTotal + falseTotal;
+                if (total == 0) return 0;
+                float trueProb = trueTotal / (float) total;
+                float falseProb = falseTotal / (float) total;
+                return ( trueProb * gini(trueTotal, trueSquares) ) + ( falseProb * gini(falseTotal, falseSquares) );
+            }
+        },
+
+        /** The weighted entropy of the two sides, so the best split has the most information gain */
+        ENTROPY {
+            @Override
+            public float score(int[] trueCounts, int[] falseCounts) {
+                int trueTotal = total(trueCounts);
+                int falseTotal = total(falseCounts);
+                int total = trueTotal + falseTotal;
+                if (total == 0) return 0;
+                return (float) ((trueTotal * entropy(trueCounts, trueTotal)
+                        + falseTotal * entropy(falseCounts, falseTotal)) / total);
+            }
+        },
+
+        /**
+         * The information gain divided by the entropy of the split itself, negated so the best split scores lowest;
+         * this favours attributes that split the instances evenly
+         */
+        GAIN_RATIO {
+            @Override
+            public float score(int[] trueCounts, int[] falseCounts) {
+                int trueTotal = total(trueCounts);
+                int falseTotal = total(falseCounts);
+                int total = trueTotal + falseTotal;
+                // A split with an empty side gains nothing
+                if (trueTotal == 0 || falseTotal == 0) return 0;
+                double before = 0;
+                for (int c = 0; c < trueCounts.length; c++) {
+                    before -= plogp(trueCounts[c] + falseCounts[c], total);
+                }
+                double after = (trueTotal * entropy(trueCounts, trueTotal)
+                        + falseTotal * entropy(falseCounts, falseTotal)) / total;
+                double splitInfo = -plogp(trueTotal, total) - plogp(falseTotal, total);
+                return (float) -((before - after) / splitInfo);
+            }
+        };
+
+        /**
+         * Given the count of instances and the sum of the squared count of each class, this method returns the Gini
+         * impurity: the sum over every pair of classes A and B of the product of their proportions, which for two
+         * classes is the product of the proportions of the two classes.
+         *
+         * @param total The count of instances.
+         * @param squares The sum of the squared count of each class.
+         * @return the calculated impurity.
+         */
+        private static float gini(int total, long squares) {
+            if (total == 0) return 0;
+            long totalSquared = (long) total * total;
+            return ((totalSquared - squares) / 2) / (float) totalSquared;
+        }
+
+        /**
+         * Method to return the entropy of a set of class counts, in bits.
+         *
+         * @param counts The count of each class.
+         * @param total The sum of the counts.
+         * @return the entropy.
+         */
+        private static double entropy(int[] counts, int total) {
+            double entropy = 0;
+            for (int count : counts) entropy -= plogp(count, total);
+            return entropy;
+        }
+
+        /**
+         * Method to return p log2 p for the proportion p = count / total, taking 0 log 0 as 0.
+         *
+         * @param count The count.
+         * @param total The total.
+         * @return p log2 p.
+         */
+        private static double plogp(int count, int total) {
+            if (count == 0) return 0;
+            double p = count / (double) total;
+            return p * Math.log(p) / Math.log(2);
+        }
+
+        /**
+         * Method to sum a set of class counts.
+         *
+         * @param counts The count of each class.
+         * @return the sum.
+         */
+        private static int total(int[] counts) {
+            int total = 0;
+            for (int count : counts) total += count;
+            return total;
+        }
+    }
+}
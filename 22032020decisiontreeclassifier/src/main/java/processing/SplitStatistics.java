@@ -0,0 +1,129 @@
+package processing;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A class to collect, for each attribute, the splits made on it while building trees: how many, how many training
+ * rows reached them, and how much they decreased the split criterion's score, weighted by those rows.
+ * The builders record each split from the class counts they have already taken to choose it, so collecting costs no
+ * pass over the data. The decreases give the mean decrease in impurity of each attribute, an importance that sums to 1
+ * over the attributes; rows are weighted as the builder weights them.
+ * Trees built concurrently may record into the same statistics.
+ */
+public final class SplitStatistics {
+
+    /** The schema of the data the trees were built on */
+    private final Schema schema;
+    /** The number of splits made on each attribute */
+    private final int[] splitCounts;
+    /** The number of rows that reached the splits made on each attribute */
+    private final long[] rowsSplit;
+    /** The sum over the splits made on each attribute of the decrease in score times the rows reaching the split */
+    private final double[] impurityDecreases;
+    /** The number of rows at the root of every tree recorded */
+    private long rows;
+
+    /**
+     * Constructor for SplitStatistics.
+     *
+     * @param schema The schema of the data the trees are built on.
+     */
+    public SplitStatistics(Schema schema) {
+        this.schema = schema;
+        int attributeCount = schema.getAttributeCount();
+        splitCounts = new int[attributeCount];
+        rowsSplit = new long[attributeCount];
+        impurityDecreases = new double[attributeCount];
+    }
+
+    /**
+     * Method to record the root of a tree.
+     *
+     * @param rows The number of rows at the root.
+     */
+    synchronized void recordTree(int rows) {
+        this.rows += rows;
+    }
+
+    /**
+     * Method to record a split.
+     *
+     * @param attribute The index of the attribute split on.
+     * @param rows The number of rows reaching the split.
+     * @param nodeScore The criterion's score of the node's rows as a single side.
+     * @param splitScore The criterion's score of the split.
+     */
+    synchronized void recordSplit(int attribute, int rows, float nodeScore, float splitScore) {
+        splitCounts[attribute]++;
+        rowsSplit[attribute] += rows;
+        impurityDecreases[attribute] += (double) rows * (nodeScore - splitScore);
+    }
+
+    /** Getter for the schema of the data the trees were built on */
+    public Schema getSchema() {
+        return schema;
+    }
+
+    /** Getter for the number of rows at the root of every tree recorded */
+    public synchronized long getRows() {
+        return rows;
+    }
+
+    /** Getter for the number of splits made on an attribute */
+    public synchronized int getSplitCount(int attribute) {
+        return splitCounts[attribute];
+    }
+
+    /** Getter for the number of rows that reached the splits made on an attribute */
+    public synchronized long getRowsSplit(int attribute) {
+        return rowsSplit[attribute];
+    }
+
+    /**
+     * Getter for the proportion of rows that reached a split on an attribute; this is more than 1 when a numeric or
+     * categorical attribute is split again below one of its own splits
+     */
+    public synchronized double getCoverage(int attribute) {
+        return rows == 0 ? 0 : rowsSplit[attribute] / (double) rows;
+    }
+
+    /** Getter for the decrease in score of the splits made on an attribute, per row at the root */
+    public synchronized double getImpurityDecrease(int attribute) {
+        return rows == 0 ? 0 : impurityDecreases[attribute] / rows;
+    }
+
+    /**
+     * Method to return the importance of each attribute: its share of the decrease in score of every split.
+     *
+     * @return the importance of each attribute by index, summing to 1, or all 0 if no split decreased the score.
+     */
+    public synchronized double[] getImportances() {
+        double total = 0;
+        for (double decrease : impurityDecreases) total += decrease;
+        double[] importances = new double[impurityDecreases.length];
+        if (total <= 0) return importances;
+        for (int a = 0; a < importances.length; a++) importances[a] = impurityDecreases[a] / total;
+        return importances;
+    }
+
+    /**
+     * Method to format the statistics as a text table, one row per attribute, the most important first.
+     *
+     * @return the table.
+     */
+    public synchronized String toTable() {
+        double[] importances = getImportances();
+        List<Integer> attributes = new ArrayList<>();
+        for (int a = 0; a < importances.length; a++) attributes.add(a);
+        attributes.sort(Comparator.comparingDouble((Integer a) -> -importances[a]));
+        StringBuilder table = new StringBuilder(String.format("%-16s %10s %8s %9s %10s%n", "Attribute", "Importance",
+                "Splits", "Coverage", "Decrease"));
+        for (int a : attributes) {
+            table.append(String.format("%-16s %9.2f%% %8d %8.2f%% %10.4f%n", schema.getAttributeName(a),
+                    importances[a] * 100, splitCounts[a], getCoverage(a) * 100, getImpurityDecrease(a)));
+        }
+        return table.toString();
+    }
+}
@@ -0,0 +1,23 @@
+package processing;
+
+/**
+ * An unchecked Exception wrapping an InvalidDataException, for use where checked exceptions cannot be thrown.
+ */
+public class UncheckedInvalidDataException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructor for this Exception.
+     *
+     * @param cause The InvalidDataException to wrap.
+     */
+    public UncheckedInvalidDataException(InvalidDataException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public synchronized InvalidDataException getCause() {
+        return (InvalidDataException) super.getCause();
+    }
+}
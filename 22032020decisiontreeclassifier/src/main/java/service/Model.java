@@ -0,0 +1,95 @@
+package service;
+
+import processing.Classifier;
+import processing.ColumnarDataset;
+import processing.Patient;
+import processing.Schema;
+import tree.BaseNode;
+import tree.CompiledTree;
+
+/**
+ * A class to represent a trained model, split out from the Classifier that trained it: a compiled tree and a name,
+ * with none of the training or test data. A model never changes once created, so one instance can be shared by any
+ * number of scoring threads, and a newer model replaces it as a whole.
+ */
+public final class Model {
+
+    /** The name of the model, such as its version */
+    private final String name;
+    /** The compiled tree the model classifies with */
+    private final CompiledTree tree;
+
+    /**
+     * Constructor for a Model.
+     *
+     * @param name The name of the model, such as its version.
+     * @param tree The compiled tree to classify with.
+     */
+    public Model(String name, CompiledTree tree) {
+        this.name = name;
+        this.tree = tree;
+    }
+
+    /**
+     * Method to create a model from a tree.
+     *
+     * @param name The name of the model.
+     * @param tree The tree.
+     * @param schema The schema of the data the tree classifies.
+     * @return the model.
+     */
+    public static Model of(String name, BaseNode tree, Schema schema) {
+        return new Model(name, CompiledTree.compile(tree, schema, true));
+    }
+
+    /**
+     * Method to create a model from the tree a Classifier has trained.
+     *
+     * @param name The name of the model.
+     * @param classifier The classifier.
+     * @return the model.
+     */
+    public static Model of(String name, Classifier classifier) {
+        return of(name, classifier.getTree(), classifier.getSchema());
+    }
+
+    /**
+     * Method to classify a Patient.
+     *
+     * @param p The Patient, of the model's schema.
+     * @return the class name.
+     */
+    public String classify(Patient p) {
+        return tree.classify(p);
+    }
+
+    /**
+     * Method to classify every row of a block of data.
+     *
+     * @param block The rows to classify, of the model's schema.
+     * @return the class value determined for each row, in row order; -1 where a leaf's class is not a class value.
+     */
+    public byte[] classify(ColumnarDataset block) {
+        return tree.classify(block);
+    }
+
+    /** Getter for the name */
+    public String getName() {
+        return name;
+    }
+
+    /** Getter for the compiled tree */
+    public CompiledTree getTree() {
+        return tree;
+    }
+
+    /** Getter for the schema of the data the model classifies */
+    public Schema getSchema() {
+        return tree.getSchema();
+    }
+
+    @Override
+    public String toString() {
+        return "Model " + name;
+    }
+}
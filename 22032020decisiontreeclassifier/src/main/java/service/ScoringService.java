@@ -0,0 +1,251 @@
+package service;
+
+import processing.ColumnarDataset;
+import processing.Patient;
+import processing.Schema;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A class to score Patients concurrently against a Model that can be replaced while scoring goes on.
+ * Requests from any number of threads are queued and a single batching thread classifies them in micro-batches: it
+ * takes every request queued while the previous batch was scored, up to maxBatchSize, and classifies them together as
+ * a ColumnarDataset, so a busy service spends a pass down the tree per batch rather than a walk per request.
+ * The model is held in an AtomicReference and read once per batch, so swapping in a newly trained model never waits
+ * for or interrupts a batch in progress: that batch finishes with the model it started with and the next uses the
+ * new one.
+ * Request threads are expected to be cheap, so newRequestExecutor gives virtual threads where the JVM has them.
+ */
+public class ScoringService implements AutoCloseable {
+
+    /** The default largest number of requests scored in a batch */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+
+    /** The model requests are scored against */
+    private final AtomicReference<Model> model;
+    /** The requests waiting to be scored */
+    private final LinkedBlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    /** The largest number of requests scored in a batch */
+    private final int maxBatchSize;
+    /** The longest time, in nanoseconds, the batching thread waits for a batch to fill once it has a request */
+    private final long maxDelayNanos;
+    /** The thread that scores batches */
+    private final Thread batcher;
+    /** Whether the service has been closed */
+    private volatile boolean closed;
+
+    /**
+     * Constructor for a ScoringService that scores whatever requests are waiting without delay.
+     *
+     * @param model The model to score against.
+     */
+    public ScoringService(Model model) {
+        this(model, DEFAULT_MAX_BATCH_SIZE, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Constructor for a ScoringService.
+     *
+     * @param model The model to score against.
+     * @param maxBatchSize The largest number of requests scored in a batch.
+     * @param maxDelay The longest time the batching thread waits for a batch to fill once it has a request; 0 scores
+     *                 whatever is waiting at once, which adds no latency.
+     * @param unit The unit of maxDelay.
+     */
+    public ScoringService(Model model, int maxBatchSize, long maxDelay, TimeUnit unit) {
+        if (maxBatchSize < 1) throw new IllegalArgumentException("Invalid batch size: " + maxBatchSize);
+        this.model = new AtomicReference<>(model);
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+        batcher = new Thread(this::run, "scoring-batcher");
+        batcher.setDaemon(true);
+        batcher.start();
+    }
+
+    /**
+     * Method to create an executor that runs each task on its own virtual thread where the JVM supports them, and on
+     * a cached pool of daemon platform threads otherwise, for handling requests that block on classify.
+     *
+     * @return the executor.
+     */
+    public static ExecutorService newRequestExecutor() {
+        try {
+            // Found reflectively, so the service still runs on JVMs without virtual threads
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "scoring-request");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Method to queue a Patient to be scored in the next batch.
+     *
+     * @param p The Patient, of the schema of the model.
+     * @return a future completed with the class name by the batching thread, or exceptionally if the service is
+     *         closed first.
+     */
+    public CompletableFuture<String> submit(Patient p) {
+        Request request = new Request(p);
+        if (closed) {
+            request.future.completeExceptionally(new IllegalStateException("Scoring service is closed"));
+            return request.future;
+        }
+        queue.add(request);
+        // The service may have closed after the check, in which case the request is failed here unless already taken
+        if (closed && queue.remove(request)) {
+            request.future.completeExceptionally(new IllegalStateException("Scoring service is closed"));
+        }
+        return request.future;
+    }
+
+    /**
+     * Method to score a Patient, blocking the calling thread until its batch is scored.
+     *
+     * @param p The Patient, of the schema of the model.
+     * @return the class name.
+     */
+    public String classify(Patient p) {
+        return submit(p).join();
+    }
+
+    /**
+     * Method to replace the model without pausing scoring: batches already being scored finish with the model they
+     * started with.
+     *
+     * @param newModel The new model, which must classify data of the same attributes as the current one.
+     * @return the model replaced.
+     */
+    public Model swap(Model newModel) {
+        Model current = model.get();
+        if (!isCompatible(current.getSchema(), newModel.getSchema())) {
+            throw new IllegalArgumentException("Model " + newModel.getName() + " does not classify the data of "
+                    + current.getName() + ": " + newModel.getSchema().getAttributeHeadings());
+        }
+        return model.getAndSet(newModel);
+    }
+
+    /**
+     * Method to check Patients of one schema can be classified by a model of another. Their attributes must match,
+     * and as categories are numbered by each schema as it meets them, schemas with categorical attributes must be the
+     * same schema.
+     *
+     * @param current The schema of the current model.
+     * @param next The schema of the next model.
+     * @return true if the next model can classify Patients of the current schema.
+     */
+    private static boolean isCompatible(Schema current, Schema next) {
+        if (current == next) return true;
+        if (!current.getAttributeHeadings().equals(next.getAttributeHeadings())) return false;
+        for (int a = 0; a < current.getAttributeCount(); a++) {
+            if (current.getAttributeType(a) == Schema.AttributeType.CATEGORICAL) return false;
+        }
+        return true;
+    }
+
+    /** Getter for the current model */
+    public Model getModel() {
+        return model.get();
+    }
+
+    /**
+     * Method to take and score batches of requests until the service is closed.
+     */
+    private void run() {
+        List<Request> batch = new ArrayList<>(maxBatchSize);
+        while (!closed) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, maxBatchSize - batch.size());
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatchSize && maxDelayNanos > 0) {
+                    Request request = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (request == null) break;
+                    batch.add(request);
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                // Closing interrupts the wait; the requests already taken are still scored
+            }
+            score(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Method to score a batch of requests against the current model.
+     *
+     * @param batch The requests.
+     */
+    private void score(List<Request> batch) {
+        if (batch.isEmpty()) return;
+        // The model is read once, so the whole batch is scored by one model even if it is swapped meanwhile
+        Model current = model.get();
+        Schema schema = current.getSchema();
+        try {
+            List<Patient> patients = new ArrayList<>(batch.size());
+            for (Request request : batch) patients.add(request.patient);
+            byte[] classValues = current.classify(new ColumnarDataset(schema, patients));
+            for (int i = 0; i < batch.size(); i++) {
+                Request request = batch.get(i);
+                // A leaf whose class is not a class value of the schema still has a class name
+                String className = classValues[i] >= 0 ? schema.getClassName(classValues[i])
+                        : current.classify(request.patient);
+                request.future.complete(className);
+            }
+        } catch (RuntimeException e) {
+            for (Request request : batch) request.future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Method to stop the service: requests already taken by the batching thread are scored, and any still queued or
+     * submitted afterwards fail.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        batcher.interrupt();
+        try {
+            batcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Request request;
+        while ((request = queue.poll()) != null) {
+            request.future.completeExceptionally(new IllegalStateException("Scoring service is closed"));
+        }
+    }
+
+    /**
+     * Inner-class for a request waiting to be scored.
+     */
+    private static final class Request {
+
+        /** The Patient to score */
+        private final Patient patient;
+        /** The future to complete with the class name */
+        private final CompletableFuture<String> future = new CompletableFuture<>();
+
+        /**
+         * Constructor for a Request.
+         *
+         * @param patient The Patient to score.
+         */
+        Request(Patient patient) {
+            this.patient = patient;
+        }
+    }
+}
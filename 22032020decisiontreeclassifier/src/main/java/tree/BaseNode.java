@@ -2,6 +2,8 @@ package tree;
 
 import processing.Patient;
 
+import java.io.IOException;
+
 /**
  * An interface to represent any type of Node in a tree.
  */
@@ -21,4 +23,16 @@ public interface BaseNode {
      * @param indent The indentation used to report this BaseNode.
      */
     public abstract void report(String indent);
+
+    /**
+     * A method to walk the tree below this BaseNode, passing each node to a visitor, e.g. to export it with
+     * TreeExporter. The walk does not recurse, so trees of any depth can be walked.
+     *
+     * @param visitor The visitor.
+     * @throws IOException if the visitor cannot write its output.
+     * @throws IllegalArgumentException if this is not a single tree, such as an ensemble of trees.
+     */
+    default void accept(TreeVisitor visitor) throws IOException {
+        TreeExporter.walk(this, visitor);
+    }
 }
\ No newline at end of file
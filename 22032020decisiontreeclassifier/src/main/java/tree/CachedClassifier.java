@@ -0,0 +1,218 @@
+package tree;
+
+import processing.Patient;
+import processing.Schema;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A class to put a cache of results in front of a tree of a schema whose attributes fit a bitmask, keyed on the packed
+ * attributes bitmask. Instances with the same attributes always reach the same leaf, so the class name and probability
+ * of the leaf are looked up rather than found by walking the tree again.
+ * Schemas of up to MAX_TABLE_ATTRIBUTES attributes have few enough attribute combinations to materialize the leaf of
+ * every one into a table when the cache is created, so every lookup is a single array read. Wider schemas use a
+ * bounded cache of capacity entries instead: each key, masked to the attributes the tree tests, hashes to one slot, and
+ * a key found in its slot is a hit while any other key evicts it. Entries are immutable and written without locking,
+ * so threads share the cache freely; a thread that misses another's write just walks the tree itself.
+ */
+public class CachedClassifier implements BaseNode {
+
+    /** The most attributes for which the leaf of every attribute combination is materialized into a table */
+    public static final int MAX_TABLE_ATTRIBUTES = 16;
+    /** The default number of entries of the bounded cache */
+    public static final int DEFAULT_CAPACITY = 1 << 12;
+
+    /** The compiled tree results are found in on a miss */
+    private final CompiledTree tree;
+    /** The leaf of every attribute combination, indexed by attributes bitmask; null for the bounded cache */
+    private final int[] table;
+    /** The slots of the bounded cache; null for the table */
+    private final Entry[] entries;
+    /** The number of bits of a slot index of the bounded cache */
+    private final int indexBits;
+    /** The bits of the attributes the tree tests, to which keys are masked */
+    private final long testedBits;
+    /** The number of lookups answered from the cache */
+    private final LongAdder hits = new LongAdder();
+    /** The number of lookups that walked the tree */
+    private final LongAdder misses = new LongAdder();
+    /** The number of entries replaced by a different key */
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Constructor for a CachedClassifier.
+     *
+     * @param tree The compiled tree, of a schema whose attributes fit a bitmask.
+     * @param capacity The number of entries of the bounded cache, rounded up to a power of two; unused when the
+     *                 schema is narrow enough for a table.
+     */
+    public CachedClassifier(CompiledTree tree, int capacity) {
+        Schema schema = tree.getSchema();
+        if (!schema.fitsBitmask()) {
+            throw new IllegalArgumentException("Attributes do not fit a bitmask: " + schema.getAttributeHeadings());
+        }
+        if (capacity < 1) throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        this.tree = tree;
+        long tested = 0;
+        for (int n = 0; n < tree.getNodeCount(); n++) tested |= 1L << tree.getAttribute(n);
+        testedBits = tested;
+        if (schema.getAttributeCount() <= MAX_TABLE_ATTRIBUTES) {
+            table = new int[1 << schema.getAttributeCount()];
+            for (int bits = 0; bits < table.length; bits++) table[bits] = tree.findLeaf(bits);
+            entries = null;
+            indexBits = 0;
+        } else {
+            indexBits = Math.max(1, 32 - Integer.numberOfLeadingZeros(capacity - 1));
+            entries = new Entry[1 << indexBits];
+            table = null;
+        }
+    }
+
+    /**
+     * Method to put a cache in front of a tree.
+     *
+     * @param tree The tree.
+     * @param schema The schema of the data the tree classifies, whose attributes must fit a bitmask.
+     * @return the cached classifier, with a bounded cache of DEFAULT_CAPACITY entries if the schema is too wide for a
+     *         table.
+     */
+    public static CachedClassifier of(BaseNode tree, Schema schema) {
+        return of(tree, schema, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Method to put a cache in front of a tree.
+     *
+     * @param tree The tree.
+     * @param schema The schema of the data the tree classifies, whose attributes must fit a bitmask.
+     * @param capacity The number of entries of the bounded cache if the schema is too wide for a table.
+     * @return the cached classifier.
+     */
+    public static CachedClassifier of(BaseNode tree, Schema schema, int capacity) {
+        CompiledTree compiled = tree instanceof CompiledTree ? (CompiledTree) tree
+                : CompiledTree.compile(tree, schema, true);
+        return new CachedClassifier(compiled, capacity);
+    }
+
+    /**
+     * Given an attributes bitmask, this returns the index of the leaf it reaches, from the cache where possible.
+     *
+     * @param attributeBits The attributes bitmask.
+     * @return the index of the leaf in the leaf tables of the tree.
+     */
+    public int findLeaf(long attributeBits) {
+        if (table != null) {
+            hits.increment();
+            return table[(int) attributeBits];
+        }
+        long key = attributeBits & testedBits;
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> (Long.SIZE - indexBits));
+        Entry entry = entries[slot];
+        if (entry != null && entry.key == key) {
+            hits.increment();
+            return entry.leaf;
+        }
+        misses.increment();
+        int leaf = tree.findLeaf(key);
+        if (entry != null) evictions.increment();
+        entries[slot] = new Entry(key, leaf);
+        return leaf;
+    }
+
+    /**
+     * Given an attributes bitmask, this returns the class name it is determined to be.
+     *
+     * @param attributeBits The attributes bitmask.
+     * @return the class name.
+     */
+    public String classify(long attributeBits) {
+        return tree.getLeafClass(findLeaf(attributeBits));
+    }
+
+    @Override
+    public String classify(Patient p) {
+        return tree.getLeafClass(findLeaf(p.getAttributeBits()));
+    }
+
+    /**
+     * Method to return the probability of the class a Patient is determined to be.
+     *
+     * @param p The Patient.
+     * @return the probability of the leaf the Patient reaches.
+     */
+    public float getProbability(Patient p) {
+        return tree.getLeafProbability(findLeaf(p.getAttributeBits()));
+    }
+
+    @Override
+    public void report(String indent) {
+        tree.report(indent);
+    }
+
+    /** Getter for the compiled tree results are found in */
+    public CompiledTree getTree() {
+        return tree;
+    }
+
+    /** Getter for whether the leaf of every attribute combination is materialized into a table */
+    public boolean isTable() {
+        return table != null;
+    }
+
+    /** Getter for the number of entries: the table size, or the capacity of the bounded cache */
+    public int getCapacity() {
+        return table != null ? table.length : entries.length;
+    }
+
+    /** Getter for the number of lookups answered from the cache */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /** Getter for the number of lookups that walked the tree */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /** Getter for the number of entries replaced by a different key */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /** Getter for the fraction of lookups answered from the cache, 0 before any lookup */
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long lookups = hitCount + misses.sum();
+        return lookups == 0 ? 0 : hitCount / (double) lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s of %d entries: %d hits, %d misses, %d evictions (hit rate %.2f%%)",
+                table != null ? "Table" : "Cache", getCapacity(), getHits(), getMisses(), getEvictions(),
+                getHitRate() * 100);
+    }
+
+    /**
+     * Inner-class for an entry of the bounded cache. Its fields are final, so a thread reading an entry from its slot
+     * always sees the key with its leaf.
+     */
+    private static final class Entry {
+
+        /** The masked attributes bitmask */
+        private final long key;
+        /** The index of the leaf the attributes reach */
+        private final int leaf;
+
+        /**
+         * Constructor for an Entry.
+         *
+         * @param key The masked attributes bitmask.
+         * @param leaf The index of the leaf the attributes reach.
+         */
+        Entry(long key, int leaf) {
+            this.key = key;
+            this.leaf = leaf;
+        }
+    }
+}
@@ -0,0 +1,982 @@
+package tree;
+
+import metrics.InferenceMetrics;
+import processing.ColumnarDataset;
+import processing.InvalidDataException;
+import processing.Patient;
+import processing.Schema;
+
+import java.io.IOException;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A class to represent a trained tree compiled into flat arrays.
+ * Each internal node is an index into parallel arrays of attribute index, true branch and false branch. A branch
+ * holding a negative value n leads to the leaf at index ~n of the leaf tables. Classifying is a single loop over
+ * these arrays, with no recursion or calls through BaseNode.
+ * Whole blocks of rows in a ColumnarDataset can also be classified at once. A tree whose nodes all test boolean
+ * attributes splits the block's rows down a packed table of its nodes, as bitsets while dense and as lists of rows once
+ * sparse; any other tree pushes each word of 64 rows down as a mask, splitting it at each node it reaches.
+ * Attribute bitmasks of a single long hold the first 64 attributes, so schemas with more attributes, or with numeric
+ * or categorical attributes, are classified from the Patient or the block's columns instead. A node on a numeric
+ * attribute holds a threshold and a node on a categorical attribute the flags of its categories, as Node does.
+ * An instrumented copy of a tree records the latency of each classification and the leaves reached in InferenceMetrics;
+ * an uninstrumented tree pays only a null check for this.
+ */
+public final class CompiledTree implements BaseNode {
+
+    /** The share of a block's rows, one in this many, below which a selection is split as a list of its rows */
+    private static final int SPARSE_SHARE = 48;
+    /** The number of rows at or below which a list of rows is walked down one row at a time */
+    private static final int WALK_ROWS = 2;
+
+    /** The attribute index tested at each internal node */
+    private final int[] attributes;
+    /** The threshold tested at each internal node of a numeric attribute, NaN at any other node */
+    private final double[] thresholds;
+    /** The flags of the categories that take the true branch at each internal node of a categorical attribute */
+    private final boolean[][] categoryFlags;
+    /** The branch taken at each internal node when its attribute is true */
+    private final int[] trueBranches;
+    /** The branch taken at each internal node when its attribute is false */
+    private final int[] falseBranches;
+    /** The class name of each leaf */
+    private final String[] leafClasses;
+    /** The probability of each leaf */
+    private final float[] leafProbabilities;
+    /** The class value of each leaf, or -1 for a class name that is not one of the class values */
+    private final byte[] leafClassValues;
+    /** The root; a negative value when the whole tree is a single leaf */
+    private final int root;
+    /** The generated bytecode version of the decision path, or null to use the arrays */
+    private final LeafFinder generated;
+    /** The schema of the data the tree classifies */
+    private final Schema schema;
+    /** Whether every attribute of the schema is boolean and fits in an attributes bitmask */
+    private final boolean narrow;
+    /** The metrics to record classifications in, or null to record none */
+    private final InferenceMetrics metrics;
+    /**
+     * Two entries for each internal node, then each leaf: the branch taken when the node's attribute is false, then
+     * the branch taken when it is true. A branch packs the index of its node's entries, shifted up by stepShift, over
+     * the position in testedAttributes of the attribute that node tests, so each step is a single load. Both branches
+     * of a leaf lead back to it. Null unless every internal node tests a boolean attribute and the tree is small
+     * enough to pack
+     */
+    private final int[] steps;
+    /** The shift of the index of a node's entries in a branch of steps, at least 6 so the rest is a shift count */
+    private final int stepShift;
+    /** The distinct attributes tested by the internal nodes, in index order; null when steps is */
+    private final int[] testedAttributes;
+
+    /**
+     * An interface for the code generated to find the leaf for a set of attributes.
+     */
+    public interface LeafFinder {
+
+        /**
+         * Given an attributes bitmask, this returns the index of the leaf it reaches.
+         *
+         * @param attributeBits The attributes bitmask.
+         * @return the index of the leaf in the leaf tables.
+         */
+        int findLeaf(long attributeBits);
+    }
+
+    /**
+     * Constructor for a CompiledTree.
+     *
+     * @param attributes The attribute index tested at each internal node.
+     * @param thresholds The threshold tested at each internal node of a numeric attribute, NaN at any other node.
+     * @param categoryFlags The flags of the categories that take the true branch at each internal node of a
+     *                      categorical attribute, null at any other node.
+     * @param trueBranches The branch taken at each internal node when its attribute is true.
+     * @param falseBranches The branch taken at each internal node when its attribute is false.
+     * @param leafClasses The class name of each leaf.
+     * @param leafProbabilities The probability of each leaf.
+     * @param root The root node.
+     * @param schema The schema of the data the tree classifies.
+     * @param generateBytecode Whether to generate a hidden class for the decision path.
+     */
+    CompiledTree(int[] attributes, double[] thresholds, boolean[][] categoryFlags, int[] trueBranches,
+                 int[] falseBranches, String[] leafClasses, float[] leafProbabilities, int root, Schema schema,
+                 boolean generateBytecode) {
+        this.attributes = attributes;
+        this.thresholds = thresholds;
+        this.categoryFlags = categoryFlags;
+        this.trueBranches = trueBranches;
+        this.falseBranches = falseBranches;
+        this.leafClasses = leafClasses;
+        this.leafProbabilities = leafProbabilities;
+        this.root = root;
+        this.schema = schema;
+        narrow = schema.fitsBitmask();
+        leafClassValues = new byte[leafClasses.length];
+        for (int i = 0; i < leafClasses.length; i++) leafClassValues[i] = schema.findClassValue(leafClasses[i]);
+        generated = generateBytecode && narrow ? TreeBytecodeGenerator.generate(this) : null;
+        metrics = null;
+
+        boolean booleanOnly = true;
+        boolean[] tested = new boolean[schema.getAttributeCount()];
+        for (int n = 0; n < attributes.length; n++) {
+            booleanOnly &= categoryFlags[n] == null && Double.isNaN(thresholds[n]);
+            tested[attributes[n]] = true;
+        }
+        int testedCount = 0;
+        for (boolean t : tested) if (t) testedCount++;
+        int shift = Math.max(6, Integer.SIZE - Integer.numberOfLeadingZeros(Math.max(testedCount - 1, 0)));
+        long entries = 2L * (attributes.length + leafClasses.length);
+        if (booleanOnly && entries << shift <= Integer.MAX_VALUE) {
+            testedAttributes = new int[testedCount];
+            int[] positions = new int[tested.length];
+            for (int a = 0, i = 0; a < tested.length; a++) {
+                if (tested[a]) {
+                    positions[a] = i;
+                    testedAttributes[i++] = a;
+                }
+            }
+            // The packed branch to each node, then each leaf, which tests the first position
+            int[] branches = new int[attributes.length + leafClasses.length];
+            for (int e = 0; e < branches.length; e++) {
+                branches[e] = e * 2 << shift | (e < attributes.length ? positions[attributes[e]] : 0);
+            }
+            steps = new int[(int) entries];
+            for (int e = 0; e < branches.length; e++) {
+                steps[e * 2] = e < attributes.length ? branches[toStep(falseBranches[e])] : branches[e];
+                steps[e * 2 + 1] = e < attributes.length ? branches[toStep(trueBranches[e])] : branches[e];
+            }
+            stepShift = shift;
+        }
+        else {
+            steps = null;
+            stepShift = 0;
+            testedAttributes = null;
+        }
+    }
+
+    /**
+     * Constructor for a copy of a CompiledTree that records its classifications, sharing its arrays.
+     *
+     * @param tree The tree to copy.
+     * @param metrics The metrics to record classifications in.
+     */
+    private CompiledTree(CompiledTree tree, InferenceMetrics metrics) {
+        attributes = tree.attributes;
+        thresholds = tree.thresholds;
+        categoryFlags = tree.categoryFlags;
+        trueBranches = tree.trueBranches;
+        falseBranches = tree.falseBranches;
+        leafClasses = tree.leafClasses;
+        leafProbabilities = tree.leafProbabilities;
+        leafClassValues = tree.leafClassValues;
+        root = tree.root;
+        generated = tree.generated;
+        schema = tree.schema;
+        narrow = tree.narrow;
+        steps = tree.steps;
+        stepShift = tree.stepShift;
+        testedAttributes = tree.testedAttributes;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Method to convert a branch to its index among the nodes of steps, where the leaves follow the internal nodes.
+     *
+     * @param branch An internal node, or the complement of a leaf.
+     * @return the index.
+     */
+    private int toStep(int branch) {
+        return branch >= 0 ? branch : attributes.length + ~branch;
+    }
+
+    /**
+     * Method to create a copy of this tree that records the latency of each classification, the number of records
+     * classified and the leaves they reach. This tree is unchanged, so it can go on classifying without the cost.
+     *
+     * @return the instrumented copy; its metrics are returned by getMetrics.
+     */
+    public CompiledTree instrument() {
+        return new CompiledTree(this, new InferenceMetrics(leafClasses.length));
+    }
+
+    /**
+     * Method to compile a tree of the hepatitis schema into flat arrays.
+     *
+     * @param tree The tree to compile.
+     * @return the compiled tree.
+     */
+    public static CompiledTree compile(BaseNode tree) {
+        return compile(tree, Schema.HEPATITIS, false);
+    }
+
+    /**
+     * Method to compile a tree of the hepatitis schema into flat arrays and, optionally, a generated hidden class.
+     *
+     * @param tree The tree to compile.
+     * @param generateBytecode Whether to generate a hidden class for the decision path.
+     * @return the compiled tree.
+     */
+    public static CompiledTree compile(BaseNode tree, boolean generateBytecode) {
+        return compile(tree, Schema.HEPATITIS, generateBytecode);
+    }
+
+    /**
+     * Method to compile a tree into flat arrays.
+     *
+     * @param tree The tree to compile.
+     * @param schema The schema of the data the tree classifies.
+     * @return the compiled tree.
+     */
+    public static CompiledTree compile(BaseNode tree, Schema schema) {
+        return compile(tree, schema, false);
+    }
+
+    /**
+     * Method to compile a tree into flat arrays and, optionally, a generated hidden class so the JIT can inline the
+     * whole decision path. Trees too large for a single method, or of schemas that do not fit an attributes bitmask,
+     * keep using the arrays.
+     *
+     * @param tree The tree to compile.
+     * @param schema The schema of the data the tree classifies.
+     * @param generateBytecode Whether to generate a hidden class for the decision path.
+     * @return the compiled tree.
+     */
+    public static CompiledTree compile(BaseNode tree, Schema schema, boolean generateBytecode) {
+        Builder builder = new Builder();
+        int root = builder.add(tree);
+        return new CompiledTree(Arrays.copyOf(builder.attributes, builder.nodeCount),
+                Arrays.copyOf(builder.thresholds, builder.nodeCount),
+                Arrays.copyOf(builder.categoryFlags, builder.nodeCount),
+                Arrays.copyOf(builder.trueBranches, builder.nodeCount),
+                Arrays.copyOf(builder.falseBranches, builder.nodeCount),
+                Arrays.copyOf(builder.leafClasses, builder.leafCount),
+                Arrays.copyOf(builder.leafProbabilities, builder.leafCount), root, schema, generateBytecode);
+    }
+
+    /**
+     * Given an attributes bitmask, this returns the index of the leaf it reaches; the tree must only test the first
+     * 64 attributes, all boolean.
+     *
+     * @param attributeBits The attributes bitmask.
+     * @return the index of the leaf in the leaf tables.
+     */
+    public int findLeaf(long attributeBits) {
+        if (generated != null) return generated.findLeaf(attributeBits);
+        int n = root;
+        while (n >= 0) {
+            n = (attributeBits & (1L << attributes[n])) != 0 ? trueBranches[n] : falseBranches[n];
+        }
+        return ~n;
+    }
+
+    /**
+     * Given a Patient, this returns the index of the leaf it reaches.
+     *
+     * @param p The Patient.
+     * @return the index of the leaf in the leaf tables.
+     */
+    public int findLeaf(Patient p) {
+        if (narrow) return findLeaf(p.getAttributeBits());
+        int n = root;
+        while (n >= 0) n = test(n, p) ? trueBranches[n] : falseBranches[n];
+        return ~n;
+    }
+
+    /**
+     * Method to test a Patient at an internal node.
+     *
+     * @param n The node.
+     * @param p The Patient.
+     * @return true if the Patient takes the true branch.
+     */
+    private boolean test(int n, Patient p) {
+        int a = attributes[n];
+        boolean[] flags = categoryFlags[n];
+        if (flags != null) {
+            int category = p.getCategory(a);
+            return category < flags.length && flags[category];
+        }
+        if (!Double.isNaN(thresholds[n])) return p.getValue(a) <= thresholds[n];
+        return p.getAttribute(a);
+    }
+
+    /**
+     * Method to test a row of a block of data at an internal node.
+     *
+     * @param n The node.
+     * @param block The block of data.
+     * @param row The row.
+     * @return true if the row takes the true branch.
+     */
+    private boolean test(int n, ColumnarDataset block, int row) {
+        int a = attributes[n];
+        boolean[] flags = categoryFlags[n];
+        if (flags != null) {
+            int category = (int) block.getValue(row, a);
+            return category < flags.length && flags[category];
+        }
+        if (!Double.isNaN(thresholds[n])) return block.getValue(row, a) <= thresholds[n];
+        return block.getAttribute(row, a);
+    }
+
+    /**
+     * Given a row of a block of data, this returns the index of the leaf it reaches.
+     *
+     * @param block The block of data.
+     * @param row The row.
+     * @return the index of the leaf in the leaf tables.
+     */
+    public int findLeaf(ColumnarDataset block, int row) {
+        if (narrow) return findLeaf(block.getRowBits(row));
+        int n = root;
+        while (n >= 0) n = test(n, block, row) ? trueBranches[n] : falseBranches[n];
+        return ~n;
+    }
+
+    /**
+     * Given an attributes bitmask, this returns the class name it is determined to be.
+     *
+     * @param attributeBits The attributes bitmask.
+     * @return the class name.
+     */
+    public String classify(long attributeBits) {
+        if (metrics == null) return leafClasses[findLeaf(attributeBits)];
+        long start = System.nanoTime();
+        int leaf = findLeaf(attributeBits);
+        metrics.recordClassification(leaf, System.nanoTime() - start);
+        return leafClasses[leaf];
+    }
+
+    @Override
+    public String classify(Patient p) {
+        if (metrics == null) return leafClasses[findLeaf(p)];
+        long start = System.nanoTime();
+        int leaf = findLeaf(p);
+        metrics.recordClassification(leaf, System.nanoTime() - start);
+        return leafClasses[leaf];
+    }
+
+    /**
+     * Method to classify every row of a block of data.
+     *
+     * @param block The rows to classify.
+     * @return the class value determined for each row, in row order; -1 where a leaf's class is not a class value.
+     */
+    public byte[] classify(ColumnarDataset block) {
+        byte[] classValues = new byte[block.size()];
+        evaluate(block, block.allRows(), classValues);
+        return classValues;
+    }
+
+    /**
+     * Method to count the rows of a block of data whose labelled class matches the class determined for them.
+     *
+     * @param block The rows to classify.
+     * @return the number of correct classifications.
+     */
+    public int countCorrect(ColumnarDataset block) {
+        return evaluate(block, block.allRows(), null);
+    }
+
+    /**
+     * Method to count the rows in a subset of a block of data whose labelled class matches the class determined for
+     * them, such as the test fold of a cross-validation.
+     *
+     * @param block The rows to classify.
+     * @param rows The bitset of the rows to classify.
+     * @return the number of correct classifications.
+     */
+    public int countCorrect(ColumnarDataset block, long[] rows) {
+        return evaluate(block, rows, null);
+    }
+
+    /**
+     * Method to classify the rows of a block, a word of 64 rows at a time, and record them in the metrics if any.
+     *
+     * @param block The rows to classify.
+     * @param rows The bitset of the rows to classify.
+     * @param classValues The array to write the class value of each row to, or null to only count.
+     * @return the number of correct classifications.
+     */
+    private int evaluate(ColumnarDataset block, long[] rows, byte[] classValues) {
+        long start = metrics == null ? 0 : System.nanoTime();
+        int[] leafHits = metrics == null ? null : new int[leafClassValues.length];
+        int correct = steps != null ? step(block, rows, classValues, leafHits)
+                : pushMasks(block, rows, classValues, leafHits);
+        if (metrics != null) {
+            for (int leaf = 0; leaf < leafHits.length; leaf++) {
+                if (leafHits[leaf] > 0) metrics.recordLeafHits(leaf, leafHits[leaf]);
+            }
+            metrics.recordBatch(ColumnarDataset.popcount(rows, rows), System.nanoTime() - start);
+        }
+        return correct;
+    }
+
+    /**
+     * Method to classify the rows of a block when every internal node tests a boolean attribute. The rows are split
+     * down the tree together: while a node's rows are dense they are split as bitsets, a word of 64 rows at a time,
+     * and once sparse as lists of rows, partitioned in turn at each node without a branch per row. The columns are
+     * read in place when they are arrays, so no block is copied or transposed.
+     *
+     * @param block The rows to classify.
+     * @param rows The bitset of the rows to classify.
+     * @param classValues The array to write the class value of each row to, or null to only count.
+     * @param leafHits The number of rows reaching each leaf, to add to, or null to record none.
+     * @return the number of correct classifications.
+     */
+    private int step(ColumnarDataset block, long[] rows, byte[] classValues, int[] leafHits) {
+        int count = ColumnarDataset.popcount(rows, rows);
+        if (count == 0) return 0;
+        Walk walk = new Walk(block, rows.length, classValues, leafHits);
+        int start = toStep(root) * 2 << stepShift | (root >= 0 ? Arrays.binarySearch(testedAttributes,
+                attributes[root]) : 0);
+        walk.split(start, rows.clone(), count, 0);
+        return walk.correct;
+    }
+
+    /**
+     * Inner-class for the state of classifying the rows of a block down steps.
+     */
+    private final class Walk {
+
+        /** The words of each tested attribute's column */
+        private final long[][] columns;
+        /** The words of each class column, then a column of zeros for classes the block lacks */
+        private final long[][] classColumns;
+        /** The class column each leaf's rows are counted in */
+        private final long[][] leafClassColumns;
+        /** The number of words of the block */
+        private final int words;
+        /** The number of rows below which a selection is split as a list of its rows rather than as a bitset */
+        private final int sparseRows;
+        /** The selections of the rows taking the true branch at each depth while dense */
+        private long[][] selections = new long[0][];
+        /** The rows split at alternate depths once sparse, each node's rows a range of one of them */
+        private final int[][] rowLists;
+        /** The array to write the class value of each row to, or null to only count */
+        private final byte[] classValues;
+        /** The number of rows reaching each leaf, to add to, or null to record none */
+        private final int[] leafHits;
+        /** The number of correct classifications so far */
+        private int correct;
+
+        /**
+         * Constructor for a Walk.
+         *
+         * @param block The rows to classify.
+         * @param words The number of words of the rows to classify.
+         * @param classValues The array to write the class value of each row to, or null to only count.
+         * @param leafHits The number of rows reaching each leaf, to add to, or null to record none.
+         */
+        Walk(ColumnarDataset block, int words, byte[] classValues, int[] leafHits) {
+            this.words = words;
+            this.classValues = classValues;
+            this.leafHits = leafHits;
+            columns = new long[testedAttributes.length][];
+            for (int t = 0; t < columns.length; t++) columns[t] = words(block.getAttributeColumn(testedAttributes[t]));
+            int classCount = block.getClassCount();
+            classColumns = new long[classCount + 1][];
+            for (int c = 0; c < classCount; c++) classColumns[c] = words(block.getClassColumn(c));
+            classColumns[classCount] = new long[words];
+            leafClassColumns = new long[leafClassValues.length][];
+            for (int leaf = 0; leaf < leafClassColumns.length; leaf++) {
+                byte classValue = leafClassValues[leaf];
+                leafClassColumns[leaf] = classColumns[classValue >= 0 && classValue < classCount ? classValue
+                        : classCount];
+            }
+            sparseRows = words * Long.SIZE / SPARSE_SHARE;
+            rowLists = new int[2][sparseRows + 2];
+        }
+
+        /**
+         * Method to get the words of a column as an array, its own if it has one.
+         *
+         * @param column The column.
+         * @return the words, at least as many as the block has.
+         */
+        private long[] words(LongBuffer column) {
+            if (column.hasArray() && column.arrayOffset() == 0 && column.array().length >= words) return column.array();
+            long[] copy = new long[words];
+            column.get(0, copy, 0, Math.min(words, column.limit()));
+            return copy;
+        }
+
+        /**
+         * Method to follow a selection of the block's rows down a branch, splitting it at each node it reaches.
+         *
+         * @param branch The packed branch.
+         * @param selection The bitset of the rows.
+         * @param count The number of rows selected.
+         * @param depth The depth of the branch's node.
+         */
+        void split(int branch, long[] selection, int count, int depth) {
+            if (count >= sparseRows && branch >= attributes.length * 2 << stepShift) {
+                reach(leaf(branch), selection);
+                return;
+            }
+            if (count < sparseRows) {
+                int[] rows = rowLists[0];
+                int n = 0;
+                for (int k = 0; k < words; k++) {
+                    long word = selection[k];
+                    rows[n] = k << 6 | Long.numberOfTrailingZeros(word);
+                    n += (int) ((word | -word) >>> 63);
+                    word &= word - 1;
+                    rows[n] = k << 6 | Long.numberOfTrailingZeros(word);
+                    n += (int) ((word | -word) >>> 63);
+                    for (word &= word - 1; word != 0; word &= word - 1) {
+                        rows[n++] = k << 6 | Long.numberOfTrailingZeros(word);
+                    }
+                }
+                splitRows(branch, 0, n, 0);
+                return;
+            }
+            if (selections.length == depth) {
+                selections = Arrays.copyOf(selections, depth + 1);
+                selections[depth] = new long[words];
+            }
+            long[] trueSelection = selections[depth];
+            long[] column = columns[branch & (1 << stepShift) - 1];
+            int trueCount = 0;
+            for (int k = 0; k < words; k++) {
+                long word = selection[k] & column[k];
+                trueSelection[k] = word;
+                trueCount += Long.bitCount(word);
+            }
+            int entry = branch >>> stepShift;
+            if (trueCount > 0) split(steps[entry + 1], trueSelection, trueCount, depth + 1);
+            if (trueCount < count) {
+                for (int k = 0; k < words; k++) selection[k] &= ~column[k];
+                split(steps[entry], selection, count - trueCount, depth + 1);
+            }
+        }
+
+        /**
+         * Method to follow a range of a list of the block's rows down a branch, splitting it at each node it reaches
+         * into the same range of the other list: the rows taking the true branch from the start, the rest from the
+         * end.
+         *
+         * @param branch The packed branch.
+         * @param from The start of the range.
+         * @param to The end of the range.
+         * @param list The list holding the rows.
+         */
+        void splitRows(int branch, int from, int to, int list) {
+            int[] rows = rowLists[list];
+            if (branch >= attributes.length * 2 << stepShift) {
+                int leaf = leaf(branch);
+                long[] classColumn = leafClassColumns[leaf];
+                for (int j = from; j < to; j++) {
+                    int row = rows[j];
+                    correct += (int) (classColumn[row >>> 6] >>> row) & 1;
+                }
+                if (classValues != null) {
+                    for (int j = from; j < to; j++) classValues[rows[j]] = leafClassValues[leaf];
+                }
+                if (leafHits != null) leafHits[leaf] += to - from;
+                return;
+            }
+            if (to - from <= WALK_ROWS) {
+                int leaves = attributes.length * 2 << stepShift;
+                int position = (1 << stepShift) - 1;
+                for (int j = from; j < to; j++) {
+                    int row = rows[j];
+                    int b = branch;
+                    while (b < leaves) {
+                        b = steps[(b >>> stepShift) + ((int) (columns[b & position][row >>> 6] >>> row) & 1)];
+                    }
+                    int leaf = leaf(b);
+                    correct += (int) (leafClassColumns[leaf][row >>> 6] >>> row) & 1;
+                    if (classValues != null) classValues[row] = leafClassValues[leaf];
+                    if (leafHits != null) leafHits[leaf]++;
+                }
+                return;
+            }
+            int[] split = rowLists[list ^ 1];
+            long[] column = columns[branch & (1 << stepShift) - 1];
+            int taken = from;
+            for (int j = from; j < to; j++) {
+                int row = rows[j];
+                int bit = (int) (column[row >>> 6] >>> row) & 1;
+                split[taken + (to - 1 - j & bit - 1)] = row;
+                taken += bit;
+            }
+            int entry = branch >>> stepShift;
+            if (taken > from) splitRows(steps[entry + 1], from, taken, list ^ 1);
+            if (taken < to) splitRows(steps[entry], taken, to, list ^ 1);
+        }
+
+        /**
+         * Method to record a selection of the block's rows reaching a leaf.
+         *
+         * @param leaf The index of the leaf.
+         * @param selection The bitset of the rows.
+         */
+        void reach(int leaf, long[] selection) {
+            long[] classColumn = leafClassColumns[leaf];
+            int hits = 0;
+            for (int k = 0; k < words; k++) {
+                correct += Long.bitCount(selection[k] & classColumn[k]);
+                hits += Long.bitCount(selection[k]);
+            }
+            if (leafHits != null) leafHits[leaf] += hits;
+            if (classValues != null) {
+                for (int k = 0; k < words; k++) {
+                    for (long word = selection[k]; word != 0; word &= word - 1) {
+                        classValues[(k << 6) + Long.numberOfTrailingZeros(word)] = leafClassValues[leaf];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Method to convert a packed branch to a leaf into the index of the leaf.
+     *
+     * @param branch The packed branch.
+     * @return the index of the leaf in the leaf tables.
+     */
+    private int leaf(int branch) {
+        return (branch >>> stepShift + 1) - attributes.length;
+    }
+
+    /**
+     * Method to classify the rows of a block, whatever the attributes its internal nodes test, by pushing each word of
+     * rows down the tree as a mask: a node on a boolean attribute splits the mask with one AND against the
+     * attribute's column, one on any other attribute tests the mask's rows one at a time, and only the branches left
+     * with rows are followed.
+     *
+     * @param block The rows to classify.
+     * @param rows The bitset of the rows to classify.
+     * @param classValues The array to write the class value of each row to, or null to only count.
+     * @param leafHits The number of rows reaching each leaf, to add to, or null to record none.
+     * @return the number of correct classifications.
+     */
+    private int pushMasks(ColumnarDataset block, long[] rows, byte[] classValues, int[] leafHits) {
+        // The column each node on a boolean attribute tests, and the class column each leaf's rows are counted in
+        LongBuffer[] columns = new LongBuffer[attributes.length];
+        for (int n = 0; n < attributes.length; n++) {
+            if (categoryFlags[n] == null && Double.isNaN(thresholds[n])) {
+                columns[n] = block.getAttributeColumn(attributes[n]);
+            }
+        }
+        LongBuffer[] leafColumns = new LongBuffer[leafClassValues.length];
+        for (int leaf = 0; leaf < leafClassValues.length; leaf++) {
+            byte classValue = leafClassValues[leaf];
+            if (classValue >= 0 && classValue < block.getClassCount()) {
+                leafColumns[leaf] = block.getClassColumn(classValue);
+            }
+        }
+
+        // The false branches still to be followed for the current word, and their masks
+        int[] pendingNodes = new int[16];
+        long[] pendingMasks = new long[16];
+        int correct = 0;
+        for (int i = 0; i < rows.length; i++) {
+            if (rows[i] == 0) continue;
+            int pending = 0;
+            int n = root;
+            long mask = rows[i];
+            while (true) {
+                if (n >= 0) {
+                    long column = columns[n] != null ? columns[n].get(i) : testWord(n, block, i, mask);
+                    long trueMask = mask & column;
+                    long falseMask = mask & ~column;
+                    if (trueMask == 0) {
+                        n = falseBranches[n];
+                        mask = falseMask;
+                        continue;
+                    }
+                    if (falseMask != 0) {
+                        if (pending == pendingNodes.length) {
+                            pendingNodes = Arrays.copyOf(pendingNodes, pending * 2);
+                            pendingMasks = Arrays.copyOf(pendingMasks, pending * 2);
+                        }
+                        pendingNodes[pending] = falseBranches[n];
+                        pendingMasks[pending++] = falseMask;
+                    }
+                    n = trueBranches[n];
+                    mask = trueMask;
+                    continue;
+                }
+                int leaf = ~n;
+                if (leafColumns[leaf] != null) correct += Long.bitCount(mask & leafColumns[leaf].get(i));
+                if (classValues != null) {
+                    for (long word = mask; word != 0; word &= word - 1) {
+                        classValues[(i << 6) + Long.numberOfTrailingZeros(word)] = leafClassValues[leaf];
+                    }
+                }
+                if (leafHits != null) leafHits[leaf] += Long.bitCount(mask);
+                if (pending == 0) break;
+                n = pendingNodes[--pending];
+                mask = pendingMasks[pending];
+            }
+        }
+        return correct;
+    }
+
+    /**
+     * Method to test the rows of a word at a node on a numeric or categorical attribute, one row at a time.
+     *
+     * @param n The node.
+     * @param block The rows to classify.
+     * @param i The index of the word.
+     * @param mask The rows of the word to test.
+     * @return the rows of the mask that take the true branch.
+     */
+    private long testWord(int n, ColumnarDataset block, int i, long mask) {
+        long selected = 0;
+        for (long word = mask; word != 0; word &= word - 1) {
+            if (test(n, block, (i << 6) + Long.numberOfTrailingZeros(word))) selected |= word & -word;
+        }
+        return selected;
+    }
+
+    @Override
+    public void report(String indent) {
+        TreeExporter.report(this, indent);
+    }
+
+    /**
+     * A method to walk this tree, passing each node to a visitor as a Node or LeafNode describing it. The walk runs
+     * over the arrays without recursing, so trees of any depth can be walked.
+     *
+     * @param visitor The visitor.
+     * @throws IOException if the visitor cannot write its output.
+     */
+    @Override
+    public void accept(TreeVisitor visitor) throws IOException {
+        TreeExporter.walk(new TreeExporter.IndexedTree() {
+            @Override
+            public int getRoot() {
+                return root;
+            }
+
+            @Override
+            public int getTrueBranch(int n) {
+                return trueBranches[n];
+            }
+
+            @Override
+            public int getFalseBranch(int n) {
+                return falseBranches[n];
+            }
+
+            @Override
+            public Node describeNode(int n) {
+                return describe(n);
+            }
+
+            @Override
+            public LeafNode describeLeaf(int leaf) {
+                try {
+                    return new LeafNode(leafClasses[leaf], leafProbabilities[leaf]);
+                } catch (InvalidDataException e) {
+                    // The leaf was compiled from a LeafNode, so its probability is valid
+                    throw new IllegalStateException(e);
+                }
+            }
+        }, visitor);
+    }
+
+    /**
+     * Method to describe the test of an internal node as a Node of the same test, with no branches.
+     *
+     * @param n The node.
+     * @return the Node.
+     */
+    private Node describe(int n) {
+        String attribute = schema.getAttributeName(attributes[n]);
+        try {
+            if (categoryFlags[n] != null) return new Node(schema, attribute, getCategories(n), null, null);
+            if (!Double.isNaN(thresholds[n])) return new Node(schema, attribute, thresholds[n], null, null);
+            return new Node(schema, attribute, null, null);
+        } catch (InvalidDataException e) {
+            // The node was compiled from a Node of the same schema
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Getter for the schema of the data the tree classifies */
+    public Schema getSchema() {
+        return schema;
+    }
+
+    /** Getter for whether the decision path runs as generated bytecode */
+    public boolean isGenerated() {
+        return generated != null;
+    }
+
+    /** Getter for the metrics classifications are recorded in, null if the tree is not instrumented */
+    public InferenceMetrics getMetrics() {
+        return metrics;
+    }
+
+    /** Getter for the number of internal nodes */
+    public int getNodeCount() {
+        return attributes.length;
+    }
+
+    /** Getter for the number of leaves */
+    public int getLeafCount() {
+        return leafClasses.length;
+    }
+
+    /** Getter for the root node */
+    int getRoot() {
+        return root;
+    }
+
+    /** Getter for the attribute index of an internal node */
+    int getAttribute(int n) {
+        return attributes[n];
+    }
+
+    /** Getter for the threshold of an internal node of a numeric attribute, or NaN for any other attribute */
+    double getThreshold(int n) {
+        return thresholds[n];
+    }
+
+    /**
+     * Method to return the category names that take the true branch of an internal node.
+     *
+     * @param n The node.
+     * @return the category names in category order, or null if the node's attribute is not categorical.
+     */
+    List<String> getCategories(int n) {
+        boolean[] flags = categoryFlags[n];
+        if (flags == null) return null;
+        List<String> names = schema.getCategoryNames(attributes[n]);
+        List<String> categories = new ArrayList<>();
+        for (int c = 0; c < flags.length; c++) {
+            if (flags[c]) categories.add(names.get(c));
+        }
+        return categories;
+    }
+
+    /** Getter for the true branch of an internal node */
+    int getTrueBranch(int n) {
+        return trueBranches[n];
+    }
+
+    /** Getter for the false branch of an internal node */
+    int getFalseBranch(int n) {
+        return falseBranches[n];
+    }
+
+    /** Getter for the class name of a leaf */
+    public String getLeafClass(int leaf) {
+        return leafClasses[leaf];
+    }
+
+    /** Getter for the class value of a leaf, or -1 if the leaf's class is not a class value */
+    public byte getLeafClassValue(int leaf) {
+        return leafClassValues[leaf];
+    }
+
+    /** Getter for the probability of a leaf */
+    public float getLeafProbability(int leaf) {
+        return leafProbabilities[leaf];
+    }
+
+    /**
+     * Inner-class to flatten a tree of BaseNode instances into growing arrays.
+     */
+    private static class Builder {
+
+        private int[] attributes = new int[16];
+        private double[] thresholds = new double[16];
+        private boolean[][] categoryFlags = new boolean[16][];
+        private int[] trueBranches = new int[16];
+        private int[] falseBranches = new int[16];
+        private String[] leafClasses = new String[16];
+        private float[] leafProbabilities = new float[16];
+        private int nodeCount;
+        private int leafCount;
+
+        /**
+         * Method to add a tree to the arrays, numbering each internal node before the nodes of its true branch and
+         * those before the nodes of its false branch. It keeps its own stack of the nodes above the current one rather
+         * than recursing, as TreeExporter.walk does, so trees of any depth can be added.
+         *
+         * @param tree The tree to add.
+         * @return the index of the root if it is an internal node, or the complement of its index if it is a leaf.
+         */
+        private int add(BaseNode tree) {
+            // The index of the internal node at each depth on the path to the current node, and whether its true
+            // branch has been added
+            int[] path = new int[16];
+            boolean[] onFalseBranch = new boolean[16];
+            Node[] nodes = new Node[16];
+            int depth = 0;
+            BaseNode node = tree;
+            while (true) {
+                // Add internal nodes down their true branches as far as a leaf
+                while (!(node instanceof LeafNode)) {
+                    if (node instanceof CompiledTree) throw new IllegalArgumentException("Tree is already compiled");
+                    Node internal = (Node) node;
+                    if (depth == path.length) {
+                        path = Arrays.copyOf(path, depth * 2);
+                        onFalseBranch = Arrays.copyOf(onFalseBranch, depth * 2);
+                        nodes = Arrays.copyOf(nodes, depth * 2);
+                    }
+                    path[depth] = addNode(internal);
+                    onFalseBranch[depth] = false;
+                    nodes[depth++] = internal;
+                    node = internal.getLeft();
+                }
+                int branch = addLeaf((LeafNode) node);
+                // A node whose false branch has been added is complete, and is itself the branch of its parent
+                while (depth > 0 && onFalseBranch[depth - 1]) {
+                    falseBranches[path[--depth]] = branch;
+                    nodes[depth] = null;
+                    branch = path[depth];
+                }
+                if (depth == 0) return branch;
+                trueBranches[path[depth - 1]] = branch;
+                onFalseBranch[depth - 1] = true;
+                node = nodes[depth - 1].getRight();
+            }
+        }
+
+        /**
+         * Method to add an internal node to the arrays, without its branches.
+         *
+         * @param internal The node.
+         * @return the index of the node.
+         */
+        private int addNode(Node internal) {
+            if (nodeCount == attributes.length) {
+                attributes = Arrays.copyOf(attributes, nodeCount * 2);
+                thresholds = Arrays.copyOf(thresholds, nodeCount * 2);
+                categoryFlags = Arrays.copyOf(categoryFlags, nodeCount * 2);
+                trueBranches = Arrays.copyOf(trueBranches, nodeCount * 2);
+                falseBranches = Arrays.copyOf(falseBranches, nodeCount * 2);
+            }
+            int n = nodeCount++;
+            attributes[n] = internal.getAttributeIndex();
+            thresholds[n] = internal.getThreshold();
+            categoryFlags[n] = internal.getCategoryFlags();
+            return n;
+        }
+
+        /**
+         * Method to add a leaf to the arrays.
+         *
+         * @param leaf The leaf.
+         * @return the complement of the index of the leaf.
+         */
+        private int addLeaf(LeafNode leaf) {
+            if (leafCount == leafClasses.length) {
+                leafClasses = Arrays.copyOf(leafClasses, leafCount * 2);
+                leafProbabilities = Arrays.copyOf(leafProbabilities, leafCount * 2);
+            }
+            leafClasses[leafCount] = leaf.getClassName();
+            leafProbabilities[leafCount] = leaf.getProbability();
+            return ~leafCount++;
+        }
+    }
+}
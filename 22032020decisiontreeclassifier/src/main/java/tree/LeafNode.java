@@ -3,6 +3,8 @@ package tree;
 import processing.InvalidDataException;
 import processing.Patient;
 
+import java.util.Objects;
+
 /**
  * A class to represent a leaf node in a tree.
  */
@@ -25,6 +27,16 @@ public class LeafNode implements BaseNode {
         probability = prob;
     }
 
+    /** Getter for the className */
+    public String getClassName() {
+        return className;
+    }
+
+    /** Getter for the probability */
+    public float getProbability() {
+        return probability;
+    }
+
     @Override
     public String classify(Patient p) {
         return className;
@@ -32,6 +44,20 @@ public class LeafNode implements BaseNode {
 
     @Override
     public void report(String indent) {
-        System.out.format("%sClass %s, probability = %.2f \n", indent, className, probability);
+        TreeExporter.report(this, indent);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        LeafNode leafNode = (LeafNode) o;
+        return Float.compare(leafNode.probability, probability) == 0 &&
+                Objects.equals(className, leafNode.className);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(probability, className);
     }
 }
\ No newline at end of file
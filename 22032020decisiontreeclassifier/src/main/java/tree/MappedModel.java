@@ -0,0 +1,361 @@
+package tree;
+
+import processing.InvalidDataException;
+import processing.Patient;
+import processing.Schema;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * A class to classify directly from a memory-mapped model file written by ModelWriter.
+ * The trees are walked in the mapped buffer itself, so loading creates no Node or LeafNode objects and processes
+ * mapping the same file share its pages. A single-tree model returns its tree's class; a forest returns the class
+ * with the most votes, favouring the earliest class value on a tie.
+ * The model's attribute headings give its schema; Patients classified by it must be of a schema with the same
+ * attributes. Category splits are held by name, so the Patients' categories may be numbered differently from those
+ * of the data the model was trained on.
+ */
+public class MappedModel implements BaseNode {
+
+    /** The mapped model file */
+    private ByteBuffer buffer;
+    /** Whether the model is a forest */
+    private boolean forest;
+    /** The schema of the model's attributes */
+    private Schema schema;
+    /** The number of class names that are class values, which come first */
+    private int classValueCount;
+    /** The class names, indexed by the class indices stored in the leaves */
+    private String[] classNames;
+    /** The file offset of each tree */
+    private int[] treeOffsets;
+    /** The size of a node record: 16 bytes with its split offset since version 3, else 12 */
+    private int nodeSize;
+    /** The category names that take the true branch of each categorical split, by the split's file offset */
+    private Map<Integer, Set<String>> categorySplits = new HashMap<>();
+
+    /**
+     * Constructor for a MappedModel.
+     *
+     * @param buffer The model file.
+     * @throws InvalidDataException if the buffer does not hold a valid model.
+     */
+    public MappedModel(ByteBuffer buffer) throws InvalidDataException {
+        this.buffer = buffer;
+        try {
+            int checksumOffset = buffer.limit() - 4;
+            CRC32 crc = new CRC32();
+            ByteBuffer content = buffer.duplicate();
+            content.position(0).limit(checksumOffset);
+            crc.update(content);
+            if (checksumOffset < 0 || buffer.getInt(checksumOffset) != (int) crc.getValue()) {
+                throw new InvalidDataException("Model checksum does not match");
+            }
+
+            ByteBuffer header = buffer.duplicate();
+            if (header.getInt() != ModelWriter.MAGIC) throw new InvalidDataException("Not a model file");
+            int version = header.getInt();
+            if (version < 1 || version > ModelWriter.VERSION) {
+                throw new InvalidDataException("Unsupported model version " + version);
+            }
+            forest = header.getInt() == ModelWriter.FOREST;
+
+            List<String> attributeHeadings = new ArrayList<>();
+            int attributeCount = header.getInt();
+            for (int a = 0; a < attributeCount; a++) attributeHeadings.add(readUtf(header));
+            // Before version 3 every attribute was boolean, whatever its name
+            schema = version >= 3 ? Schema.fromAttributeHeadings(attributeHeadings)
+                    : attributeHeadings.equals(Schema.HEPATITIS.getAttributeNames()) ? Schema.HEPATITIS
+                    : new Schema(attributeHeadings);
+            nodeSize = version >= 3 ? 16 : 12;
+            // Version 1 models were always of the hepatitis schema, with its two class values
+            classValueCount = version == 1 ? Schema.HEPATITIS.getClassCount() : header.getInt();
+            classNames = new String[header.getInt()];
+            for (int c = 0; c < classNames.length; c++) classNames[c] = readUtf(header);
+            treeOffsets = new int[header.getInt()];
+            for (int t = 0; t < treeOffsets.length; t++) treeOffsets[t] = header.getInt();
+            if (version >= 3) readCategorySplits();
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new InvalidDataException("Model file is truncated");
+        }
+    }
+
+    /**
+     * Method to read the category names of every categorical split, so classifying needs no decoding.
+     *
+     * @throws InvalidDataException if a category name is not valid.
+     */
+    private void readCategorySplits() throws InvalidDataException {
+        for (int offset : treeOffsets) {
+            int nodes = offset + 12;
+            for (int n = 0; n < buffer.getInt(offset + 4); n++) {
+                int node = nodes + nodeSize * n;
+                int split = buffer.getInt(node + 12);
+                if (split < 0 || schema.getAttributeType(buffer.getInt(node)) != Schema.AttributeType.CATEGORICAL) {
+                    continue;
+                }
+                ByteBuffer categories = buffer.duplicate();
+                categories.position(offset + split);
+                // Kept in the order written, the order of the categories, so the split is reported as it was trained
+                Set<String> names = new LinkedHashSet<>();
+                for (int c = categories.getInt(); c > 0; c--) names.add(readUtf(categories));
+                categorySplits.put(offset + split, names);
+            }
+        }
+    }
+
+    /**
+     * Method to map a model file.
+     *
+     * @param file The path of the model file.
+     * @return the mapped model.
+     * @throws IOException if the file cannot be mapped.
+     * @throws InvalidDataException if the file does not hold a valid model.
+     */
+    public static MappedModel load(Path file) throws IOException, InvalidDataException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new MappedModel(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Given an attributes bitmask, this returns the class index of the leaf it reaches in a tree.
+     *
+     * @param tree The index of the tree.
+     * @param attributeBits The attributes bitmask.
+     * @return the class index, into getClassNames.
+     */
+    public int findClass(int tree, long attributeBits) {
+        int offset = treeOffsets[tree];
+        int nodes = offset + 12;
+        int n = buffer.getInt(offset);
+        while (n >= 0) {
+            int node = nodes + nodeSize * n;
+            n = (attributeBits & (1L << buffer.getInt(node))) != 0 ? buffer.getInt(node + 4) : buffer.getInt(node + 8);
+        }
+        return buffer.getInt(nodes + nodeSize * buffer.getInt(offset + 4) + 8 * ~n);
+    }
+
+    /**
+     * Given a Patient, this returns the class index of the leaf it reaches in a tree.
+     *
+     * @param tree The index of the tree.
+     * @param p The Patient.
+     * @return the class index, into getClassNames.
+     */
+    public int findClass(int tree, Patient p) {
+        if (schema.fitsBitmask()) return findClass(tree, p.getAttributeBits());
+        int offset = treeOffsets[tree];
+        int nodes = offset + 12;
+        int n = buffer.getInt(offset);
+        while (n >= 0) {
+            int node = nodes + nodeSize * n;
+            n = test(node, offset, p) ? buffer.getInt(node + 4) : buffer.getInt(node + 8);
+        }
+        return buffer.getInt(nodes + nodeSize * buffer.getInt(offset + 4) + 8 * ~n);
+    }
+
+    /**
+     * Method to test a Patient at a node of a tree.
+     *
+     * @param node The file offset of the node.
+     * @param offset The file offset of the node's tree.
+     * @param p The Patient.
+     * @return true if the Patient takes the true branch.
+     */
+    private boolean test(int node, int offset, Patient p) {
+        int a = buffer.getInt(node);
+        int split = nodeSize > 12 ? buffer.getInt(node + 12) : -1;
+        if (split < 0) return p.getAttribute(a);
+        if (schema.getAttributeType(a) == Schema.AttributeType.NUMERIC) {
+            return p.getValue(a) <= buffer.getDouble(offset + split);
+        }
+        return categorySplits.get(offset + split).contains(p.getSchema().getCategoryNames(a).get(p.getCategory(a)));
+    }
+
+    /**
+     * Given an attributes bitmask of a model with at most 64 attributes, all boolean, this returns the class index the
+     * model determines.
+     *
+     * @param attributeBits The attributes bitmask.
+     * @return the class index, into getClassNames.
+     */
+    public int classify(long attributeBits) {
+        if (!forest) return findClass(0, attributeBits);
+        // The class values come first in the class names, and only they can take votes
+        int[] votes = new int[classValueCount];
+        for (int t = 0; t < treeOffsets.length; t++) {
+            int c = findClass(t, attributeBits);
+            if (c < votes.length) votes[c]++;
+        }
+        return vote(votes);
+    }
+
+    @Override
+    public String classify(Patient p) {
+        if (schema.fitsBitmask()) return classNames[classify(p.getAttributeBits())];
+        if (!forest) return classNames[findClass(0, p)];
+        int[] votes = new int[classValueCount];
+        for (int t = 0; t < treeOffsets.length; t++) {
+            int c = findClass(t, p);
+            if (c < votes.length) votes[c]++;
+        }
+        return classNames[vote(votes)];
+    }
+
+    /**
+     * Method to return the class value with the most votes, favouring the earliest class value on a tie.
+     *
+     * @param votes The votes for each class value.
+     * @return the class index.
+     */
+    private static int vote(int[] votes) {
+        int best = 0;
+        for (int c = 1; c < votes.length; c++) {
+            if (votes[c] > votes[best]) best = c;
+        }
+        return best;
+    }
+
+    @Override
+    public void report(String indent) {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%s%s of %d tree(s) mapped from %d bytes\n", indent, forest ? "Forest" : "Tree",
+                treeOffsets.length, buffer.limit()));
+        String treeIndent = indent.replace("|", "_ ") + "|_ _ _ ";
+        for (int t = 0; t < treeOffsets.length; t++) {
+            out.append(indent).append("Tree ").append(t + 1).append(":\n");
+            TreeExporter.appendText(new MappedTree(treeOffsets[t]), treeIndent, out);
+        }
+        System.out.print(out);
+    }
+
+    /**
+     * A method to walk the tree of a single-tree model in the mapped buffer, passing each node to a visitor as a Node
+     * or LeafNode describing it.
+     *
+     * @param visitor The visitor.
+     * @throws IOException if the visitor cannot write its output.
+     * @throws IllegalArgumentException if the model is a forest.
+     */
+    @Override
+    public void accept(TreeVisitor visitor) throws IOException {
+        if (forest) throw new IllegalArgumentException("Not a single tree: a forest of " + treeOffsets.length);
+        TreeExporter.walk(new MappedTree(treeOffsets[0]), visitor);
+    }
+
+    /** Getter for the schema of the model's attributes */
+    public Schema getSchema() {
+        return schema;
+    }
+
+    /** Getter for the class names */
+    public String[] getClassNames() {
+        return classNames.clone();
+    }
+
+    /** Getter for the number of trees */
+    public int getTreeCount() {
+        return treeOffsets.length;
+    }
+
+    /**
+     * Method to read a string written with DataOutput.writeUTF; model names are plain ASCII in practice, but any
+     * modified UTF-8 is decoded.
+     *
+     * @param header The buffer positioned at the string.
+     * @return the string.
+     * @throws InvalidDataException if the string is not valid.
+     */
+    private static String readUtf(ByteBuffer header) throws InvalidDataException {
+        byte[] bytes = new byte[header.getShort() & 0xffff];
+        header.get(bytes);
+        try {
+            ByteBuffer withLength = ByteBuffer.allocate(bytes.length + 2).putShort((short) bytes.length).put(bytes);
+            return new DataInputStream(new ByteArrayInputStream(withLength.array())).readUTF();
+        } catch (IOException e) {
+            throw new InvalidDataException("Model holds an invalid name");
+        }
+    }
+
+    /**
+     * Inner-class to walk a tree of the model in the mapped buffer.
+     */
+    private class MappedTree implements TreeExporter.IndexedTree {
+
+        /** The file offset of the tree */
+        private final int offset;
+        /** The file offset of its nodes */
+        private final int nodes;
+        /** The file offset of its leaves, which follow the nodes */
+        private final int leaves;
+
+        /**
+         * Constructor for a MappedTree.
+         *
+         * @param offset The file offset of the tree.
+         */
+        MappedTree(int offset) {
+            this.offset = offset;
+            nodes = offset + 12;
+            leaves = nodes + nodeSize * buffer.getInt(offset + 4);
+        }
+
+        @Override
+        public int getRoot() {
+            return buffer.getInt(offset);
+        }
+
+        @Override
+        public int getTrueBranch(int n) {
+            return buffer.getInt(nodes + nodeSize * n + 4);
+        }
+
+        @Override
+        public int getFalseBranch(int n) {
+            return buffer.getInt(nodes + nodeSize * n + 8);
+        }
+
+        @Override
+        public Node describeNode(int n) {
+            int node = nodes + nodeSize * n;
+            int a = buffer.getInt(node);
+            String attribute = schema.getAttributeName(a);
+            int split = nodeSize > 12 ? buffer.getInt(node + 12) : -1;
+            try {
+                if (split < 0) return new Node(schema, attribute, null, null);
+                if (schema.getAttributeType(a) == Schema.AttributeType.NUMERIC) {
+                    return new Node(schema, attribute, buffer.getDouble(offset + split), null, null);
+                }
+                return new Node(schema, attribute, categorySplits.get(offset + split), null, null);
+            } catch (InvalidDataException e) {
+                // The model's checksum matched, so its nodes were written from a valid tree
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public LeafNode describeLeaf(int leaf) {
+            int entry = leaves + 8 * leaf;
+            try {
+                return new LeafNode(classNames[buffer.getInt(entry)], buffer.getFloat(entry + 4));
+            } catch (InvalidDataException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package tree;
+
+import processing.Schema;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A class to write compiled trees, alone or as a forest, in the binary model format read by MappedModel.
+ * All values are big-endian. The file is laid out as:
+ * <pre>
+ * int     magic "DTRE"
+ * int     format version
+ * int     model type: TREE or FOREST
+ * int     attribute count, then each attribute heading as modified UTF-8 (DataOutput.writeUTF); since version 3 the
+ *         headings of numeric and categorical attributes have their type suffix, as in a data file
+ * int     class value count (since version 2)
+ * int     class count, then each class name as modified UTF-8; the class values come first, in order
+ * int     tree count, then the file offset of each tree
+ * each tree:
+ *   int   root, node count, leaf count
+ *   node count x (int attribute index, int true branch, int false branch, int split offset (since version 3))
+ *   leaf count x (int class index, float probability)
+ *   the split of each node of a numeric or categorical attribute (since version 3): a double threshold, or an int
+ *   category count then each category name that takes the true branch as modified UTF-8
+ * int     CRC32 of every byte before it
+ * </pre>
+ * Branches use the CompiledTree encoding: a negative branch n leads to leaf ~n. The split offset of a node is the
+ * offset of its split from the start of its tree, or -1 for a boolean attribute. Version 1 files have no class value
+ * count and always hold the two hepatitis class values.
+ */
+public class ModelWriter {
+
+    /** The magic number at the start of a model file */
+    static final int MAGIC = 0x44545245;
+    /** The format version written */
+    static final int VERSION = 3;
+    /** The model type of a single tree */
+    static final int TREE = 0;
+    /** The model type of a forest, which classifies by majority vote */
+    static final int FOREST = 1;
+
+    private ModelWriter() {
+    }
+
+    /**
+     * Method to write a single tree as a model file.
+     *
+     * @param file The path of the file to write.
+     * @param tree The tree to write.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void writeTree(Path file, CompiledTree tree) throws IOException {
+        write(file, TREE, new CompiledTree[] { tree });
+    }
+
+    /**
+     * Method to write the trees of a forest as a model file.
+     *
+     * @param file The path of the file to write.
+     * @param trees The trees of the forest, all of the same schema.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void writeForest(Path file, CompiledTree[] trees) throws IOException {
+        write(file, FOREST, trees);
+    }
+
+    /**
+     * Method to write a model file.
+     *
+     * @param file The path of the file to write.
+     * @param modelType The model type.
+     * @param trees The trees of the model.
+     * @throws IOException if the file cannot be written.
+     */
+    private static void write(Path file, int modelType, CompiledTree[] trees) throws IOException {
+        // Leaves may hold class names other than the class values, e.g. the empty name of a leaf with no instances
+        Schema schema = trees.length == 0 ? Schema.HEPATITIS : trees[0].getSchema();
+        List<String> classNames = new ArrayList<>(schema.getClassNames());
+        for (CompiledTree tree : trees) {
+            for (int leaf = 0; leaf < tree.getLeafCount(); leaf++) {
+                if (!classNames.contains(tree.getLeafClass(leaf))) classNames.add(tree.getLeafClass(leaf));
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(modelType);
+        List<String> attributeHeadings = schema.getAttributeHeadings();
+        out.writeInt(attributeHeadings.size());
+        for (String heading : attributeHeadings) out.writeUTF(heading);
+        out.writeInt(schema.getClassCount());
+        out.writeInt(classNames.size());
+        for (String name : classNames) out.writeUTF(name);
+
+        byte[][] treeBytes = new byte[trees.length][];
+        for (int t = 0; t < trees.length; t++) treeBytes[t] = writeTree(trees[t], classNames);
+        out.writeInt(trees.length);
+        int offset = out.size() + 4 * trees.length;
+        for (byte[] tree : treeBytes) {
+            out.writeInt(offset);
+            offset += tree.length;
+        }
+        for (byte[] tree : treeBytes) out.write(tree);
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeInt((int) crc.getValue());
+        Files.write(file, bytes.toByteArray());
+    }
+
+    /**
+     * Method to write a tree of a model file.
+     *
+     * @param tree The tree to write.
+     * @param classNames The class names of the model, indexed by the class indices stored in the leaves.
+     * @return the bytes of the tree.
+     * @throws IOException if the tree cannot be written.
+     */
+    private static byte[] writeTree(CompiledTree tree, List<String> classNames) throws IOException {
+        // The splits follow the leaves, so their offsets are known before the nodes are written
+        int splitsStart = 12 + 16 * tree.getNodeCount() + 8 * tree.getLeafCount();
+        int[] splitOffsets = new int[tree.getNodeCount()];
+        ByteArrayOutputStream splitBytes = new ByteArrayOutputStream();
+        DataOutputStream splits = new DataOutputStream(splitBytes);
+        for (int n = 0; n < tree.getNodeCount(); n++) {
+            List<String> categories = tree.getCategories(n);
+            double threshold = tree.getThreshold(n);
+            if (categories == null && Double.isNaN(threshold)) {
+                splitOffsets[n] = -1;
+                continue;
+            }
+            splitOffsets[n] = splitsStart + splits.size();
+            if (categories == null) splits.writeDouble(threshold);
+            else {
+                splits.writeInt(categories.size());
+                for (String category : categories) splits.writeUTF(category);
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(tree.getRoot());
+        out.writeInt(tree.getNodeCount());
+        out.writeInt(tree.getLeafCount());
+        for (int n = 0; n < tree.getNodeCount(); n++) {
+            out.writeInt(tree.getAttribute(n));
+            out.writeInt(tree.getTrueBranch(n));
+            out.writeInt(tree.getFalseBranch(n));
+            out.writeInt(splitOffsets[n]);
+        }
+        for (int leaf = 0; leaf < tree.getLeafCount(); leaf++) {
+            out.writeInt(classNames.indexOf(tree.getLeafClass(leaf)));
+            out.writeFloat(tree.getLeafProbability(leaf));
+        }
+        splitBytes.writeTo(out);
+        return bytes.toByteArray();
+    }
+}
@@ -1,45 +1,292 @@
-package tree;
-
-import processing.Patient;
-
-/**
- * A class to represent a node with two branches in a tree.
- */
-public class Node implements BaseNode {
-
-    /** The left branch. */
-    private BaseNode left;
-    /** The right branch. */
-    private BaseNode right;
-    /** The attribute this node determines. */
-    private String attribute;
-
-    /**
-     * Constructor for a Node.
-     *
-     * @param attr The attribute to set.
-     * @param left The left branch to set.
-     * @param right The right to set.
-     */
-    public Node(String attr, BaseNode left, BaseNode right) {
-        attribute = attr;
-        this.left = left;
-        this.right = right;
-    }
-
-    @Override
-    public String classify(Patient p) {
-        boolean result = p.getAttribute(attribute);
-        //System.out.println(attribute + "? " + result);
-        if (result) return left.classify(p);
-        else return right.classify(p);
-    }
-
-    @Override
-    public void report(String indent) {
-        System.out.format("%s%s = True:\n", indent, attribute);
-        left.report(indent.replace("|", "_ ") + "|_ _ _ ");
-        System.out.format("%s%s = False:\n", indent, attribute);
-        right.report(indent.replace("|", "_ ") + "|_ _ _ ");
-    }
+package tree;
+
+import processing.ColumnarDataset;
+import processing.InvalidDataException;
+import processing.Patient;
+import processing.Schema;
+
+import java.util.*;
+
+/**
+ * A class to represent a node with two branches in a tree.
+ * A node on a boolean attribute takes the left branch when the attribute is true. A node on a numeric attribute takes
+ * the left branch when the value is at most its threshold, and a node on a categorical attribute when the category is
+ * one of its categories.
+ */
+public class Node implements BaseNode {
+
+    /** The left branch. */
+    private BaseNode left;
+    /** The right branch. */
+    private BaseNode right;
+    /** The attribute this node determines. */
+    private String attribute;
+    /** The index of the attribute this node determines, resolved once so classifying needs no lookup. */
+    private int attributeIndex;
+    /** The threshold of a numeric attribute, or NaN for any other attribute. */
+    private double threshold = Double.NaN;
+    /** The category names of a categorical attribute that take the left branch, or null for any other attribute. */
+    private Set<String> categories;
+    /** Flags for the categories that take the left branch, indexed by category. */
+    private boolean[] categoryFlags;
+
+    /**
+     * Constructor for a Node testing an attribute of the hepatitis schema.
+     *
+     * @param attr The attribute to set.
+     * @param left The left branch to set.
+     * @param right The right to set.
+     * @throws InvalidDataException if attr is not a known attribute.
+     */
+    public Node(String attr, BaseNode left, BaseNode right) throws InvalidDataException {
+        this(Schema.HEPATITIS, attr, left, right);
+    }
+
+    /**
+     * Constructor for a Node.
+     *
+     * @param schema The schema the attribute belongs to.
+     * @param attr The attribute to set.
+     * @param left The left branch to set.
+     * @param right The right to set.
+     * @throws InvalidDataException if attr is not a boolean attribute of the schema.
+     */
+    public Node(Schema schema, String attr, BaseNode left, BaseNode right) throws InvalidDataException {
+        this(schema, attr, Schema.AttributeType.BOOLEAN, left, right);
+    }
+
+    /**
+     * Constructor for a Node splitting a numeric attribute on a threshold.
+     *
+     * @param schema The schema the attribute belongs to.
+     * @param attr The attribute to set.
+     * @param threshold The largest value that takes the left branch.
+     * @param left The left branch to set.
+     * @param right The right to set.
+     * @throws InvalidDataException if attr is not a numeric attribute of the schema.
+     */
+    public Node(Schema schema, String attr, double threshold, BaseNode left, BaseNode right)
+            throws InvalidDataException {
+        this(schema, attr, Schema.AttributeType.NUMERIC, left, right);
+        if (Double.isNaN(threshold)) throw new InvalidDataException("Invalid threshold for attribute: " + attr);
+        this.threshold = threshold;
+    }
+
+    /**
+     * Constructor for a Node splitting a categorical attribute on a subset of its categories.
+     *
+     * @param schema The schema the attribute belongs to.
+     * @param attr The attribute to set.
+     * @param categories The category names that take the left branch.
+     * @param left The left branch to set.
+     * @param right The right to set.
+     * @throws InvalidDataException if attr is not a categorical attribute of the schema.
+     */
+    public Node(Schema schema, String attr, Collection<String> categories, BaseNode left, BaseNode right)
+            throws InvalidDataException {
+        this(schema, attr, Schema.AttributeType.CATEGORICAL, left, right);
+        this.categories = Collections.unmodifiableSet(new LinkedHashSet<>(categories));
+        categoryFlags = new boolean[schema.getCategoryNames(attributeIndex).size()];
+        // A category the schema has not seen cannot be held by any instance, so it needs no flag
+        for (String category : categories) {
+            int c = schema.findCategory(attributeIndex, category);
+            if (c >= 0) categoryFlags[c] = true;
+        }
+    }
+
+    /**
+     * Constructor for a Node of an attribute of the given type.
+     *
+     * @param schema The schema the attribute belongs to.
+     * @param attr The attribute to set.
+     * @param type The type the attribute must be.
+     * @param left The left branch to set.
+     * @param right The right to set.
+     * @throws InvalidDataException if attr is not an attribute of the schema of the given type.
+     */
+    private Node(Schema schema, String attr, Schema.AttributeType type, BaseNode left, BaseNode right)
+            throws InvalidDataException {
+        attribute = attr;
+        attributeIndex = schema.getAttributeIndex(attr);
+        if (attributeIndex < 0) throw new InvalidDataException("Unknown attribute: " + attr);
+        if (schema.getAttributeType(attributeIndex) != type) {
+            throw new InvalidDataException("Attribute " + attr + " is not " + type.name().toLowerCase());
+        }
+        this.left = left;
+        this.right = right;
+    }
+
+    /**
+     * Constructor for a copy of a Node with other branches.
+     *
+     * @param node The node to copy the test of.
+     * @param left The left branch to set.
+     * @param right The right to set.
+     */
+    private Node(Node node, BaseNode left, BaseNode right) {
+        attribute = node.attribute;
+        attributeIndex = node.attributeIndex;
+        threshold = node.threshold;
+        categories = node.categories;
+        categoryFlags = node.categoryFlags;
+        this.left = left;
+        this.right = right;
+    }
+
+    /**
+     * Method to create a node with the same test as this one and other branches, as pruning replaces subtrees.
+     *
+     * @param left The left branch.
+     * @param right The right branch.
+     * @return the node.
+     */
+    Node withBranches(BaseNode left, BaseNode right) {
+        return new Node(this, left, right);
+    }
+
+    /** Getter for the attribute */
+    public String getAttribute() {
+        return attribute;
+    }
+
+    /** Getter for the attribute index */
+    public int getAttributeIndex() {
+        return attributeIndex;
+    }
+
+    /** Getter for the threshold of a numeric attribute, or NaN for any other attribute */
+    public double getThreshold() {
+        return threshold;
+    }
+
+    /** Getter for the category names that take the left branch, or null for an attribute that is not categorical */
+    public Set<String> getCategories() {
+        return categories;
+    }
+
+    /** Getter for the flags of the categories that take the left branch, for compiling; null if not categorical */
+    boolean[] getCategoryFlags() {
+        return categoryFlags;
+    }
+
+    /** Getter for the left branch, taken when the attribute is true */
+    public BaseNode getLeft() {
+        return left;
+    }
+
+    /** Getter for the right branch, taken when the attribute is false */
+    public BaseNode getRight() {
+        return right;
+    }
+
+    /**
+     * Method to test a Patient against this node.
+     *
+     * @param p The Patient instance to test.
+     * @return true if the Patient takes the left branch.
+     */
+    public boolean test(Patient p) {
+        if (categoryFlags != null) {
+            int category = p.getCategory(attributeIndex);
+            return category < categoryFlags.length && categoryFlags[category];
+        }
+        if (!Double.isNaN(threshold)) return p.getValue(attributeIndex) <= threshold;
+        return p.getAttribute(attributeIndex);
+    }
+
+    /**
+     * Method to test a row of a block of data against this node.
+     *
+     * @param block The block of data, of the schema of this node.
+     * @param row The row.
+     * @return true if the row takes the left branch.
+     */
+    public boolean test(ColumnarDataset block, int row) {
+        if (categoryFlags != null) {
+            int category = (int) block.getValue(row, attributeIndex);
+            return category < categoryFlags.length && categoryFlags[category];
+        }
+        if (!Double.isNaN(threshold)) return block.getValue(row, attributeIndex) <= threshold;
+        return block.getAttribute(row, attributeIndex);
+    }
+
+    /**
+     * Method to describe the test of this node, as reported.
+     *
+     * @return the attribute, with the threshold or categories of an attribute that is not boolean.
+     */
+    public String getDescription() {
+        if (categories != null) return attribute + " in {" + String.join(", ", categories) + "}";
+        if (!Double.isNaN(threshold)) return attribute + " <= " + threshold;
+        return attribute;
+    }
+
+    @Override
+    public String classify(Patient p) {
+        boolean result = test(p);
+        //System.out.println(attribute + "? " + result);
+        if (result) return left.classify(p);
+        else return right.classify(p);
+    }
+
+    @Override
+    public void report(String indent) {
+        TreeExporter.report(this, indent);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        // Compare the trees pair of nodes by pair of nodes, with a stack of the pairs left rather than recursing, so
+        // trees of any depth can be compared
+        BaseNode[] pairs = new BaseNode[16];
+        pairs[0] = this;
+        pairs[1] = (Node) o;
+        int size = 2;
+        while (size > 0) {
+            BaseNode b = pairs[--size];
+            BaseNode a = pairs[--size];
+            if (a == b) continue;
+            if (!(a instanceof Node) || b == null || a.getClass() != b.getClass()) {
+                if (!Objects.equals(a, b)) return false;
+                continue;
+            }
+            Node x = (Node) a;
+            Node y = (Node) b;
+            if (!Objects.equals(x.attribute, y.attribute) || Double.compare(x.threshold, y.threshold) != 0
+                    || !Objects.equals(x.categories, y.categories)) {
+                return false;
+            }
+            if (size + 4 > pairs.length) pairs = Arrays.copyOf(pairs, pairs.length * 2);
+            pairs[size++] = x.right;
+            pairs[size++] = y.right;
+            pairs[size++] = x.left;
+            pairs[size++] = y.left;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        // Combine the hash of each node in the order TreeExporter walks them, which only equal trees share, with a
+        // stack of the branches left rather than recursing
+        BaseNode[] branches = new BaseNode[16];
+        branches[0] = this;
+        int size = 1;
+        int hash = 1;
+        while (size > 0) {
+            BaseNode n = branches[--size];
+            if (!(n instanceof Node)) {
+                hash = 31 * hash + Objects.hashCode(n);
+                continue;
+            }
+            Node node = (Node) n;
+            hash = 31 * hash + Objects.hash(node.attribute, node.threshold, node.categories);
+            if (size + 2 > branches.length) branches = Arrays.copyOf(branches, branches.length * 2);
+            branches[size++] = node.right;
+            branches[size++] = node.left;
+        }
+        return hash;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,204 @@
+package tree;
+
+import processing.ColumnarDataset;
+import processing.InvalidDataException;
+import processing.Schema;
+
+/**
+ * A class to post-prune a decision tree, folding subtrees that do not pay for themselves into leaves.
+ * The rows reaching each node are held as bitsets over a ColumnarDataset, as in BitsetTreeBuilder. Both methods
+ * work bottom-up in one pass, so a subtree is considered for pruning once its own subtrees have been pruned, and a
+ * folded subtree becomes a leaf of the most frequent class of the training rows reaching it.
+ * Trees are not modified: nodes above a pruned subtree are copied with their new branches, and the rest are shared.
+ */
+public final class Pruner {
+
+    /** The data the rows are of */
+    private final ColumnarDataset data;
+
+    /**
+     * Constructor for a Pruner.
+     *
+     * @param data The data the rows are of.
+     */
+    private Pruner(ColumnarDataset data) {
+        this.data = data;
+    }
+
+    /**
+     * Method to prune a tree by reduced error: a subtree is folded into a leaf wherever the leaf classifies at least
+     * as many of the validation rows reaching it correctly.
+     *
+     * @param tree The tree to prune.
+     * @param data The data the rows are of.
+     * @param trainingRows The bitset of the rows the tree was built from, which choose the class of folded leaves.
+     * @param validationRows The bitset of held-out rows to measure errors on.
+     * @return the pruned tree.
+     * @throws InvalidDataException if invalid data is passed to a LeafNode constructor.
+     */
+    public static BaseNode reducedError(BaseNode tree, ColumnarDataset data, long[] trainingRows,
+                                        long[] validationRows) throws InvalidDataException {
+        return new Pruner(data).reducedError(tree, trainingRows, validationRows).tree;
+    }
+
+    /**
+     * Method to prune a tree by cost-complexity: each leaf costs alpha, in errors per training row, and a subtree is
+     * folded into a leaf wherever that costs no more than the subtree's training errors and leaves. This is the
+     * smallest subtree with the least cost, as in minimal cost-complexity pruning for a single alpha.
+     *
+     * @param tree The tree to prune.
+     * @param data The data the rows are of.
+     * @param trainingRows The bitset of the rows the tree was built from.
+     * @param alpha The cost of each leaf, as a proportion of the training rows; 0 only folds subtrees that make no
+     *              fewer training errors than a leaf.
+     * @return the pruned tree.
+     * @throws InvalidDataException if invalid data is passed to a LeafNode constructor.
+     */
+    public static BaseNode costComplexity(BaseNode tree, ColumnarDataset data, long[] trainingRows, double alpha)
+            throws InvalidDataException {
+        double leafCost = alpha * ColumnarDataset.popcount(trainingRows, trainingRows);
+        return new Pruner(data).costComplexity(tree, trainingRows, leafCost).tree;
+    }
+
+    /**
+     * Method to prune a subtree by reduced error.
+     *
+     * @param tree The subtree.
+     * @param trainingRows The bitset of the training rows reaching the subtree.
+     * @param validationRows The bitset of the validation rows reaching the subtree.
+     * @return the pruned subtree, with the number of validation rows it classifies correctly.
+     * @throws InvalidDataException if invalid data is passed to a LeafNode constructor.
+     */
+    private Pruned reducedError(BaseNode tree, long[] trainingRows, long[] validationRows)
+            throws InvalidDataException {
+        if (!(tree instanceof Node)) return new Pruned(tree, countClass(tree, validationRows));
+        Node node = (Node) tree;
+        long[][] trainingSplit = split(node, trainingRows);
+        long[][] validationSplit = split(node, validationRows);
+        Pruned left = reducedError(node.getLeft(), trainingSplit[0], validationSplit[0]);
+        Pruned right = reducedError(node.getRight(), trainingSplit[1], validationSplit[1]);
+        Pruned subtree = join(node, left, right);
+
+        LeafNode leaf = mostFrequentLeaf(trainingRows);
+        if (leaf == null) return subtree;
+        double correct = countClass(leaf, validationRows);
+        return correct >= subtree.measure ? new Pruned(leaf, correct) : subtree;
+    }
+
+    /**
+     * Method to prune a subtree by cost-complexity.
+     *
+     * @param tree The subtree.
+     * @param trainingRows The bitset of the training rows reaching the subtree.
+     * @param leafCost The cost of each leaf, in errors.
+     * @return the pruned subtree, with its cost: its training errors plus the cost of its leaves.
+     * @throws InvalidDataException if invalid data is passed to a LeafNode constructor.
+     */
+    private Pruned costComplexity(BaseNode tree, long[] trainingRows, double leafCost) throws InvalidDataException {
+        int total = ColumnarDataset.popcount(trainingRows, trainingRows);
+        if (!(tree instanceof Node)) return new Pruned(tree, total - countClass(tree, trainingRows) + leafCost);
+        Node node = (Node) tree;
+        long[][] trainingSplit = split(node, trainingRows);
+        Pruned left = costComplexity(node.getLeft(), trainingSplit[0], leafCost);
+        Pruned right = costComplexity(node.getRight(), trainingSplit[1], leafCost);
+        Pruned subtree = join(node, left, right);
+
+        LeafNode leaf = mostFrequentLeaf(trainingRows);
+        if (leaf == null) return subtree;
+        double cost = total - countClass(leaf, trainingRows) + leafCost;
+        return cost <= subtree.measure ? new Pruned(leaf, cost) : subtree;
+    }
+
+    /**
+     * Method to join the pruned branches of a node, sharing the node if neither branch changed.
+     *
+     * @param node The node.
+     * @param left The pruned left branch.
+     * @param right The pruned right branch.
+     * @return the pruned subtree, with the sum of the measures of its branches.
+     */
+    private static Pruned join(Node node, Pruned left, Pruned right) {
+        BaseNode tree = left.tree == node.getLeft() && right.tree == node.getRight() ? node
+                : node.withBranches(left.tree, right.tree);
+        return new Pruned(tree, left.measure + right.measure);
+    }
+
+    /**
+     * Method to split a bitset of rows by the test of a node.
+     *
+     * @param node The node.
+     * @param rows The bitset of rows reaching the node.
+     * @return the bitsets of the rows taking the left and the right branch.
+     */
+    private long[][] split(Node node, long[] rows) {
+        long[] left = new long[rows.length];
+        long[] right = new long[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            for (long word = rows[i]; word != 0; word &= word - 1) {
+                int row = (i << 6) + Long.numberOfTrailingZeros(word);
+                if (node.test(data, row)) left[i] |= word & -word;
+            }
+            right[i] = rows[i] & ~left[i];
+        }
+        return new long[][] { left, right };
+    }
+
+    /**
+     * Method to count the rows of the class of a leaf.
+     *
+     * @param leaf The leaf.
+     * @param rows The bitset of rows.
+     * @return the number of rows of the leaf's class, or 0 if the node is not a leaf of a known class.
+     */
+    private int countClass(BaseNode leaf, long[] rows) {
+        if (!(leaf instanceof LeafNode)) return 0;
+        byte classValue = data.getSchema().findClassValue(((LeafNode) leaf).getClassName());
+        if (classValue < 0 || classValue >= data.getClassCount()) return 0;
+        return ColumnarDataset.popcount(rows, data.getClassColumn(classValue));
+    }
+
+    /**
+     * Method to create a leaf of the most frequent class of a set of rows, favouring the earliest class on a tie.
+     *
+     * @param rows The bitset of rows.
+     * @return the leaf, or null if there are no rows.
+     * @throws InvalidDataException if invalid data is passed to a LeafNode constructor.
+     */
+    private LeafNode mostFrequentLeaf(long[] rows) throws InvalidDataException {
+        int total = ColumnarDataset.popcount(rows, rows);
+        if (total == 0) return null;
+        Schema schema = data.getSchema();
+        int mostFrequent = 0;
+        int highestCount = -1;
+        for (int c = 0; c < data.getClassCount(); c++) {
+            int count = ColumnarDataset.popcount(rows, data.getClassColumn(c));
+            if (count > highestCount) {
+                highestCount = count;
+                mostFrequent = c;
+            }
+        }
+        return new LeafNode(schema.getClassName((byte) mostFrequent), highestCount / (float) total);
+    }
+
+    /**
+     * Inner-class for a pruned subtree with the measure pruning compared it by.
+     */
+    private static class Pruned {
+
+        /** The pruned subtree */
+        private final BaseNode tree;
+        /** The measure of the subtree: correct validation rows, or cost */
+        private final double measure;
+
+        /**
+         * Constructor for a Pruned subtree.
+         *
+         * @param tree The pruned subtree.
+         * @param measure The measure of the subtree.
+         */
+        Pruned(BaseNode tree, double measure) {
+            this.tree = tree;
+            this.measure = measure;
+        }
+    }
+}
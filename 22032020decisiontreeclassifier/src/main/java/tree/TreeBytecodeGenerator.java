@@ -0,0 +1,208 @@
+package tree;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+
+/**
+ * A class to generate a hidden class whose findLeaf method is the decision path of a CompiledTree written out as
+ * nested branches. Each tree gets its own class, so the JIT sees the whole path as straight-line code it can inline.
+ */
+class TreeBytecodeGenerator {
+
+    /** The name of the generated class; it must be in the package of the lookup defining it */
+    private static final String CLASS_NAME = "tree/GeneratedLeafFinder";
+    /**
+     * The largest method body generated. HotSpot does not JIT-compile methods over 8000 bytes (HugeMethodLimit), so a
+     * longer finder would run interpreted, slower than the arrays it replaces
+     */
+    static final int MAX_CODE_LENGTH = 8000;
+    /** The class file version; 49 is verified by type inference and so needs no stack map frames */
+    private static final int CLASS_FILE_VERSION = 49;
+
+    /** The opcodes used */
+    private static final int ALOAD_0 = 0x2a;
+    private static final int LLOAD_1 = 0x1f;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LUSHR = 0x7d;
+    private static final int L2I = 0x88;
+    private static final int ICONST_1 = 0x04;
+    private static final int IAND = 0x7e;
+    private static final int IFEQ = 0x99;
+    private static final int IRETURN = 0xac;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKESPECIAL = 0xb7;
+
+    /** The constant pool indices used */
+    private static final int THIS_CLASS = 2;
+    private static final int SUPER_CLASS = 4;
+    private static final int INTERFACE = 6;
+    private static final int INIT_NAME = 7;
+    private static final int INIT_DESCRIPTOR = 8;
+    private static final int SUPER_INIT = 10;
+    private static final int FIND_LEAF_NAME = 11;
+    private static final int FIND_LEAF_DESCRIPTOR = 12;
+    private static final int CODE_ATTRIBUTE = 13;
+
+    /** The method body being written */
+    private byte[] code = new byte[256];
+    /** The length of the method body written so far */
+    private int length;
+
+    /**
+     * Method to generate and load the decision path of a tree.
+     *
+     * @param tree The tree to generate the decision path of.
+     * @return an instance of the generated class, or null if the tree is too large for the JIT to compile it.
+     */
+    static CompiledTree.LeafFinder generate(CompiledTree tree) {
+        TreeBytecodeGenerator generator = new TreeBytecodeGenerator();
+        if (tree.getLeafCount() > Short.MAX_VALUE || !generator.writeBranch(tree, tree.getRoot())) return null;
+        try {
+            Class<?> finderClass = MethodHandles.lookup().defineHiddenClass(generator.writeClass(), true).lookupClass();
+            return (CompiledTree.LeafFinder) MethodHandles.lookup()
+                    .findConstructor(finderClass, MethodType.methodType(void.class)).invoke();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Could not generate decision path", e);
+        }
+    }
+
+    /**
+     * Method to write the code for a branch of the tree.
+     *
+     * @param tree The tree being generated.
+     * @param n The node of the branch.
+     * @return false if the code has grown too long.
+     */
+    private boolean writeBranch(CompiledTree tree, int n) {
+        if (length + 16 > MAX_CODE_LENGTH) return false;
+        if (n < 0) {
+            write(SIPUSH);
+            writeShort(~n);
+            write(IRETURN);
+            return true;
+        }
+        // if (((attributeBits >>> attribute) & 1) == 0) goto falseBranch
+        write(LLOAD_1);
+        write(BIPUSH);
+        write(tree.getAttribute(n));
+        write(LUSHR);
+        write(L2I);
+        write(ICONST_1);
+        write(IAND);
+        int jump = length;
+        write(IFEQ);
+        writeShort(0);
+        if (!writeBranch(tree, tree.getTrueBranch(n))) return false;
+        int offset = length - jump;
+        code[jump + 1] = (byte) (offset >>> 8);
+        code[jump + 2] = (byte) offset;
+        return writeBranch(tree, tree.getFalseBranch(n));
+    }
+
+    /**
+     * Method to write the class file around the method body.
+     *
+     * @return the bytes of the class file.
+     * @throws IOException if the bytes cannot be written.
+     */
+    private byte[] writeClass() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(CLASS_FILE_VERSION);
+
+        // Constant pool, in the order of the indices above
+        out.writeShort(14);
+        writeUtf8(out, CLASS_NAME);
+        writeClassEntry(out, 1);
+        writeUtf8(out, "java/lang/Object");
+        writeClassEntry(out, 3);
+        writeUtf8(out, CompiledTree.LeafFinder.class.getName().replace('.', '/'));
+        writeClassEntry(out, 5);
+        writeUtf8(out, "<init>");
+        writeUtf8(out, "()V");
+        out.writeByte(12);
+        out.writeShort(INIT_NAME);
+        out.writeShort(INIT_DESCRIPTOR);
+        out.writeByte(10);
+        out.writeShort(SUPER_CLASS);
+        out.writeShort(9);
+        writeUtf8(out, "findLeaf");
+        writeUtf8(out, "(J)I");
+        writeUtf8(out, "Code");
+
+        // public final class GeneratedLeafFinder extends Object implements CompiledTree.LeafFinder
+        out.writeShort(0x0001 | 0x0010 | 0x0020);
+        out.writeShort(THIS_CLASS);
+        out.writeShort(SUPER_CLASS);
+        out.writeShort(1);
+        out.writeShort(INTERFACE);
+        out.writeShort(0);
+
+        out.writeShort(2);
+        byte[] init = { (byte) ALOAD_0, (byte) INVOKESPECIAL, 0, (byte) SUPER_INIT, (byte) RETURN };
+        writeMethod(out, INIT_NAME, INIT_DESCRIPTOR, 1, 1, init, init.length);
+        writeMethod(out, FIND_LEAF_NAME, FIND_LEAF_DESCRIPTOR, 3, 3, code, length);
+
+        out.writeShort(0);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Method to write a public method with a Code attribute.
+     *
+     * @param out The stream to write to.
+     * @param name The constant pool index of the method name.
+     * @param descriptor The constant pool index of the method descriptor.
+     * @param maxStack The maximum operand stack depth of the code.
+     * @param maxLocals The number of local variable slots of the code.
+     * @param body The code.
+     * @param bodyLength The length of the code.
+     * @throws IOException if the bytes cannot be written.
+     */
+    private static void writeMethod(DataOutputStream out, int name, int descriptor, int maxStack, int maxLocals,
+                                    byte[] body, int bodyLength) throws IOException {
+        out.writeShort(0x0001);
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1);
+        out.writeShort(CODE_ATTRIBUTE);
+        out.writeInt(12 + bodyLength);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(bodyLength);
+        out.write(body, 0, bodyLength);
+        out.writeShort(0);
+        out.writeShort(0);
+    }
+
+    /** Method to write a CONSTANT_Utf8 entry */
+    private static void writeUtf8(DataOutputStream out, String value) throws IOException {
+        out.writeByte(1);
+        out.writeUTF(value);
+    }
+
+    /** Method to write a CONSTANT_Class entry */
+    private static void writeClassEntry(DataOutputStream out, int nameIndex) throws IOException {
+        out.writeByte(7);
+        out.writeShort(nameIndex);
+    }
+
+    /** Method to append a byte to the method body */
+    private void write(int value) {
+        if (length == code.length) code = Arrays.copyOf(code, length * 2);
+        code[length++] = (byte) value;
+    }
+
+    /** Method to append two bytes to the method body */
+    private void writeShort(int value) {
+        write(value >>> 8);
+        write(value);
+    }
+}
@@ -0,0 +1,461 @@
+package tree;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Formatter;
+import java.util.Locale;
+
+/**
+ * A class to walk trees of Node and LeafNode instances, or of numbered nodes as a CompiledTree holds them, and write
+ * them out as text, JSON or DOT.
+ * The walk keeps its own stack of the nodes above the current one rather than recursing, so trees of any depth can be
+ * walked, and each format appends to a single Appendable, such as a StringBuilder or a Writer, without building a
+ * string per node.
+ */
+public final class TreeExporter {
+
+    /**
+     * The formats a tree can be written in.
+     */
+    public enum Format {
+        /** The indented text BaseNode.report prints */
+        TEXT,
+        /** A JSON object per node, with the true and false branches of each internal node nested in it */
+        JSON,
+        /** A Graphviz digraph, with an edge labelled True or False from each internal node to each branch */
+        DOT
+    }
+
+    private TreeExporter() {
+    }
+
+    /**
+     * An interface for a tree held as numbered nodes rather than as Node and LeafNode instances, as CompiledTree and
+     * model files hold it: a branch n leads to internal node n, or to leaf ~n when it is negative.
+     */
+    interface IndexedTree {
+
+        /** Getter for the root, the complement of a leaf when the whole tree is a single leaf */
+        int getRoot();
+
+        /** Getter for the true branch of an internal node */
+        int getTrueBranch(int n);
+
+        /** Getter for the false branch of an internal node */
+        int getFalseBranch(int n);
+
+        /**
+         * Method to describe an internal node for a visitor.
+         *
+         * @param n The node.
+         * @return a Node with the node's test and no branches.
+         */
+        Node describeNode(int n);
+
+        /**
+         * Method to describe a leaf for a visitor.
+         *
+         * @param leaf The leaf.
+         * @return a LeafNode with the leaf's class and probability.
+         */
+        LeafNode describeLeaf(int leaf);
+    }
+
+    /**
+     * Method to walk a tree, passing each node to a visitor.
+     *
+     * @param tree The tree, of Node and LeafNode instances.
+     * @param visitor The visitor.
+     * @throws IOException if the visitor cannot write its output.
+     */
+    public static void walk(BaseNode tree, TreeVisitor visitor) throws IOException {
+        // The node at each depth on the path to the current node, and how many of its branches have been walked
+        BaseNode[] path = new BaseNode[16];
+        int[] walked = new int[16];
+        path[0] = tree;
+        int depth = 0;
+        while (depth >= 0) {
+            BaseNode n = path[depth];
+            if (n instanceof LeafNode) {
+                visitor.visitLeaf((LeafNode) n, depth--);
+                continue;
+            }
+            if (!(n instanceof Node)) {
+                throw new IllegalArgumentException("Not a tree of Node and LeafNode instances: " + n);
+            }
+            Node node = (Node) n;
+            switch (walked[depth]++) {
+                case 0:
+                    visitor.enterNode(node, depth);
+                    break;
+                case 1:
+                    visitor.betweenBranches(node, depth);
+                    break;
+                default:
+                    visitor.exitNode(node, depth);
+                    walked[depth--] = 0;
+                    continue;
+            }
+            if (++depth == path.length) {
+                path = Arrays.copyOf(path, depth * 2);
+                walked = Arrays.copyOf(walked, depth * 2);
+            }
+            path[depth] = walked[depth - 1] == 1 ? node.getLeft() : node.getRight();
+            walked[depth] = 0;
+        }
+    }
+
+    /**
+     * Method to walk a tree of numbered nodes, passing each node to a visitor as a Node or LeafNode describing it.
+     * The walk is the same as that of a tree of Node and LeafNode instances, and does not recurse either.
+     *
+     * @param tree The tree.
+     * @param visitor The visitor.
+     * @throws IOException if the visitor cannot write its output.
+     */
+    static void walk(IndexedTree tree, TreeVisitor visitor) throws IOException {
+        // The node at each depth on the path to the current node, how many of its branches have been walked, and the
+        // Node describing it, made once so each visit of the node is passed the same one
+        int[] path = new int[16];
+        int[] walked = new int[16];
+        Node[] described = new Node[16];
+        path[0] = tree.getRoot();
+        int depth = 0;
+        while (depth >= 0) {
+            int n = path[depth];
+            if (n < 0) {
+                visitor.visitLeaf(tree.describeLeaf(~n), depth--);
+                continue;
+            }
+            switch (walked[depth]++) {
+                case 0:
+                    described[depth] = tree.describeNode(n);
+                    visitor.enterNode(described[depth], depth);
+                    break;
+                case 1:
+                    visitor.betweenBranches(described[depth], depth);
+                    break;
+                default:
+                    visitor.exitNode(described[depth], depth);
+                    described[depth] = null;
+                    walked[depth--] = 0;
+                    continue;
+            }
+            if (++depth == path.length) {
+                path = Arrays.copyOf(path, depth * 2);
+                walked = Arrays.copyOf(walked, depth * 2);
+                described = Arrays.copyOf(described, depth * 2);
+            }
+            path[depth] = walked[depth - 1] == 1 ? tree.getTrueBranch(n) : tree.getFalseBranch(n);
+            walked[depth] = 0;
+        }
+    }
+
+    /**
+     * Method to write a tree in a format.
+     *
+     * @param tree The tree, of Node and LeafNode instances, or a CompiledTree.
+     * @param format The format.
+     * @param out Where to write the tree.
+     * @throws IOException if the tree cannot be written.
+     */
+    public static void write(BaseNode tree, Format format, Appendable out) throws IOException {
+        switch (format) {
+            case JSON:
+                tree.accept(new JsonVisitor(out));
+                break;
+            case DOT:
+                out.append("digraph tree {\n    node [shape=box];\n");
+                tree.accept(new DotVisitor(out));
+                out.append("}\n");
+                break;
+            default:
+                tree.accept(new TextVisitor(out, ""));
+        }
+    }
+
+    /**
+     * Method to return a tree written in a format.
+     *
+     * @param tree The tree, of Node and LeafNode instances, or a CompiledTree.
+     * @param format The format.
+     * @return the tree as a string.
+     */
+    public static String toString(BaseNode tree, Format format) {
+        StringBuilder out = new StringBuilder();
+        try {
+            write(tree, format, out);
+        } catch (IOException e) {
+            // A StringBuilder never fails to append
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Method to append a tree as the indented text BaseNode.report prints, so a report of several trees can be
+     * printed all at once.
+     *
+     * @param tree The tree, of Node and LeafNode instances, or a CompiledTree.
+     * @param indent The indentation of the root; the nodes below it are indented further.
+     * @param out Where to append the text.
+     */
+    public static void appendText(BaseNode tree, String indent, StringBuilder out) {
+        try {
+            tree.accept(new TextVisitor(out, indent));
+        } catch (IOException e) {
+            // A StringBuilder never fails to append
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Method to append a tree of numbered nodes as the indented text BaseNode.report prints.
+     *
+     * @param tree The tree.
+     * @param indent The indentation of the root; the nodes below it are indented further.
+     * @param out Where to append the text.
+     */
+    static void appendText(IndexedTree tree, String indent, StringBuilder out) {
+        try {
+            walk(tree, new TextVisitor(out, indent));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Method to print a tree as text to standard output all at once, as BaseNode.report does.
+     *
+     * @param tree The tree, of Node and LeafNode instances, or a CompiledTree.
+     * @param indent The indentation of the root; the nodes below it are indented further.
+     */
+    static void report(BaseNode tree, String indent) {
+        StringBuilder out = new StringBuilder();
+        appendText(tree, indent, out);
+        System.out.print(out);
+    }
+
+    /**
+     * Method to append a string as a string literal of JSON, which DOT reads the same way.
+     *
+     * @param out Where to append it.
+     * @param s The string.
+     * @throws IOException if it cannot be appended.
+     */
+    private static void appendQuoted(Appendable out, String s) throws IOException {
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') out.append('\\').append(c);
+            else if (c == '\n') out.append("\\n");
+            else if (c < 0x20) out.append(String.format("\\u%04x", (int) c));
+            else out.append(c);
+        }
+        out.append('"');
+    }
+
+    /**
+     * Inner-class for a visitor writing a tree as the indented text BaseNode.report prints.
+     */
+    private static class TextVisitor implements TreeVisitor {
+
+        /** Where to write the tree */
+        private final Appendable out;
+        /** The indentation of the root */
+        private final String rootIndent;
+        /** The indentation of the root as it is carried into the nodes below it */
+        private final String baseIndent;
+        /** The formatter of the probabilities and values of leaves, writing to out */
+        private final Formatter formatter;
+
+        /**
+         * Constructor for a TextVisitor.
+         *
+         * @param out Where to write the tree.
+         * @param indent The indentation of the root.
+         */
+        TextVisitor(Appendable out, String indent) {
+            this.out = out;
+            rootIndent = indent;
+            baseIndent = indent.replace("|", "_ ");
+            formatter = new Formatter(out, Locale.getDefault());
+        }
+
+        /**
+         * Method to write the indentation of a depth: each level below the root adds "_ _ _ _ ", bar the last, which
+         * adds "|_ _ _ ", as the recursive report did by replacing the bar of its parent's indentation.
+         *
+         * @param depth The depth.
+         * @throws IOException if it cannot be written.
+         */
+        private void indent(int depth) throws IOException {
+            if (depth == 0) {
+                out.append(rootIndent);
+                return;
+            }
+            out.append(baseIndent);
+            for (int d = 1; d < depth; d++) out.append("_ _ _ _ ");
+            out.append("|_ _ _ ");
+        }
+
+        @Override
+        public void enterNode(Node node, int depth) throws IOException {
+            indent(depth);
+            out.append(node.getDescription()).append(" = True:\n");
+        }
+
+        @Override
+        public void betweenBranches(Node node, int depth) throws IOException {
+            indent(depth);
+            out.append(node.getDescription()).append(" = False:\n");
+        }
+
+        @Override
+        public void exitNode(Node node, int depth) {
+        }
+
+        @Override
+        public void visitLeaf(LeafNode leaf, int depth) throws IOException {
+            indent(depth);
+            if (leaf instanceof ValueLeafNode) {
+                formatter.format("Class %s, value = %.4f \n", leaf.getClassName(), ((ValueLeafNode) leaf).getValue());
+            }
+            else {
+                formatter.format("Class %s, probability = %.2f \n", leaf.getClassName(), leaf.getProbability());
+            }
+            if (formatter.ioException() != null) throw formatter.ioException();
+        }
+    }
+
+    /**
+     * Inner-class for a visitor writing a tree as nested JSON objects.
+     */
+    private static class JsonVisitor implements TreeVisitor {
+
+        /** Where to write the tree */
+        private final Appendable out;
+
+        /**
+         * Constructor for a JsonVisitor.
+         *
+         * @param out Where to write the tree.
+         */
+        JsonVisitor(Appendable out) {
+            this.out = out;
+        }
+
+        @Override
+        public void enterNode(Node node, int depth) throws IOException {
+            out.append("{\"attribute\":");
+            appendQuoted(out, node.getAttribute());
+            if (!Double.isNaN(node.getThreshold())) {
+                out.append(",\"threshold\":").append(Double.toString(node.getThreshold()));
+            }
+            if (node.getCategories() != null) {
+                out.append(",\"categories\":[");
+                boolean first = true;
+                for (String category : node.getCategories()) {
+                    if (!first) out.append(',');
+                    appendQuoted(out, category);
+                    first = false;
+                }
+                out.append(']');
+            }
+            out.append(",\"true\":");
+        }
+
+        @Override
+        public void betweenBranches(Node node, int depth) throws IOException {
+            out.append(",\"false\":");
+        }
+
+        @Override
+        public void exitNode(Node node, int depth) throws IOException {
+            out.append('}');
+            if (depth == 0) out.append('\n');
+        }
+
+        @Override
+        public void visitLeaf(LeafNode leaf, int depth) throws IOException {
+            out.append("{\"class\":");
+            appendQuoted(out, leaf.getClassName());
+            if (leaf instanceof ValueLeafNode) {
+                out.append(",\"value\":").append(Float.toString(((ValueLeafNode) leaf).getValue()));
+            }
+            else {
+                out.append(",\"probability\":").append(Float.toString(leaf.getProbability()));
+            }
+            out.append('}');
+            if (depth == 0) out.append('\n');
+        }
+    }
+
+    /**
+     * Inner-class for a visitor writing the nodes and edges of a tree as Graphviz statements.
+     */
+    private static class DotVisitor implements TreeVisitor {
+
+        /** Where to write the tree */
+        private final Appendable out;
+        /** The identifier of the node at each depth on the path to the current node */
+        private int[] path = new int[16];
+        /** The number of nodes written so far, the identifier of the next */
+        private int nodeCount;
+
+        /**
+         * Constructor for a DotVisitor.
+         *
+         * @param out Where to write the tree.
+         */
+        DotVisitor(Appendable out) {
+            this.out = out;
+        }
+
+        /**
+         * Method to write a node, and the edge to it from its parent.
+         *
+         * @param label The label of the node.
+         * @param depth The number of nodes above it.
+         * @throws IOException if it cannot be written.
+         */
+        private void writeNode(String label, int depth) throws IOException {
+            int id = nodeCount++;
+            out.append("    n").append(Integer.toString(id)).append(" [label=");
+            appendQuoted(out, label);
+            out.append("];\n");
+            if (depth > 0) {
+                // The parent has had betweenBranches called once its true branch is written, which sets its sign bit
+                int parent = path[depth - 1];
+                out.append("    n").append(Integer.toString(parent & Integer.MAX_VALUE)).append(" -> n")
+                        .append(Integer.toString(id)).append(parent < 0 ? " [label=\"False\"];\n"
+                                : " [label=\"True\"];\n");
+            }
+            if (depth == path.length) path = Arrays.copyOf(path, depth * 2);
+            path[depth] = id;
+        }
+
+        @Override
+        public void enterNode(Node node, int depth) throws IOException {
+            writeNode(node.getDescription(), depth);
+        }
+
+        @Override
+        public void betweenBranches(Node node, int depth) {
+            path[depth] |= Integer.MIN_VALUE;
+        }
+
+        @Override
+        public void exitNode(Node node, int depth) {
+        }
+
+        @Override
+        public void visitLeaf(LeafNode leaf, int depth) throws IOException {
+            String score = leaf instanceof ValueLeafNode
+                    ? String.format("value = %.4f", ((ValueLeafNode) leaf).getValue())
+                    : String.format("probability = %.2f", leaf.getProbability());
+            writeNode(leaf.getClassName() + "\n" + score, depth);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package tree;
+
+import processing.ColumnarDataset;
+
+/**
+ * A class to represent the size and shape of a decision tree, to weigh its size and the steps taken to classify a
+ * record against its accuracy, such as before and after pruning.
+ */
+public final class TreeStatistics {
+
+    /** The number of internal nodes */
+    private final int nodeCount;
+    /** The number of leaves */
+    private final int leafCount;
+    /** The largest number of tests from the root to a leaf */
+    private final int depth;
+    /** The mean number of tests made to classify a row, or NaN if no rows were classified */
+    private final double averagePathLength;
+
+    /**
+     * Constructor for TreeStatistics.
+     *
+     * @param nodeCount The number of internal nodes.
+     * @param leafCount The number of leaves.
+     * @param depth The largest number of tests from the root to a leaf.
+     * @param averagePathLength The mean number of tests made to classify a row, or NaN.
+     */
+    private TreeStatistics(int nodeCount, int leafCount, int depth, double averagePathLength) {
+        this.nodeCount = nodeCount;
+        this.leafCount = leafCount;
+        this.depth = depth;
+        this.averagePathLength = averagePathLength;
+    }
+
+    /**
+     * Method to measure a tree of Node and LeafNode instances.
+     *
+     * @param tree The tree.
+     * @return the statistics, without an average path length.
+     */
+    public static TreeStatistics of(BaseNode tree) {
+        int[] counts = new int[3];
+        measure(tree, 0, counts);
+        return new TreeStatistics(counts[0], counts[1], counts[2], Double.NaN);
+    }
+
+    /**
+     * Method to measure a tree of Node and LeafNode instances, with the mean number of tests made to classify the
+     * rows of a block of data.
+     *
+     * @param tree The tree.
+     * @param block The rows to classify.
+     * @return the statistics.
+     */
+    public static TreeStatistics of(BaseNode tree, ColumnarDataset block) {
+        int[] counts = new int[3];
+        measure(tree, 0, counts);
+        long tests = 0;
+        for (int row = 0; row < block.size(); row++) {
+            for (BaseNode n = tree; n instanceof Node; tests++) {
+                Node node = (Node) n;
+                n = node.test(block, row) ? node.getLeft() : node.getRight();
+            }
+        }
+        double averagePathLength = block.size() == 0 ? Double.NaN : tests / (double) block.size();
+        return new TreeStatistics(counts[0], counts[1], counts[2], averagePathLength);
+    }
+
+    /**
+     * Method to count the nodes and leaves of a subtree and find its depth.
+     *
+     * @param tree The subtree.
+     * @param depth The number of tests above the subtree.
+     * @param counts The counts to add to: nodes, leaves and the largest depth so far.
+     */
+    private static void measure(BaseNode tree, int depth, int[] counts) {
+        if (tree instanceof Node) {
+            counts[0]++;
+            measure(((Node) tree).getLeft(), depth + 1, counts);
+            measure(((Node) tree).getRight(), depth + 1, counts);
+        }
+        else if (tree instanceof LeafNode) {
+            counts[1]++;
+            counts[2] = Math.max(counts[2], depth);
+        }
+        else {
+            throw new IllegalArgumentException("Not a tree of Node and LeafNode instances: " + tree);
+        }
+    }
+
+    /**
+     * Method to print the statistics.
+     *
+     * @param label The label to print them under, such as "Before pruning".
+     */
+    public void report(String label) {
+        System.out.format("%s: %s\n", label, this);
+    }
+
+    /** Getter for the number of internal nodes */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /** Getter for the number of leaves */
+    public int getLeafCount() {
+        return leafCount;
+    }
+
+    /** Getter for the largest number of tests from the root to a leaf */
+    public int getDepth() {
+        return depth;
+    }
+
+    /** Getter for the mean number of tests made to classify a row, NaN if no rows were classified */
+    public double getAveragePathLength() {
+        return averagePathLength;
+    }
+
+    @Override
+    public String toString() {
+        String statistics = String.format("%d nodes, %d leaves, depth %d", nodeCount, leafCount, depth);
+        if (Double.isNaN(averagePathLength)) return statistics;
+        return statistics + String.format(", average path length %.2f", averagePathLength);
+    }
+}
@@ -0,0 +1,48 @@
+package tree;
+
+import java.io.IOException;
+
+/**
+ * An interface for a visitor of the nodes of a tree of Node and LeafNode instances, as BaseNode.accept walks it:
+ * depth first, the true branch of each node before its false branch. The depth of the root is 0.
+ * A tree held in arrays, such as a CompiledTree, is walked the same way, each of its nodes passed as a Node or LeafNode
+ * describing it; such a Node has no branches.
+ */
+public interface TreeVisitor {
+
+    /**
+     * Method to visit an internal node, before its true branch.
+     *
+     * @param node The node.
+     * @param depth The number of nodes above it.
+     * @throws IOException if the visitor cannot write its output.
+     */
+    void enterNode(Node node, int depth) throws IOException;
+
+    /**
+     * Method to visit an internal node again, after its true branch and before its false branch.
+     *
+     * @param node The node.
+     * @param depth The number of nodes above it.
+     * @throws IOException if the visitor cannot write its output.
+     */
+    void betweenBranches(Node node, int depth) throws IOException;
+
+    /**
+     * Method to visit an internal node a last time, after its false branch.
+     *
+     * @param node The node.
+     * @param depth The number of nodes above it.
+     * @throws IOException if the visitor cannot write its output.
+     */
+    void exitNode(Node node, int depth) throws IOException;
+
+    /**
+     * Method to visit a leaf.
+     *
+     * @param leaf The leaf, which may be a ValueLeafNode.
+     * @param depth The number of nodes above it.
+     * @throws IOException if the visitor cannot write its output.
+     */
+    void visitLeaf(LeafNode leaf, int depth) throws IOException;
+}
@@ -0,0 +1,44 @@
+package tree;
+
+import processing.InvalidDataException;
+
+import java.util.Objects;
+
+/**
+ * A class to represent a leaf node of a regression tree, holding a value rather than a probability, such as the
+ * amount a tree of a gradient-boosted ensemble adds to the score of a class.
+ * It classifies as the class it scores, and has a probability of 0 as the value is not a probability.
+ */
+public class ValueLeafNode extends LeafNode {
+
+    /** The value of the leaf */
+    private float value;
+
+    /**
+     * Constructor for a value leaf node.
+     *
+     * @param className The name of the class the value scores.
+     * @param value The value of the leaf.
+     * @throws InvalidDataException if the value is not a number.
+     */
+    public ValueLeafNode(String className, float value) throws InvalidDataException {
+        super(className, 0);
+        if (Float.isNaN(value)) throw new InvalidDataException("Invalid leaf value: " + value);
+        this.value = value;
+    }
+
+    /** Getter for the value */
+    public float getValue() {
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return super.equals(o) && Float.compare(((ValueLeafNode) o).value, value) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), value);
+    }
+}
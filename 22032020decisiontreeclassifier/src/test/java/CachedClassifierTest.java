@@ -0,0 +1,145 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import processing.Classifier;
+import processing.InvalidDataException;
+import processing.Patient;
+import processing.Schema;
+import tree.BaseNode;
+import tree.CachedClassifier;
+import tree.CompiledTree;
+
+/**
+ * A test class to check a CachedClassifier classifies the same as the tree behind it, as a table for narrow schemas
+ * and as a bounded cache for wide ones.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class CachedClassifierTest {
+
+    private static final String TEST_DATA_URL = "resources\\hepatitis-test";
+    private static final String TRAINING_DATA_URL = "resources\\hepatitis-training";
+    private static final int WIDE_ATTRIBUTES = 40;
+    private static final int ROWS = 2000;
+    private static final long SEED = 5;
+    private Path file;
+    private Classifier wide;
+
+    @BeforeAll
+    public void setup() throws IOException, InvalidDataException {
+        // The class is "die" when A0 and A1 are both true or A5 is true; the other attributes are noise
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<String> lines = new ArrayList<>();
+        StringBuilder headings = new StringBuilder("Class");
+        for (int a = 0; a < WIDE_ATTRIBUTES; a++) headings.append(" A").append(a);
+        lines.add(headings.toString());
+        for (int r = 0; r < ROWS; r++) {
+            long bits = random.nextLong() & ((1L << WIDE_ATTRIBUTES) - 1);
+            StringBuilder line = new StringBuilder(isDie(bits) ? "die" : "live");
+            for (int a = 0; a < WIDE_ATTRIBUTES; a++) line.append(' ').append((bits & (1L << a)) != 0);
+            lines.add(line.toString());
+        }
+        file = Files.createTempFile("wide", ".txt");
+        Files.write(file, lines);
+        Schema schema = Classifier.getSchema(file.toString());
+        ArrayList<Patient> data = Classifier.getData(file.toString(), schema);
+        wide = new Classifier(schema, data, data, Classifier.TrainingEngine.BITSET);
+    }
+
+    private static boolean isDie(long bits) {
+        return (bits & 3) == 3 || (bits & (1L << 5)) != 0;
+    }
+
+    @AfterAll
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    @Test
+    public void testTableMatchesTree() throws IOException, InvalidDataException {
+        BaseNode tree = new Classifier(TRAINING_DATA_URL, TEST_DATA_URL).getTree();
+        CompiledTree compiled = CompiledTree.compile(tree);
+        CachedClassifier cached = CachedClassifier.of(tree, Schema.HEPATITIS);
+        Assertions.assertTrue(cached.isTable(), "Hepatitis schema not materialized");
+        int combinations = 1 << Patient.getAttributeNames().size();
+        Assertions.assertEquals(combinations, cached.getCapacity(), "Incorrect table size");
+        for (long bits = 0; bits < combinations; bits++) {
+            Patient p = new Patient(bits, Patient.LIVE_CLASS);
+            int leaf = compiled.findLeaf(bits);
+            Assertions.assertEquals(tree.classify(p), cached.classify(p), "Incorrect class for " + bits);
+            Assertions.assertEquals(compiled.getLeafProbability(leaf), cached.getProbability(p),
+                    "Incorrect probability for " + bits);
+        }
+        Assertions.assertEquals(2L * combinations, cached.getHits(), "Table lookups not counted as hits");
+        Assertions.assertEquals(0, cached.getMisses(), "Table lookup missed");
+    }
+
+    @Test
+    public void testBoundedCacheMatchesTree() {
+        Schema schema = wide.getSchema();
+        BaseNode tree = wide.getTree();
+        CachedClassifier cached = CachedClassifier.of(tree, schema, 100);
+        Assertions.assertFalse(cached.isTable(), "Wide schema materialized");
+        Assertions.assertEquals(128, cached.getCapacity(), "Capacity not rounded to a power of two");
+
+        // Only the attributes the tree tests make up the key, so the noise attributes still hit the same entries
+        SplittableRandom random = new SplittableRandom(SEED + 1);
+        for (int i = 0; i < 10000; i++) {
+            long bits = random.nextLong() & ((1L << WIDE_ATTRIBUTES) - 1);
+            Patient p = new Patient(schema, new long[] { bits }, (byte) 0);
+            Assertions.assertEquals(tree.classify(p), cached.classify(p), "Incorrect class for " + bits);
+            Assertions.assertEquals(isDie(bits) ? "die" : "live", cached.classify(bits), "Incorrect rule learned");
+        }
+        Assertions.assertEquals(20000, cached.getHits() + cached.getMisses(), "Lookups not all counted");
+        Assertions.assertTrue(cached.getHitRate() > 0.9, "Low hit rate: " + cached);
+
+        // A cache of one entry evicts whenever the key changes
+        CachedClassifier single = CachedClassifier.of(tree, schema, 1);
+        long[] keys = { 0, 1L << 5, 3, 0 };
+        for (long bits : keys) single.classify(bits);
+        Assertions.assertEquals(4, single.getMisses() + single.getHits(), "Lookups not all counted");
+        Assertions.assertTrue(single.getEvictions() > 0, "Nothing evicted: " + single);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CachedClassifier.of(tree, schema, 0),
+                "Invalid capacity accepted");
+    }
+
+    @Test
+    public void testConcurrentLookups() throws Exception {
+        Schema schema = wide.getSchema();
+        BaseNode tree = wide.getTree();
+        CachedClassifier cached = CachedClassifier.of(tree, schema, 16);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            ArrayList<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                long seed = SEED + t;
+                futures.add(executor.submit(() -> {
+                    SplittableRandom random = new SplittableRandom(seed);
+                    int wrong = 0;
+                    for (int i = 0; i < 50000; i++) {
+                        long bits = random.nextLong() & ((1L << WIDE_ATTRIBUTES) - 1);
+                        if (!cached.classify(bits).equals(isDie(bits) ? "die" : "live")) wrong++;
+                    }
+                    return wrong;
+                }));
+            }
+            for (Future<Integer> future : futures) {
+                Assertions.assertEquals(0, (int) future.get(), "Incorrect class from a shared cache");
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Assertions.assertEquals(200000, cached.getHits() + cached.getMisses(), "Lookups lost counting concurrently");
+    }
+}
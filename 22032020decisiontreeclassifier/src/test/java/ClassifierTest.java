@@ -1,6 +1,11 @@
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
@@ -9,6 +14,7 @@ import org.junit.jupiter.api.TestInstance;
 import processing.Classifier;
 import processing.InvalidDataException;
 import processing.Patient;
+import processing.PatientReader;
 
 /**
  * A test class to check the Classifier class parses input files correctly.
@@ -141,4 +147,27 @@ public class ClassifierTest {
             Classifier.getData(INVALID_DATA_URL);
         });
     }
+
+    @Test
+    void testInvalidLineReportsLineNumber() throws IOException {
+        Path file = Files.createTempFile("invalid", ".txt");
+        try {
+            Files.write(file, Arrays.asList("Class AGE", "live true false", "die false"));
+            InvalidDataException e = Assertions.assertThrows(InvalidDataException.class, () -> {
+                Classifier.getData(file.toString());
+            });
+            Assertions.assertTrue(e.getMessage().startsWith("Line 2:"), "Line number not reported: " + e.getMessage());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testStreamMatchesGetData() throws IOException, InvalidDataException {
+        ArrayList<Patient> streamed;
+        try (Stream<Patient> patients = new PatientReader(TRAINING_DATA_URL).stream()) {
+            streamed = patients.collect(Collectors.toCollection(ArrayList::new));
+        }
+        Assertions.assertEquals(trainingData, streamed, "Streamed " + TRAINING_DATA + " differs from getData");
+    }
 }
\ No newline at end of file
@@ -0,0 +1,101 @@
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import processing.Classifier;
+import processing.ColumnarDataset;
+import processing.InvalidDataException;
+import processing.Patient;
+import tree.BaseNode;
+import tree.CompiledTree;
+import tree.LeafNode;
+import tree.Node;
+
+/**
+ * A test class to check a CompiledTree classifies every possible Patient the same as the tree it was compiled from.
+ * Edit variables TEST_DATA_URL and TRAINING_DATA_URL for file paths.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class CompiledTreeTest {
+
+    private static final String TEST_DATA_URL = "resources\\hepatitis-test";
+    private static final String TRAINING_DATA_URL = "resources\\hepatitis-training";
+    private BaseNode tree;
+
+    @BeforeAll
+    public void setup() throws IOException, InvalidDataException {
+        tree = new Classifier(TRAINING_DATA_URL, TEST_DATA_URL).getTree();
+    }
+
+    @Test
+    public void testArraysMatchTree() {
+        testMatchesTree(CompiledTree.compile(tree));
+    }
+
+    @Test
+    public void testBytecodeMatchesTree() {
+        CompiledTree compiled = CompiledTree.compile(tree, true);
+        Assertions.assertTrue(compiled.isGenerated(), "Bytecode was not generated");
+        testMatchesTree(compiled);
+    }
+
+    @Test
+    public void testLargeTreeUsesArrays() throws InvalidDataException {
+        // A full tree of 2047 internal nodes needs far more than the 8000 bytes of bytecode HotSpot will JIT-compile
+        BaseNode large = fullTree(0, 11, false);
+        CompiledTree compiled = CompiledTree.compile(large, true);
+        Assertions.assertFalse(compiled.isGenerated(), "Bytecode generated beyond the JIT's method size limit");
+        Assertions.assertEquals(2047, compiled.getNodeCount(), "Incorrect number of nodes");
+        Assertions.assertEquals(2048, compiled.getLeafCount(), "Incorrect number of leaves");
+        for (long bits = 0; bits < 1 << Patient.getAttributeNames().size(); bits++) {
+            Patient p = new Patient(bits, Patient.LIVE_CLASS);
+            Assertions.assertEquals(large.classify(p), compiled.classify(p), "Incorrect class for attributes " + bits);
+        }
+    }
+
+    /**
+     * Method to build a full tree testing a different attribute at each depth, whose leaves alternate in class.
+     *
+     * @param depth The depth of the tree's root.
+     * @param height The number of levels of internal nodes from the root down.
+     * @param odd Whether an odd number of true branches lead to the root.
+     * @return the tree.
+     * @throws InvalidDataException if a node cannot be built.
+     */
+    private BaseNode fullTree(int depth, int height, boolean odd) throws InvalidDataException {
+        if (height == 0) return new LeafNode(odd ? "die" : "live", 1f);
+        return new Node(Patient.getAttributeNames().get(depth), fullTree(depth + 1, height - 1, !odd),
+                fullTree(depth + 1, height - 1, odd));
+    }
+
+    @Test
+    public void testBatchMatchesTree() {
+        CompiledTree compiled = CompiledTree.compile(tree);
+        ArrayList<Patient> patients = new ArrayList<>();
+        int combinations = 1 << Patient.getAttributeNames().size();
+        for (long bits = 0; bits < combinations; bits++) {
+            patients.add(new Patient(bits, bits % 3 == 0 ? Patient.DIE_CLASS : Patient.LIVE_CLASS));
+        }
+
+        byte[] classValues = compiled.classify(new ColumnarDataset(patients));
+        int correct = 0;
+        for (int i = 0; i < patients.size(); i++) {
+            Patient p = patients.get(i);
+            String expected = tree.classify(p);
+            Assertions.assertEquals(expected, Patient.getClassName(classValues[i]), "Incorrect class for row " + i);
+            if (expected.equals(p.getClassName())) correct++;
+        }
+        Assertions.assertEquals(correct, compiled.countCorrect(new ColumnarDataset(patients)), "Incorrect count");
+    }
+
+    public void testMatchesTree(CompiledTree compiled) {
+        int combinations = 1 << Patient.getAttributeNames().size();
+        for (long bits = 0; bits < combinations; bits++) {
+            Patient p = new Patient(bits, Patient.LIVE_CLASS);
+            Assertions.assertEquals(tree.classify(p), compiled.classify(p), "Incorrect class for attributes " + bits);
+        }
+    }
+}
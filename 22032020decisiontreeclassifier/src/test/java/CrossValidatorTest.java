@@ -0,0 +1,147 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import evaluation.CrossValidator;
+import evaluation.TreeParameters;
+import evaluation.ValidationResult;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import processing.BitsetTreeBuilder;
+import processing.Classifier;
+import processing.ColumnarDataset;
+import processing.InvalidDataException;
+import processing.Patient;
+import processing.Schema;
+import processing.SplitCriterion;
+import tree.CompiledTree;
+
+/**
+ * A test class to check cross-validation folds partition the data and that searches over tree parameters train the
+ * folds as bitset views of the shared data.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class CrossValidatorTest {
+
+    private static final int ROWS = 1000;
+    private static final int FOLDS = 5;
+    private static final long SEED = 7;
+    private Path file;
+
+    @BeforeAll
+    public void setup() throws IOException {
+        // The class is "die" when AGE is over 60 or A and B are both true, with 5% of the classes flipped
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<String> lines = new ArrayList<>();
+        lines.add("Class AGE:numeric A B C");
+        for (int r = 0; r < ROWS; r++) {
+            int age = random.nextInt(100);
+            boolean a = random.nextBoolean();
+            boolean b = random.nextBoolean();
+            boolean c = random.nextBoolean();
+            boolean die = (age > 60 || (a && b)) != (random.nextInt(20) == 0);
+            lines.add((die ? "die " : "live ") + age + " " + a + " " + b + " " + c);
+        }
+        file = Files.createTempFile("folds", ".txt");
+        Files.write(file, lines);
+    }
+
+    @AfterAll
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    @Test
+    public void testFoldsPartitionRowsByClass() throws IOException, InvalidDataException {
+        CrossValidator validator = CrossValidator.load(file.toString(), FOLDS, SEED);
+        ColumnarDataset data = new ColumnarDataset(Classifier.getData(file.toString()));
+        long[] seen = new long[data.allRows().length];
+        for (int f = 0; f < FOLDS; f++) {
+            long[] test = validator.getTestRows(f);
+            long[] training = validator.getTrainingRows(f);
+            Assertions.assertEquals(0, ColumnarDataset.popcount(seen, test), "Folds overlap at fold " + f);
+            Assertions.assertEquals(0, ColumnarDataset.popcount(test, training), "Test rows trained on in fold " + f);
+            Assertions.assertEquals(ROWS, ColumnarDataset.popcount(test, test)
+                    + ColumnarDataset.popcount(training, training), "Rows missing from fold " + f);
+            Assertions.assertEquals(ROWS / FOLDS, ColumnarDataset.popcount(test, test), "Uneven fold " + f);
+            for (int c = 0; c < data.getClassCount(); c++) {
+                int expected = ColumnarDataset.popcount(data.allRows(), data.getClassColumn(c)) / FOLDS;
+                Assertions.assertTrue(Math.abs(ColumnarDataset.popcount(test, data.getClassColumn(c)) - expected) <= 1,
+                        "Fold " + f + " not stratified for class " + c);
+            }
+            for (int i = 0; i < seen.length; i++) seen[i] |= test[i];
+        }
+        Assertions.assertArrayEquals(data.allRows(), seen, "Folds do not cover every row");
+    }
+
+    @Test
+    public void testTrainsOnRowSubset() throws IOException, InvalidDataException {
+        Schema schema = Classifier.getSchema(file.toString());
+        ArrayList<Patient> patients = Classifier.getData(file.toString(), schema);
+        ColumnarDataset data = new ColumnarDataset(schema, patients);
+        CrossValidator validator = new CrossValidator(data, FOLDS, SEED);
+        long[] training = validator.getTrainingRows(0);
+        ArrayList<Patient> subset = new ArrayList<>();
+        for (int row = 0; row < patients.size(); row++) {
+            if ((training[row >>> 6] & (1L << row)) != 0) subset.add(patients.get(row));
+        }
+
+        BitsetTreeBuilder view = new BitsetTreeBuilder(data, "live", 0.5f);
+        view.setRows(training);
+        BitsetTreeBuilder copy = new BitsetTreeBuilder(new ColumnarDataset(schema, subset), "live", 0.5f);
+        Assertions.assertEquals(copy.build(), view.build(), "Tree over the row view differs from the copied rows");
+
+        view.setMaxDepth(1);
+        CompiledTree stump = CompiledTree.compile(view.build(), schema);
+        Assertions.assertEquals(1, stump.getNodeCount(), "Depth limit not applied");
+        int correct = 0;
+        long[] test = validator.getTestRows(0);
+        for (int row = 0; row < patients.size(); row++) {
+            if ((test[row >>> 6] & (1L << row)) != 0 && stump.classify(patients.get(row))
+                    .equals(patients.get(row).getClassName())) correct++;
+        }
+        Assertions.assertEquals(correct, stump.countCorrect(data, test), "Incorrect count over the test rows");
+    }
+
+    @Test
+    public void testSearchesGridConcurrently() throws IOException, InvalidDataException {
+        CrossValidator validator = CrossValidator.load(file.toString(), FOLDS, SEED);
+        List<TreeParameters> grid = TreeParameters.grid(new int[] { 0, 2 }, new int[] { 0, 20 },
+                SplitCriterion.Standard.values());
+        List<ValidationResult> results = validator.search(grid, ForkJoinPool.commonPool());
+        Assertions.assertEquals(grid.size(), results.size(), "Incorrect number of results");
+        ForkJoinPool single = new ForkJoinPool(1);
+        try {
+            for (int g = 0; g < grid.size(); g++) {
+                ValidationResult result = results.get(g);
+                ValidationResult sequential = validator.validate(grid.get(g), single);
+                Assertions.assertEquals(grid.get(g), result.getParameters(), "Results out of grid order");
+                Assertions.assertEquals(FOLDS, result.getFoldCount(), "Incorrect number of folds");
+                Assertions.assertEquals(sequential.getMeanAccuracy(), result.getMeanAccuracy(),
+                        "Concurrent and sequential accuracy differ for " + grid.get(g));
+                Assertions.assertEquals(sequential.getMeanNodeCount(), result.getMeanNodeCount(),
+                        "Concurrent and sequential trees differ for " + grid.get(g));
+                if (grid.get(g).getMaxDepth() == 2) {
+                    Assertions.assertTrue(result.getMeanNodeCount() <= 3, "Depth limit not applied: " + result);
+                }
+            }
+        } finally {
+            single.shutdown();
+        }
+
+        // The noise is only fitted by unlimited trees, so limits generalise better
+        ValidationResult unlimited = results.get(0);
+        ValidationResult best = ValidationResult.best(results);
+        Assertions.assertTrue(best.getMeanAccuracy() > unlimited.getMeanAccuracy(), "Limits did not help: " + best);
+        Assertions.assertTrue(best.getMeanAccuracy() >= 0.9, "Accuracy too low: " + best);
+        Assertions.assertTrue(ValidationResult.toTable(results).lines().count() == grid.size() + 1,
+                "Incorrect table rows");
+    }
+}
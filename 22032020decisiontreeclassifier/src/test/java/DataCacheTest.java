@@ -0,0 +1,216 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import processing.BitsetTreeBuilder;
+import processing.Classifier;
+import processing.ColumnarDataset;
+import processing.DataCache;
+import processing.InvalidDataException;
+import processing.Patient;
+import processing.Schema;
+import tree.BaseNode;
+import tree.CompiledTree;
+import tree.TreeExporter;
+
+/**
+ * A test class to check data read through its binary cache gives the same Patient instances and schema as parsing
+ * it, and the same trees and classes when its mapped columns are used in place, and that a cache which is out of date
+ * or corrupt is ignored and written again.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class DataCacheTest {
+
+    private static final String TRAINING_DATA_URL = "resources\\hepatitis-training";
+    private static final int ROWS = 500;
+    private static final long SEED = 23;
+    private Path dir;
+    private String hepatitis;
+    private String mixedTraining;
+    private String mixedTest;
+
+    @BeforeAll
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("cache");
+        hepatitis = Files.copy(Path.of(TRAINING_DATA_URL), dir.resolve("hepatitis")).toString();
+        mixedTraining = writeMixed("training", 0);
+        mixedTest = writeMixed("test", 1);
+    }
+
+    @AfterAll
+    public void tearDown() throws IOException {
+        try (var files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) Files.delete(file);
+        }
+        Files.delete(dir);
+    }
+
+    /**
+     * Method to write a file of numeric, categorical and boolean attributes, whose classes and categories first occur
+     * in a different order for each seed offset.
+     */
+    private String writeMixed(String name, int offset) throws IOException {
+        SplittableRandom random = new SplittableRandom(SEED + offset);
+        List<String> lines = new ArrayList<>();
+        lines.add("Class A LEVEL:numeric COLOUR:categorical B");
+        for (int r = 0; r < ROWS; r++) {
+            lines.add("class" + random.nextInt(5) + " " + random.nextBoolean() + " " + random.nextInt(1000) / 8.0
+                    + " colour" + random.nextInt(7) + " " + random.nextBoolean());
+        }
+        Path file = dir.resolve(name);
+        Files.write(file, lines);
+        return file.toString();
+    }
+
+    /**
+     * Method to check two lists of Patient instances of different schemas hold the same rows.
+     */
+    private static void assertSameRows(List<Patient> expected, List<Patient> actual) {
+        Assertions.assertEquals(expected.size(), actual.size(), "Incorrect number of rows");
+        Schema expectedSchema = expected.get(0).getSchema();
+        for (int row = 0; row < expected.size(); row++) {
+            Patient e = expected.get(row);
+            Patient a = actual.get(row);
+            Assertions.assertEquals(e.getClassName(), a.getClassName(), "Incorrect class of row " + row);
+            Assertions.assertEquals(e.getClassValue(), a.getClassValue(), "Incorrect class value of row " + row);
+            for (int attribute = 0; attribute < expectedSchema.getAttributeCount(); attribute++) {
+                if (expectedSchema.getAttributeType(attribute) == Schema.AttributeType.BOOLEAN) {
+                    Assertions.assertEquals(e.getAttribute(attribute), a.getAttribute(attribute),
+                            "Incorrect attribute " + attribute + " of row " + row);
+                }
+                else {
+                    Assertions.assertEquals(e.getValue(attribute), a.getValue(attribute),
+                            "Incorrect value " + attribute + " of row " + row);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testHepatitisMatchesParsed() throws IOException, InvalidDataException {
+        Files.deleteIfExists(DataCache.getCachePath(hepatitis));
+        ArrayList<Patient> expected = Classifier.getData(hepatitis);
+        Assertions.assertNull(DataCache.read(hepatitis, null), "Cache read before it was written");
+
+        // The first load parses the file and writes the cache, which later loads read
+        assertSameRows(expected, Classifier.getData(hepatitis, null, null, true));
+        Assertions.assertTrue(Files.exists(DataCache.getCachePath(hepatitis)), "Cache not written");
+        ColumnarDataset cached = DataCache.read(hepatitis, null);
+        Assertions.assertNotNull(cached, "Cache not read");
+        assertSameRows(expected, cached.toPatients());
+        Assertions.assertEquals(expected.get(0).getSchema().getClassNames(), cached.getSchema().getClassNames(),
+                "Classes added in a different order");
+    }
+
+    @Test
+    public void testColumnsReadInPlace() throws IOException, InvalidDataException {
+        // The training file numbers the schema's names, so none of its columns need renumbering into the heap
+        Schema schema = Classifier.getSchema(mixedTraining);
+        ColumnarDataset mapped = DataCache.loadColumns(mixedTraining, schema);
+        Assertions.assertTrue(mapped.getClassValues().isDirect(), "Classes copied into the heap");
+        for (int attribute = 0; attribute < schema.getAttributeCount(); attribute++) {
+            if (schema.getAttributeType(attribute) == Schema.AttributeType.BOOLEAN) {
+                Assertions.assertTrue(mapped.getAttributeColumn(attribute).isDirect(),
+                        "Attribute " + attribute + " copied into the heap");
+            }
+            else if (schema.getAttributeType(attribute) == Schema.AttributeType.CATEGORICAL) {
+                Assertions.assertTrue(mapped.getBinColumn(attribute).isDirect(),
+                        "Categories of attribute " + attribute + " copied into the heap");
+            }
+        }
+        ColumnarDataset parsed = new ColumnarDataset(schema, Classifier.getData(mixedTraining, schema));
+        assertSameRows(parsed.toPatients(), mapped.toPatients());
+
+        // Trained and classified over the mapping, the tree and its classes are those of the parsed rows
+        BaseNode expected = new BitsetTreeBuilder(parsed, "class0", 0).build();
+        BaseNode actual = new BitsetTreeBuilder(mapped, "class0", 0).build();
+        Assertions.assertEquals(TreeExporter.toString(expected, TreeExporter.Format.TEXT),
+                TreeExporter.toString(actual, TreeExporter.Format.TEXT), "Different tree trained over the mapping");
+        CompiledTree compiled = CompiledTree.compile(expected, schema);
+        ColumnarDataset mappedTest = DataCache.loadColumns(mixedTest, schema);
+        ColumnarDataset parsedTest = new ColumnarDataset(schema, Classifier.getData(mixedTest, schema));
+        Assertions.assertArrayEquals(compiled.classify(parsedTest), compiled.classify(mappedTest),
+                "Test rows classified differently over the mapping");
+        Assertions.assertEquals(compiled.countCorrect(parsedTest), compiled.countCorrect(mappedTest),
+                "Incorrect count over the mapping");
+    }
+
+    @Test
+    public void testClassifierTrainsOverCache() throws IOException, InvalidDataException {
+        // A Classifier reading through the caches trains and classifies over the mapped columns as over parsed rows
+        for (Classifier.TrainingEngine engine : Classifier.TrainingEngine.values()) {
+            Classifier parsed = new Classifier(mixedTraining, mixedTest, engine, false);
+            Classifier cached = new Classifier(mixedTraining, mixedTest, engine, true);
+            Assertions.assertTrue(Files.exists(DataCache.getCachePath(mixedTraining)), "Cache not written");
+            Assertions.assertEquals(parsed.getTree(), cached.getTree(), "Different tree trained by " + engine);
+            Assertions.assertEquals(parsed.countCorrectClassifications(), cached.countCorrectClassifications(),
+                    "Incorrect count over the mapping by " + engine);
+        }
+    }
+
+    @Test
+    public void testClassesAndCategoriesAddedInFileOrder() throws IOException, InvalidDataException {
+        // The test file's cache is written with a schema of its own, so the names are numbered as they occur in it
+        Classifier.getData(mixedTest, null, null, true);
+        Classifier.getData(mixedTraining, null, null, true);
+        Assertions.assertNotNull(DataCache.read(mixedTest, null), "Cache not written");
+
+        // Read with the training schema, the test file's new names follow the training file's, as parsing adds them
+        Schema expectedSchema = Classifier.getSchema(mixedTraining);
+        Schema actualSchema = Classifier.getSchema(mixedTraining);
+        List<Patient> expectedTraining = Classifier.getData(mixedTraining, expectedSchema);
+        List<Patient> expectedTest = Classifier.getData(mixedTest, expectedSchema);
+        List<Patient> actualTraining = Classifier.getData(mixedTraining, actualSchema, null, true);
+        List<Patient> actualTest = Classifier.getData(mixedTest, actualSchema, null, true);
+        assertSameRows(expectedTraining, actualTraining);
+        assertSameRows(expectedTest, actualTest);
+        Assertions.assertEquals(expectedSchema.getClassNames(), actualSchema.getClassNames(),
+                "Classes added in a different order");
+        Assertions.assertEquals(expectedSchema.getCategoryNames(2), actualSchema.getCategoryNames(2),
+                "Categories added in a different order");
+    }
+
+    @Test
+    public void testStaleCacheIgnored() throws IOException, InvalidDataException {
+        Path copy = Files.copy(Path.of(mixedTraining), dir.resolve("copy"));
+        String dataUrl = copy.toString();
+        List<Patient> expected = Classifier.getData(dataUrl);
+        Classifier.getData(dataUrl, null, null, true);
+        Assertions.assertNotNull(DataCache.read(dataUrl, null), "Cache not written");
+
+        // A data file with a different modification time makes the cache out of date until it is written again
+        Files.setLastModifiedTime(copy, FileTime.fromMillis(Files.getLastModifiedTime(copy).toMillis() - 60000));
+        Assertions.assertNull(DataCache.read(dataUrl, null), "Out of date cache read");
+        assertSameRows(expected, Classifier.getData(dataUrl, null, null, true));
+        Assertions.assertNotNull(DataCache.read(dataUrl, null), "Cache not written again");
+
+        // A changed byte fails the checksum
+        try (FileChannel channel = FileChannel.open(DataCache.getCachePath(dataUrl), StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, channel.size() / 2);
+            b.put(0, (byte) (b.get(0) ^ 1)).rewind();
+            channel.write(b, channel.size() / 2);
+        }
+        Assertions.assertNull(DataCache.read(dataUrl, null), "Corrupt cache read");
+        assertSameRows(expected, Classifier.getData(dataUrl, null, null, true));
+
+        // A schema of other headings is not given the cached data, and loading reports the headings as parsing does
+        Schema other = Classifier.getSchema(hepatitis);
+        Assertions.assertNull(DataCache.read(dataUrl, other), "Cache read with a schema of other headings");
+        Assertions.assertThrows(InvalidDataException.class, () -> Classifier.getData(dataUrl, other, null, true),
+                "Mismatched headings accepted");
+    }
+}
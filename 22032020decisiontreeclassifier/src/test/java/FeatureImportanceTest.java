@@ -0,0 +1,152 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import evaluation.PermutationImportance;
+import processing.BitsetTreeBuilder;
+import processing.Classifier;
+import processing.ColumnarDataset;
+import processing.InvalidDataException;
+import processing.Patient;
+import processing.Schema;
+import processing.SplitStatistics;
+import tree.BaseNode;
+import tree.CompiledTree;
+import tree.TreeStatistics;
+
+/**
+ * A test class to check the split statistics collected while training, and the permutation importance measured over
+ * test data, rank the attributes a class depends on above those it does not.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class FeatureImportanceTest {
+
+    private static final int ROWS = 2000;
+    private static final long SEED = 24;
+    private Path file;
+    private Schema schema;
+    private ArrayList<Patient> training;
+    private ArrayList<Patient> test;
+    private ForkJoinPool pool;
+    private ForkJoinPool singleThread;
+
+    @BeforeAll
+    public void setup() throws IOException, InvalidDataException {
+        // The class is A when LEVEL is over 5, otherwise B when FLAG is true, with 5% of the rows given a random
+        // class; NOISE and COLOUR have nothing to do with the class
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<String> lines = new ArrayList<>();
+        lines.add("Class FLAG NOISE LEVEL:numeric COLOUR:categorical");
+        for (int r = 0; r < ROWS * 2; r++) {
+            boolean flag = random.nextBoolean();
+            double level = random.nextInt(100) / 10.0;
+            String className = level > 5 ? "A" : flag ? "B" : "C";
+            if (random.nextInt(20) == 0) className = String.valueOf("ABC".charAt(random.nextInt(3)));
+            lines.add(className + " " + flag + " " + random.nextBoolean() + " " + level + " colour"
+                    + random.nextInt(4));
+        }
+        file = Files.createTempFile("importance", ".txt");
+        Files.write(file, lines);
+        ArrayList<Patient> rows = Classifier.getData(file.toString());
+        schema = rows.get(0).getSchema();
+        training = new ArrayList<>(rows.subList(0, ROWS));
+        test = new ArrayList<>(rows.subList(ROWS, ROWS * 2));
+        pool = new ForkJoinPool(4);
+        singleThread = new ForkJoinPool(1);
+    }
+
+    @AfterAll
+    public void tearDown() throws IOException {
+        pool.shutdown();
+        singleThread.shutdown();
+        Files.delete(file);
+    }
+
+    @Test
+    public void testSplitStatisticsOfBothEngines() throws InvalidDataException {
+        Classifier hashSet = new Classifier(schema, training, test, Classifier.TrainingEngine.HASH_SET);
+        Classifier bitset = new Classifier(schema, training, test, Classifier.TrainingEngine.BITSET);
+        for (Classifier c : new Classifier[] { hashSet, bitset }) {
+            SplitStatistics statistics = c.getSplitStatistics();
+            Assertions.assertEquals(ROWS, statistics.getRows(), "Incorrect rows at the root");
+
+            // Every split of the tree is counted once; LEVEL is split at the root, so over every row, and again below
+            int splits = 0;
+            for (int a = 0; a < schema.getAttributeCount(); a++) splits += statistics.getSplitCount(a);
+            Assertions.assertEquals(TreeStatistics.of(c.getTree()).getNodeCount(), splits, "Splits not all counted");
+            Assertions.assertTrue(statistics.getCoverage(2) > 1, "LEVEL not split at the root");
+
+            double[] importances = statistics.getImportances();
+            double sum = 0;
+            for (double importance : importances) sum += importance;
+            Assertions.assertEquals(1, sum, 1e-9, "Importances do not add up to 1");
+            Assertions.assertTrue(importances[2] > importances[0] && importances[0] > importances[1]
+                    && importances[0] > importances[3], "Attributes ranked wrongly: " + statistics.toTable());
+        }
+        // Both engines build the same tree, so they record the same splits
+        for (int a = 0; a < schema.getAttributeCount(); a++) {
+            Assertions.assertEquals(hashSet.getSplitStatistics().getSplitCount(a),
+                    bitset.getSplitStatistics().getSplitCount(a), "Split counts differ for attribute " + a);
+            Assertions.assertEquals(hashSet.getSplitStatistics().getRowsSplit(a),
+                    bitset.getSplitStatistics().getRowsSplit(a), "Rows split differ for attribute " + a);
+            Assertions.assertEquals(hashSet.getSplitStatistics().getImpurityDecrease(a),
+                    bitset.getSplitStatistics().getImpurityDecrease(a), 1e-6, "Decreases differ for attribute " + a);
+        }
+    }
+
+    @Test
+    public void testParallelBuilderRecordsSameSplits() throws InvalidDataException {
+        ColumnarDataset data = new ColumnarDataset(schema, training);
+        SplitStatistics sequential = new SplitStatistics(schema);
+        SplitStatistics parallel = new SplitStatistics(schema);
+        BitsetTreeBuilder builder = new BitsetTreeBuilder(data, "A", 0);
+        builder.setSplitStatistics(sequential);
+        builder.build();
+        builder.setSplitStatistics(parallel);
+        builder.setParallel(pool);
+        builder.setParallelThreshold(0);
+        builder.build();
+        for (int a = 0; a < schema.getAttributeCount(); a++) {
+            Assertions.assertEquals(sequential.getSplitCount(a), parallel.getSplitCount(a),
+                    "Split counts differ in a pool for attribute " + a);
+            Assertions.assertEquals(sequential.getRowsSplit(a), parallel.getRowsSplit(a),
+                    "Rows split differ in a pool for attribute " + a);
+        }
+    }
+
+    @Test
+    public void testPermutationImportance() throws InvalidDataException {
+        BaseNode tree = new Classifier(schema, training, test, Classifier.TrainingEngine.BITSET).getTree();
+        CompiledTree compiled = CompiledTree.compile(tree, schema);
+        ColumnarDataset testColumns = new ColumnarDataset(schema, test);
+        PermutationImportance importance = PermutationImportance.measure(compiled::countCorrect, testColumns, 5, SEED,
+                pool);
+        Assertions.assertEquals(compiled.countCorrect(testColumns) / (double) ROWS, importance.getBaseline(), 1e-9,
+                "Incorrect baseline");
+        Assertions.assertTrue(importance.getImportance(2) > 0.3, "LEVEL barely matters: " + importance.toTable());
+        Assertions.assertTrue(importance.getImportance(0) > 0.1, "FLAG barely matters: " + importance.toTable());
+        Assertions.assertTrue(Math.abs(importance.getImportance(1)) < 0.02, "NOISE matters: " + importance.toTable());
+
+        // The shuffles come from the seed alone, however many threads classify them
+        PermutationImportance single = PermutationImportance.measure(compiled::countCorrect, testColumns, 5, SEED,
+                singleThread);
+        for (int a = 0; a < schema.getAttributeCount(); a++) {
+            for (int r = 0; r < 5; r++) {
+                Assertions.assertEquals(single.getAccuracy(a, r), importance.getAccuracy(a, r),
+                        "Shuffle " + r + " of attribute " + a + " differs");
+            }
+        }
+        // Shuffling leaves the test set itself as it was
+        Assertions.assertEquals(importance.getBaseline(), compiled.countCorrect(testColumns) / (double) ROWS,
+                "Test set changed by shuffling");
+    }
+}
@@ -0,0 +1,215 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import ensemble.GradientBoostedTrees;
+import ensemble.GradientBoostingTrainer;
+import processing.Classifier;
+import processing.ColumnarDataset;
+import processing.InvalidDataException;
+import processing.Patient;
+import processing.Schema;
+import tree.BaseNode;
+import tree.Node;
+import tree.ValueLeafNode;
+
+/**
+ * A test class to check gradient-boosted trees learn from log-loss gradients, score the same from their compiled
+ * arrays as from their trees, and stop early on held-out data.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class GradientBoostingTest {
+
+    private static final String TEST_DATA_URL = "resources\\hepatitis-test";
+    private static final String TRAINING_DATA_URL = "resources\\hepatitis-training";
+    private static final int ATTRIBUTES = 10;
+    private static final int ROWS = 6000;
+    private static final long SEED = 21;
+    private Path file;
+    private ColumnarDataset training;
+    private ColumnarDataset validation;
+
+    @BeforeAll
+    public void setup() throws IOException, InvalidDataException {
+        // Three classes: "high" when A0 and A1 are both true, "medium" when either A2 or A3 is, otherwise "low",
+        // with 10% of the rows given a random class
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<String> lines = new ArrayList<>();
+        StringBuilder headings = new StringBuilder("Class");
+        for (int a = 0; a < ATTRIBUTES; a++) headings.append(" A").append(a);
+        lines.add(headings.toString());
+        String[] classNames = { "high", "medium", "low" };
+        for (int r = 0; r < ROWS; r++) {
+            int bits = random.nextInt(1 << ATTRIBUTES);
+            String className = (bits & 3) == 3 ? "high" : (bits & 12) != 0 ? "medium" : "low";
+            if (random.nextInt(10) == 0) className = classNames[random.nextInt(3)];
+            StringBuilder line = new StringBuilder(className);
+            for (int a = 0; a < ATTRIBUTES; a++) line.append(' ').append((bits & (1 << a)) != 0);
+            lines.add(line.toString());
+        }
+        file = Files.createTempFile("classes", ".txt");
+        Files.write(file, lines);
+        ArrayList<Patient> rows = Classifier.getData(file.toString());
+        Schema schema = rows.get(0).getSchema();
+        training = new ColumnarDataset(schema, rows.subList(0, ROWS / 2));
+        validation = new ColumnarDataset(schema, rows.subList(ROWS / 2, ROWS));
+    }
+
+    @AfterAll
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    /**
+     * Method to score a Patient by walking each tree of an ensemble, rather than through its compiled arrays.
+     */
+    private static double[] walk(GradientBoostedTrees model, Patient p) {
+        double[] scores = new double[model.getScoreCount()];
+        for (int k = 0; k < scores.length; k++) scores[k] = model.getBaseScore(k);
+        for (int t = 0; t < model.getTreeCount(); t++) {
+            BaseNode node = model.getTree(t);
+            while (node instanceof Node) {
+                Node internal = (Node) node;
+                node = internal.test(p) ? internal.getLeft() : internal.getRight();
+            }
+            scores[t % scores.length] += ((ValueLeafNode) node).getValue();
+        }
+        return scores;
+    }
+
+    @Test
+    public void testHepatitis() throws IOException, InvalidDataException {
+        ArrayList<Patient> trainingRows = Classifier.getData(TRAINING_DATA_URL);
+        Schema schema = trainingRows.get(0).getSchema();
+        ArrayList<Patient> testRows = Classifier.getData(TEST_DATA_URL, schema);
+        ColumnarDataset test = new ColumnarDataset(schema, testRows);
+        GradientBoostingTrainer trainer = new GradientBoostingTrainer(new ColumnarDataset(schema, trainingRows));
+        GradientBoostedTrees model = trainer.train();
+        Assertions.assertEquals(GradientBoostingTrainer.DEFAULT_ROUNDS, model.getTreeCount(), "Incorrect tree count");
+        Assertions.assertEquals(1, model.getScoreCount(), "Two classes not scored as one");
+
+        // The compiled arrays score each Patient as walking the trees does
+        double[] scores = new double[1];
+        for (Patient p : testRows) {
+            model.score(p, scores);
+            Assertions.assertEquals(walk(model, p)[0], scores[0], 1e-9, "Incorrect score of " + p);
+        }
+        int correct = model.countCorrect(test);
+        Assertions.assertTrue(correct >= 18, "Low accuracy: " + correct + " of " + test.size());
+        Assertions.assertTrue(model.logLoss(test) < Math.log(2), "Worse than a coin: " + model.logLoss(test));
+    }
+
+    @Test
+    public void testCompiledScoresMatchTrees() throws InvalidDataException {
+        GradientBoostingTrainer trainer = new GradientBoostingTrainer(training);
+        trainer.setRounds(20);
+        GradientBoostedTrees model = trainer.train();
+        Assertions.assertEquals(3, model.getScoreCount(), "Classes not scored separately");
+        Assertions.assertEquals(60, model.getTreeCount(), "Not one tree per class per round");
+
+        // The compiled arrays score each row as walking the trees does, and probabilities add up to 1
+        Schema schema = training.getSchema();
+        double[] scores = new double[3];
+        for (int row = 0; row < 200; row++) {
+            Patient p = new Patient(schema, new long[] { validation.getRowBits(row) }, validation.getClassValue(row));
+            model.score(p, scores);
+            double[] walked = walk(model, p);
+            for (int k = 0; k < 3; k++) {
+                Assertions.assertEquals(walked[k], scores[k], 1e-9, "Incorrect score of row " + row);
+            }
+            double[] probabilities = model.getProbabilities(p);
+            Assertions.assertEquals(1, probabilities[0] + probabilities[1] + probabilities[2], 1e-9,
+                    "Probabilities do not add up to 1");
+        }
+        // The base scores are the log-probabilities of the classes
+        for (int c = 0; c < 3; c++) {
+            int count = ColumnarDataset.popcount(training.allRows(), training.getClassColumn(c));
+            Assertions.assertEquals(Math.log(count / (double) training.size()), model.getBaseScore(c), 1e-5,
+                    "Incorrect base score of class " + c);
+        }
+        Assertions.assertTrue(model.countCorrect(validation) > validation.size() * 0.88,
+                "Rule not learned: " + model.countCorrect(validation));
+    }
+
+    @Test
+    public void testParallelTrainsSameModel() throws InvalidDataException {
+        GradientBoostingTrainer sequential = new GradientBoostingTrainer(training);
+        GradientBoostingTrainer parallel = new GradientBoostingTrainer(training);
+        sequential.setRounds(10);
+        parallel.setRounds(10);
+        parallel.setParallel(ForkJoinPool.commonPool());
+        parallel.setParallelThreshold(0);
+        GradientBoostedTrees expected = sequential.train();
+        GradientBoostedTrees actual = parallel.train();
+        for (int t = 0; t < expected.getTreeCount(); t++) {
+            Assertions.assertEquals(expected.getTree(t), actual.getTree(t), "Tree " + t + " differs in a pool");
+        }
+    }
+
+    @Test
+    public void testEarlyStopping() throws InvalidDataException {
+        // Deep trees and a high learning rate overfit the noise, so the validation loss turns back up
+        GradientBoostingTrainer trainer = new GradientBoostingTrainer(training);
+        trainer.setRounds(200);
+        trainer.setMaxDepth(8);
+        trainer.setLearningRate(0.5f);
+        trainer.setL2Regularization(0);
+        trainer.setEarlyStopping(validation, 5);
+        GradientBoostedTrees model = trainer.train();
+        double[] losses = trainer.getValidationLosses();
+        Assertions.assertTrue(losses.length < 200, "Training did not stop early");
+
+        // The model keeps the rounds up to the lowest loss, which is 5 rounds before the last
+        int best = losses.length - 6;
+        for (int r = 0; r < losses.length; r++) {
+            Assertions.assertTrue(losses[best] <= losses[r], "Round " + r + " has a lower loss than the best");
+        }
+        Assertions.assertEquals((best + 1) * 3, model.getTreeCount(), "Rounds after the best kept");
+        Assertions.assertEquals(losses[best], model.logLoss(validation), 1e-4, "Kept rounds do not give the best loss");
+    }
+
+    @Test
+    public void testNumericAttributeRejected() throws IOException, InvalidDataException {
+        Path mixed = Files.createTempFile("mixed", ".txt");
+        try {
+            Files.write(mixed, List.of("Class A LEVEL:numeric", "live true 0.5", "die false 1.5"));
+            ArrayList<Patient> rows = Classifier.getData(mixed.toString());
+            GradientBoostingTrainer trainer = new GradientBoostingTrainer(new ColumnarDataset(rows));
+            Assertions.assertThrows(InvalidDataException.class, trainer::train, "Numeric attribute accepted");
+        } finally {
+            Files.delete(mixed);
+        }
+    }
+
+    @Test
+    public void testEmptyData() throws InvalidDataException {
+        // No rows to fit a base score to
+        Schema schema = Schema.fromHeadings("Class A B");
+        schema.getClassValue("live");
+        schema.getClassValue("die");
+        GradientBoostingTrainer trainer = new GradientBoostingTrainer(new ColumnarDataset(schema, new ArrayList<>()));
+        Assertions.assertThrows(InvalidDataException.class, trainer::train, "Empty data accepted");
+    }
+
+    @Test
+    public void testSingleClassRejected() throws IOException, InvalidDataException {
+        Path single = Files.createTempFile("single", ".txt");
+        try {
+            Files.write(single, List.of("Class A B", "live true false", "live false true"));
+            ArrayList<Patient> rows = Classifier.getData(single.toString());
+            GradientBoostingTrainer trainer = new GradientBoostingTrainer(new ColumnarDataset(rows));
+            Assertions.assertThrows(InvalidDataException.class, trainer::train, "Single class accepted");
+        } finally {
+            Files.delete(single);
+        }
+    }
+}
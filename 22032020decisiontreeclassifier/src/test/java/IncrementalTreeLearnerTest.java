@@ -0,0 +1,55 @@
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import processing.Classifier;
+import processing.IncrementalTreeLearner;
+import processing.InvalidDataException;
+import processing.Patient;
+import processing.PatientReader;
+import tree.BaseNode;
+
+/**
+ * A test class to check an IncrementalTreeLearner learns from a stream of Patients.
+ * Edit variable TRAINING_DATA_URL for file paths.
+ */
+public class IncrementalTreeLearnerTest {
+
+    private static final String TRAINING_DATA_URL = "resources\\hepatitis-training";
+    private static final long SEED = 42;
+
+    @Test
+    public void testLearnsConceptFromStream() throws InvalidDataException {
+        // Patients die exactly when attributes 0 and 3 are both true
+        long dieMask = (1L << 0) | (1L << 3);
+        int combinations = 1 << Patient.getAttributeNames().size();
+        SplittableRandom random = new SplittableRandom(SEED);
+        IncrementalTreeLearner learner = new IncrementalTreeLearner();
+        learner.update(Stream.generate(() -> random.nextInt(combinations)).limit(20000).map(bits ->
+                new Patient(bits, (bits & dieMask) == dieMask ? Patient.DIE_CLASS : Patient.LIVE_CLASS)));
+
+        Assertions.assertEquals(20000, learner.getInstanceCount(), "Incorrect number of instances");
+        BaseNode tree = learner.getTree();
+        for (long bits = 0; bits < combinations; bits++) {
+            String expected = (bits & dieMask) == dieMask ? Patient.DIE_CLASS_KEY : Patient.LIVE_CLASS_KEY;
+            Assertions.assertEquals(expected, tree.classify(new Patient(bits, Patient.LIVE_CLASS)),
+                    "Incorrect class for attributes " + bits);
+        }
+    }
+
+    @Test
+    public void testReaderMatchesPatients() throws IOException, InvalidDataException {
+        IncrementalTreeLearner fromPatients = new IncrementalTreeLearner(0.5, 0, 10);
+        fromPatients.update(Classifier.getData(TRAINING_DATA_URL).iterator());
+        IncrementalTreeLearner fromReader = new IncrementalTreeLearner(0.5, 0, 10);
+        try (PatientReader reader = new PatientReader(TRAINING_DATA_URL)) {
+            fromReader.update(reader);
+        }
+
+        Assertions.assertEquals(fromPatients.getInstanceCount(), fromReader.getInstanceCount(),
+                "Incorrect number of instances");
+        Assertions.assertEquals(fromPatients.getTree(), fromReader.getTree(), "Trees learnt differ");
+    }
+}
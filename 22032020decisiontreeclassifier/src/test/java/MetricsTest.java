@@ -0,0 +1,132 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import metrics.InferenceMetrics;
+import metrics.LatencyHistogram;
+import metrics.TrainingMetrics;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import processing.Classifier;
+import processing.ColumnarDataset;
+import processing.InvalidDataException;
+import processing.Patient;
+import processing.Schema;
+import processing.SplitCriterion;
+import tree.CompiledTree;
+import tree.TreeStatistics;
+
+/**
+ * A test class to check training and inference metrics are recorded, read and exported.
+ */
+public class MetricsTest {
+
+    private static final String TEST_DATA_URL = "resources\\hepatitis-test";
+    private static final String TRAINING_DATA_URL = "resources\\hepatitis-training";
+
+    @Test
+    public void testHistogramPercentiles() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100000; value++) histogram.record(value);
+        Assertions.assertEquals(100000, histogram.getCount(), "Incorrect count");
+        Assertions.assertEquals(100000, histogram.getMax(), "Incorrect max");
+        Assertions.assertEquals(50000.5, histogram.getMean(), 1e-9, "Incorrect mean");
+        for (double percentile : new double[] { 1, 50, 90, 99, 99.9 }) {
+            double expected = percentile * 1000;
+            Assertions.assertEquals(expected, histogram.getValueAtPercentile(percentile),
+                    expected / LatencyHistogram.SUB_BUCKETS, "Incorrect value at percentile " + percentile);
+        }
+        Assertions.assertEquals(100000, histogram.getValueAtPercentile(100), "Incorrect value at percentile 100");
+
+        // Threads recording at once lose no values
+        LatencyHistogram shared = new LatencyHistogram();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            ArrayList<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 25000; i++) shared.record(Long.MAX_VALUE - i);
+                }));
+            }
+            for (Future<?> future : futures) future.get();
+        } finally {
+            executor.shutdown();
+        }
+        Assertions.assertEquals(100000, shared.getCount(), "Values lost recording concurrently");
+        Assertions.assertEquals(Long.MAX_VALUE, shared.getValueAtPercentile(100), "Incorrect largest value");
+    }
+
+    @Test
+    public void testTrainingMetrics() throws IOException, InvalidDataException {
+        for (Classifier.TrainingEngine engine : Classifier.TrainingEngine.values()) {
+            TrainingMetrics metrics = new TrainingMetrics();
+            Schema schema = Classifier.getSchema(TRAINING_DATA_URL);
+            ArrayList<Patient> training = Classifier.getData(TRAINING_DATA_URL, schema, metrics);
+            ArrayList<Patient> test = Classifier.getData(TEST_DATA_URL, schema, metrics);
+            Classifier classifier = new Classifier(schema, training, test, engine, SplitCriterion.Standard.GINI,
+                    metrics);
+            Assertions.assertSame(metrics, classifier.getTrainingMetrics(), "Metrics not kept");
+            Assertions.assertEquals(training.size() + test.size(), metrics.getRecordsParsed(), "Records not counted");
+            Assertions.assertTrue(metrics.getRecordsParsedPerSecond() > 0, "No parse rate");
+            Assertions.assertEquals(1, metrics.getTreesBuilt(), "Tree not counted for " + engine);
+            // Every split node is evaluated, as are nodes that no attribute can split
+            Assertions.assertTrue(metrics.getNodesEvaluated() >= TreeStatistics.of(classifier.getTree()).getNodeCount(),
+                    "Nodes not counted for " + engine);
+            Assertions.assertTrue(metrics.getSplitEvaluationMillis() > 0, "No split evaluation time for " + engine);
+            Assertions.assertTrue(metrics.getPartitionMillis() > 0, "No partition time for " + engine);
+            Assertions.assertTrue(metrics.toText().contains("Trees built: 1"), "Incorrect text: " + metrics.toText());
+        }
+    }
+
+    @Test
+    public void testInferenceMetrics() throws IOException, InvalidDataException, JMException {
+        Schema schema = Classifier.getSchema(TRAINING_DATA_URL);
+        ArrayList<Patient> training = Classifier.getData(TRAINING_DATA_URL, schema);
+        ArrayList<Patient> test = Classifier.getData(TEST_DATA_URL, schema);
+        Classifier classifier = new Classifier(schema, training, test, Classifier.TrainingEngine.BITSET);
+        Assertions.assertNull(classifier.getInferenceMetrics(), "Metrics enabled by default");
+        InferenceMetrics metrics = classifier.enableInferenceMetrics();
+        int correct = classifier.countCorrectClassifications();
+        Assertions.assertEquals(1, metrics.getBatches(), "Block not counted");
+        Assertions.assertEquals(test.size(), metrics.getClassifications(), "Rows not counted");
+
+        CompiledTree tree = CompiledTree.compile(classifier.getTree(), schema);
+        CompiledTree instrumented = tree.instrument();
+        int instrumentedCorrect = 0;
+        for (Patient p : test) {
+            if (instrumented.classify(p).equals(p.getClassName())) instrumentedCorrect++;
+        }
+        Assertions.assertEquals(correct, instrumentedCorrect, "Instrumented tree classified differently");
+        Assertions.assertNull(tree.getMetrics(), "Instrumenting changed the original tree");
+        InferenceMetrics single = instrumented.getMetrics();
+        Assertions.assertEquals(test.size(), single.getLatencyHistogram().getCount(), "Latencies not recorded");
+
+        // Each row reaches one leaf, whether classified singly or in a block
+        long[] blockHits = metrics.getLeafHits();
+        long[] singleHits = single.getLeafHits();
+        Assertions.assertArrayEquals(blockHits, singleHits, "Leaf hits differ between single and block");
+        long hits = 0;
+        for (long leafHits : blockHits) hits += leafHits;
+        Assertions.assertEquals(test.size(), hits, "Incorrect leaf hits");
+        instrumented.classify(new ColumnarDataset(schema, test));
+        Assertions.assertEquals(2L * test.size(), single.getClassifications(), "Block rows not counted");
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = single.register("test");
+        try {
+            Assertions.assertEquals(2L * test.size(), server.getAttribute(name, "Classifications"),
+                    "Incorrect JMX attribute");
+            Assertions.assertArrayEquals(single.getLeafHits(), (long[]) server.getAttribute(name, "LeafHits"),
+                    "Incorrect JMX leaf hits");
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import processing.Classifier;
+import processing.ColumnarDataset;
+import processing.InvalidDataException;
+import processing.Patient;
+import processing.Schema;
+import tree.CompiledTree;
+import tree.MappedModel;
+
+/**
+ * A test class to check data with numeric and categorical attributes is read, split on thresholds and category
+ * subsets, and classified.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class MixedAttributeTest {
+
+    private static final int ROWS = 2000;
+    private static final String[] SEXES = { "a", "b", "c", "d" };
+    private Path trainingFile;
+    private Path testFile;
+
+    @BeforeAll
+    public void setup() throws IOException {
+        trainingFile = write(1);
+        testFile = write(2);
+    }
+
+    @AfterAll
+    public void tearDown() throws IOException {
+        Files.delete(trainingFile);
+        Files.delete(testFile);
+    }
+
+    /**
+     * Method to write a data file where the class is "die" when AGE is over 50 and SEX is "b" or "d", or when LEVEL is
+     * over 0.9, and "live" otherwise; FATIGUE is noise.
+     *
+     * @param seed The seed for the values.
+     * @return the path of the file.
+     * @throws IOException if the file cannot be written.
+     */
+    private static Path write(long seed) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<String> lines = new ArrayList<>();
+        lines.add("Class AGE:numeric SEX:categorical FATIGUE LEVEL:numeric");
+        for (int r = 0; r < ROWS; r++) {
+            int age = random.nextInt(100);
+            String sex = SEXES[random.nextInt(SEXES.length)];
+            boolean fatigue = random.nextBoolean();
+            double level = random.nextDouble();
+            boolean die = (age > 50 && (sex.equals("b") || sex.equals("d"))) || level > 0.9;
+            lines.add((die ? "die " : "live ") + age + " " + sex + " " + fatigue + " " + level);
+        }
+        Path file = Files.createTempFile("mixed", ".txt");
+        Files.write(file, lines);
+        return file;
+    }
+
+    @Test
+    public void testReadsAttributeTypes() throws IOException, InvalidDataException {
+        ArrayList<Patient> data = Classifier.getData(trainingFile.toString());
+        Schema schema = data.get(0).getSchema();
+        Assertions.assertEquals(Arrays.asList("AGE", "SEX", "FATIGUE", "LEVEL"), schema.getAttributeNames(),
+                "Incorrect attribute names");
+        Assertions.assertEquals(Schema.AttributeType.NUMERIC, schema.getAttributeType(0), "Incorrect type of AGE");
+        Assertions.assertEquals(Schema.AttributeType.CATEGORICAL, schema.getAttributeType(1), "Incorrect type of SEX");
+        Assertions.assertEquals(Schema.AttributeType.BOOLEAN, schema.getAttributeType(2), "Incorrect type of FATIGUE");
+        Assertions.assertEquals(SEXES.length, schema.getCategoryNames(1).size(), "Incorrect number of categories");
+
+        Patient first = new Patient(schema, Files.readAllLines(trainingFile).get(1));
+        Assertions.assertEquals(first, data.get(0), "Reader and String parsing differ");
+        String[] tokens = Files.readAllLines(trainingFile).get(1).split(" ");
+        Assertions.assertEquals(Double.parseDouble(tokens[1]), first.getValue(0), "Incorrect AGE");
+        Assertions.assertEquals(tokens[2], schema.getCategoryNames(1).get(first.getCategory(1)), "Incorrect SEX");
+        Assertions.assertThrows(InvalidDataException.class, () -> new Patient(schema, "live old a true 0.5"));
+    }
+
+    @Test
+    public void testEnginesSplitOnThresholdsAndCategories() throws IOException, InvalidDataException {
+        Schema schema = Classifier.getSchema(trainingFile.toString());
+        ArrayList<Patient> training = Classifier.getData(trainingFile.toString(), schema);
+        ArrayList<Patient> test = Classifier.getData(testFile.toString(), schema);
+        Classifier hashSet = new Classifier(schema, training, test, Classifier.TrainingEngine.HASH_SET);
+        Classifier bitset = new Classifier(schema, training, test, Classifier.TrainingEngine.BITSET);
+        Classifier parallel = new Classifier(schema, training, test, Classifier.TrainingEngine.PARALLEL_BITSET);
+        Assertions.assertEquals(hashSet.getTree(), bitset.getTree(), "HASH_SET and BITSET trees differ");
+        Assertions.assertEquals(bitset.getTree(), parallel.getTree(), "BITSET and PARALLEL_BITSET trees differ");
+        // LEVEL has more distinct values than bins, so its threshold can be a bin away from 0.9
+        Assertions.assertTrue(bitset.countCorrectClassifications() >= ROWS * 0.98,
+                "Accuracy too low: " + bitset.countCorrectClassifications());
+    }
+
+    @Test
+    public void testClassifiesBlocksAndModel() throws IOException, InvalidDataException {
+        Schema schema = Classifier.getSchema(trainingFile.toString());
+        ArrayList<Patient> training = Classifier.getData(trainingFile.toString(), schema);
+        ArrayList<Patient> test = Classifier.getData(testFile.toString(), schema);
+        Classifier classifier = new Classifier(schema, training, test, Classifier.TrainingEngine.BITSET);
+        CompiledTree compiled = CompiledTree.compile(classifier.getTree(), schema, true);
+        Assertions.assertFalse(compiled.isGenerated(), "Bytecode was generated for numeric attributes");
+        byte[] classValues = compiled.classify(new ColumnarDataset(schema, test));
+
+        Path model = Files.createTempFile("mixed", ".model");
+        try {
+            classifier.saveModel(model.toString());
+            MappedModel mapped = MappedModel.load(model);
+            Assertions.assertEquals(Schema.AttributeType.CATEGORICAL, mapped.getSchema().getAttributeType(1),
+                    "Incorrect type of SEX in model");
+            for (int i = 0; i < test.size(); i++) {
+                String expected = classifier.getTree().classify(test.get(i));
+                Assertions.assertEquals(expected, schema.getClassName(classValues[i]), "Incorrect block class " + i);
+                Assertions.assertEquals(expected, compiled.classify(test.get(i)), "Incorrect compiled class " + i);
+                Assertions.assertEquals(expected, mapped.classify(test.get(i)), "Incorrect model class " + i);
+            }
+        } finally {
+            Files.delete(model);
+        }
+    }
+}
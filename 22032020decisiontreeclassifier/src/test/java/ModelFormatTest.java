@@ -0,0 +1,83 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+
+import ensemble.RandomForest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import processing.Classifier;
+import processing.ColumnarDataset;
+import processing.InvalidDataException;
+import processing.Patient;
+import tree.MappedModel;
+
+/**
+ * A test class to check models saved to file classify the same when mapped back.
+ * Edit variables TEST_DATA_URL and TRAINING_DATA_URL for file paths.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class ModelFormatTest {
+
+    private static final String TEST_DATA_URL = "resources\\hepatitis-test";
+    private static final String TRAINING_DATA_URL = "resources\\hepatitis-training";
+    private ArrayList<Patient> trainingData;
+    private ArrayList<Patient> testData;
+
+    @BeforeAll
+    public void setup() throws IOException, InvalidDataException {
+        trainingData = Classifier.getData(TRAINING_DATA_URL);
+        testData = Classifier.getData(TEST_DATA_URL);
+    }
+
+    @Test
+    public void testTreeRoundTrip() throws IOException, InvalidDataException {
+        Classifier classifier = new Classifier(trainingData, testData, Classifier.TrainingEngine.BITSET);
+        Path file = Files.createTempFile("tree", ".model");
+        try {
+            classifier.saveModel(file.toString());
+            MappedModel model = MappedModel.load(file);
+            int combinations = 1 << Patient.getAttributeNames().size();
+            for (long bits = 0; bits < combinations; bits++) {
+                Patient p = new Patient(bits, Patient.LIVE_CLASS);
+                Assertions.assertEquals(classifier.getTree().classify(p), model.classify(p),
+                        "Incorrect class for attributes " + bits);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testForestRoundTrip() throws IOException, InvalidDataException {
+        RandomForest forest = RandomForest.train(new ColumnarDataset(trainingData), 15, 4, 7,
+                ForkJoinPool.commonPool());
+        Path file = Files.createTempFile("forest", ".model");
+        try {
+            forest.save(file);
+            MappedModel model = MappedModel.load(file);
+            Assertions.assertEquals(forest.getTreeCount(), model.getTreeCount(), "Incorrect number of trees");
+            for (Patient p : testData) {
+                Assertions.assertEquals(forest.classify(p), model.classify(p), "Incorrect class for " + p);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testCorruptModel() throws IOException {
+        Path file = Files.createTempFile("corrupt", ".model");
+        try {
+            Files.write(file, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+            Assertions.assertThrows(InvalidDataException.class, () -> {
+                MappedModel.load(file);
+            });
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
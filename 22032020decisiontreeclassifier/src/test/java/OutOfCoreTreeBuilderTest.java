@@ -0,0 +1,149 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import processing.BitsetTreeBuilder;
+import processing.Classifier;
+import processing.ColumnFile;
+import processing.ColumnarDataset;
+import processing.InvalidDataException;
+import processing.OutOfCoreTreeBuilder;
+import processing.Patient;
+import processing.SplitCriterion;
+import tree.BaseNode;
+import tree.CompiledTree;
+
+/**
+ * A test class to check trees built breadth-first from a column file are the trees built in memory from the same rows.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class OutOfCoreTreeBuilderTest {
+
+    private static final String TEST_DATA_URL = "resources\\hepatitis-test";
+    private static final String TRAINING_DATA_URL = "resources\\hepatitis-training";
+    // More than two blocks, so rows cross from one block to the next
+    private static final int ROWS = 2 * ColumnFile.BLOCK_ROWS + 1000;
+    private static final int ATTRIBUTES = 12;
+    private static final long SEED = 19;
+    private Path dir;
+    private Path largeFile;
+
+    @BeforeAll
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("columns");
+        // Three classes, decided by A0 to A3 with 5% noise
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<String> lines = new ArrayList<>();
+        StringBuilder headings = new StringBuilder("Class");
+        for (int a = 0; a < ATTRIBUTES; a++) headings.append(" A").append(a);
+        lines.add(headings.toString());
+        for (int r = 0; r < ROWS; r++) {
+            int bits = random.nextInt(1 << ATTRIBUTES);
+            String className = (bits & 3) == 3 ? "high" : (bits & 12) != 0 ? "medium" : "low";
+            if (random.nextInt(20) == 0) className = "low";
+            StringBuilder line = new StringBuilder(className);
+            for (int a = 0; a < ATTRIBUTES; a++) line.append(' ').append((bits & (1 << a)) != 0);
+            lines.add(line.toString());
+        }
+        largeFile = dir.resolve("large.txt");
+        Files.write(largeFile, lines);
+    }
+
+    @AfterAll
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) Files.delete(file);
+        }
+        Files.delete(dir);
+    }
+
+    /**
+     * Method to build a tree in memory from every row of a data file, as the out-of-core builder trains on them.
+     */
+    private BaseNode buildInMemory(String dataUrl, SplitCriterion criterion, int maxDepth, int minLeafSize)
+            throws IOException, InvalidDataException {
+        ArrayList<Patient> rows = Classifier.getData(dataUrl);
+        ColumnarDataset data = new ColumnarDataset(rows);
+        // The leaf of an empty node is the most frequent class of every row, the first on a tie
+        int[] counts = new int[data.getClassCount()];
+        for (int row = 0; row < data.size(); row++) counts[data.getClassValue(row)]++;
+        int best = 0;
+        for (int c = 1; c < counts.length; c++) {
+            if (counts[c] > counts[best]) best = c;
+        }
+        BitsetTreeBuilder builder = new BitsetTreeBuilder(data, data.getSchema().getClassName((byte) best),
+                counts[best] / (float) rows.size());
+        builder.setCriterion(criterion);
+        builder.setMaxDepth(maxDepth);
+        builder.setMinLeafSize(minLeafSize);
+        return builder.build();
+    }
+
+    @Test
+    public void testHepatitisMatchesInMemory() throws IOException, InvalidDataException {
+        try (ColumnFile columns = ColumnFile.write(TRAINING_DATA_URL, dir.resolve("hepatitis.col"))) {
+            for (SplitCriterion criterion : SplitCriterion.Standard.values()) {
+                OutOfCoreTreeBuilder builder = new OutOfCoreTreeBuilder(columns);
+                builder.setCriterion(criterion);
+                BaseNode tree = builder.build();
+                Assertions.assertEquals(buildInMemory(TRAINING_DATA_URL, criterion, 0, 0), tree,
+                        "Tree differs from in memory for " + criterion);
+
+                try (ColumnFile test = ColumnFile.write(TEST_DATA_URL, dir.resolve("hepatitis-test.col"),
+                        columns.getSchema())) {
+                    CompiledTree compiled = CompiledTree.compile(tree, columns.getSchema());
+                    ColumnarDataset testData = new ColumnarDataset(Classifier.getData(TEST_DATA_URL));
+                    Assertions.assertEquals(compiled.countCorrect(testData), test.countCorrect(compiled),
+                            "Incorrect count of correct classifications");
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLargeMatchesInMemory() throws IOException, InvalidDataException {
+        Path path = dir.resolve("large.col");
+        ColumnFile.write(largeFile.toString(), path).close();
+        try (ColumnFile columns = ColumnFile.open(path)) {
+            Assertions.assertEquals(ROWS, columns.size(), "Incorrect row count");
+            Assertions.assertEquals(3, columns.getBlockCount(), "Incorrect block count");
+            Assertions.assertEquals(3, columns.getSchema().getClassCount(), "Class names not kept");
+
+            int[][] limits = { { 0, 0 }, { 3, 0 }, { 0, 500 } };
+            for (int[] limit : limits) {
+                OutOfCoreTreeBuilder builder = new OutOfCoreTreeBuilder(columns);
+                builder.setMaxDepth(limit[0]);
+                builder.setMinLeafSize(limit[1]);
+                BaseNode tree = builder.build();
+                Assertions.assertEquals(buildInMemory(largeFile.toString(), SplitCriterion.Standard.GINI, limit[0],
+                        limit[1]), tree, "Tree differs from in memory with depth " + limit[0] + ", leaf " + limit[1]);
+
+                CompiledTree compiled = CompiledTree.compile(tree, columns.getSchema());
+                Assertions.assertEquals(compiled.countCorrect(new ColumnarDataset(Classifier.getData(
+                        largeFile.toString()))), columns.countCorrect(compiled), "Incorrect count across blocks");
+            }
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            Assertions.assertTrue(files.noneMatch(file -> file.toString().endsWith(".tmp")), "Scratch file left");
+        }
+    }
+
+    @Test
+    public void testInvalidFiles() throws IOException {
+        Path mixed = dir.resolve("mixed.txt");
+        Files.write(mixed, List.of("Class A LEVEL:numeric", "live true 0.5"));
+        Assertions.assertThrows(InvalidDataException.class, () -> ColumnFile.write(mixed.toString(),
+                dir.resolve("mixed.col")), "Numeric attribute accepted");
+        Assertions.assertThrows(InvalidDataException.class, () -> ColumnFile.open(largeFile),
+                "Data file opened as a column file");
+    }
+}
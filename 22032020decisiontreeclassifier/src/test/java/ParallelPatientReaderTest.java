@@ -0,0 +1,216 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import processing.Classifier;
+import processing.InvalidDataException;
+import processing.ParallelPatientReader;
+import processing.Patient;
+import processing.PatientReader;
+import processing.Schema;
+
+/**
+ * A test class to check files read in parallel chunks give the same Patient instances, schema and errors as reading
+ * them line by line.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class ParallelPatientReaderTest {
+
+    private static final String TEST_DATA_URL = "resources\\hepatitis-test";
+    private static final String TRAINING_DATA_URL = "resources\\hepatitis-training";
+    private static final int ROWS = 3000;
+    private static final long SEED = 22;
+    private static final int[] CHUNK_BYTES = { 1, 50, 333, 4096 };
+    private Path dir;
+    private Path mixedFile;
+    private ForkJoinPool pool;
+
+    @BeforeAll
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("chunks");
+        pool = new ForkJoinPool(4);
+        // Classes and categories first occur throughout the file, so they are first seen in different chunks;
+        // some lines end in "\r\n" and have trailing spaces, and the last line has no newline
+        SplittableRandom random = new SplittableRandom(SEED);
+        StringBuilder text = new StringBuilder("Class A B LEVEL:numeric COLOUR:categorical\n");
+        for (int r = 0; r < ROWS; r++) {
+            text.append("class").append(random.nextInt(1 + r / 300)).append(' ')
+                    .append(random.nextBoolean() ? "TRUE" : "false").append(' ')
+                    .append(random.nextBoolean()).append(' ')
+                    .append(random.nextInt(100) / 10.0).append(" colour").append(random.nextInt(1 + r / 100));
+            if (r % 7 == 0) text.append("  ");
+            if (r < ROWS - 1) text.append(r % 5 == 0 ? "\r\n" : "\n");
+        }
+        mixedFile = dir.resolve("mixed.txt");
+        Files.writeString(mixedFile, text);
+    }
+
+    @AfterAll
+    public void tearDown() throws IOException {
+        pool.shutdown();
+        try (var files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) Files.delete(file);
+        }
+        Files.delete(dir);
+    }
+
+    /**
+     * Method to read files one after another, line by line.
+     */
+    private static List<ArrayList<Patient>> readSequentially(Schema schema, String... fileUrls)
+            throws IOException, InvalidDataException {
+        List<ArrayList<Patient>> data = new ArrayList<>();
+        for (String fileUrl : fileUrls) {
+            try (PatientReader reader = new PatientReader(fileUrl, schema)) {
+                ArrayList<Patient> patients = new ArrayList<>();
+                Patient p;
+                while ((p = reader.read()) != null) patients.add(p);
+                data.add(patients);
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Method to check two lists of Patient instances of different schemas hold the same rows.
+     */
+    private static void assertSameRows(List<Patient> expected, List<Patient> actual) {
+        Assertions.assertEquals(expected.size(), actual.size(), "Incorrect number of rows");
+        Schema expectedSchema = expected.isEmpty() ? null : expected.get(0).getSchema();
+        for (int row = 0; row < expected.size(); row++) {
+            Patient e = expected.get(row);
+            Patient a = actual.get(row);
+            Assertions.assertEquals(e.getClassName(), a.getClassName(), "Incorrect class of row " + row);
+            Assertions.assertEquals(e.getClassValue(), a.getClassValue(), "Incorrect class value of row " + row);
+            for (int attribute = 0; attribute < expectedSchema.getAttributeCount(); attribute++) {
+                if (expectedSchema.getAttributeType(attribute) == Schema.AttributeType.BOOLEAN) {
+                    Assertions.assertEquals(e.getAttribute(attribute), a.getAttribute(attribute),
+                            "Incorrect attribute " + attribute + " of row " + row);
+                }
+                else {
+                    Assertions.assertEquals(e.getValue(attribute), a.getValue(attribute),
+                            "Incorrect value " + attribute + " of row " + row);
+                }
+            }
+        }
+    }
+
+    private ParallelPatientReader reader(int chunkBytes) {
+        ParallelPatientReader reader = new ParallelPatientReader(pool);
+        reader.setChunkBytes(chunkBytes);
+        return reader;
+    }
+
+    @Test
+    public void testHepatitisMatchesSequential() throws IOException, InvalidDataException {
+        List<ArrayList<Patient>> expected = readSequentially(null, TRAINING_DATA_URL);
+        for (int chunkBytes : CHUNK_BYTES) {
+            List<ArrayList<Patient>> actual = reader(chunkBytes).read(null, TRAINING_DATA_URL);
+            assertSameRows(expected.get(0), actual.get(0));
+        }
+
+        // Both files read together share the schema, with the rows of each file in its own list
+        Schema schema = Classifier.getSchema(TRAINING_DATA_URL);
+        List<ArrayList<Patient>> both = reader(100).read(schema, TRAINING_DATA_URL, TEST_DATA_URL);
+        Assertions.assertEquals(2, both.size(), "Not a list per file");
+        assertSameRows(readSequentially(null, TRAINING_DATA_URL, TEST_DATA_URL).get(1), both.get(1));
+        Assertions.assertSame(schema, both.get(1).get(0).getSchema(), "Schema not shared");
+    }
+
+    @Test
+    public void testMixedMatchesSequential() throws IOException, InvalidDataException {
+        for (int chunkBytes : CHUNK_BYTES) {
+            Schema expectedSchema = Classifier.getSchema(mixedFile.toString());
+            Schema actualSchema = Classifier.getSchema(mixedFile.toString());
+            List<ArrayList<Patient>> expected = readSequentially(expectedSchema, mixedFile.toString());
+            List<ArrayList<Patient>> actual = reader(chunkBytes).read(actualSchema, mixedFile.toString());
+            assertSameRows(expected.get(0), actual.get(0));
+            // Class names and categories are added to the schema in the order they first occur in the file
+            Assertions.assertEquals(expectedSchema.getClassNames(), actualSchema.getClassNames(),
+                    "Classes added in a different order");
+            Assertions.assertEquals(expectedSchema.getCategoryNames(3), actualSchema.getCategoryNames(3),
+                    "Categories added in a different order");
+        }
+
+        // The classes of the second file follow those of the first, however the chunks were parsed
+        Path first = dir.resolve("first.txt");
+        Path second = dir.resolve("second.txt");
+        Files.write(first, List.of("Class A", "live true", "die false"));
+        Files.write(second, List.of("Class A", "unknown true", "die false", "other true"));
+        Schema schema = Classifier.getSchema(first.toString());
+        reader(1).read(schema, first.toString(), second.toString());
+        Assertions.assertEquals(Arrays.asList("live", "die", "unknown", "other"), schema.getClassNames(),
+                "Classes of the second file added first");
+    }
+
+    @Test
+    public void testFirstInvalidLineWins() throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("Class A B LEVEL:numeric");
+        for (int r = 0; r < 200; r++) lines.add((r % 2 == 0 ? "live" : "die") + " true false " + r);
+        List<String> tooFew = new ArrayList<>(lines);
+        tooFew.set(120, "live true 3");
+        List<String> badNumber = new ArrayList<>(lines);
+        badNumber.set(60, "die false true x");
+        List<String> both = new ArrayList<>(tooFew);
+        both.set(60, "die false true x");
+        List<String> blank = new ArrayList<>(lines);
+        blank.set(150, "");
+
+        Path valid = dir.resolve("valid.txt");
+        Files.write(valid, lines);
+        for (List<String> invalid : List.of(tooFew, badNumber, both, blank)) {
+            Path file = dir.resolve("invalid.txt");
+            Files.write(file, invalid);
+            InvalidDataException expected = Assertions.assertThrows(InvalidDataException.class,
+                    () -> readSequentially(null, valid.toString(), file.toString()));
+            for (int chunkBytes : CHUNK_BYTES) {
+                InvalidDataException actual = Assertions.assertThrows(InvalidDataException.class,
+                        () -> reader(chunkBytes).read(null, valid.toString(), file.toString()));
+                Assertions.assertEquals(expected.getMessage(), actual.getMessage(), "Different error");
+            }
+            // An invalid training file is reported before an invalid test file
+            InvalidDataException first = Assertions.assertThrows(InvalidDataException.class,
+                    () -> reader(50).read(null, file.toString(), dir.resolve("mixed.txt").toString()));
+            Assertions.assertEquals(expected.getMessage(), first.getMessage(), "Error of a later file thrown");
+        }
+
+        // Headings that do not match the schema are reported after the errors of earlier files
+        Path headings = dir.resolve("headings.txt");
+        Files.write(headings, List.of("Class A C", "live true false"));
+        Assertions.assertThrows(InvalidDataException.class, () -> reader(50).read(
+                Classifier.getSchema(valid.toString()), valid.toString(), headings.toString()),
+                "Mismatched headings accepted");
+        Assertions.assertThrows(IOException.class, () -> reader(50).read(null, dir.resolve("missing").toString()),
+                "Missing file read");
+    }
+
+    @Test
+    public void testTooManyClassesReportsLine() throws IOException {
+        // Every row is of a new class, so the row after the first MAX_CLASSES, on line MAX_CLASSES + 2, is invalid
+        List<String> lines = new ArrayList<>();
+        lines.add("Class A B");
+        for (int r = 0; r < Schema.MAX_CLASSES + 20; r++) lines.add("class" + r + " true false");
+        Path file = dir.resolve("classes.txt");
+        Files.write(file, lines);
+        InvalidDataException expected = Assertions.assertThrows(InvalidDataException.class,
+                () -> readSequentially(null, file.toString()));
+        Assertions.assertTrue(expected.getMessage().startsWith("Line " + (Schema.MAX_CLASSES + 2) + ": "),
+                "Line number not reported: " + expected.getMessage());
+        for (int chunkBytes : CHUNK_BYTES) {
+            InvalidDataException actual = Assertions.assertThrows(InvalidDataException.class,
+                    () -> reader(chunkBytes).read(null, file.toString()));
+            Assertions.assertEquals(expected.getMessage(), actual.getMessage(), "Different error");
+        }
+    }
+}
@@ -0,0 +1,129 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import evaluation.CrossValidator;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import processing.BitsetTreeBuilder;
+import processing.Classifier;
+import processing.ColumnarDataset;
+import processing.InvalidDataException;
+import tree.BaseNode;
+import tree.CompiledTree;
+import tree.LeafNode;
+import tree.Pruner;
+import tree.TreeStatistics;
+
+/**
+ * A test class to check pre-pruning limits and post-pruning shrink trees fitted to noisy data without losing accuracy.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class PruningTest {
+
+    private static final int ROWS = 2000;
+    private static final long SEED = 11;
+    private ColumnarDataset data;
+    private Path file;
+
+    @BeforeAll
+    public void setup() throws IOException, InvalidDataException {
+        // The class is "die" when A and B are both true or LEVEL is over 0.8, with 10% of the classes flipped
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<String> lines = new ArrayList<>();
+        lines.add("Class A B C D E LEVEL:numeric");
+        for (int r = 0; r < ROWS; r++) {
+            boolean[] values = new boolean[5];
+            StringBuilder line = new StringBuilder();
+            for (int a = 0; a < values.length; a++) {
+                values[a] = random.nextBoolean();
+                line.append(' ').append(values[a]);
+            }
+            double level = random.nextDouble();
+            boolean die = (values[0] && values[1]) || level > 0.8;
+            if (random.nextInt(10) == 0) die = !die;
+            lines.add((die ? "die" : "live") + line + " " + level);
+        }
+        file = Files.createTempFile("noisy", ".txt");
+        Files.write(file, lines);
+        data = new ColumnarDataset(Classifier.getData(file.toString()));
+    }
+
+    @AfterAll
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    @Test
+    public void testPrePruningLimits() throws InvalidDataException {
+        TreeStatistics full = TreeStatistics.of(new BitsetTreeBuilder(data, "live", 0.5f).build(), data);
+
+        BitsetTreeBuilder builder = new BitsetTreeBuilder(data, "live", 0.5f);
+        builder.setMinSamplesSplit(ROWS + 1);
+        Assertions.assertTrue(builder.build() instanceof LeafNode, "Root split despite too few rows");
+
+        builder = new BitsetTreeBuilder(data, "live", 0.5f);
+        builder.setMinSamplesSplit(200);
+        TreeStatistics minSamples = TreeStatistics.of(builder.build(), data);
+        Assertions.assertTrue(minSamples.getNodeCount() < full.getNodeCount(), "Min samples did not shrink the tree");
+
+        builder = new BitsetTreeBuilder(data, "live", 0.5f);
+        builder.setMinImpurityDecrease(0.01f);
+        TreeStatistics minDecrease = TreeStatistics.of(builder.build(), data);
+        Assertions.assertTrue(minDecrease.getNodeCount() < full.getNodeCount(), "Min decrease did not shrink the tree");
+        Assertions.assertTrue(minDecrease.getAveragePathLength() < full.getAveragePathLength(),
+                "Min decrease did not shorten paths");
+
+        builder = new BitsetTreeBuilder(data, "live", 0.5f);
+        builder.setMaxDepth(3);
+        Assertions.assertTrue(TreeStatistics.of(builder.build()).getDepth() <= 3, "Max depth not applied");
+    }
+
+    @Test
+    public void testCostComplexityPruning() throws InvalidDataException {
+        BaseNode tree = new BitsetTreeBuilder(data, "live", 0.5f).build();
+        long[] rows = data.allRows();
+        int trainingCorrect = CompiledTree.compile(tree, data.getSchema()).countCorrect(data);
+
+        // With no cost per leaf, only subtrees that do no better than a leaf on the training rows are folded
+        BaseNode free = Pruner.costComplexity(tree, data, rows, 0);
+        Assertions.assertEquals(trainingCorrect, CompiledTree.compile(free, data.getSchema()).countCorrect(data),
+                "Pruning with alpha 0 changed the training errors");
+        Assertions.assertTrue(Pruner.costComplexity(tree, data, rows, 1) instanceof LeafNode,
+                "Pruning with alpha 1 did not fold the tree into a leaf");
+
+        BaseNode pruned = Pruner.costComplexity(tree, data, rows, 0.005);
+        TreeStatistics before = TreeStatistics.of(tree, data);
+        TreeStatistics after = TreeStatistics.of(pruned, data);
+        Assertions.assertTrue(after.getNodeCount() < before.getNodeCount() / 10, "Tree barely pruned: " + after);
+        Assertions.assertTrue(after.getAveragePathLength() < before.getAveragePathLength(), "Paths not shortened");
+        Assertions.assertEquals(after.getNodeCount() + 1, after.getLeafCount(), "Incorrect leaf count");
+        Assertions.assertEquals(before.toString(), TreeStatistics.of(tree, data).toString(), "Tree was modified");
+    }
+
+    @Test
+    public void testReducedErrorPruning() throws InvalidDataException {
+        CrossValidator validator = new CrossValidator(data, 4, SEED);
+        long[] training = validator.getTrainingRows(0);
+        long[] validation = validator.getTestRows(0);
+        BitsetTreeBuilder builder = new BitsetTreeBuilder(data, "live", 0.5f);
+        builder.setRows(training);
+        BaseNode tree = builder.build();
+        BaseNode pruned = Pruner.reducedError(tree, data, training, validation);
+
+        int before = CompiledTree.compile(tree, data.getSchema()).countCorrect(data, validation);
+        int after = CompiledTree.compile(pruned, data.getSchema()).countCorrect(data, validation);
+        Assertions.assertTrue(after >= before, "Pruning lost validation accuracy: " + after + " < " + before);
+        Assertions.assertTrue(TreeStatistics.of(pruned).getNodeCount() < TreeStatistics.of(tree).getNodeCount(),
+                "Nothing was pruned");
+        // The noise is 10% of the rows, so a tree without it classifies about 90% of them correctly
+        Assertions.assertTrue(after >= 0.85 * ColumnarDataset.popcount(validation, validation),
+                "Accuracy too low: " + after);
+    }
+}
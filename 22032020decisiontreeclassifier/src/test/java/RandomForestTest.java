@@ -0,0 +1,68 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+
+import ensemble.RandomForest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import processing.Classifier;
+import processing.ColumnarDataset;
+import processing.InvalidDataException;
+import processing.Patient;
+import processing.Schema;
+
+/**
+ * A test class to check a RandomForest trains reproducibly and classifies blocks the same as single Patients.
+ * Edit variables TEST_DATA_URL and TRAINING_DATA_URL for file paths.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class RandomForestTest {
+
+    private static final String TEST_DATA_URL = "resources\\hepatitis-test";
+    private static final String TRAINING_DATA_URL = "resources\\hepatitis-training";
+    private static final int TREES = 25;
+    private static final long SEED = 42;
+    private ColumnarDataset trainingData;
+    private ArrayList<Patient> testData;
+
+    @BeforeAll
+    public void setup() throws IOException, InvalidDataException {
+        trainingData = new ColumnarDataset(Classifier.getData(TRAINING_DATA_URL));
+        testData = Classifier.getData(TEST_DATA_URL);
+    }
+
+    @Test
+    public void testSameSeedTrainsSameForest() throws InvalidDataException {
+        int attributesPerSplit = RandomForest.defaultAttributesPerSplit(Patient.getAttributeNames().size());
+        RandomForest common = RandomForest.train(trainingData, TREES, attributesPerSplit, SEED,
+                ForkJoinPool.commonPool());
+        RandomForest single = RandomForest.train(trainingData, TREES, attributesPerSplit, SEED, new ForkJoinPool(1));
+        ColumnarDataset block = new ColumnarDataset(testData);
+        Assertions.assertArrayEquals(common.classify(block), single.classify(block),
+                "Forests trained with the same seed classify differently");
+    }
+
+    @Test
+    public void testBlockMatchesSingle() throws InvalidDataException {
+        RandomForest forest = RandomForest.train(trainingData, TREES, 4, SEED, ForkJoinPool.commonPool());
+        Assertions.assertEquals(TREES, forest.getTreeCount(), "Incorrect number of trees");
+        byte[] classValues = forest.classify(new ColumnarDataset(testData));
+        for (int i = 0; i < testData.size(); i++) {
+            Assertions.assertEquals(forest.classify(testData.get(i)), Patient.getClassName(classValues[i]),
+                    "Incorrect class for entry " + i);
+        }
+    }
+
+    @Test
+    public void testEmptyData() throws InvalidDataException {
+        // No rows to draw a bootstrap sample from: every tree is a single leaf, and no rows are classified
+        Schema schema = Schema.fromHeadings("Class A B");
+        schema.getClassValue("live");
+        ColumnarDataset empty = new ColumnarDataset(schema, new ArrayList<>());
+        RandomForest forest = RandomForest.train(empty, TREES, 1, SEED, ForkJoinPool.commonPool());
+        Assertions.assertEquals(TREES, forest.getTreeCount(), "Incorrect number of trees");
+        Assertions.assertEquals(0, forest.classify(empty).length, "Rows classified in an empty block");
+    }
+}
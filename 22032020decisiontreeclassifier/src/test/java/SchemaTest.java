@@ -0,0 +1,100 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import processing.Classifier;
+import processing.ColumnarDataset;
+import processing.InvalidDataException;
+import processing.Patient;
+import processing.Schema;
+import tree.CompiledTree;
+import tree.MappedModel;
+
+/**
+ * A test class to check data with more than 64 attributes and more than two classes is read and classified through
+ * the schema given by its headings.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class SchemaTest {
+
+    private static final int ATTRIBUTES = 100;
+    private static final int ROWS = 2000;
+    private static final long SEED = 42;
+    private Path file;
+
+    @BeforeAll
+    public void setup() throws IOException {
+        // The class is "red" when A70 is true, else "green" when A3 is true, else "blue"
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<String> lines = new ArrayList<>();
+        StringBuilder headings = new StringBuilder("Class");
+        for (int a = 0; a < ATTRIBUTES; a++) headings.append(" A").append(a);
+        lines.add(headings.toString());
+        for (int r = 0; r < ROWS; r++) {
+            boolean[] values = new boolean[ATTRIBUTES];
+            for (int a = 0; a < ATTRIBUTES; a++) values[a] = random.nextBoolean();
+            StringBuilder line = new StringBuilder(values[70] ? "red" : values[3] ? "green" : "blue");
+            for (boolean value : values) line.append(value ? " true" : " false");
+            lines.add(line.toString());
+        }
+        file = Files.createTempFile("wide", ".txt");
+        Files.write(file, lines);
+    }
+
+    @AfterAll
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    @Test
+    public void testReadsSchemaFromHeadings() throws IOException, InvalidDataException {
+        ArrayList<Patient> data = Classifier.getData(file.toString());
+        Schema schema = data.get(0).getSchema();
+        Assertions.assertEquals(ATTRIBUTES, schema.getAttributeCount(), "Incorrect number of attributes");
+        Assertions.assertEquals(70, schema.getAttributeIndex("A70"), "Incorrect attribute index");
+        Assertions.assertEquals(3, schema.getClassCount(), "Incorrect number of classes");
+        for (Patient p : data) {
+            Assertions.assertEquals(p.getAttribute(70) ? "red" : p.getAttribute(3) ? "green" : "blue",
+                    p.getClassName(), "Incorrect class for " + p.getAttributes());
+        }
+        Assertions.assertSame(Schema.HEPATITIS, Schema.fromHeadings("Class " + String.join(" ",
+                Patient.getAttributeNames())), "Hepatitis headings did not give the hepatitis schema");
+    }
+
+    @Test
+    public void testClassifiesWideMultiClassData() throws IOException, InvalidDataException {
+        Classifier classifier = new Classifier(file.toString(), file.toString(), Classifier.TrainingEngine.BITSET);
+        Assertions.assertEquals(ROWS, classifier.countCorrectClassifications(), "Incorrect classifications");
+        Classifier hashSet = new Classifier(file.toString(), file.toString(), Classifier.TrainingEngine.HASH_SET);
+        Assertions.assertEquals(classifier.getTree(), hashSet.getTree(), "HASH_SET built a different tree");
+
+        ArrayList<Patient> data = Classifier.getData(file.toString(), classifier.getSchema());
+        CompiledTree compiled = CompiledTree.compile(classifier.getTree(), classifier.getSchema(), true);
+        Assertions.assertFalse(compiled.isGenerated(), "Bytecode was generated for more than 64 attributes");
+        byte[] classValues = compiled.classify(new ColumnarDataset(classifier.getSchema(), data));
+        Path model = Files.createTempFile("wide", ".model");
+        try {
+            classifier.saveModel(model.toString());
+            MappedModel mapped = MappedModel.load(model);
+            Assertions.assertEquals(Arrays.asList("A0", "A1"), mapped.getSchema().getAttributeNames().subList(0, 2),
+                    "Incorrect attribute names in model");
+            for (int i = 0; i < data.size(); i++) {
+                Patient p = data.get(i);
+                Assertions.assertEquals(p.getClassName(), classifier.getSchema().getClassName(classValues[i]),
+                        "Incorrect block class for row " + i);
+                Assertions.assertEquals(p.getClassName(), mapped.classify(p), "Incorrect model class for row " + i);
+            }
+        } finally {
+            Files.delete(model);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import metrics.LatencyHistogram;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import processing.Classifier;
+import processing.InvalidDataException;
+import processing.Patient;
+import processing.Schema;
+import processing.SplitCriterion;
+import service.Model;
+import service.ScoringService;
+
+/**
+ * A test class to check the scoring service classifies concurrent requests correctly, including across model swaps.
+ */
+public class ScoringServiceTest {
+
+    private static final String TEST_DATA_URL = "resources\\hepatitis-test";
+    private static final String TRAINING_DATA_URL = "resources\\hepatitis-training";
+    private static final int REQUEST_THREADS = 64;
+    private static final int REQUESTS_PER_THREAD = 2000;
+    private static final long MAX_P99_LATENCY = TimeUnit.MILLISECONDS.toNanos(250);
+
+    private Classifier train(Schema schema, SplitCriterion criterion) throws IOException, InvalidDataException {
+        return new Classifier(schema, Classifier.getData(TRAINING_DATA_URL, schema),
+                Classifier.getData(TEST_DATA_URL, schema), Classifier.TrainingEngine.BITSET, criterion);
+    }
+
+    @Test
+    public void testConcurrentLoad() throws Exception, InvalidDataException {
+        Schema schema = Classifier.getSchema(TRAINING_DATA_URL);
+        Model model = Model.of("v1", train(schema, SplitCriterion.Standard.GINI));
+        ArrayList<Patient> test = Classifier.getData(TEST_DATA_URL, schema);
+        LatencyHistogram latency = new LatencyHistogram();
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        ExecutorService executor = ScoringService.newRequestExecutor();
+        try (ScoringService service = new ScoringService(model)) {
+            ArrayList<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < REQUEST_THREADS; t++) {
+                int offset = t;
+                futures.add(executor.submit(() -> {
+                    int wrong = 0;
+                    for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                        Patient p = test.get((offset + i) % test.size());
+                        long start = System.nanoTime();
+                        String className;
+                        try {
+                            className = service.classify(p);
+                        } catch (RuntimeException e) {
+                            failed.incrementAndGet();
+                            continue;
+                        }
+                        latency.record(System.nanoTime() - start);
+                        completed.incrementAndGet();
+                        if (!className.equals(model.classify(p))) wrong++;
+                    }
+                    return wrong;
+                }));
+            }
+            for (Future<Integer> future : futures) {
+                Assertions.assertEquals(0, (int) future.get(), "Service classified differently to the model");
+            }
+        } finally {
+            executor.shutdown();
+        }
+        int requests = REQUEST_THREADS * REQUESTS_PER_THREAD;
+        Assertions.assertEquals(0, failed.get(), "Requests failed");
+        Assertions.assertEquals(requests, completed.get(), "Requests not all completed");
+        // Each completed request's latency is recorded once; even with many more request threads than cores, few
+        // requests wait anywhere near the bound for a single classification
+        System.out.println("Scoring latency: " + latency.toText());
+        Assertions.assertEquals(requests, latency.getCount(), "Latencies not all recorded");
+        Assertions.assertTrue(latency.getValueAtPercentile(99) < MAX_P99_LATENCY,
+                "Requests waited too long: " + latency.toText());
+    }
+
+    @Test
+    public void testSwapUnderLoad() throws Exception, InvalidDataException {
+        Schema schema = Classifier.getSchema(TRAINING_DATA_URL);
+        Model first = Model.of("gini", train(schema, SplitCriterion.Standard.GINI));
+        Model second = Model.of("entropy", train(schema, SplitCriterion.Standard.ENTROPY));
+        ArrayList<Patient> test = Classifier.getData(TEST_DATA_URL, schema);
+        ExecutorService executor = ScoringService.newRequestExecutor();
+        try (ScoringService service = new ScoringService(first)) {
+            ArrayList<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < REQUEST_THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    int wrong = 0;
+                    for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                        Patient p = test.get(i % test.size());
+                        String className = service.classify(p);
+                        if (!className.equals(first.classify(p)) && !className.equals(second.classify(p))) wrong++;
+                    }
+                    return wrong;
+                }));
+            }
+            Thread.sleep(5);
+            Assertions.assertSame(first, service.swap(second), "Incorrect model replaced");
+            for (Future<Integer> future : futures) {
+                Assertions.assertEquals(0, (int) future.get(), "Request classified by neither model");
+            }
+            // Once swapped, every request is scored by the new model
+            Assertions.assertSame(second, service.getModel(), "Model not swapped");
+            for (Patient p : test) {
+                Assertions.assertEquals(second.classify(p), service.classify(p), "Request scored by old model");
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testInvalidUse() throws Exception, InvalidDataException {
+        Schema schema = Classifier.getSchema(TRAINING_DATA_URL);
+        Classifier classifier = train(schema, SplitCriterion.Standard.GINI);
+        Model model = Model.of("v1", classifier);
+        Patient p = Classifier.getData(TEST_DATA_URL, schema).get(0);
+        ScoringService service = new ScoringService(model, 8, 1, TimeUnit.MILLISECONDS);
+        try {
+            Assertions.assertEquals(model.classify(p), service.classify(p), "Incorrect class with a batching delay");
+
+            List<String> headings = schema.getAttributeHeadings();
+            headings.set(0, "renamed");
+            Schema other = Schema.fromAttributeHeadings(headings);
+            Assertions.assertThrows(IllegalArgumentException.class,
+                    () -> service.swap(Model.of("other", classifier.getTree(), other)), "Mismatched model swapped in");
+            Assertions.assertSame(model, service.getModel(), "Model replaced by a failed swap");
+
+            service.close();
+            CompletableFuture<String> future = service.submit(p);
+            Assertions.assertThrows(CompletionException.class, future::join, "Request scored after close");
+        } finally {
+            service.close();
+        }
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new ScoringService(model, 0, 0, TimeUnit.NANOSECONDS), "Invalid batch size accepted");
+    }
+}
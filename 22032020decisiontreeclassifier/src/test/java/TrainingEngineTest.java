@@ -0,0 +1,79 @@
+import java.io.IOException;
+import java.util.ArrayList;
+
+import evaluation.TreeParameters;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import processing.Classifier;
+import processing.InvalidDataException;
+import processing.Patient;
+import processing.SplitCriterion;
+import tree.TreeStatistics;
+
+/**
+ * A test class to check the training engines of the Classifier class build the same tree.
+ * Edit variables TEST_DATA_URL and TRAINING_DATA_URL for file paths.
+ */
+public class TrainingEngineTest {
+
+    private static final String TEST_DATA_URL = "resources\\hepatitis-test";
+    private static final String TRAINING_DATA_URL = "resources\\hepatitis-training";
+
+    @Test
+    public void testBitsetEngineBuildsSameTree() throws IOException, InvalidDataException {
+        Classifier hashSet = new Classifier(TRAINING_DATA_URL, TEST_DATA_URL, Classifier.TrainingEngine.HASH_SET);
+        Classifier bitset = new Classifier(TRAINING_DATA_URL, TEST_DATA_URL, Classifier.TrainingEngine.BITSET);
+        Assertions.assertEquals(hashSet.getTree(), bitset.getTree(), "Bitset engine built a different tree");
+    }
+
+    @Test
+    public void testParallelEngineBuildsSameTree() throws IOException, InvalidDataException {
+        Classifier bitset = new Classifier(TRAINING_DATA_URL, TEST_DATA_URL, Classifier.TrainingEngine.BITSET);
+        Classifier parallel = new Classifier(TRAINING_DATA_URL, TEST_DATA_URL, Classifier.TrainingEngine.PARALLEL_BITSET);
+        Assertions.assertEquals(bitset.getTree(), parallel.getTree(), "Parallel engine built a different tree");
+    }
+
+    @Test
+    public void testEnginesBuildSameTreeForEachCriterion() throws IOException, InvalidDataException {
+        ArrayList<Patient> training = Classifier.getData(TRAINING_DATA_URL);
+        ArrayList<Patient> test = Classifier.getData(TEST_DATA_URL);
+        for (SplitCriterion.Standard criterion : SplitCriterion.Standard.values()) {
+            Classifier hashSet = new Classifier(training.get(0).getSchema(), training, test,
+                    Classifier.TrainingEngine.HASH_SET, criterion);
+            Classifier bitset = new Classifier(training.get(0).getSchema(), training, test,
+                    Classifier.TrainingEngine.BITSET, criterion);
+            Assertions.assertEquals(hashSet.getTree(), bitset.getTree(),
+                    "Engines built different trees by " + criterion);
+        }
+    }
+
+    @Test
+    public void testEnginesBuildSamePrunedTree() throws IOException, InvalidDataException {
+        ArrayList<Patient> training = Classifier.getData(TRAINING_DATA_URL);
+        ArrayList<Patient> test = Classifier.getData(TEST_DATA_URL);
+        int fullDepth = TreeStatistics.of(new Classifier(training, test, Classifier.TrainingEngine.BITSET).getTree())
+                .getDepth();
+        TreeParameters[] pruned = {
+                new TreeParameters(2, 0, SplitCriterion.Standard.GINI),
+                new TreeParameters(0, 5, SplitCriterion.Standard.ENTROPY),
+                new TreeParameters(0, 0, SplitCriterion.Standard.GINI, 20, 0),
+                new TreeParameters(0, 0, SplitCriterion.Standard.GINI, 0, 0.05f),
+                new TreeParameters(3, 2, SplitCriterion.Standard.ENTROPY, 10, 0.01f)
+        };
+        for (TreeParameters parameters : pruned) {
+            Classifier hashSet = new Classifier(training.get(0).getSchema(), training, test,
+                    Classifier.TrainingEngine.HASH_SET, parameters);
+            Classifier bitset = new Classifier(training.get(0).getSchema(), training, test,
+                    Classifier.TrainingEngine.BITSET, parameters);
+            Assertions.assertEquals(hashSet.getTree(), bitset.getTree(),
+                    "Engines built different trees with " + parameters);
+            Assertions.assertTrue(TreeStatistics.of(hashSet.getTree()).getDepth() <= fullDepth,
+                    "Tree built with " + parameters + " is deeper than the unpruned tree");
+        }
+        // The depth limit holds in the HASH_SET engine, as it does in the BITSET engine
+        Classifier shallow = new Classifier(training.get(0).getSchema(), training, test,
+                Classifier.TrainingEngine.HASH_SET, new TreeParameters(2, 0, SplitCriterion.Standard.GINI));
+        Assertions.assertTrue(TreeStatistics.of(shallow.getTree()).getDepth() <= 2, "Depth limit was not applied");
+        Assertions.assertTrue(fullDepth > 2, "Training data is too simple to prune");
+    }
+}
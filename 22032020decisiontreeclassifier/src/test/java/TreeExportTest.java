@@ -0,0 +1,271 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import ensemble.GradientBoostedTrees;
+import ensemble.RandomForest;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import processing.InvalidDataException;
+import processing.Schema;
+import tree.BaseNode;
+import tree.CachedClassifier;
+import tree.CompiledTree;
+import tree.LeafNode;
+import tree.MappedModel;
+import tree.ModelWriter;
+import tree.Node;
+import tree.TreeExporter;
+import tree.TreeVisitor;
+import tree.ValueLeafNode;
+
+/**
+ * A test class to check trees are written out as text, JSON and DOT, and that trees far deeper than the call stack
+ * allows to recurse through are walked. Compiled and mapped trees, and ensembles of trees, are written the same way.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class TreeExportTest {
+
+    private static final int DEEP = 100000;
+    private Schema schema;
+    private BaseNode tree;
+
+    @BeforeAll
+    public void setup() throws InvalidDataException {
+        schema = Schema.fromHeadings("Class FLAG LEVEL:numeric COLOUR:categorical");
+        for (String colour : Arrays.asList("red", "blue", "green")) {
+            schema.getCategory(schema.getAttributeIndex("COLOUR"), colour);
+        }
+        tree = new Node(schema, "FLAG",
+                new Node(schema, "LEVEL", 5.0, new LeafNode("A", 0.75f), new ValueLeafNode("B", 0.5f)),
+                new Node(schema, "COLOUR", Arrays.asList("red", "blue"), new LeafNode("C", 1f),
+                        new LeafNode("A", 0.25f)));
+    }
+
+    @Test
+    public void testText() throws InvalidDataException {
+        String expected = "FLAG = True:\n"
+                + "|_ _ _ LEVEL <= 5.0 = True:\n"
+                + "_ _ _ _ |_ _ _ Class A, probability = 0.75 \n"
+                + "|_ _ _ LEVEL <= 5.0 = False:\n"
+                + "_ _ _ _ |_ _ _ Class B, value = 0.5000 \n"
+                + "FLAG = False:\n"
+                + "|_ _ _ COLOUR in {red, blue} = True:\n"
+                + "_ _ _ _ |_ _ _ Class C, probability = 1.00 \n"
+                + "|_ _ _ COLOUR in {red, blue} = False:\n"
+                + "_ _ _ _ |_ _ _ Class A, probability = 0.25 \n";
+        Assertions.assertEquals(expected, TreeExporter.toString(tree, TreeExporter.Format.TEXT), "Incorrect text");
+        Assertions.assertEquals(expected, report(tree, ""), "Incorrect report");
+
+        // The root's indentation is carried into the nodes below it with its bar replaced, as the recursive report did
+        String indented = report(new Node(schema, "FLAG", new LeafNode("A", 1f), new LeafNode("B", 1f)), "|_ _ _ ");
+        Assertions.assertEquals("|_ _ _ FLAG = True:\n"
+                + "_ _ _ _ |_ _ _ Class A, probability = 1.00 \n"
+                + "|_ _ _ FLAG = False:\n"
+                + "_ _ _ _ |_ _ _ Class B, probability = 1.00 \n", indented, "Incorrect indented report");
+    }
+
+    @Test
+    public void testJson() throws IOException, InvalidDataException {
+        Assertions.assertEquals("{\"attribute\":\"FLAG\",\"true\":"
+                        + "{\"attribute\":\"LEVEL\",\"threshold\":5.0,\"true\":{\"class\":\"A\",\"probability\":0.75},"
+                        + "\"false\":{\"class\":\"B\",\"value\":0.5}},\"false\":"
+                        + "{\"attribute\":\"COLOUR\",\"categories\":[\"red\",\"blue\"],"
+                        + "\"true\":{\"class\":\"C\",\"probability\":1.0},"
+                        + "\"false\":{\"class\":\"A\",\"probability\":0.25}}}\n",
+                TreeExporter.toString(tree, TreeExporter.Format.JSON), "Incorrect JSON");
+
+        // Names are escaped, and a Writer gets the same as a StringBuilder
+        BaseNode quoted = new Node(schema, "COLOUR", Arrays.asList("a \"b\"", "c\\d"), new LeafNode("x\ny", 1f),
+                new LeafNode("z", 1f));
+        StringWriter writer = new StringWriter();
+        TreeExporter.write(quoted, TreeExporter.Format.JSON, writer);
+        Assertions.assertEquals("{\"attribute\":\"COLOUR\",\"categories\":[\"a \\\"b\\\"\",\"c\\\\d\"],"
+                + "\"true\":{\"class\":\"x\\ny\",\"probability\":1.0},"
+                + "\"false\":{\"class\":\"z\",\"probability\":1.0}}\n",
+                writer.toString(), "Incorrect escaping");
+    }
+
+    @Test
+    public void testDot() {
+        String dot = TreeExporter.toString(tree, TreeExporter.Format.DOT);
+        Assertions.assertTrue(dot.startsWith("digraph tree {\n") && dot.endsWith("}\n"), "Not a digraph: " + dot);
+        Assertions.assertTrue(dot.contains("    n0 [label=\"FLAG\"];\n"), "Root not written: " + dot);
+        Assertions.assertTrue(dot.contains("    n1 [label=\"LEVEL <= 5.0\"];\n    n0 -> n1 [label=\"True\"];\n"),
+                "True branch not written: " + dot);
+        Assertions.assertTrue(dot.contains("    n3 [label=\"B\\nvalue = 0.5000\"];\n    n1 -> n3 [label=\"False\"];\n"),
+                "Value leaf not written: " + dot);
+        Assertions.assertTrue(dot.contains("    n4 [label=\"COLOUR in {red, blue}\"];\n"
+                + "    n0 -> n4 [label=\"False\"];\n"), "False branch not written: " + dot);
+        // 7 nodes and the 6 edges between them are each labelled
+        Assertions.assertEquals(13, dot.split("\\[label=").length - 1, "Incorrect number of labels: " + dot);
+    }
+
+    @Test
+    public void testDeepTree() throws IOException, InvalidDataException {
+        // A chain of nodes, each with a leaf on its true branch, far deeper than recursion could go
+        BaseNode chain = new LeafNode("A", 1f);
+        for (int i = 0; i < DEEP; i++) chain = new Node(schema, "FLAG", new LeafNode("B", 1f), chain);
+
+        int[] counts = new int[3];
+        chain.accept(new TreeVisitor() {
+            @Override
+            public void enterNode(Node node, int depth) {
+                counts[0]++;
+                counts[2] = Math.max(counts[2], depth);
+            }
+
+            @Override
+            public void betweenBranches(Node node, int depth) {
+            }
+
+            @Override
+            public void exitNode(Node node, int depth) {
+            }
+
+            @Override
+            public void visitLeaf(LeafNode leaf, int depth) {
+                counts[1]++;
+                counts[2] = Math.max(counts[2], depth);
+            }
+        });
+        Assertions.assertEquals(DEEP, counts[0], "Incorrect number of nodes visited");
+        Assertions.assertEquals(DEEP + 1, counts[1], "Incorrect number of leaves visited");
+        Assertions.assertEquals(DEEP, counts[2], "Incorrect depth");
+
+        // The text indents every line by its depth, so it grows with the square of the depth and is left out here
+        String dot = TreeExporter.toString(chain, TreeExporter.Format.DOT);
+        // Each node is numbered after its parent and the leaf on its parent's true branch
+        Assertions.assertTrue(dot.contains("    n" + (2 * DEEP - 2) + " -> n" + 2 * DEEP + " [label=\"False\"];\n"),
+                "Deepest leaf not written");
+        String json = TreeExporter.toString(chain, TreeExporter.Format.JSON);
+        Assertions.assertTrue(json.endsWith("{\"class\":\"A\",\"probability\":1.0}" + "}".repeat(DEEP) + "\n"),
+                "Deep JSON not closed");
+
+        // Compiling, saving and caching the chain do not recurse either, nor does comparing it with another chain
+        CompiledTree compiled = CompiledTree.compile(chain, schema);
+        Assertions.assertEquals(DEEP, compiled.getNodeCount(), "Incorrect number of nodes compiled");
+        Assertions.assertEquals(DEEP + 1, compiled.getLeafCount(), "Incorrect number of leaves compiled");
+        long flag = 1L << schema.getAttributeIndex("FLAG");
+        Assertions.assertEquals("A", compiled.classify(0L), "Deepest leaf not reached");
+        Assertions.assertEquals("B", compiled.classify(flag), "First leaf not reached");
+        Assertions.assertEquals(dot, TreeExporter.toString(compiled, TreeExporter.Format.DOT), "Incorrect compiled DOT");
+        Path file = Files.createTempFile("deep", ".model");
+        try {
+            ModelWriter.writeTree(file, compiled);
+            Assertions.assertEquals(dot, TreeExporter.toString(MappedModel.load(file), TreeExporter.Format.DOT),
+                    "Incorrect mapped DOT");
+        } finally {
+            Files.delete(file);
+        }
+
+        // A cache needs attributes that fit a bitmask, so the same chain is built over its boolean attribute alone
+        Schema flagOnly = Schema.fromHeadings("Class FLAG");
+        BaseNode same = new LeafNode("A", 1f);
+        BaseNode other = new LeafNode("C", 1f);
+        for (int i = 0; i < DEEP; i++) {
+            same = new Node(flagOnly, "FLAG", new LeafNode("B", 1f), same);
+            other = new Node(schema, "FLAG", new LeafNode("B", 1f), other);
+        }
+        Assertions.assertEquals("A", CachedClassifier.of(same, flagOnly).classify(0L), "Deepest leaf not cached");
+        Assertions.assertEquals(chain, same, "Equal chains not equal");
+        Assertions.assertEquals(chain.hashCode(), same.hashCode(), "Equal chains hashed differently");
+        Assertions.assertNotEquals(chain, other, "Chains with different deepest leaves equal");
+    }
+
+    @Test
+    public void testCompiledTree() throws IOException, InvalidDataException {
+        // Compiling keeps a probability for each leaf, not a value, so every leaf here has a probability
+        BaseNode tree = probabilityTree();
+        CompiledTree compiled = CompiledTree.compile(tree, schema);
+        for (TreeExporter.Format format : TreeExporter.Format.values()) {
+            Assertions.assertEquals(TreeExporter.toString(tree, format), TreeExporter.toString(compiled, format),
+                    "Incorrect compiled " + format);
+        }
+        Assertions.assertEquals(report(tree, "|_ _ _ "), report(compiled, "|_ _ _ "), "Incorrect compiled report");
+
+        // A single leaf compiles to no internal nodes at all
+        CompiledTree leaf = CompiledTree.compile(new LeafNode("A", 0.5f), schema);
+        Assertions.assertEquals("Class A, probability = 0.50 \n", report(leaf, ""), "Incorrect compiled leaf");
+    }
+
+    @Test
+    public void testEnsembleReports() throws IOException, InvalidDataException {
+        BaseNode tree = probabilityTree();
+        CompiledTree compiled = CompiledTree.compile(tree, schema);
+        String treeText = report(tree, "_ _ _ _ |_ _ _ ");
+
+        RandomForest forest = new RandomForest(new CompiledTree[] {compiled, compiled});
+        Assertions.assertEquals("|_ _ _ Tree 1:\n" + treeText + "|_ _ _ Tree 2:\n" + treeText,
+                report(forest, "|_ _ _ "), "Incorrect forest report");
+
+        // Boosted trees are regression trees of boolean attributes, scoring the last class when there are two
+        Schema flags = Schema.fromHeadings("Class FLAG");
+        flags.getClassValue("live");
+        flags.getClassValue("die");
+        BaseNode regression = new Node(flags, "FLAG", new ValueLeafNode("die", 0.5f), new ValueLeafNode("die", -0.5f));
+        GradientBoostedTrees boosted = new GradientBoostedTrees(flags, new float[] {0.25f},
+                new BaseNode[] {regression});
+        Assertions.assertEquals("|_ _ _ Base score of class die = 0.2500\n|_ _ _ Tree 1:\n"
+                + report(regression, "_ _ _ _ |_ _ _ "), report(boosted, "|_ _ _ "), "Incorrect boosted report");
+
+        // A mapped model walks its trees in the file, and reports them after its size
+        Path file = Files.createTempFile("export", ".model");
+        try {
+            ModelWriter.writeForest(file, new CompiledTree[] {compiled, compiled});
+            String mappedReport = report(MappedModel.load(file), "|_ _ _ ");
+            Assertions.assertTrue(mappedReport.startsWith("|_ _ _ Forest of 2 tree(s) mapped from "),
+                    "Size not reported");
+            Assertions.assertTrue(mappedReport.endsWith("|_ _ _ Tree 1:\n" + treeText + "|_ _ _ Tree 2:\n" + treeText),
+                    "Incorrect mapped report");
+
+            ModelWriter.writeTree(file, compiled);
+            MappedModel model = MappedModel.load(file);
+            for (TreeExporter.Format format : TreeExporter.Format.values()) {
+                Assertions.assertEquals(TreeExporter.toString(tree, format), TreeExporter.toString(model, format),
+                        "Incorrect mapped " + format);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Method to return the tree of setup with a probability on each leaf, as a compiled tree holds them.
+     *
+     * @return the tree.
+     * @throws InvalidDataException if the tree does not fit the schema.
+     */
+    private BaseNode probabilityTree() throws InvalidDataException {
+        return new Node(schema, "FLAG",
+                new Node(schema, "LEVEL", 5.0, new LeafNode("A", 0.75f), new LeafNode("B", 0.5f)),
+                new Node(schema, "COLOUR", Arrays.asList("red", "blue"), new LeafNode("C", 1f),
+                        new LeafNode("A", 0.25f)));
+    }
+
+    /**
+     * Method to capture what BaseNode.report prints for a tree.
+     *
+     * @param node The tree.
+     * @param indent The indentation of its root.
+     * @return the printed text.
+     */
+    private static String report(BaseNode node, String indent) {
+        PrintStream out = System.out;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(captured));
+        try {
+            node.report(indent);
+        } finally {
+            System.setOut(out);
+        }
+        return captured.toString();
+    }
+}
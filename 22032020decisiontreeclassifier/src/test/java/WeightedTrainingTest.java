@@ -0,0 +1,201 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import evaluation.TreeParameters;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import processing.BitsetTreeBuilder;
+import processing.Classifier;
+import processing.ColumnarDataset;
+import processing.InvalidDataException;
+import processing.Patient;
+import processing.Schema;
+import processing.SplitCriterion;
+
+/**
+ * A test class to check trees trained on deduplicated rows, weighted by how often each occurs, are the trees trained
+ * on every row.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class WeightedTrainingTest {
+
+    private static final int ATTRIBUTES = 6;
+    private static final int ROWS = 5000;
+    private static final long SEED = 20;
+    private Path booleanFile;
+    private Path numericFile;
+    private Path distinctFile;
+
+    @BeforeAll
+    public void setup() throws IOException {
+        // Few attributes and many rows, so most rows are duplicates; the class is "die" when A0 and A1 are both true,
+        // or LEVEL is 1.5 where there is a LEVEL, with 10% noise so that duplicates of a row can have different classes
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<String> booleanLines = new ArrayList<>();
+        List<String> numericLines = new ArrayList<>();
+        StringBuilder headings = new StringBuilder("Class");
+        for (int a = 0; a < ATTRIBUTES; a++) headings.append(" A").append(a);
+        booleanLines.add(headings.toString());
+        numericLines.add(headings + " LEVEL:numeric");
+        for (int r = 0; r < ROWS; r++) {
+            int bits = random.nextInt(1 << ATTRIBUTES);
+            int level = random.nextInt(4);
+            boolean noise = random.nextInt(10) == 0;
+            StringBuilder values = new StringBuilder();
+            for (int a = 0; a < ATTRIBUTES; a++) values.append(' ').append((bits & (1 << a)) != 0);
+            booleanLines.add(((bits & 3) == 3 != noise ? "die" : "live") + values);
+            numericLines.add((((bits & 3) == 3 || level == 3) != noise ? "die" : "live") + values + " " + level * 0.5);
+        }
+        booleanFile = Files.createTempFile("duplicates", ".txt");
+        numericFile = Files.createTempFile("duplicates-numeric", ".txt");
+        Files.write(booleanFile, booleanLines);
+        Files.write(numericFile, numericLines);
+
+        // Every combination of the attributes once, so no row is a duplicate of another
+        List<String> distinctLines = new ArrayList<>();
+        distinctLines.add(headings.toString());
+        for (int bits = 0; bits < 1 << ATTRIBUTES; bits++) {
+            StringBuilder values = new StringBuilder();
+            for (int a = 0; a < ATTRIBUTES; a++) values.append(' ').append((bits & (1 << a)) != 0);
+            distinctLines.add(((bits & 3) == 3 ? "die" : "live") + values);
+        }
+        distinctFile = Files.createTempFile("distinct", ".txt");
+        Files.write(distinctFile, distinctLines);
+    }
+
+    @AfterAll
+    public void tearDown() throws IOException {
+        Files.delete(booleanFile);
+        Files.delete(numericFile);
+        Files.delete(distinctFile);
+    }
+
+    @Test
+    public void testDeduplicateCountsRows() throws IOException, InvalidDataException {
+        for (Path file : List.of(booleanFile, numericFile)) {
+            Schema schema = Classifier.getSchema(file.toString());
+            ArrayList<Patient> rows = Classifier.getData(file.toString(), schema);
+            ColumnarDataset data = ColumnarDataset.deduplicate(schema, rows);
+            Assertions.assertTrue(data.size() < rows.size() / 10, "Duplicates not removed: " + data.size());
+            Assertions.assertEquals(ROWS, data.getTotalWeight(), "Weights do not add up to the rows");
+
+            // Each distinct row, in the order it first occurs, is weighted by the number of rows equal to it
+            Map<Patient, Integer> counts = new LinkedHashMap<>();
+            for (Patient p : rows) counts.merge(p, 1, Integer::sum);
+            Assertions.assertEquals(counts.size(), data.size(), "Incorrect number of distinct rows");
+            int row = 0;
+            for (int count : counts.values()) {
+                Assertions.assertEquals(count, data.getWeight(row), "Incorrect weight of row " + row);
+                row++;
+            }
+        }
+
+        // Data with no duplicates stays unweighted
+        ArrayList<Patient> rows = Classifier.getData(distinctFile.toString());
+        ColumnarDataset distinct = ColumnarDataset.deduplicate(rows.get(0).getSchema(), rows);
+        Assertions.assertEquals(1 << ATTRIBUTES, distinct.size(), "Distinct rows removed");
+        Assertions.assertNull(distinct.getWeights(), "Distinct rows weighted");
+    }
+
+    @Test
+    public void testWeightedTreeMatchesEveryRow() throws IOException, InvalidDataException {
+        for (Path file : List.of(booleanFile, numericFile)) {
+            Schema schema = Classifier.getSchema(file.toString());
+            ArrayList<Patient> rows = Classifier.getData(file.toString(), schema);
+            ColumnarDataset all = new ColumnarDataset(schema, rows);
+            ColumnarDataset weighted = ColumnarDataset.deduplicate(schema, rows);
+            for (SplitCriterion criterion : SplitCriterion.Standard.values()) {
+                BitsetTreeBuilder allBuilder = new BitsetTreeBuilder(all, "live", 0.5f);
+                BitsetTreeBuilder weightedBuilder = new BitsetTreeBuilder(weighted, "live", 0.5f);
+                allBuilder.setCriterion(criterion);
+                weightedBuilder.setCriterion(criterion);
+                // Leaves are equal with their probabilities, so they give the proportions of every row
+                Assertions.assertEquals(allBuilder.build(), weightedBuilder.build(),
+                        "Weighted tree differs by " + criterion);
+            }
+        }
+    }
+
+    @Test
+    public void testMostFrequentClassCountsWeights() throws IOException, InvalidDataException {
+        Schema schema = Classifier.getSchema(booleanFile.toString());
+        ArrayList<Patient> rows = Classifier.getData(booleanFile.toString(), schema);
+        ColumnarDataset all = new ColumnarDataset(schema, rows);
+        ColumnarDataset weighted = ColumnarDataset.deduplicate(schema, rows);
+        ColumnarDataset.MostFrequentClass expected = all.mostFrequentClass(all.allRows());
+        ColumnarDataset.MostFrequentClass actual = weighted.mostFrequentClass(weighted.allRows());
+        Assertions.assertEquals(expected.getClassName(), actual.getClassName(), "Incorrect most frequent class");
+        Assertions.assertEquals(expected.getProbability(), actual.getProbability(), 1e-6, "Incorrect probability");
+
+        // A tie goes to the earliest class, and no rows to no class
+        ColumnarDataset.MostFrequentClass tie = ColumnarDataset.mostFrequentClass(schema, new int[] {3, 3});
+        Assertions.assertEquals(schema.getClassName((byte) 0), tie.getClassName(), "Tie not broken by class order");
+        Assertions.assertEquals(0.5f, tie.getProbability(), "Incorrect probability of a tie");
+        ColumnarDataset.MostFrequentClass none = all.mostFrequentClass(new long[all.allRows().length]);
+        Assertions.assertEquals("", none.getClassName(), "Class found for no rows");
+        Assertions.assertEquals(0f, none.getProbability(), "Probability given for no rows");
+    }
+
+    @Test
+    public void testEnginesBuildSameTreeFromDuplicates() throws IOException, InvalidDataException {
+        for (Path file : List.of(booleanFile, numericFile)) {
+            Schema schema = Classifier.getSchema(file.toString());
+            ArrayList<Patient> rows = Classifier.getData(file.toString(), schema);
+            Classifier hashSet = new Classifier(schema, rows, rows, Classifier.TrainingEngine.HASH_SET);
+            Classifier bitset = new Classifier(schema, rows, rows, Classifier.TrainingEngine.BITSET);
+            Classifier parallel = new Classifier(schema, rows, rows, Classifier.TrainingEngine.PARALLEL_BITSET);
+            Assertions.assertEquals(hashSet.getTree(), bitset.getTree(), "Bitset engine built a different tree");
+            Assertions.assertEquals(bitset.getTree(), parallel.getTree(), "Parallel engine built a different tree");
+            Assertions.assertTrue(bitset.countCorrectClassifications() > ROWS * 0.85, "Rule not learned");
+
+            // Training on the distinct rows, weighted, is opt-in and builds the same tree in every engine
+            for (Classifier.TrainingEngine engine : Classifier.TrainingEngine.values()) {
+                Classifier deduplicated = new Classifier(schema, rows, rows, engine, TreeParameters.DEFAULT, null,
+                        true);
+                Assertions.assertEquals(bitset.getTree(), deduplicated.getTree(),
+                        "Deduplicated rows built a different tree by " + engine);
+            }
+        }
+    }
+
+    @Test
+    public void testGivenWeightsMatchEveryRow() throws IOException, InvalidDataException {
+        for (Path file : List.of(booleanFile, numericFile)) {
+            Schema schema = Classifier.getSchema(file.toString());
+            ArrayList<Patient> rows = Classifier.getData(file.toString(), schema);
+            Map<Patient, Integer> counts = new LinkedHashMap<>();
+            for (Patient p : rows) counts.merge(p, 1, Integer::sum);
+            int[] weights = counts.values().stream().mapToInt(Integer::intValue).toArray();
+            ColumnarDataset weighted = new ColumnarDataset(schema, counts.keySet(), weights);
+            Assertions.assertEquals(ROWS, weighted.getTotalWeight(), "Weights do not add up to the rows");
+
+            // Each distinct row weighted by its count stands for every row, whichever engine trains on it
+            ColumnarDataset test = new ColumnarDataset(schema, rows);
+            for (Classifier.TrainingEngine engine : Classifier.TrainingEngine.values()) {
+                Classifier all = new Classifier(schema, rows, rows, engine);
+                Classifier given = new Classifier(weighted, test, engine, TreeParameters.DEFAULT, null);
+                Assertions.assertEquals(all.getTree(), given.getTree(), "Weighted rows built a different tree by "
+                        + engine);
+                Assertions.assertEquals(all.countCorrectClassifications(), given.countCorrectClassifications(),
+                        "Weighted rows classified differently by " + engine);
+            }
+        }
+
+        // There must be one weight of at least 1 for each row
+        ArrayList<Patient> rows = Classifier.getData(booleanFile.toString());
+        List<Patient> two = rows.subList(0, 2);
+        Schema schema = two.get(0).getSchema();
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ColumnarDataset(schema, two, new int[] {1}));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new ColumnarDataset(schema, two, new int[] {1, 0}));
+    }
+}